@@ -1,5 +1,11 @@
 package com.nedap.go;
 
+import com.nedap.go.game.Board;
+import com.nedap.go.game.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents the communication protocol between the server and the clients.
  */
@@ -23,8 +29,13 @@ public final class Protocol {
     public static final String GAMEOVER = "GAMEOVER";
     public static final String DISCONNECT = "DISCONNECT";
     public static final String VICTORY = "VICTORY";
+    public static final String RESIGN = "RESIGN"; // client-side command, and server-side reason of GAMEOVER
+    public static final String TIMEOUT = "TIMEOUT"; // reason of GAMEOVER: the player to move has run out of time
     public static final String YOURTURN = "YOURTURN";
     public static final String INVALIDMOVE = "INVALIDMOVE";
+    // snapshot of a running game for a spectator: BOARD~black~white~board~stone to move, where the board has one
+    // character per position (. for empty, B for black, W for white), row by row:
+    public static final String BOARD = "BOARD";
 
     // Client-side
     public static final String HELLO = "HELLO";
@@ -32,10 +43,32 @@ public final class Protocol {
     public static final String QUEUE = "QUEUE";
     public static final String PASS = "PASS";
     public static final String QUIT = "QUIT";
+    public static final String OBSERVE = "OBSERVE"; // OBSERVE~gameId: watch a running game (BOARD, then MOVE/GAMEOVER)
+    // RESUME~token: attach a new connection to the session of JOINED~message~token after the connection was lost; the
+    // server answers with JOINED, and BOARD (and YOURTURN) for each game the player is still playing:
+    public static final String RESUME = "RESUME";
 
     // both sides
     public static final String MOVE = "MOVE"; // both in server and client side?  username played this move || username passed
     public static final String ERROR = "ERROR";
+    // heartbeat: the server sends PING to a client with HEARTBEAT that has been silent for a while, which answers with
+    // PONG; a client that stays silent is disconnected (a client can send PING to the server as well):
+    public static final String PING = "PING";
+    public static final String PONG = "PONG";
+
+    // Capabilities, which a client can list after its description in HELLO; the server lists the capabilities it
+    // accepts after its description in WELCOME:
+    public static final String BINARY = "BINARY"; // binary framing (see com.nedap.go.codec.Framing) after WELCOME
+    // several games at once over one connection; after WELCOME, the game messages (NEWGAME, YOURTURN, MOVE, PASS,
+    // INVALIDMOVE, RESIGN and GAMEOVER) have the id of their game as first field, for example MOVE~7~3~4:
+    public static final String MULTIGAME = "MULTIGAME";
+    // moves are sent with the stones they capture, so clients do not need to search for captures themselves: after
+    // WELCOME, MOVE~username~row~column has a fourth field with the captured positions (see capturedPositions()):
+    public static final String CAPTURES = "CAPTURES";
+    // the client answers PING with PONG: after WELCOME, the server pings the client when it is silent, and disconnects
+    // it when it stays silent (a client without HEARTBEAT is only disconnected while it is not queued, playing or
+    // watching a game):
+    public static final String HEARTBEAT = "HEARTBEAT";
 
     /**
      * Builds a new protocol message which instructs the server that you want to connect.
@@ -46,6 +79,22 @@ public final class Protocol {
         return HELLO + SEPARATOR + clientDescription;
     }
 
+    /**
+     * Builds a new protocol message which instructs the server that you want to connect, and which capabilities the
+     * client supports. Capabilities that the server does not support are ignored.
+     *
+     * @param clientDescription is the description of the client
+     * @param capabilities      are the capabilities the client supports (for example BINARY)
+     * @return the description and capabilities of the client in the correct format
+     */
+    public static String helloMessage(String clientDescription, String... capabilities) {
+        StringBuilder message = new StringBuilder(HELLO + SEPARATOR + clientDescription);
+        for (String capability : capabilities) {
+            message.append(SEPARATOR).append(capability);
+        }
+        return message.toString();
+    }
+
     /**
      * Builds a new protocol message which instructs the client that the server wants to accept the connection.
      *
@@ -76,6 +125,30 @@ public final class Protocol {
         return JOINED + SEPARATOR + message;
     }
 
+    /**
+     * Builds a new protocol message which instructs the client that the connection is correctly established, with the
+     * token of its session. With this token, the client can resume its games on a new connection if its connection is
+     * lost (see resume()).
+     *
+     * @param message is the message the server returns
+     * @param token   is the token of the session of the client
+     * @return the message in the correct format
+     */
+    public static String joined(String message, String token) {
+        return JOINED + SEPARATOR + message + SEPARATOR + token;
+    }
+
+    /**
+     * Builds a new protocol command which instructs the server that the client wants to continue its session on this
+     * connection, after its previous connection was lost. It should be sent after HELLO, instead of USERNAME.
+     *
+     * @param token is the token of the session, as received in JOINED
+     * @return the resume message in the correct format
+     */
+    public static String resume(String token) {
+        return RESUME + SEPARATOR + token;
+    }
+
     /**
      * Builds a new protocol message which instructs the client that the username is already taken. This only needs
      * to be sent to the player who has tried to use this username.
@@ -130,6 +203,43 @@ public final class Protocol {
         return MOVE + SEPARATOR + username + SEPARATOR + row + SEPARATOR + column;
     }
 
+    /**
+     * Builds the field with the positions of the stones that a move has captured, which follows the move for clients
+     * that use CAPTURES. Each position is written as row * Board.SIZE + column, separated by commas.
+     *
+     * @param captured are the positions of the captured stones
+     * @return the captured positions in the correct format; empty if no stones are captured
+     */
+    public static String capturedPositions(List<Position> captured) {
+        StringBuilder field = new StringBuilder();
+        for (Position position : captured) {
+            if (!field.isEmpty()) {
+                field.append(',');
+            }
+            field.append(position.getRow() * Board.SIZE + position.getColumn());
+        }
+        return field.toString();
+    }
+
+    /**
+     * Reads the positions of the captured stones from the field that follows a move (see capturedPositions()).
+     *
+     * @param field is the field with the captured positions
+     * @return the captured positions
+     * @throws NumberFormatException if the field is not in the correct format
+     */
+    public static List<Position> parseCapturedPositions(String field) {
+        List<Position> captured = new ArrayList<>();
+        if (field.isEmpty()) {
+            return captured;
+        }
+        for (String index : field.split(",")) {
+            int position = Integer.parseInt(index);
+            captured.add(new Position(position / Board.SIZE, position % Board.SIZE));
+        }
+        return captured;
+    }
+
     /**
      * Builds a new protocol message which instructs the client that the move is an invalid move. This only needs
      * to be sent to the player who has tried to do this move.
@@ -140,6 +250,17 @@ public final class Protocol {
         return INVALIDMOVE;
     }
 
+    /**
+     * Builds a new protocol command which instructs the server that the client wants to watch a running game. The
+     * server replies with a snapshot of the board (BOARD), followed by the moves of the game.
+     *
+     * @param gameId is the id of the game to watch
+     * @return the observe message in the correct format
+     */
+    public static String observe(int gameId) {
+        return OBSERVE + SEPARATOR + gameId;
+    }
+
     /**
      * Builds a new protocol command which instructs the server that a player wants to pass.
      *
@@ -168,6 +289,16 @@ public final class Protocol {
         return YOURTURN;
     }
 
+    /**
+     * Builds a new protocol command which instructs the server that a player resigns: the game ends directly and the
+     * opponent wins.
+     *
+     * @return the resign message in the correct format
+     */
+    public static String resign() {
+        return RESIGN;
+    }
+
     /**
      * Builds a new protocol message which instructs the server that a client has quit.
      *
@@ -181,16 +312,40 @@ public final class Protocol {
     /**
      * Builds a new protocol message which instructs the client that a game is over.
      *
+     * @param reason         is the reason the game is over (DISCONNECT, RESIGN, TIMEOUT or VICTORY)
+     * @param usernameWinner is the username of the winner
      * @return the message in the correct format
      */
     public static String gameOver(String reason, String usernameWinner) {
         if (reason.equals(DISCONNECT)) {
             return GAMEOVER + SEPARATOR + DISCONNECT + SEPARATOR + usernameWinner;
+        } else if (reason.equals(RESIGN)) {
+            return GAMEOVER + SEPARATOR + RESIGN + SEPARATOR + usernameWinner;
+        } else if (reason.equals(TIMEOUT)) {
+            return GAMEOVER + SEPARATOR + TIMEOUT + SEPARATOR + usernameWinner;
         } else {
             return GAMEOVER + SEPARATOR + VICTORY + SEPARATOR + usernameWinner;
         }
     }
 
+    /**
+     * Builds a new protocol message which checks whether the other side is still there; it answers with pong().
+     *
+     * @return the ping message in the correct format
+     */
+    public static String ping() {
+        return PING;
+    }
+
+    /**
+     * Builds a new protocol message which answers a ping.
+     *
+     * @return the pong message in the correct format
+     */
+    public static String pong() {
+        return PONG;
+    }
+
     /**
      * Builds a new protocol message which instructs the client or server that an error occured.
      *
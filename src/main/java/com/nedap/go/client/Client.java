@@ -1,23 +1,49 @@
 package com.nedap.go.client;
 
 import com.nedap.go.Protocol;
+import com.nedap.go.codec.Command;
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.Message;
+import com.nedap.go.codec.MessageDecoder;
+import com.nedap.go.codec.MessageEncoder;
+import com.nedap.go.codec.MessageHandler;
 import com.nedap.go.game.*;
 
 import java.io.*;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Represents the client for the GO game.
+ * Represents the client for the GO game. Messages from the server are decoded directly from the received bytes, and
+ * messages to the server are encoded into a reusable buffer (see com.nedap.go.codec). If the system property go.binary
+ * is true, the client asks the server for binary framing in the handshake; otherwise, the text protocol is used. If the
+ * system property go.multiGame is true, the client asks to play several games at once over its connection: it keeps a
+ * game per game id, and each game message is applied to the game it is about. Running games can be watched with
+ * OBSERVE: the server sends a snapshot of the board (BOARD), followed by the moves of the game. The client always asks
+ * for CAPTURES, so each move comes with the stones it has captured and does not need to be checked again. The client
+ * keeps the session token of JOINED, so its games can be continued with RESUME on a new connection if the connection is
+ * lost; the server then sends a snapshot of the board of each game (BOARD). The client asks for HEARTBEAT and answers
+ * each PING of the server with PONG, so the server knows it is still there.
  */
-public class Client implements Runnable {
+public class Client implements Runnable, MessageHandler {
+    private static final int READ_BUFFER_SIZE = 8192;
+    public static final String BINARY_PROPERTY = "go.binary";
+    public static final String MULTIGAME_PROPERTY = "go.multiGame";
     private final ClientTUI clientTui;
+    private final ByteBuffer readBuffer;
+    private final MessageDecoder decoder;
+    private final MessageEncoder encoder;
     private Socket socket;
-    private BufferedReader inputFromClientHandler;
-    private PrintWriter writerToClientHandler;
+    private InputStream inputFromClientHandler;
+    private OutputStream outputToClientHandler;
     private String username;
-    private Stone stone;
-    private Game goGame;
+    private volatile String sessionToken;
+    private final Map<Integer, Game> games;
+    private final Map<Integer, Stone> stones;
+    private volatile int currentGameId; // the game of the last YOURTURN or INVALIDMOVE (0 if game ids are not used)
     public static final String SEPARATOR = "~";
     public static final String WELCOME = "WELCOME";
     public static final String USERNAMETAKEN = "USERNAMETAKEN";
@@ -26,6 +52,8 @@ public class Client implements Runnable {
     public static final String GAMEOVER = "GAMEOVER";
     public static final String DISCONNECT = "DISCONNECT";
     public static final String VICTORY = "VICTORY";
+    public static final String RESIGN = "RESIGN";
+    public static final String TIMEOUT = "TIMEOUT";
     public static final String YOURTURN = "YOURTURN";
     public static final String INVALIDMOVE = "INVALIDMOVE";
     public static final String MOVE = "MOVE";
@@ -37,6 +65,11 @@ public class Client implements Runnable {
      */
     public Client(ClientTUI clientTUI) {
         this.clientTui = clientTUI;
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.decoder = new MessageDecoder();
+        this.encoder = new MessageEncoder();
+        this.games = new ConcurrentHashMap<>();
+        this.stones = new ConcurrentHashMap<>();
     }
 
     /**
@@ -49,8 +82,8 @@ public class Client implements Runnable {
     public boolean connect(InetAddress address, int port) {
         try {
             socket = new Socket(address, port);
-            inputFromClientHandler = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writerToClientHandler = new PrintWriter(socket.getOutputStream(), true);
+            inputFromClientHandler = socket.getInputStream();
+            outputToClientHandler = socket.getOutputStream();
             Thread clientThread = new Thread(this);
             clientThread.start();
         } catch (IOException e) {
@@ -61,14 +94,12 @@ public class Client implements Runnable {
     }
 
     /**
-     * Closes the connection between client and server by closing the client socket. Besides that, the bufferedReader
-     * and printWriter should be closed too to prevent data leakage.
+     * Closes the connection between client and server by closing the client socket, which also closes its input and
+     * output stream.
      */
     public void close() {
         try {
             socket.close();
-            inputFromClientHandler.close();
-            writerToClientHandler.close();
         } catch (IOException e) {
             System.out.println("Not able to close this client");
         }
@@ -76,69 +107,20 @@ public class Client implements Runnable {
 
     /**
      * Runs this operation. As long as the socket is not closed (= as long as the client is connected to the server),
-     * the input from the server (via the clientHandler) can be processed. Input comes in from and goes back to the
-     * clientHandler via predefined format as described in the protocol. If input from the console is needed, the
-     * connected boolean in the clientTUI will be changed to be able to invoke methods in there.
+     * the input from the server (via the clientHandler) is read, and each complete message is passed to
+     * handleMessage().
      */
     @Override
     public void run() {
         while (!socket.isClosed()) {
             try {
-                String input = inputFromClientHandler.readLine();
-                if (input == null) {
+                int bytesRead = inputFromClientHandler.read(readBuffer.array());
+                if (bytesRead == -1) {
                     close();
                     break;
                 }
-                String[] split = input.split(SEPARATOR);
-                String command = split[0];
-                switch (command) {
-                    case WELCOME:
-                        clientTui.setUsernameCanBeCreated(true);
-                        break;
-                    case USERNAMETAKEN:
-                        System.out.println(split[1]);
-                        clientTui.setUsernameIsTaken(true);
-                        break;
-                    case JOINED:
-                        clientTui.setWantsToEnterQueue(true);
-                        break;
-                    case NEWGAME:
-                        clientTui.setWantsToEnterQueue(false);
-                        String username1 = split[1];
-                        String username2 = split[2];
-                        startNewGame(username1, username2);
-                        break;
-                    case YOURTURN:
-                        System.out.println("It is your turn!");
-                        clientTui.setWantsToDetermineMove(true);
-                        break;
-                    case MOVE:
-                        if (split[2].equals("PASS")) {
-                            System.out.println(split[1] + " passed.");
-                            goGame.pass();
-                        } else {
-                            int row = Integer.parseInt(split[2]) + 1;
-                            int column = Integer.parseInt(split[3]) + 1;
-                            System.out.println(split[1] + " placed a stone on row " + row + " and column " + column + ".");
-                            goGame.doMove((row - 1), (column - 1));
-                        }
-                        break;
-                    case INVALIDMOVE:
-                        System.out.println("Not a valid move, try again:");
-                        clientTui.setWantsToDetermineMove(true);
-                        break;
-                    case GAMEOVER:
-                        if (split[1].equals(VICTORY)) {
-                            System.out.println("The game is over due to two consecutive passes or because the board is full. The winner is: " + split[2] + ".");
-                        } else if (split[1].equals(DISCONNECT)) {
-                            System.out.println("The game is over because of disconnection. The winner is " + split[2] + ".");
-                        }
-                        clientTui.setWantsToPlayNewGame(true);
-                        break;
-                    default:
-                        System.out.println("No valid input");
-                        break;
-                }
+                readBuffer.position(0).limit(bytesRead);
+                decoder.decode(readBuffer, this);
             } catch (IOException e) {
                 System.out.println("Socket is closed.");
 
@@ -146,16 +128,162 @@ public class Client implements Runnable {
         }
     }
 
+    /**
+     * Processes one message from the server. Input comes in from and goes back to the clientHandler via predefined
+     * format as described in the protocol. If input from the console is needed, the connected boolean in the clientTUI
+     * will be changed to be able to invoke methods in there.
+     *
+     * @param message is the decoded message as received from the server; only valid during this call.
+     */
+    @Override
+    public void handleMessage(Message message) {
+        switch (message.getCommand()) {
+            case WELCOME:
+                // the server lists the capabilities it accepts after its description:
+                for (int index = 1; index < message.getFieldCount(); index++) {
+                    String capability = message.getString(index);
+                    if (Protocol.BINARY.equals(capability)) {
+                        useBinaryFraming();
+                    } else if (Protocol.MULTIGAME.equals(capability)) {
+                        useGameIds();
+                    }
+                }
+                clientTui.setUsernameCanBeCreated(true);
+                break;
+            case USERNAMETAKEN:
+                System.out.println(message.getString(0));
+                clientTui.setUsernameIsTaken(true);
+                break;
+            case JOINED:
+                if (message.getString(1) != null) {
+                    sessionToken = message.getString(1);
+                }
+                clientTui.setWantsToEnterQueue(true);
+                break;
+            case NEWGAME:
+                clientTui.setWantsToEnterQueue(false);
+                String username1 = message.getString(0);
+                String username2 = message.getString(1);
+                startNewGame(message.getGameId(), username1, username2);
+                break;
+            case YOURTURN:
+                currentGameId = message.getGameId();
+                System.out.println(games.size() > 1 ? "It is your turn in game " + currentGameId + "!"
+                        : "It is your turn!");
+                clientTui.setWantsToDetermineMove(true);
+                break;
+            case MOVE:
+                Game goGame = games.get(message.getGameId());
+                if (goGame == null) {
+                    System.out.println("No valid input");
+                } else if (message.isField(1, Command.PASS)) {
+                    System.out.println(message.getString(0) + " passed.");
+                    goGame.pass();
+                } else {
+                    int row = message.getInt(1) + 1;
+                    int column = message.getInt(2) + 1;
+                    System.out.println(message.getString(0) + " placed a stone on row " + row + " and column " + column + ".");
+                    // with CAPTURES, the server sends the captured stones, so the move does not need to be checked:
+                    String captured = message.getString(3);
+                    if (captured != null) {
+                        goGame.applyMove((row - 1), (column - 1), Protocol.parseCapturedPositions(captured));
+                    } else {
+                        goGame.doMove((row - 1), (column - 1));
+                    }
+                }
+                break;
+            case BOARD:
+                watchGame(message.getGameId(), message.getString(0), message.getString(1), message.getString(2),
+                        message.getString(3));
+                break;
+            case PING:
+                sendPong();
+                break;
+            case PONG:
+                break;
+            case ERROR:
+                System.out.println(message.getString(0));
+                clientTui.setWantsToEnterQueue(true);
+                break;
+            case INVALIDMOVE:
+                currentGameId = message.getGameId();
+                System.out.println("Not a valid move, try again:");
+                clientTui.setWantsToDetermineMove(true);
+                break;
+            case GAMEOVER:
+                games.remove(message.getGameId());
+                stones.remove(message.getGameId());
+                String reason = message.getString(0);
+                if (VICTORY.equals(reason)) {
+                    System.out.println("The game is over due to two consecutive passes or because the board is full. The winner is: " + message.getString(1) + ".");
+                } else if (DISCONNECT.equals(reason)) {
+                    System.out.println("The game is over because of disconnection. The winner is " + message.getString(1) + ".");
+                } else if (RESIGN.equals(reason)) {
+                    System.out.println("The game is over because a player resigned. The winner is " + message.getString(1) + ".");
+                } else if (TIMEOUT.equals(reason)) {
+                    System.out.println("The game is over because a player ran out of time. The winner is " + message.getString(1) + ".");
+                }
+                clientTui.setWantsToPlayNewGame(true);
+                break;
+            default:
+                System.out.println("No valid input");
+                break;
+        }
+    }
+
     // Methods needed to send the messages to the server via the clientHandler:
 
+    /**
+     * Sends the message that is encoded in the buffer to the clientHandler, and empties the buffer. Only called while
+     * holding the lock of this client.
+     *
+     * @param message is the encoder with the message in the format of the protocol.
+     */
+    private void send(MessageEncoder message) {
+        message.end();
+        try {
+            message.writeTo(outputToClientHandler);
+        } catch (IOException e) {
+            // the connection is closed, so the message cannot be sent anymore
+        } finally {
+            message.clear();
+        }
+    }
+
     /**
      * Sends the hello message as part of the handshake in the correct format to the clientHandler.
      *
      * @param clientID is the ID of the client.
      */
     public synchronized void sendHello(String clientID) {
-        String clientIdFormatted = Protocol.helloMessage(clientID);
-        writerToClientHandler.println(clientIdFormatted);
+        encoder.command(Command.HELLO).field(clientID);
+        if (Boolean.getBoolean(BINARY_PROPERTY)) {
+            encoder.field(Protocol.BINARY);
+        }
+        if (Boolean.getBoolean(MULTIGAME_PROPERTY)) {
+            encoder.field(Protocol.MULTIGAME);
+        }
+        encoder.field(Protocol.CAPTURES);
+        encoder.field(Protocol.HEARTBEAT);
+        send(encoder);
+    }
+
+    /**
+     * Switches to binary framing for all messages after WELCOME, as the server has accepted it. Called by the thread
+     * that reads the messages from the server, so the decoder switches directly after WELCOME.
+     */
+    private synchronized void useBinaryFraming() {
+        decoder.setFraming(Framing.BINARY);
+        encoder.setFraming(Framing.BINARY);
+    }
+
+    /**
+     * Lets game commands carry the id of their game for all messages after WELCOME, as the server has accepted
+     * MULTIGAME. Called by the thread that reads the messages from the server, like useBinaryFraming().
+     */
+    private synchronized void useGameIds() {
+        decoder.setGameIds(true);
+        encoder.setGameIds(true);
     }
 
     /**
@@ -164,43 +292,101 @@ public class Client implements Runnable {
      * @param username is the username the client want to use.
      */
     public synchronized void sendUsername(String username) {
-        String usernameFormatted = Protocol.username(username);
-        writerToClientHandler.println(usernameFormatted);
+        send(encoder.command(Command.USERNAME).field(username));
+    }
+
+    /**
+     * Sends the resume command in the correct format to the clientHandler, to continue the session of a lost connection
+     * on this connection (instead of sending a username).
+     *
+     * @param token is the session token of the lost connection (see getSessionToken()).
+     */
+    public synchronized void sendResume(String token) {
+        send(encoder.command(Command.RESUME).field(token));
     }
 
     /**
      * Sends the queue command in the correct format to the clientHandler.
      */
     public synchronized void sendQueue() {
-        String queueFormatted = Protocol.queue();
-        writerToClientHandler.println(queueFormatted);
+        send(encoder.command(Command.QUEUE));
+    }
+
+    /**
+     * Sends the move command for the current game (the game of the last YOURTURN) in the correct format to the
+     * clientHandler.
+     *
+     * @param row    is the row of the position of the stone to place;
+     * @param column is the column of the position of the stone to place.
+     */
+    public void sendMove(int row, int column) {
+        sendMove(currentGameId, row, column);
     }
 
     /**
-     * Sends the move command in the correct format to the clientHandler.
+     * Sends the move command for a game in the correct format to the clientHandler.
      *
+     * @param gameId is the id of the game of the move;
      * @param row    is the row of the position of the stone to place;
      * @param column is the column of the position of the stone to place.
      */
-    public synchronized void sendMove(int row, int column) {
-        String moveFormatted = Protocol.move(row, column);
-        writerToClientHandler.println(moveFormatted);
+    public synchronized void sendMove(int gameId, int row, int column) {
+        send(encoder.command(Command.MOVE, gameId).field(row).field(column));
+    }
+
+    /**
+     * Sends the pass command for the current game in the correct format to the clientHandler.
+     */
+    public void sendPass() {
+        sendPass(currentGameId);
     }
 
     /**
-     * Sends the pass command in the correct format to the clientHandler.
+     * Sends the pass command for a game in the correct format to the clientHandler.
+     *
+     * @param gameId is the id of the game to pass in.
      */
-    public synchronized void sendPass() {
-        String passFormatted = Protocol.pass();
-        writerToClientHandler.println(passFormatted);
+    public synchronized void sendPass(int gameId) {
+        send(encoder.command(Command.PASS, gameId));
+    }
+
+    /**
+     * Sends the resign command for the current game in the correct format to the clientHandler.
+     */
+    public void sendResign() {
+        sendResign(currentGameId);
+    }
+
+    /**
+     * Sends the resign command for a game in the correct format to the clientHandler.
+     *
+     * @param gameId is the id of the game to resign.
+     */
+    public synchronized void sendResign(int gameId) {
+        send(encoder.command(Command.RESIGN, gameId));
+    }
+
+    /**
+     * Sends the observe command in the correct format to the clientHandler, to watch a running game.
+     *
+     * @param gameId is the id of the game to watch.
+     */
+    public synchronized void sendObserve(int gameId) {
+        send(encoder.command(Command.OBSERVE).field(gameId));
+    }
+
+    /**
+     * Sends the pong command in the correct format to the clientHandler, as the answer to a ping of the server.
+     */
+    public synchronized void sendPong() {
+        send(encoder.command(Command.PONG));
     }
 
     /**
      * Sends the quit command in the correct format to the clientHandler.
      */
     public synchronized void sendQuit() {
-        String quitFormatted = Protocol.quit();
-        writerToClientHandler.println(quitFormatted);
+        send(encoder.command(Command.QUIT));
     }
 
     // Methods needed to process information received from the server via the clientHandler:
@@ -223,13 +409,23 @@ public class Client implements Runnable {
         return username;
     }
 
+    /**
+     * Gets the token of the session of this client, with which its games can be continued on a new connection.
+     *
+     * @return the session token; null if the client has not joined yet.
+     */
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
     /**
      * Starts a new game.
      *
+     * @param gameId    is the id of the game (0 if game ids are not used);
      * @param username1 username of player 1;
      * @param username2 username of player 2.
      */
-    public void startNewGame(String username1, String username2) {
+    public void startNewGame(int gameId, String username1, String username2) {
         // creates a humanPlayer or computerPlayer on the scanner input thread.
         clientTui.setWantsToCreatePlayerType(true);
         while (clientTui.getWantsToCreatePlayerType()) {
@@ -243,31 +439,70 @@ public class Client implements Runnable {
         System.out.println("A new game is started. " + username1 + " is playing against " + username2 + ".");
         System.out.println(username1 + " is BLACK, " + username2 + " is WHITE. Wait for your turn.");
         // create new player with stone input based on username and being player 1 (black) or player 2 (white).
-        if (getUsername().equals(username1)) {
-            stone = Stone.BLACK;
+        stones.put(gameId, getUsername().equals(username1) ? Stone.BLACK : Stone.WHITE);
+        // create a new game to be able to have a board and keep track of all moves on the client side.
+        currentGameId = gameId;
+        games.put(gameId, new Game(new Player(username1, Stone.BLACK), new Player(username2, Stone.WHITE), new Board(), new GoGUI(Board.SIZE)));
+    }
+
+    /**
+     * Starts watching a running game, from the snapshot of the board that the server sends. The moves of the game are
+     * then applied to this game, just like the moves of a game that this client plays. A snapshot of a game of this
+     * client itself is sent when the client resumes its session; the client then continues to play the game.
+     *
+     * @param gameId        is the id of the game (0 if game ids are not used);
+     * @param usernameBlack is the username of the player with the black stones;
+     * @param usernameWhite is the username of the player with the white stones;
+     * @param board         is the board, with one character per position (. for empty, B for black, W for white);
+     * @param stoneToMove   is the stone of the player whose turn it is (BLACK or WHITE).
+     */
+    public void watchGame(int gameId, String usernameBlack, String usernameWhite, String board, String stoneToMove) {
+        if (board == null || board.length() != Board.SIZE * Board.SIZE) {
+            System.out.println("No valid input");
+            return;
+        }
+        boolean playing = usernameBlack.equals(getUsername()) || usernameWhite.equals(getUsername());
+        if (playing) {
+            System.out.println("Your game against " + (usernameBlack.equals(getUsername()) ? usernameWhite
+                    : usernameBlack) + " is resumed.");
         } else {
-            stone = Stone.WHITE;
+            System.out.println("You are watching " + usernameBlack + " (BLACK) play against " + usernameWhite
+                    + " (WHITE).");
         }
-        // create a new game to be able to have a board and keep track of all moves on the client side.
-        goGame = new Game(new Player(username1, Stone.BLACK), new Player(username2, Stone.WHITE), new Board(), new GoGUI(Board.SIZE));
+        Game goGame = new Game(new Player(usernameBlack, Stone.BLACK), new Player(usernameWhite, Stone.WHITE),
+                new Board(), new GoGUI(Board.SIZE));
+        for (int index = 0; index < board.length(); index++) {
+            char position = board.charAt(index);
+            if (position == 'B' || position == 'W') {
+                goGame.setUpStone(index / Board.SIZE, index % Board.SIZE, position == 'B' ? Stone.BLACK : Stone.WHITE);
+            }
+        }
+        if (Stone.WHITE.name().equals(stoneToMove)) {
+            goGame.switchTurn();
+        }
+        if (playing) {
+            stones.put(gameId, usernameBlack.equals(getUsername()) ? Stone.BLACK : Stone.WHITE);
+            currentGameId = gameId;
+        }
+        games.put(gameId, goGame);
     }
 
     /**
-     * Gets the stone type assigned to the player using this client.
+     * Gets the stone type assigned to the player using this client in the current game.
      *
-     * @return the stone, which is either black or white.
+     * @return the stone, which is either black or white; null if no game is being played.
      */
     public Stone getStone() {
-        return stone;
+        return stones.get(currentGameId);
     }
 
     /**
-     * Get the game in the current state.
+     * Get the current game (the game of the last YOURTURN) in the current state.
      *
-     * @return the game in its current state.
+     * @return the game in its current state; null if no game is being played.
      */
     public Game getGoGame() {
-        return goGame;
+        return games.get(currentGameId);
     }
 }
 
@@ -26,6 +26,7 @@ public class ClientTUI {
     private boolean wantsToCreatePlayerType;
     private boolean wantsToDetermineMove;
     private boolean wantsToPlayNewGame;
+    private boolean wantsToResign;
     private boolean quit;
 
     // Methods needed to create and run the client and this connected clientTUI:
@@ -221,13 +222,14 @@ public class ClientTUI {
      * Player using this client enters the queue to wait for a second player.
      */
     public void enterQueue() {
-        System.out.println("Do you want to enter the queue and wait for a second player to play GO? Answer with YES or NO:");
+        System.out.println("Do you want to enter the queue and wait for a second player to play GO? Answer with YES or NO"
+                + " (or OBSERVE followed by the id of a game to watch it):");
         input = scanner.nextLine().toUpperCase();
         if (checkForQuitInput()) {
             return;
         }
         checkForTilde();
-        while (!(input.equals("YES") || input.equals("NO"))) {
+        while (!(input.equals("YES") || input.equals("NO") || input.matches("OBSERVE \\d{1,9}"))) {
             System.out.println("Unable to understand your input. Try again:");
             input = scanner.nextLine().toUpperCase();
             if (checkForQuitInput()) {
@@ -238,6 +240,8 @@ public class ClientTUI {
         if (input.equals("YES")) {
             System.out.println("You have successfully entered the queue. Waiting for a second player....");
             client.sendQueue();
+        } else if (input.startsWith("OBSERVE")) {
+            client.sendObserve(Integer.parseInt(input.substring("OBSERVE ".length())));
         } else {
             System.out.println("The connection will be broken.");
             client.close();
@@ -275,7 +279,8 @@ public class ClientTUI {
         } else {
             ComputerPlayer computerPlayer = new ComputerPlayer(username, stone);
             setPlayerType(computerPlayer);
-            System.out.println("Computer player created.");
+            // print the seed, so this game can be replayed by starting the client with -Dgo.seed=<seed>:
+            System.out.println("Computer player created (seed " + computerPlayer.getSeed() + ").");
         }
         wantsToCreatePlayerType = false;
     }
@@ -332,12 +337,17 @@ public class ClientTUI {
      */
     public void determineNextMove() {
         Position nextMove;
+        wantsToResign = false;
         if (getPlayerType() == humanPlayer) {
             nextMove = determineMoveHumanPlayer();
         } else {
-            nextMove = determineMoveComputerPlayer(client.getGoGame());
+            wantsToResign = getPlayerType().wantsToResign(client.getGoGame());
+            nextMove = wantsToResign ? null : determineMoveComputerPlayer(client.getGoGame());
         }
-        if (nextMove == null) {
+        if (wantsToResign) {
+            System.out.println("You resigned.");
+            client.sendResign();
+        } else if (nextMove == null) {
             client.sendPass();
 
         } else {
@@ -352,7 +362,7 @@ public class ClientTUI {
      * @return the position on which the player wants to place a stone. Can be null; then this player has passed.
      */
     public Position determineMoveHumanPlayer() {
-        System.out.println("Do you want to make a move or pass? Type either MOVE or PASS:");
+        System.out.println("Do you want to make a move, pass or resign? Type either MOVE, PASS or RESIGN:");
         input = scanner.nextLine().toUpperCase();
         if (checkForQuitInput()) {
             return null;
@@ -360,6 +370,9 @@ public class ClientTUI {
         checkForTilde();
         if (input.equals("PASS")) {
             return null;
+        } else if (input.equals("RESIGN")) {
+            wantsToResign = true;
+            return null;
         } else if (input.equals("MOVE")) {
             boolean correctInput = false;
             while (!correctInput) {
@@ -385,7 +398,7 @@ public class ClientTUI {
      * @return the position on which the computer player wants to place a stone. Can be null; then this player has passed.
      */
     public Position determineMoveComputerPlayer(Game game) {
-        return game.findRandomValidPosition();
+        return getPlayerType().determineMove(game);
     }
 }
 
@@ -0,0 +1,103 @@
+package com.nedap.go.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Represents the commands of the protocol (see com.nedap.go.Protocol), each with its name encoded as bytes and its
+ * opcode for binary framing. The command of a received message is recognised by comparing bytes (or by its opcode), so
+ * no String is created for it. The opcodes are part of the protocol, so they should never change. Game commands are
+ * about one game, and carry the id of that game if game ids are used on the connection (see
+ * com.nedap.go.Protocol.MULTIGAME).
+ */
+public enum Command {
+    // Server-side
+    WELCOME(1, false), USERNAMETAKEN(2, false), JOINED(3, false), NEWGAME(4, true), GAMEOVER(5, true),
+    YOURTURN(6, true), INVALIDMOVE(7, true), BOARD(17, true),
+    // Client-side
+    HELLO(8, false), USERNAME(9, false), QUEUE(10, false), PASS(11, true), QUIT(12, false), RESIGN(13, true),
+    OBSERVE(16, false), RESUME(18, false),
+    // both sides
+    MOVE(14, true), ERROR(15, false), PING(19, false), PONG(20, false),
+    // any command that is not part of the protocol
+    UNKNOWN(0, false);
+
+    private static final Command[] KNOWN = Arrays.copyOf(values(), values().length - 1);
+    private static final Command[] BY_OPCODE = new Command[KNOWN.length + 1];
+    private final int opcode;
+    private final boolean gameCommand;
+    private final byte[] bytes;
+
+    static {
+        Arrays.fill(BY_OPCODE, UNKNOWN);
+        for (Command command : KNOWN) {
+            BY_OPCODE[command.opcode] = command;
+        }
+    }
+
+    /**
+     * Creates a command, of which the name is encoded once.
+     *
+     * @param opcode      is the opcode of the command in binary framing;
+     * @param gameCommand is true if the command is about one game, false if not.
+     */
+    Command(int opcode, boolean gameCommand) {
+        this.opcode = opcode;
+        this.gameCommand = gameCommand;
+        this.bytes = name().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Gets the opcode of this command in binary framing.
+     *
+     * @return the opcode (0 for UNKNOWN).
+     */
+    int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Checks whether this command is about one game, and thus carries a game id if game ids are used.
+     *
+     * @return true if this is a game command, false if not.
+     */
+    public boolean isGameCommand() {
+        return gameCommand;
+    }
+
+    /**
+     * Gets the name of this command as bytes. The returned array should not be changed.
+     *
+     * @return the encoded name of this command.
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Finds the command of which the name is equal to a range of bytes.
+     *
+     * @param buffer is the array that contains the name;
+     * @param start  is the index of the first byte of the name;
+     * @param end    is the index after the last byte of the name;
+     * @return the command with this name; UNKNOWN if no command has this name.
+     */
+    public static Command of(byte[] buffer, int start, int end) {
+        for (Command command : KNOWN) {
+            if (Arrays.equals(command.bytes, 0, command.bytes.length, buffer, start, end)) {
+                return command;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Finds the command with an opcode.
+     *
+     * @param opcode is the opcode of the command in binary framing;
+     * @return the command with this opcode; UNKNOWN if no command has this opcode.
+     */
+    public static Command ofOpcode(int opcode) {
+        return opcode > 0 && opcode < BY_OPCODE.length ? BY_OPCODE[opcode] : UNKNOWN;
+    }
+}
@@ -0,0 +1,23 @@
+package com.nedap.go.codec;
+
+/**
+ * Represents the framing of the messages on a connection. Every connection starts with text framing; binary framing is
+ * only used after both sides have agreed on it in the handshake (see com.nedap.go.Protocol.BINARY).
+ * <p>
+ * With text framing, each message is one line of fields separated by "~". With binary framing, each message is a
+ * frame: the length of the frame as varint, followed by the opcode of the command (one byte), the game id (varint, 0 if
+ * the message is not about a game) and the fields. Each field starts with a varint header of which the lowest two bits
+ * are the kind of field: an integer (the rest of the header is the zigzag-encoded value), a text (the rest of the
+ * header is the number of UTF-8 bytes that follow) or a command (the rest of the header is its opcode). A varint
+ * stores 7 bits per byte, lowest bits first, with the highest bit set on all bytes except the last one.
+ * <p>
+ * In both framings, a message is at most MAX_MESSAGE_LENGTH bytes (a line without its line separator, or a frame
+ * without its length); the encoder refuses longer messages, so every message it encodes can be decoded by the peer.
+ */
+public enum Framing {
+    TEXT,
+    BINARY;
+
+    // the longest message of the protocol; its length always fits in two varint bytes:
+    public static final int MAX_MESSAGE_LENGTH = 8192;
+}
@@ -0,0 +1,298 @@
+package com.nedap.go.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Represents one received message of the protocol: the command and the positions of its fields in the buffer of the
+ * decoder. The same message object is reused for every message a decoder receives, so it is only valid until the
+ * handler of the message returns. Integer fields are parsed directly from the bytes; only getString() (and toString())
+ * create a String, which is only needed for fields such as usernames. The message offers the same view on text and
+ * binary framing (see Framing). If game ids are used in text framing, the game id of a game command is its first
+ * field; it is available via getGameId(), and the other fields are numbered as if the game id was not there.
+ */
+public class Message {
+    public static final int MAX_FIELDS = 8; // further fields of a message are ignored
+    static final int KIND_INT = 0;
+    static final int KIND_TEXT = 1;
+    static final int KIND_COMMAND = 2;
+    private static final byte SEPARATOR = '~';
+    private final int[] fieldKinds;
+    private final int[] fieldStarts;
+    private final int[] fieldEnds;
+    private final int[] fieldValues;
+    private byte[] buffer;
+    private int length;
+    private int position; // only used while reading a binary frame
+    private int fieldCount;
+    private int gameId;
+    private Command command;
+    private boolean binary;
+
+    /**
+     * Creates an empty message, to be filled by a decoder.
+     */
+    Message() {
+        this.fieldKinds = new int[MAX_FIELDS];
+        this.fieldStarts = new int[MAX_FIELDS];
+        this.fieldEnds = new int[MAX_FIELDS];
+        this.fieldValues = new int[MAX_FIELDS];
+        this.command = Command.UNKNOWN;
+    }
+
+    // Methods needed to fill the message:
+
+    /**
+     * Fills this message with a line of the protocol in text framing: the command and the fields are located, but not
+     * copied.
+     *
+     * @param buffer  is the array that contains the line;
+     * @param length  is the length of the line, without line separator;
+     * @param gameIds is true if game commands start with the id of their game, false if not.
+     */
+    void setText(byte[] buffer, int length, boolean gameIds) {
+        this.buffer = buffer;
+        this.length = length;
+        this.binary = false;
+        int commandEnd = indexOfSeparator(0);
+        command = Command.of(buffer, 0, commandEnd);
+        gameId = 0;
+        fieldCount = 0;
+        int start = commandEnd + 1;
+        if (gameIds && command.isGameCommand()) {
+            int end = indexOfSeparator(start);
+            try {
+                gameId = start <= length ? parseInt(start, end) : -1;
+            } catch (NumberFormatException e) {
+                gameId = -1;
+            }
+            start = end + 1;
+        }
+        while (start <= length && fieldCount < MAX_FIELDS) {
+            int end = indexOfSeparator(start);
+            fieldKinds[fieldCount] = KIND_TEXT;
+            fieldStarts[fieldCount] = start;
+            fieldEnds[fieldCount] = end;
+            fieldCount++;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Finds the next separator of this message.
+     *
+     * @param from is the index to start searching from;
+     * @return the index of the next separator; the length of the message if there is no next separator.
+     */
+    private int indexOfSeparator(int from) {
+        int index = from;
+        while (index < length && buffer[index] != SEPARATOR) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Fills this message with a frame of the protocol in binary framing: the command, game id and fields are read,
+     * but text fields are not copied.
+     *
+     * @param buffer is the array that contains the frame;
+     * @param length is the length of the frame, without the length prefix;
+     * @return false if the frame is not valid, true if it is.
+     */
+    boolean setBinary(byte[] buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+        this.binary = true;
+        command = Command.ofOpcode(buffer[0] & 0xFF);
+        position = 1;
+        fieldCount = 0;
+        long id = readVarint();
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            return false;
+        }
+        gameId = (int) id;
+        while (position < length && fieldCount < MAX_FIELDS) {
+            long header = readVarint();
+            if (header < 0) {
+                return false;
+            }
+            int kind = (int) (header & 3);
+            long value = header >>> 2;
+            fieldKinds[fieldCount] = kind;
+            if (kind == KIND_INT) {
+                // zigzag decoding: 0, 1, 2, 3, ... are 0, -1, 1, -2, ...
+                fieldValues[fieldCount] = (int) ((value >>> 1) ^ -(value & 1));
+            } else if (kind == KIND_TEXT) {
+                if (value > length - position) {
+                    return false;
+                }
+                fieldStarts[fieldCount] = position;
+                fieldEnds[fieldCount] = position + (int) value;
+                position += (int) value;
+            } else if (kind == KIND_COMMAND) {
+                fieldValues[fieldCount] = (int) value;
+            } else {
+                return false;
+            }
+            fieldCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a varint of the binary frame at the current position.
+     *
+     * @return the value of the varint; -1 if the varint does not end within the frame or is too long.
+     */
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 63 && position < length; shift += 7) {
+            byte nextByte = buffer[position++];
+            value |= (long) (nextByte & 0x7F) << shift;
+            if (nextByte >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    // Getters:
+
+    /**
+     * Gets the command of this message.
+     *
+     * @return the command; UNKNOWN if the message does not start with a command of the protocol.
+     */
+    public Command getCommand() {
+        return command;
+    }
+
+    /**
+     * Gets the id of the game this message is about.
+     *
+     * @return the id of the game; 0 if the message does not carry a game id, -1 if the game id is not a number.
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Gets the number of fields after the command.
+     *
+     * @return the number of fields (at most MAX_FIELDS).
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Checks whether a field is equal to the name of a command (for example PASS in MOVE~username~PASS).
+     *
+     * @param index   is the index of the field (0 is the first field after the command);
+     * @param command is the command to compare with;
+     * @return true if the field exists and is equal to the name of the command, false if not.
+     */
+    public boolean isField(int index, Command command) {
+        if (index >= fieldCount || fieldKinds[index] == KIND_INT) {
+            return false;
+        }
+        if (fieldKinds[index] == KIND_COMMAND) {
+            return fieldValues[index] == command.getOpcode();
+        }
+        byte[] bytes = command.getBytes();
+        return Arrays.equals(bytes, 0, bytes.length, buffer, fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Gets a field as integer. A text field is parsed as a (decimal) integer, without creating a String.
+     *
+     * @param index is the index of the field (0 is the first field after the command);
+     * @return the value of the field.
+     * @throws NumberFormatException if the field does not exist or is not an integer.
+     */
+    public int getInt(int index) {
+        if (index >= fieldCount || fieldKinds[index] == KIND_COMMAND) {
+            throw new NumberFormatException("The message has no number as field " + index + ".");
+        }
+        if (fieldKinds[index] == KIND_INT) {
+            return fieldValues[index];
+        }
+        return parseInt(fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Parses a range of the buffer as a (decimal) integer, without creating a String.
+     *
+     * @param start is the index of the first byte of the integer;
+     * @param end   is the index after the last byte of the integer;
+     * @return the value of the integer.
+     * @throws NumberFormatException if the range is not an integer.
+     */
+    private int parseInt(int start, int end) {
+        int position = start;
+        boolean negative = position < end && buffer[position] == '-';
+        if (negative) {
+            position++;
+        }
+        if (position == end) {
+            throw new NumberFormatException("This field is not a number.");
+        }
+        // accumulate as a negative number, so Integer.MIN_VALUE can be parsed as well:
+        int value = 0;
+        while (position < end) {
+            int digit = buffer[position++] - '0';
+            if (digit < 0 || digit > 9 || value < (Integer.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException("This field is not a number.");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Integer.MIN_VALUE) {
+                throw new NumberFormatException("This field is too large.");
+            }
+            value = -value;
+        }
+        return value;
+    }
+
+    /**
+     * Gets a field as a String. Only use this for fields that are needed as a String, such as usernames.
+     *
+     * @param index is the index of the field (0 is the first field after the command);
+     * @return the field; null if the message has no such field.
+     */
+    public String getString(int index) {
+        if (index >= fieldCount) {
+            return null;
+        }
+        if (fieldKinds[index] == KIND_INT) {
+            return Integer.toString(fieldValues[index]);
+        }
+        if (fieldKinds[index] == KIND_COMMAND) {
+            return Command.ofOpcode(fieldValues[index]).name();
+        }
+        return new String(buffer, fieldStarts[index], fieldEnds[index] - fieldStarts[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the complete message as a String in text framing (with game ids, if the frame has one), for example to log
+     * it.
+     *
+     * @return the message without line separator.
+     */
+    @Override
+    public String toString() {
+        if (!binary) {
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+        StringBuilder text = new StringBuilder(command.name());
+        if (gameId != 0) {
+            text.append((char) SEPARATOR).append(gameId);
+        }
+        for (int index = 0; index < fieldCount; index++) {
+            text.append((char) SEPARATOR).append(getString(index));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package com.nedap.go.codec;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Represents a streaming decoder for the messages of the protocol. Received bytes can be passed in chunks of any size;
+ * they are collected until a complete line (or frame, in binary framing) is received, which is then passed to a
+ * handler. The buffer and the message are reused for every message, so decoding a message does not create any objects
+ * (unless the buffer needs to grow). A decoder is used by one thread at a time.
+ */
+public class MessageDecoder {
+    private final Message message;
+    private Framing framing;
+    private boolean gameIds;
+    private byte[] lineBuffer;
+    private int lineLength;
+    private int frameLength; // length of the current binary frame; -1 while its length is being read
+    private int lengthShift;
+
+    /**
+     * Creates a decoder with an empty buffer, which starts with text framing.
+     */
+    public MessageDecoder() {
+        this.message = new Message();
+        this.framing = Framing.TEXT;
+        this.lineBuffer = new byte[128];
+        this.frameLength = -1;
+    }
+
+    /**
+     * Sets the framing of the bytes that are received after the current message. Can be called by a handler, to
+     * switch the framing directly after the message that is handled (for example after the handshake).
+     *
+     * @param framing is the framing of the next messages.
+     */
+    public void setFraming(Framing framing) {
+        this.framing = framing;
+    }
+
+    /**
+     * Sets whether game commands in text framing start with the id of their game (in binary framing, every message has
+     * a game id). Like setFraming(), this can be called by a handler.
+     *
+     * @param gameIds is true if game commands carry the id of their game, false if not.
+     */
+    public void setGameIds(boolean gameIds) {
+        this.gameIds = gameIds;
+    }
+
+    /**
+     * Decodes all remaining bytes of a buffer. Each complete message is passed to the handler; the bytes of an
+     * incomplete message are kept until the rest of the message is received.
+     *
+     * @param input   is the buffer with received bytes, between its position and its limit;
+     * @param handler is the handler to which each complete message is passed.
+     * @throws ProtocolException if a message is longer than Framing.MAX_MESSAGE_LENGTH, or is not a valid binary frame.
+     */
+    public void decode(ByteBuffer input, MessageHandler handler) throws ProtocolException {
+        // the framing is checked again after each message, as the handler may have changed it:
+        while (input.hasRemaining()) {
+            if (framing == Framing.TEXT) {
+                decodeLine(input, handler);
+            } else {
+                decodeFrame(input, handler);
+            }
+        }
+    }
+
+    /**
+     * Decodes bytes in text framing, until one line is complete or no bytes are left.
+     *
+     * @param input   is the buffer with received bytes;
+     * @param handler is the handler to which a complete message is passed.
+     * @throws ProtocolException if the line is longer than Framing.MAX_MESSAGE_LENGTH.
+     */
+    private void decodeLine(ByteBuffer input, MessageHandler handler) throws ProtocolException {
+        while (input.hasRemaining()) {
+            byte nextByte = input.get();
+            if (nextByte == '\n') {
+                // a complete line is received; ignore the carriage return of a Windows line separator:
+                int length = lineLength > 0 && lineBuffer[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                lineLength = 0;
+                message.setText(lineBuffer, length, gameIds);
+                handler.handleMessage(message);
+                return;
+            } else if (lineLength == Framing.MAX_MESSAGE_LENGTH) {
+                lineLength = 0;
+                throw new ProtocolException("A line of more than " + Framing.MAX_MESSAGE_LENGTH + " bytes is received.");
+            } else {
+                if (lineLength == lineBuffer.length) {
+                    lineBuffer = Arrays.copyOf(lineBuffer, Math.min(lineBuffer.length * 2, Framing.MAX_MESSAGE_LENGTH));
+                }
+                lineBuffer[lineLength++] = nextByte;
+            }
+        }
+    }
+
+    /**
+     * Decodes bytes in binary framing, until one frame is complete or no bytes are left. The bytes of the frame are
+     * copied at once, instead of one by one.
+     *
+     * @param input   is the buffer with received bytes;
+     * @param handler is the handler to which a complete message is passed.
+     * @throws ProtocolException if the frame is longer than Framing.MAX_MESSAGE_LENGTH, or is not valid.
+     */
+    private void decodeFrame(ByteBuffer input, MessageHandler handler) throws ProtocolException {
+        while (frameLength < 0) {
+            if (!input.hasRemaining()) {
+                return;
+            }
+            byte nextByte = input.get();
+            lineLength |= (nextByte & 0x7F) << lengthShift;
+            lengthShift += 7;
+            if (nextByte >= 0) {
+                // the length is complete; from now on, lineLength counts the bytes of the frame:
+                frameLength = lineLength;
+                lineLength = 0;
+                lengthShift = 0;
+                if (frameLength == 0 || frameLength > Framing.MAX_MESSAGE_LENGTH) {
+                    int length = frameLength;
+                    frameLength = -1;
+                    throw new ProtocolException("A frame of " + length + " bytes is received.");
+                }
+                if (frameLength > lineBuffer.length) {
+                    lineBuffer = new byte[Math.min(Math.max(lineBuffer.length * 2, frameLength), Framing.MAX_MESSAGE_LENGTH)];
+                }
+            } else if (lengthShift > 14) {
+                lineLength = 0;
+                lengthShift = 0;
+                throw new ProtocolException("A frame of more than " + Framing.MAX_MESSAGE_LENGTH + " bytes is received.");
+            }
+        }
+        int count = Math.min(input.remaining(), frameLength - lineLength);
+        input.get(lineBuffer, lineLength, count);
+        lineLength += count;
+        if (lineLength == frameLength) {
+            int length = frameLength;
+            lineLength = 0;
+            frameLength = -1;
+            if (!message.setBinary(lineBuffer, length)) {
+                throw new ProtocolException("A frame is received that is not valid.");
+            }
+            handler.handleMessage(message);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.nedap.go.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Represents an encoder for the messages of the protocol, that writes messages one after another into a reusable
+ * buffer. A message is started with command(), followed by its fields, and finished with end(). Commands and integers
+ * are written directly as bytes, and Strings that only contain ASCII characters (such as usernames) are written
+ * without creating an intermediate byte array, so encoding a message normally does not create any objects. Call
+ * clear() when the encoded messages are written, to reuse the buffer. An encoder is not thread-safe.
+ * <p>
+ * In binary framing (see Framing), room for a two-byte length is reserved when a message is started; end() fills in
+ * the length, and moves the message one byte to the front if the length fits in one byte.
+ */
+public class MessageEncoder {
+    private static final byte SEPARATOR = '~';
+    private static final String SEPARATOR_TEXT = "~";
+    private static final int LENGTH_PREFIX = 2; // bytes reserved for the length of a binary frame
+    private Framing framing;
+    private boolean gameIds;
+    private byte[] buffer;
+    private ByteBuffer byteBuffer;
+    private int length;
+    private int messageStart;
+    private boolean messageEnded;
+
+    /**
+     * Creates an encoder with an empty buffer, which starts with text framing.
+     */
+    public MessageEncoder() {
+        this.framing = Framing.TEXT;
+        this.buffer = new byte[256];
+        this.byteBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Sets the framing of the messages that are encoded from now on.
+     *
+     * @param framing is the framing of the next messages.
+     */
+    public void setFraming(Framing framing) {
+        this.framing = framing;
+    }
+
+    /**
+     * Sets whether game commands in text framing start with the id of their game (in binary framing, every message has
+     * a game id).
+     *
+     * @param gameIds is true if game commands carry the id of their game, false if not.
+     */
+    public void setGameIds(boolean gameIds) {
+        this.gameIds = gameIds;
+    }
+
+    /**
+     * Gets the framing of the messages that are encoded.
+     *
+     * @return the framing.
+     */
+    public Framing getFraming() {
+        return framing;
+    }
+
+    // Methods needed to encode a message:
+
+    /**
+     * Starts a new message with a command.
+     *
+     * @param command is the command of the message;
+     * @return this encoder, to add the fields of the message.
+     */
+    public MessageEncoder command(Command command) {
+        return command(command, 0);
+    }
+
+    /**
+     * Starts a new message about a game with a command. In text framing, the game id is only part of the message if
+     * game ids are used (see setGameIds()); it is then the first field of a game command.
+     *
+     * @param command is the command of the message;
+     * @param gameId  is the id of the game the message is about (0 if the message is not about a game);
+     * @return this encoder, to add the fields of the message.
+     */
+    public MessageEncoder command(Command command, int gameId) {
+        messageStart = length;
+        messageEnded = false;
+        if (framing == Framing.BINARY) {
+            ensureCapacity(LENGTH_PREFIX + 1);
+            length += LENGTH_PREFIX;
+            buffer[length++] = (byte) command.getOpcode();
+            writeVarint(gameId & 0xFFFFFFFFL);
+            return this;
+        }
+        byte[] bytes = command.getBytes();
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        if (gameIds && command.isGameCommand()) {
+            field(gameId);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a text field to the current message.
+     *
+     * @param value is the text of the field ("null" if null, just like String concatenation);
+     * @return this encoder.
+     */
+    public MessageEncoder field(String value) {
+        if (value == null) {
+            value = "null";
+        }
+        if (framing == Framing.BINARY) {
+            return binaryField(value);
+        }
+        ensureCapacity(value.length() + 1);
+        buffer[length++] = SEPARATOR;
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if (character >= 0x80) {
+                // not only ASCII characters, so the rest of the text is encoded by the charset:
+                byte[] bytes = value.substring(i).getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buffer, length, bytes.length);
+                length += bytes.length;
+                return this;
+            }
+            buffer[length++] = (byte) character;
+        }
+        return this;
+    }
+
+    /**
+     * Adds a (decimal) integer field to the current message, without creating a String.
+     *
+     * @param value is the value of the field;
+     * @return this encoder.
+     */
+    public MessageEncoder field(int value) {
+        if (framing == Framing.BINARY) {
+            // zigzag encoding, so small negative values are small as well:
+            writeVarint((((long) value << 1) ^ (value >> 31)) << 2 | Message.KIND_INT);
+            return this;
+        }
+        ensureCapacity(12);
+        buffer[length++] = SEPARATOR;
+        long remaining = value;
+        if (remaining < 0) {
+            buffer[length++] = '-';
+            remaining = -remaining;
+        }
+        // write the digits from right to left:
+        int digits = 1;
+        for (long limit = 10; limit <= remaining; limit *= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Adds a field that is equal to the name of a command (for example PASS in MOVE~username~PASS).
+     *
+     * @param command is the command to add as field;
+     * @return this encoder.
+     */
+    public MessageEncoder field(Command command) {
+        if (framing == Framing.BINARY) {
+            writeVarint((long) command.getOpcode() << 2 | Message.KIND_COMMAND);
+            return this;
+        }
+        byte[] bytes = command.getBytes();
+        ensureCapacity(bytes.length + 1);
+        buffer[length++] = SEPARATOR;
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Adds a complete message that is already formatted as a String (see com.nedap.go.Protocol).
+     *
+     * @param message is the formatted message, without line separator;
+     * @return this encoder, to finish the message with end().
+     */
+    public MessageEncoder text(String message) {
+        if (framing == Framing.BINARY) {
+            // split the message in its command and fields, which are then encoded as usual:
+            String[] split = message.split(SEPARATOR_TEXT, -1);
+            byte[] name = split[0].getBytes(StandardCharsets.UTF_8);
+            command(Command.of(name, 0, name.length));
+            for (int i = 1; i < split.length; i++) {
+                field(split[i]);
+            }
+            return this;
+        }
+        messageStart = length;
+        messageEnded = false;
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Adds a complete message that is already encoded, with the same framing and game ids as this encoder (for example
+     * a message that is encoded once and sent to many clients). The bytes of the message are copied; the position of
+     * the given buffer does not change, so the same buffer can be added to many encoders.
+     *
+     * @param message is the buffer with the finished message between its position and limit.
+     */
+    public void encoded(ByteBuffer message) {
+        messageStart = length;
+        messageEnded = true;
+        int messageLength = message.remaining();
+        ensureCapacity(messageLength);
+        message.get(message.position(), buffer, length, messageLength);
+        length += messageLength;
+    }
+
+    /**
+     * Adds a text field to the current message in binary framing.
+     *
+     * @param value is the text of the field;
+     * @return this encoder.
+     */
+    private MessageEncoder binaryField(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                // not only ASCII characters, so the number of bytes is only known after encoding:
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint((long) bytes.length << 2 | Message.KIND_TEXT);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buffer, length, bytes.length);
+                length += bytes.length;
+                return this;
+            }
+        }
+        writeVarint((long) value.length() << 2 | Message.KIND_TEXT);
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[length++] = (byte) value.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a varint: 7 bits per byte, lowest bits first, with the highest bit set on all bytes except the last one.
+     *
+     * @param value is the (non-negative) value to write.
+     */
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    /**
+     * Finishes the current message: with a line separator in text framing, or by filling in the length of the frame in
+     * binary framing.
+     *
+     * @throws IllegalArgumentException if the message is longer than Framing.MAX_MESSAGE_LENGTH, so the peer could not
+     *                                  decode it; the message is then removed.
+     */
+    public void end() {
+        messageEnded = true;
+        if (framing == Framing.TEXT) {
+            int lineLength = length - messageStart;
+            if (lineLength > Framing.MAX_MESSAGE_LENGTH) {
+                length = messageStart;
+                throw new IllegalArgumentException("A message of " + lineLength + " bytes does not fit in a line.");
+            }
+            ensureCapacity(1);
+            buffer[length++] = '\n';
+            return;
+        }
+        int bodyStart = messageStart + LENGTH_PREFIX;
+        int bodyLength = length - bodyStart;
+        if (bodyLength > Framing.MAX_MESSAGE_LENGTH) {
+            length = messageStart;
+            throw new IllegalArgumentException("A message of " + bodyLength + " bytes does not fit in a frame.");
+        }
+        if (bodyLength < 0x80) {
+            // the length fits in one byte, so the frame is moved one byte to the front:
+            buffer[messageStart] = (byte) bodyLength;
+            System.arraycopy(buffer, bodyStart, buffer, messageStart + 1, bodyLength);
+            length--;
+        } else {
+            buffer[messageStart] = (byte) ((bodyLength & 0x7F) | 0x80);
+            buffer[messageStart + 1] = (byte) (bodyLength >>> 7);
+        }
+    }
+
+    /**
+     * Removes the current (unfinished or finished) message from the buffer, for example because it cannot be sent.
+     */
+    public void discardMessage() {
+        length = messageStart;
+    }
+
+    /**
+     * Makes sure the buffer can hold a number of extra bytes.
+     *
+     * @param extra is the number of bytes that will be added.
+     */
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            byteBuffer = ByteBuffer.wrap(buffer);
+        }
+    }
+
+    // Methods needed to write the encoded messages:
+
+    /**
+     * Gets the number of encoded bytes in the buffer.
+     *
+     * @return the number of bytes.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Checks whether the buffer is empty.
+     *
+     * @return true if no bytes are encoded since the last clear(), false if not.
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Gets the encoded bytes as a buffer, to write them to a channel. The returned buffer is reused, and is only valid
+     * until the next message is encoded.
+     *
+     * @return the buffer with the encoded bytes between its position and limit.
+     */
+    public ByteBuffer toByteBuffer() {
+        byteBuffer.clear();
+        byteBuffer.limit(length);
+        return byteBuffer;
+    }
+
+    /**
+     * Writes the encoded bytes to a stream.
+     *
+     * @param output is the stream to write to.
+     * @throws IOException if the bytes could not be written.
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(buffer, 0, length);
+    }
+
+    /**
+     * Empties the buffer, so it can be reused for new messages.
+     */
+    public void clear() {
+        length = 0;
+        messageStart = 0;
+        messageEnded = false;
+    }
+
+    /**
+     * Gets the last message that is encoded as a String, for example to log it.
+     *
+     * @return the last message, without line separator.
+     */
+    public String getLastMessage() {
+        if (framing == Framing.BINARY) {
+            int bodyStart = messageStart + (messageEnded && buffer[messageStart] >= 0 ? 1 : LENGTH_PREFIX);
+            Message message = new Message();
+            message.setBinary(Arrays.copyOfRange(buffer, bodyStart, length), length - bodyStart);
+            return message.toString();
+        }
+        int end = messageEnded ? length - 1 : length;
+        return new String(buffer, messageStart, end - messageStart, StandardCharsets.UTF_8);
+    }
+}
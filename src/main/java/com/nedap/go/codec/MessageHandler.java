@@ -0,0 +1,15 @@
+package com.nedap.go.codec;
+
+/**
+ * Represents the receiver of the messages that a MessageDecoder decodes.
+ */
+@FunctionalInterface
+public interface MessageHandler {
+
+    /**
+     * Processes one received message. The message is reused by the decoder, so it is only valid during this call.
+     *
+     * @param message is the received message.
+     */
+    void handleMessage(Message message);
+}
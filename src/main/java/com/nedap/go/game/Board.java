@@ -1,11 +1,20 @@
 package com.nedap.go.game;
 
+import com.nedap.go.logging.Level;
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
 /**
  * Represents the board of the GO game.
  */
 public class Board {
+    private static final Logger LOG = Logging.getLogger("game");
     public static final int SIZE = 9; // represents the number of rows and columns of the board
+    public static final int SYMMETRIES = 8; // number of symmetries of the board (see Symmetry)
     private final Stone[][] board; // the board is represented as a 2D array, filled with stones (either BLACK, WHITE or EMPTY)
+    // Zobrist hashes of the board for each of the 8 symmetries, followed by the same 8 hashes with the colors of all
+    // stones swapped. These are updated each time a stone is placed or removed, so no hash needs to be recalculated.
+    private final long[] symmetryHashes = new long[2 * SYMMETRIES];
 
     /**
      * Creates an empty board.
@@ -56,7 +65,9 @@ public class Board {
         if (row >= 0 && row < SIZE && column >= 0 && column < SIZE) {
             return true;
         }
-        System.out.println("The combination of row " + row + " and column " + column + " does not represent a valid position. Both the row number and column number should be in the range 0 - " + (SIZE - 1) + ".");
+        if (LOG.isEnabled(Level.DEBUG)) {
+            LOG.debug("The combination of row " + row + " and column " + column + " does not represent a valid position. Both the row number and column number should be in the range 0 - " + (SIZE - 1) + ".");
+        }
         return false;
     }
 
@@ -79,6 +90,128 @@ public class Board {
         return stringRepresentationOfBoard;
     }
 
+    /**
+     * Gets the 64-bit Zobrist hash of the current state of the board (needed for looking up positions in the opening
+     * book). The hash is kept up to date when stones are placed or removed, so this does not need to loop over the board.
+     *
+     * @return the hash of the current state of the board.
+     */
+    public long hash() {
+        return symmetryHashes[0];
+    }
+
+    /**
+     * Gets the hash of the current state of the board after transforming the board by a symmetry, and optionally
+     * swapping the colors of all stones.
+     *
+     * @param transform is the symmetry (0 - 7, see Symmetry), plus SYMMETRIES if the colors are swapped;
+     * @return the hash of the transformed board.
+     */
+    public long symmetryHash(int transform) {
+        return symmetryHashes[transform];
+    }
+
+    /**
+     * Gets the transform that results in the canonical form of this board: the transform (symmetry and possibly swapped
+     * colors) that results in the lowest hash. All boards that are symmetric to each other have the same canonical form.
+     *
+     * @param allowColorSwap is true if a board with swapped colors should be treated as the same board;
+     * @return the canonical transform (0 - 7, see Symmetry, plus SYMMETRIES if the colors are swapped).
+     */
+    public int canonicalTransform(boolean allowColorSwap) {
+        int transforms = allowColorSwap ? 2 * SYMMETRIES : SYMMETRIES;
+        int canonical = 0;
+        for (int transform = 1; transform < transforms; transform++) {
+            if (symmetryHashes[transform] < symmetryHashes[canonical]) {
+                canonical = transform;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Gets the canonical hash of the board: the lowest hash of all 8 symmetries of this board (so symmetric boards share
+     * the same hash). Can be used to make transposition tables and position indexes up to 8 times smaller.
+     *
+     * @param allowColorSwap is true if a board with swapped colors should be treated as the same board;
+     * @return the canonical hash of the board.
+     */
+    public long canonicalHash(boolean allowColorSwap) {
+        return symmetryHashes[canonicalTransform(allowColorSwap)];
+    }
+
+    /**
+     * Creates the String representation (as toString()) of the board after transforming it by a symmetry.
+     *
+     * @param symmetry is the symmetry to apply to the board;
+     * @return the String representation of the transformed board.
+     */
+    public String toString(Symmetry symmetry) {
+        char[] characters = new char[SIZE * SIZE];
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                char character = '.';
+                if (board[row][column] == Stone.BLACK) {
+                    character = 'B';
+                } else if (board[row][column] == Stone.WHITE) {
+                    character = 'W';
+                }
+                characters[symmetry.index(row, column)] = character;
+            }
+        }
+        return new String(characters);
+    }
+
+    /**
+     * Creates the canonical String representation of the board: the lowest (alphabetical) String representation of all
+     * 8 symmetries of the board. Unlike the canonical hash, two boards only have the same canonical String when they
+     * really are symmetric, so this can be used where a hash collision is not acceptable.
+     *
+     * @return the canonical String representation of the board.
+     */
+    public String canonicalString() {
+        String canonical = toString(Symmetry.IDENTITY);
+        for (int symmetry = 1; symmetry < SYMMETRIES; symmetry++) {
+            String candidate = toString(Symmetry.get(symmetry));
+            if (candidate.compareTo(canonical) < 0) {
+                canonical = candidate;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Updates the hashes of all symmetries when a stone is placed on, or removed from, a specific position (as XOR is
+     * its own inverse, placing and removing is the same update).
+     *
+     * @param row    is the row of interest;
+     * @param column is the column of interest;
+     * @param stone  is the stone that is placed or removed.
+     */
+    private void updateHashes(int row, int column, Stone stone) {
+        Stone swappedStone = stone == Stone.BLACK ? Stone.WHITE : Stone.BLACK;
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            int index = Symmetry.get(symmetry).index(row, column);
+            symmetryHashes[symmetry] ^= Zobrist.key(index / SIZE, index % SIZE, stone);
+            symmetryHashes[SYMMETRIES + symmetry] ^= Zobrist.key(index / SIZE, index % SIZE, swappedStone);
+        }
+    }
+
+    /**
+     * Gets a compact representation of the board: one byte per position (row by row), with the ordinal of its stone.
+     *
+     * @return the stones of the board; Game.restore() sets up a board from these bytes.
+     */
+    public byte[] toBytes() {
+        byte[] stones = new byte[SIZE * SIZE];
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                stones[row * SIZE + column] = (byte) board[row][column].ordinal();
+            }
+        }
+        return stones;
+    }
+
     /**
      * Creates a copy of the current state of the board.
      */
@@ -89,6 +222,7 @@ public class Board {
                 copyBoard.board[row][column] = board[row][column];
             }
         }
+        System.arraycopy(symmetryHashes, 0, copyBoard.symmetryHashes, 0, symmetryHashes.length);
         return copyBoard;
     }
 
@@ -107,6 +241,7 @@ public class Board {
         // place a stone, this stone must be either BLACK or WHITE, and the position must be EMPTY.
         if (isValidPosition(row, column) && stone != Stone.EMPTY && isEmptyPosition(row, column)) {
             board[row][column] = stone;
+            updateHashes(row, column, stone);
         }
     }
 
@@ -121,6 +256,7 @@ public class Board {
         // First of all, the position should be valid (within the boundaries of the board). Furthermore, to be able to
         // remove a stone, the position must NOT be EMPTY.
         if (isValidPosition(row, column) && !isEmptyPosition(row, column)) {
+            updateHashes(row, column, board[row][column]);
             board[row][column] = Stone.EMPTY;
         }
     }
@@ -1,29 +1,164 @@
 package com.nedap.go.game;
 
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Represents the computer player of the GO game. This player has a name and has a stone (either black or white),
  * and also a methods to determine a next move.
+ * <p>
+ * Each computer player has its own random generator, created from a seed. The generator is only used by the thread that
+ * plays the game, so players in different games never wait on each other, and a game between computer players can be
+ * replayed exactly by using the same seeds (see getSeed()).
+ * <p>
+ * A computer player estimates its probability to win based on the current score. It passes when it is sure to win
+ * (so the opponent can end the game by passing as well), and resigns when the game is hopeless, so games between
+ * computer players do not continue until the board is almost full.
  */
 public class ComputerPlayer extends Player {
+    public static final String SEED_PROPERTY = "go.seed"; // system property to replay a game with a known seed
+    private static final int MINIMUM_BOOK_PLAYS = 3; // moves played less often are not trusted
+    public static final double DEFAULT_PASS_THRESHOLD = 0.95;
+    public static final double DEFAULT_RESIGN_THRESHOLD = 0.05;
+    // a computer player only resigns when less than this part of the board is empty (early scores are not reliable):
+    private static final double RESIGN_MAXIMUM_EMPTY_FRACTION = 0.5;
+    private final OpeningBook openingBook;
+    private final long seed;
+    private final SplittableRandom random;
+    private double passThreshold = DEFAULT_PASS_THRESHOLD;
+    private double resignThreshold = DEFAULT_RESIGN_THRESHOLD;
 
     /**
      * Constructor to create a new computer player. Each player has a name and uses either a black or a white stone.
+     * This player uses the opening book that is shared in this JVM (if available).
      *
      * @param username represents the name of the player;
      * @param stone    represents the stone this player uses.
      */
     public ComputerPlayer(String username, Stone stone) {
+        this(username, stone, OpeningBook.shared());
+    }
+
+    /**
+     * Constructor to create a new computer player that uses a specific opening book. The seed of the random generator
+     * is taken from the system property go.seed if it is set, otherwise a new random seed is used.
+     *
+     * @param username    represents the name of the player;
+     * @param stone       represents the stone this player uses;
+     * @param openingBook is the opening book this player uses; can be null to only play random moves.
+     */
+    public ComputerPlayer(String username, Stone stone, OpeningBook openingBook) {
+        this(username, stone, openingBook, Long.getLong(SEED_PROPERTY, ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * Constructor to create a new computer player with a specific seed for its random generator.
+     *
+     * @param username    represents the name of the player;
+     * @param stone       represents the stone this player uses;
+     * @param openingBook is the opening book this player uses; can be null to only play random moves;
+     * @param seed        is the seed of the random generator of this player.
+     */
+    public ComputerPlayer(String username, Stone stone, OpeningBook openingBook, long seed) {
         super(username, stone);
+        this.openingBook = openingBook;
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
     }
 
     /**
-     * Determines the next move this player will make.
+     * Gets the seed of the random generator of this player. Creating a player with the same seed (and the same opening
+     * book) against the same opponent results in the same game.
+     *
+     * @return the seed of this player.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the random generator of this player, for example to split off an independent generator for playouts.
+     *
+     * @return the random generator of this player.
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Sets the win probability above which this player passes.
+     *
+     * @param passThreshold is the win probability (between 0 and 1) above which this player passes; use a value above
+     *                      1 to never pass while a valid move is available.
+     */
+    public void setPassThreshold(double passThreshold) {
+        this.passThreshold = passThreshold;
+    }
+
+    /**
+     * Sets the win probability below which this player resigns.
+     *
+     * @param resignThreshold is the win probability (between 0 and 1) below which this player resigns; use 0 to never
+     *                        resign.
+     */
+    public void setResignThreshold(double resignThreshold) {
+        this.resignThreshold = resignThreshold;
+    }
+
+    // Methods needed to determine a move, pass or resign:
+
+    /**
+     * Estimates the probability that this player will win the game, based on the score as if the game would end now.
+     * The more empty positions are left, the more the score can still change, so the same score difference results in
+     * a probability closer to 0.5 early in the game than at the end of the game.
+     *
+     * @param game is the game this player is playing;
+     * @return the estimated probability (between 0 and 1) that this player wins.
+     */
+    public double estimateWinProbability(Game game) {
+        int margin = game.getScoreMargin(this);
+        // the uncertainty of the score grows with the number of empty positions:
+        double uncertainty = 1.0 + game.getEmptyPositions().size() / 8.0;
+        return 1.0 / (1.0 + Math.exp(-margin / uncertainty));
+    }
+
+    /**
+     * Determines the next move this player will make. If the opponent has just passed and this player is ahead, it
+     * passes too (which ends the game with a win). It also passes if it is sure to win. Otherwise, if the current
+     * position is in the opening book, the best move from the book is played, and if not, a random valid move is played.
      *
      * @param game is the game this player is playing;
-     * @return the move this player can make. If no valid move is available, return null.
+     * @return the move this player can make. If no valid move is available, or this player passes, return null.
      */
     @Override
     public Position determineMove(Game game) {
-        return game.findRandomValidPosition();
+        if (game.getPassCount() == 1 && game.getScoreMargin(this) > 0) {
+            return null;
+        }
+        if (estimateWinProbability(game) > passThreshold) {
+            return null;
+        }
+        if (openingBook != null) {
+            int move = openingBook.findBestMove(game, MINIMUM_BOOK_PLAYS);
+            if (move >= 0 && game.isValidMove(move / Board.SIZE, move % Board.SIZE)) {
+                return new Position(move / Board.SIZE, move % Board.SIZE);
+            }
+        }
+        return game.findRandomValidPosition(random);
+    }
+
+    /**
+     * Determines whether this player wants to resign: when at least half of the board is filled and the estimated
+     * probability to win is below the resign threshold.
+     *
+     * @param game is the game this player is playing;
+     * @return true if this player wants to resign, false if not.
+     */
+    @Override
+    public boolean wantsToResign(Game game) {
+        if (game.getEmptyPositions().size() > Board.SIZE * Board.SIZE * RESIGN_MAXIMUM_EMPTY_FRACTION) {
+            return false;
+        }
+        return estimateWinProbability(game) < resignThreshold;
     }
 }
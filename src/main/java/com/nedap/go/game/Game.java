@@ -1,20 +1,38 @@
 package com.nedap.go.game;
 
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+import com.nedap.go.metrics.Histogram;
+
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Represents the GO game, including rules.
+ * <p>
+ * The time the engine spends on checking moves (isValidMove()), on playing moves (tryPlay()) and on scoring
+ * (getWinner()) can be recorded in nanoseconds in histograms that are shared by all games of the process, so the engine
+ * can be watched while the server runs. Only games that are timed (see setTimed()) are recorded: the server times its
+ * games, while bots, tournaments and the opening book (which check many moves per move, from many threads) do not, so
+ * they do not contend on the shared histograms.
  */
 
 public class Game {
+    private static final Logger LOG = Logging.getLogger("game");
+    private static final Histogram VALID_MOVE_TIMES = new Histogram();
+    private static final Histogram PLAY_TIMES = new Histogram();
+    private static final Histogram WINNER_TIMES = new Histogram();
     private Player playerBlack;
     private Player playerWhite;
     private Board board;
     private GoGUI goGUI;
     private Player currentPlayer;
     private int passCount;
-    private List<String> listPreviousBoards;
+    private Player resignedPlayer;
+    private Set<Long> previousBoards; // hashes of all former states of the board (see Board.hash())
     private Set<Position> emptyPositions;
+    private boolean timed; // whether the calls to the engine are recorded in the shared histograms
 
     /**
      * Creates a new game with two players, a board and the GUI representation of the board.
@@ -22,7 +40,8 @@ public class Game {
      * @param playerBlack player with black stones;
      * @param playerWhite player with white stones;
      * @param board       the game board;
-     * @param goGUI       the GUI representation of the board.
+     * @param goGUI       the GUI representation of the board; can be null for a game without GUI (for example when
+     *                    computer players play against each other to build the opening book).
      */
     public Game(Player playerBlack, Player playerWhite, Board board, GoGUI goGUI) {
         this.playerBlack = playerBlack;
@@ -33,14 +52,23 @@ public class Game {
         currentPlayer = playerBlack;
         // each game starts with a pass count of 0 (after two consecutive passes, the game is over)
         passCount = 0;
-        // create a list to store all previous states of the board (which are represented as a String) to be able to
-        // check the ko rule
-        listPreviousBoards = new ArrayList<>();
+        // create a set to store the hashes of all previous states of the board to be able to check the ko rule
+        previousBoards = new HashSet<>();
         // create a new set to keep track of all empty positions on the board. As all positions are empty at the start
         // of the game, all positions are added to this set by creating it.
         createEmptyPositionSet();
     }
 
+    /**
+     * Sets whether the calls of this game to the engine (isValidMove(), tryPlay() and getWinner()) are timed in the
+     * histograms that are shared by all games. Games are not timed by default.
+     *
+     * @param timed is true if the calls to the engine should be timed, false if not.
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
     // Getters:
 
     /**
@@ -52,6 +80,24 @@ public class Game {
         return board;
     }
 
+    /**
+     * Gets the player with the black stones.
+     *
+     * @return the player with black.
+     */
+    public Player getPlayerBlack() {
+        return playerBlack;
+    }
+
+    /**
+     * Gets the player with the white stones.
+     *
+     * @return the player with white.
+     */
+    public Player getPlayerWhite() {
+        return playerWhite;
+    }
+
     /**
      * Gets the stone of the current player.
      *
@@ -93,6 +139,57 @@ public class Game {
         }
     }
 
+    /**
+     * Gets the hash of the current position, which is the hash of the board combined with the player whose turn it is
+     * (the same board with another player to move is another position).
+     *
+     * @return the hash of the current position.
+     */
+    public long getPositionHash() {
+        return getPositionHash(0);
+    }
+
+    /**
+     * Gets the hash of the current position after transforming the board by a symmetry and possibly swapping colors.
+     * When the colors are swapped, the player to move is swapped as well: BLACK to move on a board is the same position
+     * as WHITE to move on the board with swapped colors.
+     *
+     * @param transform is the symmetry (0 - 7, see Symmetry), plus Board.SYMMETRIES if the colors are swapped;
+     * @return the hash of the transformed position.
+     */
+    public long getPositionHash(int transform) {
+        boolean colorsSwapped = transform >= Board.SYMMETRIES;
+        if ((currentPlayer == playerWhite) != colorsSwapped) {
+            return board.symmetryHash(transform) ^ Zobrist.WHITE_TO_MOVE;
+        }
+        return board.symmetryHash(transform);
+    }
+
+    /**
+     * Gets the transform (symmetry and possibly swapped colors) that results in the canonical form of the current
+     * position: the transform with the lowest position hash. All symmetric positions have the same canonical hash.
+     *
+     * @return the canonical transform (0 - 7, see Symmetry, plus Board.SYMMETRIES if the colors are swapped).
+     */
+    public int getCanonicalTransform() {
+        int canonical = 0;
+        for (int transform = 1; transform < 2 * Board.SYMMETRIES; transform++) {
+            if (getPositionHash(transform) < getPositionHash(canonical)) {
+                canonical = transform;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Gets the canonical hash of the current position (see getCanonicalTransform()).
+     *
+     * @return the canonical hash of the current position.
+     */
+    public long getCanonicalPositionHash() {
+        return getPositionHash(getCanonicalTransform());
+    }
+
     // Methods needed to determine a (random) valid move:
 
     /**
@@ -142,65 +239,69 @@ public class Game {
     }
 
     /**
-     * Finds a valid position based on a random empty position on the board that does not violate the ko rule.
+     * Finds a valid position based on a random empty position on the board that does not violate the ko rule. The
+     * random generator of the current thread is used, so games in different threads do not wait on each other.
      *
      * @return the position of the random valid move. Can be null if no valid position is available.
      */
     public Position findRandomValidPosition() {
+        return findRandomValidPosition(ThreadLocalRandom.current());
+    }
+
+    /**
+     * Finds a valid position based on a random empty position on the board that does not violate the ko rule, using a
+     * specific random generator. With a seeded generator, the same game results in the same positions, so a game can
+     * be replayed exactly.
+     *
+     * @param random is the random generator to use;
+     * @return the position of the random valid move. Can be null if no valid position is available.
+     */
+    public Position findRandomValidPosition(RandomGenerator random) {
         // to be able to find a random valid position, the game must not be over yet, and the list of valid positions
         // must not be empty.
-        if (!isGameOver() && !getListOfValidPositions().isEmpty()) {
-            List<Position> listOfValidPositions = getListOfValidPositions();
-            // to be able to make a random move (on a random valid position), get a random index of the list with
-            // valid positions and get the position that is stored on that index.
-            int randomValidIndex = (int) (Math.random() * listOfValidPositions.size());
-            return listOfValidPositions.get(randomValidIndex);
-        } else {
+        if (isGameOver()) {
+            return null;
+        }
+        List<Position> listOfValidPositions = getListOfValidPositions();
+        if (listOfValidPositions.isEmpty()) {
             return null;
         }
+        // to be able to make a random move (on a random valid position), get a random index of the list with
+        // valid positions and get the position that is stored on that index.
+        int randomValidIndex = random.nextInt(listOfValidPositions.size());
+        return listOfValidPositions.get(randomValidIndex);
     }
 
     /**
      * Checks whether the move a player wants to make, is a valid move (whether te stone is placed on an existing
-     * position and whether this stone is placed on an empty position).
+     * position, whether this stone is placed on an empty position and whether the move does not violate the ko rule).
+     * The game does not change.
      *
      * @param row    is the row a player wants to place a stone;
      * @param column is the column a player wants to place a stone;
      * @return true if the move is valid; false if not.
      */
     public boolean isValidMove(int row, int column) {
-        // check if position is a valid position on the board
-        if (!board.isValidPosition(row, column)) {
-            return false;
+        if (!timed) {
+            return play(row, column, false).isAccepted();
         }
-        // check if no stone has been placed on this position yet
-        if (!board.isEmptyPosition(row, column)) {
-            return false;
-        }
-        // check if placed stone will result in violating ko rule by placing this stone on a copy of the current board
-        // (this way, you don't have to replace all captured stones if ko rule is violated and move must be undone).
-        Board copyBoard = board.copyBoard();
-        copyBoard.placeStone(row, column, getStone(currentPlayer));
-        removeIfIsCaptured(row, column);
-        removeIfHasCaptured(row, column);
-        return !isKoRuleViolated(copyBoard.toString());
+        long start = System.nanoTime();
+        boolean valid = play(row, column, false).isAccepted();
+        VALID_MOVE_TIMES.record(System.nanoTime() - start);
+        return valid;
     }
 
     /**
      * Checks whether the ko rule is violated (which means, that the current state of the board has been
      * existing before and therefore this move is not a valid move).
      *
-     * @param stringRepresentationOfBoard is the String representation of the current board;
+     * @param boardHash is the hash of the state of the board after the move (see Board.hash());
      * @return true if this state of the board has existed before.
      */
-    public boolean isKoRuleViolated(String stringRepresentationOfBoard) {
-        // loop through the list with Strings (in which all previous board states are saved) and compare the current
-        // state of the board with all previous states
-        for (String stringRepresentationPreviousBoardStates : listPreviousBoards) {
-            if (stringRepresentationPreviousBoardStates.equals(stringRepresentationOfBoard)) {
-                System.out.println("Violation of the ko rule: a stone that will recreate a former board position may not be placed!");
-                return true;
-            }
+    public boolean isKoRuleViolated(long boardHash) {
+        if (previousBoards.contains(boardHash)) {
+            LOG.debug("Violation of the ko rule: a stone that will recreate a former board position may not be placed!");
+            return true;
         }
         return false;
     }
@@ -300,38 +401,6 @@ public class Game {
         return false;
     }
 
-    /**
-     * Checks whether the current player has captured a stone or group of stones of the opponent with the current move,
-     * and if it does, this group is removed.
-     *
-     * @param row    is the row a player wants to place a stone;
-     * @param column is the column a player wants to place a stone.
-     */
-    public void removeIfHasCaptured(int row, int column) {
-        // 1.  Find the position of the direct neighbours of the placed stone;
-        Set<Position> neighbourPositions = getNeighbourPositions(row, column);
-        // 2.  Find the stones located on these neighbour positions;
-        Set<Stone> neighbourStones = getNeighbourStones(neighbourPositions);
-        // 3.  Check if at least 1 of the neighbour stones is of the opponent; if not, no stone of the opponent is captured
-        //      by making this move;
-        if (!hasNeighbourOfSameColor(neighbourStones, getStoneOpponent(currentPlayer))) {
-            return;
-        }
-        // 4.  Create a new set for each of the neighbour stones of the opponent and store these in a new set;
-        Set<Set<Position>> opponentGroupPositionsPlacedStone = createSetOfOpponentGroupPositionSets(neighbourPositions);
-        // 5.  Loop through the set with (maximal four) sets of one position;
-        for (Set<Position> positionsOfPossiblyCapturedGroup : opponentGroupPositionsPlacedStone) {
-            // 6.  Check for each of these positions if they are part of a group that is captured by making this move.
-            Set<Position> neighbourGroup = getCapturedGroup(positionsOfPossiblyCapturedGroup, Stone.EMPTY);
-            // 7.  If the neighbourGroup is not captured, this group is returned as an empty Set of positions. If the
-            //      group is captured, the neighbourGroup is a set that stores all positions of this group, and these
-            //      will be removed from the board.
-            if (!neighbourGroup.isEmpty()) {
-                removeGroupOfStones(neighbourGroup);
-            }
-        }
-    }
-
     /**
      * Gets a set with all the positions of a captured group.
      *
@@ -385,27 +454,6 @@ public class Game {
         return checkedPositions;
     }
 
-    /**
-     * Checks whether the current player has self-captured (suicide) a stone or group of stones with this move.
-     *
-     * @param row    is the row a player wants to place a stone;
-     * @param column is the column a player wants to place a stone.
-     */
-    public void removeIfIsCaptured(int row, int column) {
-        // 1.  Create a new set and add the placed stone, to be able to check if it is part of a group and if this stone
-        //      (or group of stones) is captured;
-        Set<Position> positionsOfPossiblyCapturedGroup = new HashSet<>();
-        positionsOfPossiblyCapturedGroup.add(new Position(row, column));
-        // 2.  Check whether this position is part of a group that is captured by making this move;
-        Set<Position> checkedGroup = getCapturedGroup(positionsOfPossiblyCapturedGroup, Stone.EMPTY);
-        // 3.  If the checkedGroup is not captured, this group is returned as an empty Set of positions. If the
-        //      group is captured, the neighbourGroup is a set that stores all positions of this group, and these
-        //      will be removed from the board.
-        if (!checkedGroup.isEmpty()) {
-            removeGroupOfStones(checkedGroup);
-        }
-    }
-
     /**
      * Removes a single stone from the board (ko rule violation).
      *
@@ -415,7 +463,9 @@ public class Game {
     public void removeStone(int row, int column) {
         emptyPositions.add(new Position(row, column));
         board.removeStone(row, column);
-        goGUI.removeStone(column, row);
+        if (goGUI != null) {
+            goGUI.removeStone(column, row);
+        }
     }
 
     /**
@@ -450,27 +500,219 @@ public class Game {
      * @param column is the column a player wants to place a stone.
      */
     public void doMove(int row, int column) {
-        if (isValidMove(row, column)) {
-            board.placeStone(row, column, getStone(currentPlayer));
-            goGUI.placeStone(column, row, getStone(currentPlayer));
-            // hasCaptured checked before isCaptured, as a suicide move resulting in capturing a group is allowed:
-            removeIfHasCaptured(row, column);
-            removeIfIsCaptured(row, column);
-            // reset passCount if valid move is executed
-            passCount = 0;
-            // removes the position from the set of emptyPositions as this position is not empty anymore after
-            // placing the stone
-            emptyPositions.remove(new Position(row, column));
-            // add the new board state to the list of previous board states in order to be able to check the ko rule.
-            listPreviousBoards.add(board.toString());
-            // after making a move, it is the turn of the opponent
-            switchTurn();
-        } else {
-            System.out.println("This is not a valid move, try again."); // in TUI and recall doMove with other row/column
+        if (!tryPlay(row, column).isAccepted()) {
+            LOG.info("This is not a valid move, try again."); // in TUI and recall doMove with other row/column
             // input OR pass.
         }
     }
 
+    /**
+     * Tries to place a stone of the current player: the move is checked and executed in one pass over the board. If
+     * the move is valid, the captured stones are removed and it is the turn of the opponent; if not, the game does not
+     * change and the turn stays at this player.
+     *
+     * @param row    is the row a player wants to place a stone;
+     * @param column is the column a player wants to place a stone;
+     * @return the result of the move: the captured positions if it is accepted, or why it is rejected.
+     */
+    public MoveResult tryPlay(int row, int column) {
+        if (!timed) {
+            return play(row, column, true);
+        }
+        long start = System.nanoTime();
+        MoveResult result = play(row, column, true);
+        PLAY_TIMES.record(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Places a stone of the current player on the board and removes the stones it captures. The resulting state of
+     * the board is checked against the ko rule with its hash, so no copy of the board is needed: if the move is not
+     * applied (or violates the ko rule), the board is restored afterwards.
+     *
+     * @param row    is the row a player wants to place a stone;
+     * @param column is the column a player wants to place a stone;
+     * @param apply  is true if a valid move should be executed, false if it should only be checked;
+     * @return the result of the move.
+     */
+    private MoveResult play(int row, int column, boolean apply) {
+        // check if position is a valid position on the board, and if no stone has been placed on this position yet:
+        if (!board.isValidPosition(row, column)) {
+            return MoveResult.rejected(MoveResult.Status.OFF_BOARD);
+        }
+        if (!board.isEmptyPosition(row, column)) {
+            return MoveResult.rejected(MoveResult.Status.OCCUPIED);
+        }
+        Stone stone = getStone(currentPlayer);
+        Stone opponentStone = getStoneOpponent(currentPlayer);
+        board.placeStone(row, column, stone);
+        // captures of the opponent are removed before checking the placed stone itself, as a suicide move resulting in
+        // capturing a group is allowed. A neighbour that is part of a group that is already removed is skipped:
+        List<Position> captured = new ArrayList<>();
+        for (Position neighbourPosition : getNeighbourPositions(row, column)) {
+            if (board.getStone(neighbourPosition.getRow(), neighbourPosition.getColumn()) == opponentStone) {
+                removeFromBoard(getCapturedGroup(Set.of(neighbourPosition), Stone.EMPTY), captured);
+            }
+        }
+        int capturedOfOpponent = captured.size();
+        removeFromBoard(getCapturedGroup(Set.of(new Position(row, column)), Stone.EMPTY), captured);
+        long boardHash = board.hash();
+        boolean koRuleViolated = isKoRuleViolated(boardHash);
+        if (!apply || koRuleViolated) {
+            // restore the board: put back the captured stones, and remove the placed stone
+            for (int i = 0; i < captured.size(); i++) {
+                Position position = captured.get(i);
+                Stone capturedStone = i < capturedOfOpponent ? opponentStone : stone;
+                board.placeStone(position.getRow(), position.getColumn(), capturedStone);
+            }
+            board.removeStone(row, column);
+            if (koRuleViolated) {
+                return MoveResult.rejected(MoveResult.Status.KO);
+            }
+            return MoveResult.accepted(captured, boardHash);
+        }
+        if (goGUI != null) {
+            goGUI.placeStone(column, row, stone);
+            for (Position position : captured) {
+                goGUI.removeStone(position.getColumn(), position.getRow());
+            }
+        }
+        finishMove(row, column, captured, boardHash);
+        return MoveResult.accepted(captured, boardHash);
+    }
+
+    /**
+     * Removes a captured group from the board (not from the GUI), and adds its positions to the list of captured
+     * positions.
+     *
+     * @param group    is the captured group; empty if nothing is captured;
+     * @param captured is the list of captured positions of the move.
+     */
+    private void removeFromBoard(Set<Position> group, List<Position> captured) {
+        for (Position position : group) {
+            board.removeStone(position.getRow(), position.getColumn());
+            captured.add(position);
+        }
+    }
+
+    /**
+     * Updates the state of the game after a stone is placed and the captured stones are removed from the board: the
+     * empty positions, the pass count, the former states of the board, and the turn.
+     *
+     * @param row       is the row of the placed stone;
+     * @param column    is the column of the placed stone;
+     * @param captured  are the positions of the captured stones;
+     * @param boardHash is the hash of the board after the move.
+     */
+    private void finishMove(int row, int column, List<Position> captured, long boardHash) {
+        // removes the position from the set of emptyPositions as this position is not empty anymore after placing the
+        // stone, and add the captured positions (which can include the placed stone after a suicide move):
+        emptyPositions.remove(new Position(row, column));
+        emptyPositions.addAll(captured);
+        // reset passCount if valid move is executed
+        passCount = 0;
+        // add the new board state to the set of previous board states in order to be able to check the ko rule.
+        previousBoards.add(boardHash);
+        // after making a move, it is the turn of the opponent
+        switchTurn();
+    }
+
+    /**
+     * Executes a move that is already checked and executed elsewhere (by the server), with the stones that it has
+     * captured: the stones are placed and removed without checking the move or searching for captures again.
+     *
+     * @param row      is the row of the placed stone;
+     * @param column   is the column of the placed stone;
+     * @param captured are the positions of the stones that the move has captured.
+     */
+    public void applyMove(int row, int column, List<Position> captured) {
+        Stone stone = getStone(currentPlayer);
+        board.placeStone(row, column, stone);
+        if (goGUI != null) {
+            goGUI.placeStone(column, row, stone);
+        }
+        for (Position position : captured) {
+            board.removeStone(position.getRow(), position.getColumn());
+            if (goGUI != null) {
+                goGUI.removeStone(position.getColumn(), position.getRow());
+            }
+        }
+        finishMove(row, column, captured, board.hash());
+    }
+
+    /**
+     * Places a stone without making a move, to set up a position that is received from the server (for example when
+     * a client starts watching a game that is already running). The turn does not change.
+     *
+     * @param row    is the row of the stone;
+     * @param column is the column of the stone;
+     * @param stone  is the stone to place.
+     */
+    public void setUpStone(int row, int column, Stone stone) {
+        board.placeStone(row, column, stone);
+        if (goGUI != null) {
+            goGUI.placeStone(column, row, stone);
+        }
+        emptyPositions.remove(new Position(row, column));
+    }
+
+    /**
+     * Gets the hashes of all former states of the board (see Board.hash()), which are needed to check the ko rule.
+     *
+     * @return a copy of the hashes, in no particular order.
+     */
+    public long[] getPreviousBoards() {
+        long[] hashes = new long[previousBoards.size()];
+        int i = 0;
+        for (long hash : previousBoards) {
+            hashes[i++] = hash;
+        }
+        return hashes;
+    }
+
+    /**
+     * Restores a game without making moves, for example when the server recovers a game from a snapshot: the stones are
+     * set up, and the turn, the pass count and the former states of the board are set.
+     *
+     * @param stones             are the stones of the board, as written by Board.toBytes();
+     * @param stoneToMove        is the stone of the player whose turn it is;
+     * @param passCount          is the number of consecutive passes;
+     * @param previousBoards     are the hashes of all former states of the board;
+     * @param previousBoardCount is the number of hashes in previousBoards that are used.
+     */
+    public void restore(byte[] stones, Stone stoneToMove, int passCount, long[] previousBoards, int previousBoardCount) {
+        Stone[] values = Stone.values();
+        for (int index = 0; index < stones.length; index++) {
+            Stone stone = values[stones[index]];
+            if (stone != Stone.EMPTY) {
+                setUpStone(index / Board.SIZE, index % Board.SIZE, stone);
+            }
+        }
+        currentPlayer = stoneToMove == Stone.BLACK ? playerBlack : playerWhite;
+        this.passCount = passCount;
+        for (int i = 0; i < previousBoardCount; i++) {
+            this.previousBoards.add(previousBoards[i]);
+        }
+    }
+
+    /**
+     * Resigns the game: the player that resigns loses, and the game is over directly.
+     *
+     * @param player is the player that resigns (which does not need to be the player whose turn it is).
+     */
+    public void resign(Player player) {
+        resignedPlayer = player;
+    }
+
+    /**
+     * Gets the player that has resigned.
+     *
+     * @return the player that has resigned; null if no player has resigned.
+     */
+    public Player getResignedPlayer() {
+        return resignedPlayer;
+    }
+
     /**
      * Passes without placing a stone.
      */
@@ -495,10 +737,11 @@ public class Game {
     /**
      * Checks whether the game is over.
      *
-     * @return true if two consecutive passes are done OR all positions on the board are filled, otherwise false.
+     * @return true if two consecutive passes are done OR all positions on the board are filled OR a player has resigned,
+     * otherwise false.
      */
     public boolean isGameOver() {
-        return passCount == 2 || getBoard().isFull();
+        return passCount == 2 || getBoard().isFull() || resignedPlayer != null;
     }
 
     // Methods needed for calculating the final score and find the winner of the game:
@@ -596,20 +839,74 @@ public class Game {
         return stonesOnBoard + capturedPositions;
     }
 
+    /**
+     * Gets the difference between the score of a player and the score of the opponent, as if the game would end now.
+     *
+     * @param player is the player of interest;
+     * @return the score of this player minus the score of the opponent.
+     */
+    public int getScoreMargin(Player player) {
+        if (player == playerBlack) {
+            return finalScore(playerBlack) - finalScore(playerWhite);
+        }
+        return finalScore(playerWhite) - finalScore(playerBlack);
+    }
+
     /**
      * Gets the winner of this game.
      *
-     * @return the player with the most points; can be null if the game ended in a draw.
+     * @return the player with the most points, or the opponent of the player that resigned; can be "none" if the game
+     * ended in a draw.
      */
     public String getWinner() {
-        if (finalScore(playerBlack) > finalScore(playerWhite)) {
+        if (resignedPlayer == playerBlack) {
+            return playerWhite.getUsername();
+        } else if (resignedPlayer == playerWhite) {
+            return playerBlack.getUsername();
+        }
+        long start = timed ? System.nanoTime() : 0;
+        int scoreBlack = finalScore(playerBlack);
+        int scoreWhite = finalScore(playerWhite);
+        if (timed) {
+            WINNER_TIMES.record(System.nanoTime() - start);
+        }
+        if (scoreBlack > scoreWhite) {
             return playerBlack.getUsername();
-        } else if (finalScore(playerBlack) < finalScore(playerWhite)) {
+        } else if (scoreBlack < scoreWhite) {
             return playerWhite.getUsername();
         } else {
-            System.out.println("This game ended in a draw!");
+            LOG.info("This game ended in a draw!");
             return "none";
         }
     }
+
+    // Getters of the timings of the engine (shared by all timed games):
+
+    /**
+     * Gets the histogram of the time (in nanoseconds) isValidMove() takes to check a move.
+     *
+     * @return the histogram of check times.
+     */
+    public static Histogram getValidMoveTimes() {
+        return VALID_MOVE_TIMES;
+    }
+
+    /**
+     * Gets the histogram of the time (in nanoseconds) tryPlay() takes to check and play a move.
+     *
+     * @return the histogram of play times.
+     */
+    public static Histogram getPlayTimes() {
+        return PLAY_TIMES;
+    }
+
+    /**
+     * Gets the histogram of the time (in nanoseconds) getWinner() takes to score a game that is not resigned.
+     *
+     * @return the histogram of scoring times.
+     */
+    public static Histogram getWinnerTimes() {
+        return WINNER_TIMES;
+    }
 }
 
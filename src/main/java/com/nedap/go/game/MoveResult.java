@@ -0,0 +1,102 @@
+package com.nedap.go.game;
+
+import java.util.List;
+
+/**
+ * Represents the result of trying to place a stone (see Game.tryPlay()): either the move is accepted, together with
+ * the stones it has captured and the hash of the board afterwards, or the move is rejected with the reason why.
+ */
+public final class MoveResult {
+    /**
+     * The possible outcomes of a move.
+     */
+    public enum Status {
+        ACCEPTED, // the stone is placed
+        OFF_BOARD, // the position does not exist on the board
+        OCCUPIED, // a stone is already placed on the position
+        KO // the move would recreate a former state of the board
+    }
+
+    private static final MoveResult OFF_BOARD = new MoveResult(Status.OFF_BOARD, List.of(), 0);
+    private static final MoveResult OCCUPIED = new MoveResult(Status.OCCUPIED, List.of(), 0);
+    private static final MoveResult KO = new MoveResult(Status.KO, List.of(), 0);
+    private final Status status;
+    private final List<Position> captured;
+    private final long hash;
+
+    /**
+     * Creates the result of a move.
+     *
+     * @param status   is the outcome of the move;
+     * @param captured are the positions of the stones that are removed by the move;
+     * @param hash     is the hash of the board after the move.
+     */
+    private MoveResult(Status status, List<Position> captured, long hash) {
+        this.status = status;
+        this.captured = captured;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates the result of a move that is accepted.
+     *
+     * @param captured are the positions of the stones that are removed by the move (of the opponent, or of the player
+     *                 itself after a suicide move);
+     * @param hash     is the hash of the board after the move;
+     * @return the result of the move.
+     */
+    static MoveResult accepted(List<Position> captured, long hash) {
+        return new MoveResult(Status.ACCEPTED, captured, hash);
+    }
+
+    /**
+     * Gets the (shared) result of a move that is rejected.
+     *
+     * @param status is the reason why the move is rejected (not ACCEPTED);
+     * @return the result of the move.
+     */
+    static MoveResult rejected(Status status) {
+        return switch (status) {
+            case OFF_BOARD -> OFF_BOARD;
+            case OCCUPIED -> OCCUPIED;
+            case KO -> KO;
+            case ACCEPTED -> throw new IllegalArgumentException("A rejected move needs a reason.");
+        };
+    }
+
+    /**
+     * Checks whether the move is accepted.
+     *
+     * @return true if the stone is placed, false if the move is rejected.
+     */
+    public boolean isAccepted() {
+        return status == Status.ACCEPTED;
+    }
+
+    /**
+     * Gets the outcome of the move.
+     *
+     * @return ACCEPTED, or the reason why the move is rejected.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the positions of the stones that are removed from the board by this move.
+     *
+     * @return the captured positions; empty if nothing is captured or if the move is rejected.
+     */
+    public List<Position> getCaptured() {
+        return captured;
+    }
+
+    /**
+     * Gets the hash of the board after this move (see Board.hash()).
+     *
+     * @return the hash of the board; 0 if the move is rejected.
+     */
+    public long getHash() {
+        return hash;
+    }
+}
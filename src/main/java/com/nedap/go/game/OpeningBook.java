@@ -0,0 +1,237 @@
+package com.nedap.go.game;
+
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents the opening book: a read-only file with move statistics per position, which computer players can use
+ * instead of searching the same opening positions in every game. The file is memory-mapped, so the book lives in the
+ * page cache of the operating system instead of on the Java heap, and one book can be shared by all games and threads
+ * in the JVM. Looking up a move does not create any objects.
+ * <p>
+ * Positions are stored in their canonical form (see Game.getCanonicalTransform()), with the moves in the orientation of
+ * that canonical form; use findBestMove() to get a move in the orientation of the actual board.
+ * <p>
+ * The file starts with a header (magic number, version, board size and number of entries), followed by the entries
+ * sorted on the hash of the position. Each entry has a fixed size: hash (8 bytes), row (1 byte), column (1 byte), two
+ * unused bytes, the number of times the move was played (4 bytes) and the number of times the player that made this
+ * move has won the game (4 bytes). OpeningBookBuilder can be used to create such a file.
+ */
+public final class OpeningBook {
+    private static final Logger LOG = Logging.getLogger("game.book");
+    public static final int MAGIC = 0x474F424B; // "GOBK"
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 16;
+    public static final int ENTRY_SIZE = 20;
+    public static final String PROPERTY = "go.openingBook"; // system property with the path of the shared book
+    private static final int OFFSET_ROW = 8;
+    private static final int OFFSET_COLUMN = 9;
+    private static final int OFFSET_PLAYS = 12;
+    private static final int OFFSET_WINS = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+
+    /**
+     * Creates the opening book from a buffer that contains the book file.
+     *
+     * @param buffer is the memory-mapped book file.
+     */
+    private OpeningBook(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("This file is not an opening book.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Version " + buffer.getInt(4) + " of the opening book is not supported.");
+        }
+        if (buffer.getInt(8) != Board.SIZE) {
+            throw new IllegalArgumentException("This opening book is made for another board size.");
+        }
+        entryCount = buffer.getInt(12);
+        if (buffer.capacity() < HEADER_SIZE + (long) entryCount * ENTRY_SIZE) {
+            throw new IllegalArgumentException("This opening book is incomplete.");
+        }
+    }
+
+    /**
+     * Opens an opening book file. The file is mapped into memory; the file itself can be closed directly after mapping
+     * as the mapping stays valid until the book is garbage collected.
+     *
+     * @param path is the path of the book file;
+     * @return the opened opening book.
+     * @throws IOException if the file could not be opened.
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Gets the opening book that is shared by all games and threads in this JVM. The path of this book is set via the
+     * system property go.openingBook. The book is opened the first time it is needed.
+     *
+     * @return the shared opening book; can be null if no (valid) book is configured.
+     */
+    public static OpeningBook shared() {
+        return SharedBook.BOOK;
+    }
+
+    /**
+     * Holds the shared opening book, so the book is only opened once, the first time shared() is called.
+     */
+    private static final class SharedBook {
+        private static final OpeningBook BOOK = openShared();
+
+        private static OpeningBook openShared() {
+            String path = System.getProperty(PROPERTY);
+            if (path == null || !Files.isRegularFile(Paths.get(path))) {
+                return null;
+            }
+            try {
+                return open(Paths.get(path));
+            } catch (IOException | IllegalArgumentException e) {
+                LOG.warn("Not able to open the opening book " + path + ": " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    // Getters:
+
+    /**
+     * Gets the number of entries (position and move combinations) in this book.
+     *
+     * @return the number of entries.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Gets the hash of the position of an entry.
+     *
+     * @param index is the index of the entry;
+     * @return the hash of the position.
+     */
+    public long getHash(int index) {
+        return buffer.getLong(HEADER_SIZE + index * ENTRY_SIZE);
+    }
+
+    /**
+     * Gets the row of the move of an entry.
+     *
+     * @param index is the index of the entry;
+     * @return the row of the move.
+     */
+    public int getRow(int index) {
+        return buffer.get(HEADER_SIZE + index * ENTRY_SIZE + OFFSET_ROW);
+    }
+
+    /**
+     * Gets the column of the move of an entry.
+     *
+     * @param index is the index of the entry;
+     * @return the column of the move.
+     */
+    public int getColumn(int index) {
+        return buffer.get(HEADER_SIZE + index * ENTRY_SIZE + OFFSET_COLUMN);
+    }
+
+    /**
+     * Gets the number of times the move of an entry was played in this position.
+     *
+     * @param index is the index of the entry;
+     * @return the number of times this move was played.
+     */
+    public int getPlays(int index) {
+        return buffer.getInt(HEADER_SIZE + index * ENTRY_SIZE + OFFSET_PLAYS);
+    }
+
+    /**
+     * Gets the number of times the player that made the move of an entry has won the game.
+     *
+     * @param index is the index of the entry;
+     * @return the number of wins after this move.
+     */
+    public int getWins(int index) {
+        return buffer.getInt(HEADER_SIZE + index * ENTRY_SIZE + OFFSET_WINS);
+    }
+
+    // Methods needed to look up a move:
+
+    /**
+     * Finds the first entry of a position by a binary search on the sorted hashes.
+     *
+     * @param hash is the hash of the position of interest;
+     * @return the index of the first entry of this position; -1 if the position is not in the book.
+     */
+    public int findFirstEntry(long hash) {
+        int low = 0;
+        int high = entryCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleHash = getHash(middle);
+            if (middleHash < hash) {
+                low = middle + 1;
+            } else {
+                // keep searching on the left side, to find the first entry with this hash:
+                if (middleHash == hash) {
+                    found = middle;
+                }
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the entry with the best move in a position: the move with the highest ratio of wins, that is played at
+     * least minimumPlays times.
+     *
+     * @param hash         is the hash of the position of interest;
+     * @param minimumPlays is the minimum number of times a move must have been played to be trusted;
+     * @return the index of the entry with the best move; -1 if no move of this position is in the book.
+     */
+    public int findBestEntry(long hash, int minimumPlays) {
+        int best = -1;
+        for (int index = findFirstEntry(hash); index >= 0 && index < entryCount && getHash(index) == hash; index++) {
+            int plays = getPlays(index);
+            if (plays < minimumPlays) {
+                continue;
+            }
+            // compare wins/plays of both entries without dividing (wins * otherPlays > otherWins * plays):
+            if (best == -1 || (long) getWins(index) * getPlays(best) > (long) getWins(best) * plays) {
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the best move for the current position of a game: the position is looked up in its canonical form, and
+     * the move from the book is transformed back to the orientation of the actual board.
+     *
+     * @param game         is the game of interest;
+     * @param minimumPlays is the minimum number of times a move must have been played to be trusted;
+     * @return the index (row * SIZE + column) of the best move on the actual board; -1 if the position is not in the book.
+     */
+    public int findBestMove(Game game, int minimumPlays) {
+        int transform = game.getCanonicalTransform();
+        int entry = findBestEntry(game.getPositionHash(transform), minimumPlays);
+        if (entry < 0) {
+            return -1;
+        }
+        return Symmetry.get(transform % Board.SYMMETRIES).inverse().index(getRow(entry), getColumn(entry));
+    }
+}
@@ -0,0 +1,173 @@
+package com.nedap.go.game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Represents the builder of the opening book. The builder replays games (played by computer players against each other,
+ * or archived games) and counts for each position in the opening how often each move was played and how often the
+ * player that made this move has won the game. These statistics are written to a book file that can be opened with
+ * OpeningBook. Positions are stored in their canonical form (see Game.getCanonicalTransform()), so symmetric positions
+ * share one set of statistics.
+ */
+public class OpeningBookBuilder {
+    public static final int DEFAULT_DEPTH = 20;
+    private final int maxDepth;
+    // statistics per position hash (sorted on hash, as the book file is sorted on hash), and per move (row * SIZE +
+    // column) within that position. Each int array holds the number of plays and the number of wins.
+    private final SortedMap<Long, SortedMap<Integer, int[]>> statistics;
+    private int numberOfGames;
+
+    /**
+     * Creates a builder for the opening book.
+     *
+     * @param maxDepth is the number of moves from the start of each game that is stored in the book.
+     */
+    public OpeningBookBuilder(int maxDepth) {
+        this.maxDepth = maxDepth;
+        this.statistics = new TreeMap<>();
+    }
+
+    /**
+     * Gets the number of games that is added to this builder.
+     *
+     * @return the number of added games.
+     */
+    public int getNumberOfGames() {
+        return numberOfGames;
+    }
+
+    /**
+     * Adds a game to the book. The game is replayed from the start on a game without GUI, and the first maxDepth moves
+     * are counted. If a move turns out to be invalid, the rest of the game is ignored.
+     *
+     * @param moves  are the moves of the game in the order they were played; a null position represents a pass;
+     * @param winner is the stone of the player that has won the game; EMPTY if the game ended in a draw.
+     */
+    public void addGame(List<Position> moves, Stone winner) {
+        Game game = new Game(new Player("black", Stone.BLACK), new Player("white", Stone.WHITE), new Board(), null);
+        int depth = 0;
+        for (Position move : moves) {
+            if (depth == maxDepth) {
+                break;
+            }
+            if (move == null) {
+                game.pass();
+            } else {
+                if (!game.isValidMove(move.getRow(), move.getColumn())) {
+                    break;
+                }
+                Stone mover = game.getCurrentPlayer().getStone();
+                // store the position in its canonical form, so all symmetric positions share their statistics. The move
+                // is transformed by the same symmetry:
+                int transform = game.getCanonicalTransform();
+                Symmetry symmetry = Symmetry.get(transform % Board.SYMMETRIES);
+                int[] playsAndWins = statistics.computeIfAbsent(game.getPositionHash(transform), hash -> new TreeMap<>())
+                        .computeIfAbsent(symmetry.index(move.getRow(), move.getColumn()), index -> new int[2]);
+                playsAndWins[0]++;
+                if (mover == winner) {
+                    playsAndWins[1]++;
+                }
+                game.doMove(move.getRow(), move.getColumn());
+            }
+            depth++;
+        }
+        numberOfGames++;
+    }
+
+    /**
+     * Plays games between two computer players (without GUI) and adds these games to the book. The seeds of the
+     * players are derived from one seed, so the same seed always results in the same book.
+     *
+     * @param numberOfGames is the number of games to play;
+     * @param seed          is the seed from which the seeds of all players are derived.
+     */
+    public void addSelfPlayGames(int numberOfGames, long seed) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < numberOfGames; i++) {
+            Player black = new ComputerPlayer("black", Stone.BLACK, null, seeds.nextLong());
+            Player white = new ComputerPlayer("white", Stone.WHITE, null, seeds.nextLong());
+            Game game = new Game(black, white, new Board(), null);
+            List<Position> moves = new ArrayList<>();
+            // a game without captures ends when the board is full; limit the number of moves in case stones keep being
+            // captured and placed again.
+            int maxMoves = Board.SIZE * Board.SIZE * 3;
+            while (!game.isGameOver() && moves.size() < maxMoves) {
+                if (game.getCurrentPlayer().wantsToResign(game)) {
+                    game.resign(game.getCurrentPlayer());
+                    break;
+                }
+                Position move = game.getCurrentPlayer().determineMove(game);
+                moves.add(move);
+                if (move == null) {
+                    game.pass();
+                } else {
+                    game.doMove(move.getRow(), move.getColumn());
+                }
+            }
+            String winner = game.getWinner();
+            if (winner.equals(black.getUsername())) {
+                addGame(moves, Stone.BLACK);
+            } else if (winner.equals(white.getUsername())) {
+                addGame(moves, Stone.WHITE);
+            } else {
+                addGame(moves, Stone.EMPTY);
+            }
+        }
+    }
+
+    /**
+     * Writes the book to a file, in the format as described in OpeningBook.
+     *
+     * @param path is the path of the book file to write;
+     * @throws IOException if the file could not be written.
+     */
+    public void write(Path path) throws IOException {
+        int entryCount = 0;
+        for (SortedMap<Integer, int[]> moves : statistics.values()) {
+            entryCount += moves.size();
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(OpeningBook.MAGIC);
+            output.writeInt(OpeningBook.VERSION);
+            output.writeInt(Board.SIZE);
+            output.writeInt(entryCount);
+            for (Map.Entry<Long, SortedMap<Integer, int[]>> position : statistics.entrySet()) {
+                for (Map.Entry<Integer, int[]> move : position.getValue().entrySet()) {
+                    output.writeLong(position.getKey());
+                    output.writeByte(move.getKey() / Board.SIZE);
+                    output.writeByte(move.getKey() % Board.SIZE);
+                    output.writeShort(0);
+                    output.writeInt(move.getValue()[0]);
+                    output.writeInt(move.getValue()[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds an opening book from games between computer players. Usage: OpeningBookBuilder file [games] [depth] [seed].
+     *
+     * @param args are the path of the book file, the number of games to play, the number of moves per game to store and
+     *             the seed of the games.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: OpeningBookBuilder <file> [games] [depth] [seed]");
+            return;
+        }
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        System.out.println("Playing " + games + " games with seed " + seed + ".");
+        OpeningBookBuilder builder = new OpeningBookBuilder(depth);
+        builder.addSelfPlayGames(games, seed);
+        builder.write(Paths.get(args[0]));
+        System.out.println("Opening book with " + builder.getNumberOfGames() + " games written to " + args[0] + ".");
+    }
+}
@@ -76,4 +76,15 @@ public class Player {
         }
         return new Position(row, column);
     }
+
+    /**
+     * Determines whether this player wants to resign instead of making a move. A human player resigns via the TUI, so
+     * this returns false by default.
+     *
+     * @param game is the game this player is playing;
+     * @return true if this player wants to resign, false if not.
+     */
+    public boolean wantsToResign(Game game) {
+        return false;
+    }
 }
@@ -0,0 +1,115 @@
+package com.nedap.go.game;
+
+/**
+ * Represents the 8 symmetries of the (square) GO board: the identity, three rotations and four reflections. A position
+ * on the board that is transformed by one of these symmetries is essentially the same position, so caches, opening
+ * books and indexes only need to store one of them (see Board.canonicalHash()).
+ */
+public enum Symmetry {
+    IDENTITY, ROTATE_90, ROTATE_180, ROTATE_270, FLIP_ROWS, FLIP_COLUMNS, TRANSPOSE, ANTI_TRANSPOSE;
+
+    private static final Symmetry[] VALUES = values();
+    private final int[] mappedIndex = new int[Board.SIZE * Board.SIZE]; // index (row * SIZE + column) after transform
+    private Symmetry inverse;
+
+    static {
+        for (Symmetry symmetry : VALUES) {
+            for (int row = 0; row < Board.SIZE; row++) {
+                for (int column = 0; column < Board.SIZE; column++) {
+                    symmetry.mappedIndex[row * Board.SIZE + column] = symmetry.calculateIndex(row, column);
+                }
+            }
+        }
+        // the inverse of a symmetry is the symmetry that maps every transformed position back to the original one:
+        for (Symmetry symmetry : VALUES) {
+            for (Symmetry candidate : VALUES) {
+                if (candidate.index(symmetry.row(1, 2), symmetry.column(1, 2)) == Board.SIZE + 2
+                        && candidate.index(symmetry.row(0, 1), symmetry.column(0, 1)) == 1) {
+                    symmetry.inverse = candidate;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a symmetry by its ordinal (0 - 7).
+     *
+     * @param ordinal is the ordinal of the symmetry of interest;
+     * @return the symmetry with this ordinal.
+     */
+    public static Symmetry get(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Calculates the index (row * SIZE + column) of a position after this symmetry is applied.
+     *
+     * @param row    is the row of the position to transform;
+     * @param column is the column of the position to transform;
+     * @return the index of the transformed position.
+     */
+    private int calculateIndex(int row, int column) {
+        int last = Board.SIZE - 1;
+        switch (this) {
+            case ROTATE_90:
+                return column * Board.SIZE + (last - row);
+            case ROTATE_180:
+                return (last - row) * Board.SIZE + (last - column);
+            case ROTATE_270:
+                return (last - column) * Board.SIZE + row;
+            case FLIP_ROWS:
+                return (last - row) * Board.SIZE + column;
+            case FLIP_COLUMNS:
+                return row * Board.SIZE + (last - column);
+            case TRANSPOSE:
+                return column * Board.SIZE + row;
+            case ANTI_TRANSPOSE:
+                return (last - column) * Board.SIZE + (last - row);
+            default:
+                return row * Board.SIZE + column;
+        }
+    }
+
+    /**
+     * Gets the index (row * SIZE + column) of a position after this symmetry is applied.
+     *
+     * @param row    is the row of the position to transform;
+     * @param column is the column of the position to transform;
+     * @return the index of the transformed position.
+     */
+    public int index(int row, int column) {
+        return mappedIndex[row * Board.SIZE + column];
+    }
+
+    /**
+     * Gets the row of a position after this symmetry is applied.
+     *
+     * @param row    is the row of the position to transform;
+     * @param column is the column of the position to transform;
+     * @return the row of the transformed position.
+     */
+    public int row(int row, int column) {
+        return index(row, column) / Board.SIZE;
+    }
+
+    /**
+     * Gets the column of a position after this symmetry is applied.
+     *
+     * @param row    is the row of the position to transform;
+     * @param column is the column of the position to transform;
+     * @return the column of the transformed position.
+     */
+    public int column(int row, int column) {
+        return index(row, column) % Board.SIZE;
+    }
+
+    /**
+     * Gets the symmetry that undoes this symmetry (needed to transform a move in the canonical orientation back to the
+     * orientation of the actual board).
+     *
+     * @return the inverse symmetry.
+     */
+    public Symmetry inverse() {
+        return inverse;
+    }
+}
@@ -0,0 +1,48 @@
+package com.nedap.go.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Represents the Zobrist keys that are used to create a 64-bit hash of a state of the board. Each combination of a
+ * position and a stone (BLACK or WHITE) has its own random key, and the hash of a board is the XOR of the keys of all
+ * stones on that board. The keys are created with a fixed seed, so the hash of a board is the same in every JVM (which
+ * is needed to be able to store hashes in files, such as the opening book).
+ */
+public final class Zobrist {
+    private static final long SEED = 0x474F5A4F42524953L; // fixed seed, so the keys never change between runs
+    private static final long[] BLACK_KEYS = new long[Board.SIZE * Board.SIZE];
+    private static final long[] WHITE_KEYS = new long[Board.SIZE * Board.SIZE];
+    public static final long WHITE_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int index = 0; index < Board.SIZE * Board.SIZE; index++) {
+            BLACK_KEYS[index] = random.nextLong();
+            WHITE_KEYS[index] = random.nextLong();
+        }
+        WHITE_TO_MOVE = random.nextLong();
+    }
+
+    /**
+     * Creates the Zobrist keys. Not used, as all keys are static.
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * Gets the key of a stone on a specific position.
+     *
+     * @param row    is the row of interest;
+     * @param column is the column of interest;
+     * @param stone  is the stone that is placed on this position (BLACK or WHITE);
+     * @return the key of this stone on this position; 0 if the stone is EMPTY.
+     */
+    public static long key(int row, int column, Stone stone) {
+        if (stone == Stone.BLACK) {
+            return BLACK_KEYS[row * Board.SIZE + column];
+        } else if (stone == Stone.WHITE) {
+            return WHITE_KEYS[row * Board.SIZE + column];
+        }
+        return 0L;
+    }
+}
@@ -0,0 +1,262 @@
+package com.nedap.go.journal;
+
+import com.nedap.go.game.Board;
+import com.nedap.go.game.Game;
+import com.nedap.go.game.Player;
+import com.nedap.go.game.Stone;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents the state of one running game at a moment in its journal: the usernames and session tokens of the
+ * players, the stones of the board, whose turn it is, the pass count and the hashes of the former states of the board
+ * (for the ko rule). A
+ * snapshot is immutable, so the thread that writes the snapshot file can read it while the game goes on. It is taken
+ * after the journal record with the given sequence number, so only the later records of the game need to be replayed.
+ */
+public final class GameSnapshot {
+    private static final Stone[] STONES = Stone.values();
+    private final int gameId;
+    private final long sequence;
+    private final String black;
+    private final String white;
+    private final String blackToken; // null if the player has no session
+    private final String whiteToken;
+    private final byte[] stones;
+    private final Stone stoneToMove;
+    private final int passCount;
+    private final long[] previousBoards;
+    private final int previousBoardCount;
+
+    /**
+     * Creates a snapshot of a game.
+     *
+     * @param gameId             is the id of the game;
+     * @param sequence           is the sequence number of the last journal record of the game that is included;
+     * @param black              is the username of the player with black;
+     * @param white              is the username of the player with white;
+     * @param blackToken         is the session token of the player with black; null if the player has no session;
+     * @param whiteToken         is the session token of the player with white; null if the player has no session;
+     * @param stones             are the stones of the board (see Board.toBytes()); not changed afterwards;
+     * @param stoneToMove        is the stone of the player whose turn it is;
+     * @param passCount          is the number of consecutive passes;
+     * @param previousBoards     are the hashes of the former states of the board; the first previousBoardCount hashes
+     *                           are not changed afterwards (more hashes may be added to the array behind them);
+     * @param previousBoardCount is the number of hashes in previousBoards that belong to this snapshot.
+     */
+    public GameSnapshot(int gameId, long sequence, String black, String white, String blackToken, String whiteToken,
+                        byte[] stones, Stone stoneToMove, int passCount, long[] previousBoards, int previousBoardCount) {
+        this.gameId = gameId;
+        this.sequence = sequence;
+        this.black = black;
+        this.white = white;
+        this.blackToken = blackToken;
+        this.whiteToken = whiteToken;
+        this.stones = stones;
+        this.stoneToMove = stoneToMove;
+        this.passCount = passCount;
+        this.previousBoards = previousBoards;
+        this.previousBoardCount = previousBoardCount;
+    }
+
+    /**
+     * Takes a snapshot of a game.
+     *
+     * @param gameId             is the id of the game;
+     * @param sequence           is the sequence number of the last journal record of the game that is included;
+     * @param game               is the game;
+     * @param blackToken         is the session token of the player with black; null if the player has no session;
+     * @param whiteToken         is the session token of the player with white; null if the player has no session;
+     * @param previousBoards     are the hashes of the former states of the board (see GameSnapshot());
+     * @param previousBoardCount is the number of hashes in previousBoards that belong to this snapshot;
+     * @return the snapshot.
+     */
+    public static GameSnapshot of(int gameId, long sequence, Game game, String blackToken, String whiteToken,
+                                  long[] previousBoards, int previousBoardCount) {
+        return new GameSnapshot(gameId, sequence, game.getPlayerBlack().getUsername(),
+                game.getPlayerWhite().getUsername(), blackToken, whiteToken, game.getBoard().toBytes(),
+                game.getStone(game.getCurrentPlayer()), game.getPassCount(), previousBoards, previousBoardCount);
+    }
+
+    /**
+     * Takes a snapshot of a game, with all its former states of the board.
+     *
+     * @param gameId     is the id of the game;
+     * @param sequence   is the sequence number of the last journal record of the game that is included;
+     * @param game       is the game;
+     * @param blackToken is the session token of the player with black; null if the player has no session;
+     * @param whiteToken is the session token of the player with white; null if the player has no session;
+     * @return the snapshot.
+     */
+    public static GameSnapshot of(int gameId, long sequence, Game game, String blackToken, String whiteToken) {
+        long[] previousBoards = game.getPreviousBoards();
+        return of(gameId, sequence, game, blackToken, whiteToken, previousBoards, previousBoards.length);
+    }
+
+    /**
+     * Takes a snapshot of a game, with all its former states of the board.
+     *
+     * @param gameId   is the id of the game;
+     * @param sequence is the sequence number of the last journal record of the game that is included;
+     * @param game     is the game;
+     * @return the snapshot.
+     */
+    public static GameSnapshot of(int gameId, long sequence, Game game) {
+        return of(gameId, sequence, game, null, null);
+    }
+
+    /**
+     * Creates the game of this snapshot again (without GUI).
+     *
+     * @return a new game in the state of this snapshot.
+     */
+    public Game restore() {
+        Game game = new Game(new Player(black, Stone.BLACK), new Player(white, Stone.WHITE), new Board(), null);
+        game.restore(stones, stoneToMove, passCount, previousBoards, previousBoardCount);
+        return game;
+    }
+
+    /**
+     * Gets the id of the game.
+     *
+     * @return the id of the game.
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Gets the sequence number of the last journal record of the game that is included in this snapshot.
+     *
+     * @return the sequence number.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the username of the player with black.
+     *
+     * @return the username.
+     */
+    public String getBlack() {
+        return black;
+    }
+
+    /**
+     * Gets the username of the player with white.
+     *
+     * @return the username.
+     */
+    public String getWhite() {
+        return white;
+    }
+
+    /**
+     * Gets the session token of the player with black, with which the player can resume the game after a restart.
+     *
+     * @return the token; null if the player had no session.
+     */
+    public String getBlackToken() {
+        return blackToken;
+    }
+
+    /**
+     * Gets the session token of the player with white, with which the player can resume the game after a restart.
+     *
+     * @return the token; null if the player had no session.
+     */
+    public String getWhiteToken() {
+        return whiteToken;
+    }
+
+    // Methods needed to write and read snapshots (see SnapshotFile):
+
+    /**
+     * Gets the number of bytes this snapshot takes in the snapshot file.
+     *
+     * @return the encoded length of this snapshot.
+     */
+    int encodedLength() {
+        return 4 + 8 + 2 + black.getBytes(StandardCharsets.UTF_8).length + 2
+                + white.getBytes(StandardCharsets.UTF_8).length + 2 + tokenLength(blackToken) + 2
+                + tokenLength(whiteToken) + 1 + 1 + stones.length + 4 + 8 * previousBoardCount;
+    }
+
+    /**
+     * Writes this snapshot at the position of the buffer.
+     *
+     * @param buffer is the buffer to write to; it must have room for the snapshot (see encodedLength()).
+     */
+    void encode(ByteBuffer buffer) {
+        buffer.putInt(gameId).putLong(sequence);
+        putString(buffer, black);
+        putString(buffer, white);
+        putString(buffer, blackToken == null ? "" : blackToken);
+        putString(buffer, whiteToken == null ? "" : whiteToken);
+        buffer.put((byte) stoneToMove.ordinal()).put((byte) passCount).put(stones).putInt(previousBoardCount);
+        for (int i = 0; i < previousBoardCount; i++) {
+            buffer.putLong(previousBoards[i]);
+        }
+    }
+
+    /**
+     * Reads a snapshot that is written by encode(), and moves the position of the buffer behind it.
+     *
+     * @param buffer is the buffer to read from;
+     * @return the snapshot.
+     */
+    static GameSnapshot decode(ByteBuffer buffer) {
+        int gameId = buffer.getInt();
+        long sequence = buffer.getLong();
+        String black = getString(buffer);
+        String white = getString(buffer);
+        String blackToken = getString(buffer);
+        String whiteToken = getString(buffer);
+        Stone stoneToMove = STONES[buffer.get()];
+        int passCount = buffer.get();
+        byte[] stones = new byte[Board.SIZE * Board.SIZE];
+        buffer.get(stones);
+        long[] previousBoards = new long[buffer.getInt()];
+        for (int i = 0; i < previousBoards.length; i++) {
+            previousBoards[i] = buffer.getLong();
+        }
+        return new GameSnapshot(gameId, sequence, black, white, blackToken.isEmpty() ? null : blackToken,
+                whiteToken.isEmpty() ? null : whiteToken, stones, stoneToMove, passCount, previousBoards,
+                previousBoards.length);
+    }
+
+    /**
+     * Gets the number of bytes of a session token; a missing token is written as an empty string.
+     *
+     * @param token is the token; null if the player has no session;
+     * @return the length of the token in UTF-8 bytes.
+     */
+    private static int tokenLength(String token) {
+        return token == null ? 0 : token.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Writes a string as its length in bytes (2 bytes) followed by its UTF-8 bytes.
+     *
+     * @param buffer is the buffer to write to;
+     * @param value  is the string.
+     */
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * Reads a string that is written by putString().
+     *
+     * @param buffer is the buffer to read from;
+     * @return the string.
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
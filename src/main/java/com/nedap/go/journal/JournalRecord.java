@@ -0,0 +1,336 @@
+package com.nedap.go.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Represents one record of the move journal: the start of a game, a move, a pass or the end of a game. On disk, a
+ * record is framed as its length (4 bytes), the CRC32C checksum of its body (4 bytes) and the body itself: the type (1
+ * byte), the id of the game (4 bytes) and the fields of the type. A record that is torn by a crash (or corrupted
+ * otherwise) does not match its checksum, so it is never replayed.
+ */
+public final class JournalRecord {
+    /**
+     * The types of records in the journal.
+     */
+    public enum Type {
+        START, // a game has started; with the usernames and the session tokens of the players with black and white
+        MOVE, // a stone is placed; with its row and column
+        PASS, // the player whose turn it is has passed
+        END // the game has ended (or is cancelled), so it is not recovered anymore
+    }
+
+    static final int HEADER_LENGTH = 8; // length and checksum
+    // a longer length can only be the result of a corrupted record (type, game id and four strings of at most 64 KiB):
+    static final int MAX_BODY_LENGTH = 5 + 4 * (2 + 0xFFFF);
+    private static final Type[] TYPES = Type.values();
+    private final Type type;
+    private final int gameId;
+    private final int row;
+    private final int column;
+    private final String black;
+    private final String white;
+    private final String blackToken;
+    private final String whiteToken;
+
+    /**
+     * Creates a record.
+     *
+     * @param type   is the type of the record;
+     * @param gameId is the id of the game of the record;
+     * @param row    is the row of a MOVE, otherwise -1;
+     * @param column is the column of a MOVE, otherwise -1;
+     * @param black      is the username of the player with black of a START, otherwise null;
+     * @param white      is the username of the player with white of a START, otherwise null;
+     * @param blackToken is the session token of the player with black of a START, otherwise null;
+     * @param whiteToken is the session token of the player with white of a START, otherwise null.
+     */
+    private JournalRecord(Type type, int gameId, int row, int column, String black, String white, String blackToken,
+                          String whiteToken) {
+        this.type = type;
+        this.gameId = gameId;
+        this.row = row;
+        this.column = column;
+        this.black = black;
+        this.white = white;
+        this.blackToken = blackToken;
+        this.whiteToken = whiteToken;
+    }
+
+    /**
+     * Creates the record of the start of a game.
+     *
+     * @param gameId is the id of the game;
+     * @param black  is the username of the player with black;
+     * @param white  is the username of the player with white;
+     * @return the record.
+     */
+    public static JournalRecord start(int gameId, String black, String white) {
+        return start(gameId, black, white, null, null);
+    }
+
+    /**
+     * Creates the record of the start of a game, with the session tokens of the players, so they can resume the game
+     * after a restart of the server (see Sessions).
+     *
+     * @param gameId     is the id of the game;
+     * @param black      is the username of the player with black;
+     * @param white      is the username of the player with white;
+     * @param blackToken is the session token of the player with black; null if the player has no session;
+     * @param whiteToken is the session token of the player with white; null if the player has no session;
+     * @return the record.
+     */
+    public static JournalRecord start(int gameId, String black, String white, String blackToken, String whiteToken) {
+        return new JournalRecord(Type.START, gameId, -1, -1, black, white, blackToken, whiteToken);
+    }
+
+    /**
+     * Creates the record of a move that is accepted.
+     *
+     * @param gameId is the id of the game;
+     * @param row    is the row of the stone;
+     * @param column is the column of the stone;
+     * @return the record.
+     */
+    public static JournalRecord move(int gameId, int row, int column) {
+        return new JournalRecord(Type.MOVE, gameId, row, column, null, null, null, null);
+    }
+
+    /**
+     * Creates the record of a pass.
+     *
+     * @param gameId is the id of the game;
+     * @return the record.
+     */
+    public static JournalRecord pass(int gameId) {
+        return new JournalRecord(Type.PASS, gameId, -1, -1, null, null, null, null);
+    }
+
+    /**
+     * Creates the record of the end of a game.
+     *
+     * @param gameId is the id of the game;
+     * @return the record.
+     */
+    public static JournalRecord end(int gameId) {
+        return new JournalRecord(Type.END, gameId, -1, -1, null, null, null, null);
+    }
+
+    /**
+     * Gets the type of this record.
+     *
+     * @return the type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the id of the game of this record.
+     *
+     * @return the id of the game.
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Gets the row of the stone of a MOVE.
+     *
+     * @return the row; -1 for other types.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Gets the column of the stone of a MOVE.
+     *
+     * @return the column; -1 for other types.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Gets the username of the player with black of a START.
+     *
+     * @return the username; null for other types.
+     */
+    public String getBlack() {
+        return black;
+    }
+
+    /**
+     * Gets the username of the player with white of a START.
+     *
+     * @return the username; null for other types.
+     */
+    public String getWhite() {
+        return white;
+    }
+
+    /**
+     * Gets the session token of the player with black of a START.
+     *
+     * @return the token; null for other types, or if the player had no session.
+     */
+    public String getBlackToken() {
+        return blackToken;
+    }
+
+    /**
+     * Gets the session token of the player with white of a START.
+     *
+     * @return the token; null for other types, or if the player had no session.
+     */
+    public String getWhiteToken() {
+        return whiteToken;
+    }
+
+    // Methods needed to write and read records:
+
+    /**
+     * Writes this record, with its length and checksum, at the position of the buffer.
+     *
+     * @param buffer is the buffer to write to; it must have room for the record (see encodedLength()).
+     */
+    void encode(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.position(start + HEADER_LENGTH);
+        buffer.put((byte) type.ordinal()).putInt(gameId);
+        switch (type) {
+            case START -> {
+                putString(buffer, black);
+                putString(buffer, white);
+                putString(buffer, blackToken == null ? "" : blackToken);
+                putString(buffer, whiteToken == null ? "" : whiteToken);
+            }
+            case MOVE -> buffer.put((byte) row).put((byte) column);
+            default -> {
+            }
+        }
+        int end = buffer.position();
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.slice(start + HEADER_LENGTH, end - start - HEADER_LENGTH));
+        buffer.putInt(start, end - start - HEADER_LENGTH).putInt(start + 4, (int) checksum.getValue());
+    }
+
+    /**
+     * Gets the number of bytes this record takes in the journal, including its length and checksum.
+     *
+     * @return the encoded length of this record.
+     */
+    int encodedLength() {
+        int length = HEADER_LENGTH + 5;
+        if (type == Type.START) {
+            length += 8 + black.getBytes(StandardCharsets.UTF_8).length + white.getBytes(StandardCharsets.UTF_8).length
+                    + (blackToken == null ? 0 : blackToken.getBytes(StandardCharsets.UTF_8).length)
+                    + (whiteToken == null ? 0 : whiteToken.getBytes(StandardCharsets.UTF_8).length);
+        } else if (type == Type.MOVE) {
+            length += 2;
+        }
+        return length;
+    }
+
+    /**
+     * Reads the record at the position of the buffer, and moves the position to the next record. If the buffer does
+     * not contain a complete record with a matching checksum, null is returned and the position does not change.
+     *
+     * @param buffer is the buffer with the bytes of the journal;
+     * @return the record; null if no complete and valid record starts at the position.
+     */
+    static JournalRecord decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_LENGTH) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length < 5 || length > MAX_BODY_LENGTH || length > buffer.remaining() - HEADER_LENGTH) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice(start + HEADER_LENGTH, length);
+        CRC32C checksum = new CRC32C();
+        checksum.update(body.duplicate());
+        if ((int) checksum.getValue() != buffer.getInt(start + 4)) {
+            return null;
+        }
+        int typeIndex = body.get();
+        if (typeIndex < 0 || typeIndex >= TYPES.length) {
+            return null;
+        }
+        int gameId = body.getInt();
+        JournalRecord record;
+        try {
+            record = switch (TYPES[typeIndex]) {
+                case START -> decodeStart(gameId, body);
+                case MOVE -> move(gameId, body.get(), body.get());
+                case PASS -> pass(gameId);
+                case END -> end(gameId);
+            };
+        } catch (RuntimeException e) {
+            return null; // the checksum matches, but the body does not fit its type
+        }
+        buffer.position(start + HEADER_LENGTH + length);
+        return record;
+    }
+
+    /**
+     * Reads the fields of a START record. A START without session tokens (as written before the tokens were added to
+     * the journal) gets null tokens.
+     *
+     * @param gameId is the id of the game;
+     * @param body   is the body of the record, positioned at the usernames;
+     * @return the record.
+     */
+    private static JournalRecord decodeStart(int gameId, ByteBuffer body) {
+        String black = getString(body);
+        String white = getString(body);
+        if (!body.hasRemaining()) {
+            return start(gameId, black, white);
+        }
+        String blackToken = getString(body);
+        String whiteToken = getString(body);
+        return start(gameId, black, white, blackToken.isEmpty() ? null : blackToken,
+                whiteToken.isEmpty() ? null : whiteToken);
+    }
+
+    /**
+     * Writes a string as its length in bytes (2 bytes) followed by its UTF-8 bytes.
+     *
+     * @param buffer is the buffer to write to;
+     * @param value  is the string.
+     */
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * Reads a string that is written by putString().
+     *
+     * @param buffer is the buffer to read from;
+     * @return the string.
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a string representation of this record, for logging.
+     *
+     * @return the type, game id and fields of this record.
+     */
+    @Override
+    public String toString() {
+        return switch (type) {
+            // the session tokens are secret, so they are not logged:
+            case START -> type + " " + gameId + " " + black + " " + white;
+            case MOVE -> type + " " + gameId + " " + row + " " + column;
+            default -> type + " " + gameId;
+        };
+    }
+}
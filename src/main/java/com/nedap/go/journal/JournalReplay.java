@@ -0,0 +1,306 @@
+package com.nedap.go.journal;
+
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Represents the replay of the move journal (see MoveJournal): the records of all segments are read in order, and the
+ * records of the games that have not ended are collected, so the server can rebuild these games. Games of which a
+ * snapshot is taken (see SnapshotFile) start from their snapshot, and only the records after their snapshot are
+ * collected. Reading stops at the first record that is incomplete or does not match its checksum (normally the record
+ * that was being written when the server crashed), so the games are always recovered to a state that they have really
+ * been in.
+ */
+public final class JournalReplay {
+    private static final Logger LOG = Logging.getLogger("server.journal");
+    private final List<Path> segments; // the segments that are read, completely or up to an invalid record
+    private final List<Long> firstSequences; // the sequence number of the first record of each segment that is read
+    private final List<Path> unreadSegments; // the segments after an invalid record
+    private final Map<Integer, List<JournalRecord>> liveGames;
+    private final Map<Integer, GameSnapshot> snapshots;
+    private final Map<Integer, Long> neededFrom;
+    private long snapshotNeeded;
+    private int lastSegmentIndex;
+    private long validLength; // the number of valid bytes of the last segment that is read
+    private long nextSequence;
+    private int lastGameId;
+    private boolean complete;
+
+    /**
+     * Creates a replay that starts from the snapshots of the games.
+     *
+     * @param snapshots are the snapshots of the games, which are running unless the journal ends them.
+     */
+    private JournalReplay(Collection<GameSnapshot> snapshots) {
+        this.segments = new ArrayList<>();
+        this.firstSequences = new ArrayList<>();
+        this.unreadSegments = new ArrayList<>();
+        this.liveGames = new LinkedHashMap<>();
+        this.snapshots = new HashMap<>();
+        this.neededFrom = new HashMap<>();
+        this.snapshotNeeded = Long.MAX_VALUE;
+        this.complete = true;
+        for (GameSnapshot snapshot : snapshots) {
+            this.snapshots.put(snapshot.getGameId(), snapshot);
+            this.liveGames.put(snapshot.getGameId(), new ArrayList<>());
+            this.neededFrom.put(snapshot.getGameId(), snapshot.getSequence() + 1);
+            this.snapshotNeeded = Math.min(snapshotNeeded, snapshot.getSequence() + 1);
+            this.lastGameId = Math.max(lastGameId, snapshot.getGameId());
+            this.nextSequence = Math.max(nextSequence, snapshot.getSequence() + 1);
+        }
+    }
+
+    /**
+     * Reads all segments of the journal in a directory. A directory that does not exist is an empty journal.
+     *
+     * @param directory is the directory of the journal;
+     * @return the replay of the journal.
+     * @throws IOException if the directory or a segment can not be read.
+     */
+    public static JournalReplay read(Path directory) throws IOException {
+        return read(directory, List.of());
+    }
+
+    /**
+     * Reads all segments of the journal in a directory, starting from the snapshots of the games.
+     *
+     * @param directory is the directory of the journal;
+     * @param snapshots are the snapshots of the games (see SnapshotFile.read());
+     * @return the replay of the journal.
+     * @throws IOException if the directory or a segment can not be read.
+     */
+    public static JournalReplay read(Path directory, Collection<GameSnapshot> snapshots) throws IOException {
+        JournalReplay replay = new JournalReplay(snapshots);
+        if (!Files.isDirectory(directory)) {
+            return replay;
+        }
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            // the index in the file names has a fixed width, so sorting by name sorts by index:
+            paths = files.filter(path -> isSegment(path.getFileName().toString())).sorted().toList();
+        }
+        long snapshotEnd = replay.nextSequence;
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            replay.lastSegmentIndex = Integer.parseInt(name.substring(MoveJournal.SEGMENT_PREFIX.length(),
+                    name.length() - MoveJournal.SEGMENT_SUFFIX.length()));
+            if (replay.complete) {
+                replay.readSegment(path);
+            } else {
+                replay.unreadSegments.add(path);
+            }
+        }
+        // records that were appended before the snapshot may be lost; the next records must come after the snapshot:
+        replay.nextSequence = Math.max(replay.nextSequence, snapshotEnd);
+        return replay;
+    }
+
+    /**
+     * Checks whether a file name is the name of a segment (see MoveJournal.segmentName()).
+     *
+     * @param name is the file name;
+     * @return true if the file is a segment of the journal, false if not.
+     */
+    private static boolean isSegment(String name) {
+        return name.startsWith(MoveJournal.SEGMENT_PREFIX) && name.endsWith(MoveJournal.SEGMENT_SUFFIX)
+                && name.length() == MoveJournal.segmentName(0).length();
+    }
+
+    /**
+     * Reads the records of one segment. If the segment contains a record that is not valid, the rest of the journal is
+     * not read anymore.
+     *
+     * @param path is the path of the segment.
+     * @throws IOException if the segment can not be read.
+     */
+    private void readSegment(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < MoveJournal.SEGMENT_HEADER_LENGTH || buffer.getInt() != MoveJournal.SEGMENT_MAGIC) {
+            // a segment without header was created just before a crash, so it does not contain any records:
+            LOG.warn("Journal segment " + path.getFileName() + " has no valid header; the rest of the journal is "
+                    + "skipped.");
+            complete = false;
+            unreadSegments.add(path);
+            return;
+        }
+        segments.add(path);
+        nextSequence = buffer.getLong();
+        firstSequences.add(nextSequence);
+        lastGameId = Math.max(lastGameId, buffer.getInt());
+        while (buffer.hasRemaining()) {
+            JournalRecord record = JournalRecord.decode(buffer);
+            if (record == null) {
+                LOG.warn("Journal segment " + path.getFileName() + " has an incomplete or corrupted record at byte "
+                        + buffer.position() + "; the rest of the journal is skipped.");
+                complete = false;
+                break;
+            }
+            apply(record);
+            nextSequence++;
+        }
+        validLength = buffer.position();
+    }
+
+    /**
+     * Adds a record to the records of its game. A game starts with its START record (or its snapshot) and is forgotten
+     * at its END record; records that are included in the snapshot of their game, and the other records of a game that
+     * is not known (as its START has been deleted), are ignored.
+     *
+     * @param record is the record that is read, with sequence number nextSequence.
+     */
+    private void apply(JournalRecord record) {
+        int gameId = record.getGameId();
+        GameSnapshot snapshot = snapshots.get(gameId);
+        if (snapshot != null && nextSequence <= snapshot.getSequence()) {
+            return;
+        }
+        switch (record.getType()) {
+            case START -> {
+                List<JournalRecord> records = new ArrayList<>();
+                records.add(record);
+                liveGames.put(gameId, records);
+                neededFrom.put(gameId, nextSequence);
+                lastGameId = Math.max(lastGameId, gameId);
+            }
+            case END -> {
+                liveGames.remove(gameId);
+                snapshots.remove(gameId);
+                neededFrom.remove(gameId);
+            }
+            default -> {
+                List<JournalRecord> records = liveGames.get(gameId);
+                if (records != null) {
+                    records.add(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the records of the games that have not ended. The games with a snapshot come first.
+     *
+     * @return the records per game id: for a game with a snapshot, the records after its snapshot; for other games,
+     * all records, starting with the START record of the game.
+     */
+    public Map<Integer, List<JournalRecord>> getLiveGames() {
+        return liveGames;
+    }
+
+    /**
+     * Gets the snapshot of a game that has not ended.
+     *
+     * @param gameId is the id of the game;
+     * @return the snapshot of the game; null if the game has no snapshot.
+     */
+    public GameSnapshot getSnapshot(int gameId) {
+        return snapshots.get(gameId);
+    }
+
+    /**
+     * Gets the sequence number of the oldest record that is needed to recover each game that has not ended.
+     *
+     * @return the sequence number of the START record of a game, or of the first record after its snapshot.
+     */
+    Map<Integer, Long> getNeededFrom() {
+        return neededFrom;
+    }
+
+    /**
+     * Gets the sequence number of the oldest record that is needed to recover the games of the snapshot that is read,
+     * including the games that have ended after the snapshot (whose END record must be kept).
+     *
+     * @return the sequence number; Long.MAX_VALUE if there is no snapshot.
+     */
+    long getSnapshotNeeded() {
+        return snapshotNeeded;
+    }
+
+    /**
+     * Gets the highest game id in the journal, including games that have ended, so new games get a new id.
+     *
+     * @return the highest game id; 0 if the journal is empty.
+     */
+    public int getLastGameId() {
+        return lastGameId;
+    }
+
+    /**
+     * Gets the sequence number after the last record that is read.
+     *
+     * @return the sequence number of the next record.
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Gets the paths of the segments of the journal that are read (the last one possibly up to an invalid record).
+     *
+     * @return the paths of the segments, in order.
+     */
+    public List<Path> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Gets the sequence numbers of the first records of the segments that are read.
+     *
+     * @return the sequence numbers, in the order of getSegments().
+     */
+    List<Long> getFirstSequences() {
+        return firstSequences;
+    }
+
+    /**
+     * Gets the number of valid bytes of the last segment that is read; the bytes after them are not valid.
+     *
+     * @return the length of the valid part of the last segment.
+     */
+    long getValidLength() {
+        return validLength;
+    }
+
+    /**
+     * Gets the paths of the segments that are not read, as they come after an invalid record.
+     *
+     * @return the paths of the segments, in order.
+     */
+    List<Path> getUnreadSegments() {
+        return unreadSegments;
+    }
+
+    /**
+     * Gets the index of the last segment of the journal.
+     *
+     * @return the index of the last segment; 0 if the journal is empty.
+     */
+    public int getLastSegmentIndex() {
+        return lastSegmentIndex;
+    }
+
+    /**
+     * Checks whether all records of the journal are read.
+     *
+     * @return true if all records are valid, false if reading stopped at a record that is not valid.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,448 @@
+package com.nedap.go.journal;
+
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents the append-only journal of all running games of the server (see JournalRecord), so the games can be
+ * recovered after a restart (see JournalReplay). Game threads only encode their records into the pending buffer; one
+ * writer thread swaps the buffers and writes all records that were appended in the meantime at once, followed by at
+ * most one fsync (group commit), so the game threads never wait for the disk. Depending on the Fsync policy, the
+ * records may get lost if the machine (not only the server) crashes before they are forced to disk.
+ * <p>
+ * The journal is split into segment files of about segmentSize bytes. Every segment starts with a header with the
+ * sequence number of its first record and the highest game id so far. A segment is deleted as soon as its records are
+ * not needed anymore to recover the running games: all games that have records in it have ended, or a snapshot of
+ * these games is written after these records (see SnapshotFile), so a restart only reads the records after the last
+ * snapshot.
+ */
+public final class MoveJournal implements AutoCloseable {
+    private static final Logger LOG = Logging.getLogger("server.journal");
+    public static final String PROPERTY = "go.journal"; // system property with the directory of the journal
+    public static final String FSYNC_PROPERTY = "go.journal.fsync"; // ALWAYS, INTERVAL (default) or NEVER
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final int SEGMENT_MAGIC = 0x474F4A31; // "GOJ1"
+    static final int SEGMENT_HEADER_LENGTH = 16; // magic, sequence of the first record and highest game id so far
+    private static final long FSYNC_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private final Path directory;
+    private final Fsync fsync;
+    private final long segmentSize;
+    private final ReentrantLock lock;
+    private final Condition recordsWaiting;
+    private final Condition recordsWritten;
+    // sequence of the oldest record that is needed of every running game: its START, or the first after its snapshot:
+    private final Map<Integer, Long> neededFrom;
+    private long snapshotNeeded; // sequence of the oldest record that is needed by the games of the newest snapshot
+    private boolean snapshotWritten;
+    private ByteBuffer pending;
+    private ByteBuffer writing;
+    private long appended; // sequence number of the next record that is appended
+    private long written; // all records before this sequence number are written (and forced, if fsync is ALWAYS)
+    private int lastGameId;
+    private boolean closed;
+    // only used by the writer thread (and the constructor, before the writer thread is started):
+    private final Deque<Segment> segments;
+    private int segmentIndex;
+    private FileChannel channel;
+    private long segmentLength;
+    private final Thread writerThread;
+
+    /**
+     * The moments at which the records are forced to disk.
+     */
+    public enum Fsync {
+        ALWAYS, // after every group commit: records are only reported as written when they are on disk
+        INTERVAL, // at most FSYNC_INTERVAL after a record is written: a crash of the machine loses at most that period
+        NEVER // left to the operating system: only a crash of the server itself loses nothing
+    }
+
+    /**
+     * Represents one segment file of the journal.
+     */
+    private static final class Segment {
+        private final Path path;
+        private final long firstSequence;
+
+        private Segment(Path path, long firstSequence) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+        }
+    }
+
+    /**
+     * Opens the journal in a directory, after it has been replayed: the records after the last valid record of the
+     * replay are cut off (or set aside, if they are in later segments), so they are never read again, and the journal
+     * continues in a new segment. The old segments are kept as long as their records are needed to recover the games
+     * of the replay. Then the writer thread is started.
+     *
+     * @param directory   is the directory of the journal; it is created if it does not exist;
+     * @param fsync       is the moment at which records are forced to disk;
+     * @param segmentSize is the size in bytes after which a new segment is started;
+     * @param replay      is the replay of the journal in this directory (see JournalReplay.read());
+     * @throws IOException if the directory or the new segment can not be created.
+     */
+    public MoveJournal(Path directory, Fsync fsync, long segmentSize, JournalReplay replay) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.segmentSize = segmentSize;
+        this.lock = new ReentrantLock();
+        this.recordsWaiting = lock.newCondition();
+        this.recordsWritten = lock.newCondition();
+        this.neededFrom = new HashMap<>(replay.getNeededFrom());
+        this.snapshotNeeded = replay.getSnapshotNeeded();
+        this.pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.segments = new ArrayDeque<>();
+        this.appended = replay.getNextSequence();
+        this.written = appended;
+        this.lastGameId = replay.getLastGameId();
+        Files.createDirectories(directory);
+        List<Path> oldSegments = replay.getSegments();
+        for (int i = 0; i < oldSegments.size(); i++) {
+            segments.addLast(new Segment(oldSegments.get(i), replay.getFirstSequences().get(i)));
+        }
+        if (!replay.isComplete() && !oldSegments.isEmpty()) {
+            try (FileChannel lastSegment = FileChannel.open(oldSegments.get(oldSegments.size() - 1),
+                    StandardOpenOption.WRITE)) {
+                lastSegment.truncate(replay.getValidLength());
+            }
+        }
+        for (Path unreadSegment : replay.getUnreadSegments()) {
+            Files.move(unreadSegment, unreadSegment.resolveSibling(unreadSegment.getFileName() + ".invalid"));
+        }
+        openSegment(replay.getLastSegmentIndex() + 1, appended, lastGameId);
+        this.writerThread = Thread.ofPlatform().name("journal-writer").daemon().unstarted(this::writeRecords);
+        this.writerThread.start();
+    }
+
+    /**
+     * Gets the fsync policy from the system property go.journal.fsync. A value that is not a policy is logged, and
+     * the default policy is used instead.
+     *
+     * @return the fsync policy; INTERVAL if the property is not set (or not valid).
+     */
+    public static Fsync fsyncFromProperty() {
+        String policy = System.getProperty(FSYNC_PROPERTY, Fsync.INTERVAL.name());
+        try {
+            return Fsync.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn(policy + " is not a valid value of " + FSYNC_PROPERTY + "; use one of "
+                    + Arrays.toString(Fsync.values()) + ". The journal uses " + Fsync.INTERVAL + ".");
+            return Fsync.INTERVAL;
+        }
+    }
+
+    /**
+     * Gets the file name of a segment.
+     *
+     * @param index is the index of the segment;
+     * @return the file name.
+     */
+    static String segmentName(int index) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    // Methods needed to append records:
+
+    /**
+     * Appends a record to the journal. Never waits for the disk: the record is written by the writer thread, together
+     * with all other records that are appended in the meantime. Records of the same game must be appended by one
+     * thread at a time (which the game scheduler guarantees), so they are written in the order of the game.
+     *
+     * @param record is the record to append;
+     * @return the sequence number of the record; -1 if the journal is closed.
+     */
+    public long append(JournalRecord record) {
+        lock.lock();
+        try {
+            if (closed) {
+                return -1;
+            }
+            int length = record.encodedLength();
+            if (pending.remaining() < length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + length));
+                pending.flip();
+                pending = larger.put(pending);
+            }
+            record.encode(pending);
+            if (record.getType() == JournalRecord.Type.START) {
+                neededFrom.put(record.getGameId(), appended);
+                lastGameId = Math.max(lastGameId, record.getGameId());
+            } else if (record.getType() == JournalRecord.Type.END) {
+                neededFrom.remove(record.getGameId());
+            }
+            recordsWaiting.signal();
+            return appended++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reports that a snapshot of games is written to disk (see SnapshotFile), so the records of these games up to
+     * their snapshot are not needed anymore. The segments that are not needed anymore are deleted by the writer
+     * thread.
+     *
+     * @param games are the snapshots of the games that are written; all games of the newest snapshot.
+     */
+    public void snapshotWritten(Collection<GameSnapshot> games) {
+        lock.lock();
+        try {
+            long needed = Long.MAX_VALUE;
+            for (GameSnapshot game : games) {
+                needed = Math.min(needed, game.getSequence() + 1);
+                neededFrom.computeIfPresent(game.getGameId(), (id, from) -> Math.max(from, game.getSequence() + 1));
+            }
+            snapshotNeeded = needed;
+            snapshotWritten = true;
+            recordsWaiting.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all records that were appended before are written (and forced to disk if the policy is ALWAYS), or
+     * until the timeout has passed.
+     *
+     * @param timeoutMillis is the maximum time to wait, in milliseconds;
+     * @return true if all records are written, false if the timeout has passed first.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean sync(long timeoutMillis) throws InterruptedException {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            long target = appended;
+            while (written < target) {
+                if (timeout <= 0) {
+                    return false;
+                }
+                timeout = recordsWritten.awaitNanos(timeout);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the sequence number of the next record that is appended.
+     *
+     * @return the number of records that are appended to the journal since it was created.
+     */
+    public long getNextSequence() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the journal: the records that are still waiting are written and forced to disk, and the writer thread
+     * stops. Records that are appended after closing are ignored.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            recordsWaiting.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Methods of the writer thread:
+
+    /**
+     * Writes the appended records until the journal is closed: waits for records, takes all records that are waiting
+     * at once, writes them and forces them to disk according to the fsync policy. Runs on the writer thread.
+     */
+    private void writeRecords() {
+        boolean unforced = false;
+        long lastForce = System.nanoTime();
+        try {
+            while (true) {
+                long batchStart;
+                long batchEnd;
+                int highestGameId;
+                long oldestNeeded;
+                boolean stopping;
+                lock.lock();
+                try {
+                    while (pending.position() == 0 && !closed && !snapshotWritten) {
+                        if (!unforced) {
+                            recordsWaiting.await();
+                        } else {
+                            long wait = lastForce + FSYNC_INTERVAL_NANOS - System.nanoTime();
+                            if (wait <= 0) {
+                                break;
+                            }
+                            recordsWaiting.awaitNanos(wait);
+                        }
+                    }
+                    ByteBuffer swap = writing;
+                    writing = pending;
+                    pending = swap;
+                    batchStart = written;
+                    batchEnd = appended;
+                    highestGameId = lastGameId;
+                    oldestNeeded = oldestNeededSequence();
+                    stopping = closed;
+                    snapshotWritten = false;
+                } finally {
+                    lock.unlock();
+                }
+                if (writing.position() > 0) {
+                    if (segmentLength >= segmentSize) {
+                        rotate(batchStart, highestGameId);
+                    }
+                    write(writing);
+                    unforced = fsync != Fsync.NEVER;
+                }
+                deleteSegments(oldestNeeded);
+                if (unforced && (fsync == Fsync.ALWAYS || stopping
+                        || System.nanoTime() - lastForce >= FSYNC_INTERVAL_NANOS)) {
+                    channel.force(false);
+                    unforced = false;
+                    lastForce = System.nanoTime();
+                }
+                lock.lock();
+                try {
+                    written = batchEnd;
+                    recordsWritten.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                if (stopping) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Not able to write the journal (" + e.getMessage() + "); running games can not be recovered.");
+            lock.lock();
+            try {
+                closed = true;
+                written = Long.MAX_VALUE; // nobody has to wait for records that will never be written
+                recordsWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Not able to close the journal.");
+        }
+    }
+
+    /**
+     * Gets the sequence number of the oldest record that is still needed to recover the running games: the START of
+     * the game that has been running longest without snapshot, or the first record after the snapshot of a game. Must
+     * be called with the lock held.
+     *
+     * @return the sequence number of the oldest record that is needed.
+     */
+    private long oldestNeededSequence() {
+        long oldest = Math.min(appended, snapshotNeeded);
+        for (long from : neededFrom.values()) {
+            oldest = Math.min(oldest, from);
+        }
+        return oldest;
+    }
+
+    /**
+     * Closes the current segment and starts a new one, whose first record is the first record of the next batch.
+     *
+     * @param firstSequence is the sequence number of the first record in the new segment;
+     * @param highestGameId is the highest game id that is written to the journal so far.
+     * @throws IOException if the segments can not be closed or created.
+     */
+    private void rotate(long firstSequence, int highestGameId) throws IOException {
+        channel.force(false);
+        channel.close();
+        openSegment(segmentIndex + 1, firstSequence, highestGameId);
+    }
+
+    /**
+     * Deletes the old segments whose records are not needed anymore: a segment can be deleted if the segment after it
+     * starts before the oldest record that is needed. The current segment is never deleted.
+     *
+     * @param oldestNeeded is the sequence number of the oldest record that is still needed.
+     * @throws IOException if a segment can not be deleted.
+     */
+    private void deleteSegments(long oldestNeeded) throws IOException {
+        while (segments.size() > 1) {
+            Segment oldest = segments.removeFirst();
+            if (segments.getFirst().firstSequence > oldestNeeded) {
+                segments.addFirst(oldest);
+                break;
+            }
+            Files.deleteIfExists(oldest.path);
+            LOG.debug("Deleted journal segment " + oldest.path.getFileName() + ".");
+        }
+    }
+
+    /**
+     * Creates a new segment and writes its header.
+     *
+     * @param index         is the index of the segment, which is part of its file name;
+     * @param firstSequence is the sequence number of the first record in the segment;
+     * @param highestGameId is the highest game id that is written to the journal so far.
+     * @throws IOException if the segment can not be created.
+     */
+    private void openSegment(int index, long firstSequence, int highestGameId) throws IOException {
+        Path path = directory.resolve(segmentName(index));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_LENGTH);
+        header.putInt(SEGMENT_MAGIC).putLong(firstSequence).putInt(highestGameId);
+        segmentIndex = index;
+        segmentLength = 0;
+        write(header);
+        segments.addLast(new Segment(path, firstSequence));
+    }
+
+    /**
+     * Writes the records in a buffer to the current segment, and clears the buffer.
+     *
+     * @param buffer is the buffer with the records, which are between 0 and its position.
+     * @throws IOException if the records can not be written.
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentLength += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,205 @@
+package com.nedap.go.journal;
+
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Represents the snapshot file of the server, next to the journal: a memory-mapped file with the snapshots of all
+ * running games (see GameSnapshot), so a restart only has to replay the journal records after the snapshot of each
+ * game. The file has two slots of the same size, which are written in turns (double buffering): a new snapshot is
+ * written into the slot with the oldest snapshot, so the newest snapshot stays intact if the server crashes while
+ * writing. Each slot starts with a header with its generation, the number of games, the length and the CRC32C checksum
+ * of its contents; the valid slot with the highest generation is read. If the snapshots do not fit in a slot anymore,
+ * a larger file is written next to it and moved over it.
+ * <p>
+ * A snapshot file is used by one thread at a time.
+ */
+public final class SnapshotFile implements AutoCloseable {
+    private static final Logger LOG = Logging.getLogger("server.journal");
+    public static final String NAME = "snapshot.dat";
+    private static final int SLOT_MAGIC = 0x474F5332; // "GOS2": the snapshots have the session tokens of the players
+    private static final int SLOT_HEADER_LENGTH = 24; // magic, generation, number of games, length and checksum
+    private static final int INITIAL_SLOT_SIZE = 256 * 1024;
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int slotSize;
+    private long generation; // generation of the newest snapshot in the file; 0 if the file has no valid snapshot
+    private int newestSlot;
+    private ByteBuffer contents;
+
+    /**
+     * Opens (or creates) the snapshot file in a directory.
+     *
+     * @param directory is the directory of the journal, which must exist.
+     * @throws IOException if the file can not be opened or mapped.
+     */
+    public SnapshotFile(Path directory) throws IOException {
+        this.path = directory.resolve(NAME);
+        this.contents = ByteBuffer.allocate(INITIAL_SLOT_SIZE - SLOT_HEADER_LENGTH);
+        map(Math.max(INITIAL_SLOT_SIZE, (int) (Files.exists(path) ? Files.size(path) / 2 : 0)));
+        for (int slot = 0; slot < 2; slot++) {
+            long slotGeneration = readHeader(slot);
+            if (slotGeneration > generation) {
+                generation = slotGeneration;
+                newestSlot = slot;
+            }
+        }
+    }
+
+    /**
+     * Opens the file and maps both slots into memory.
+     *
+     * @param size is the size of one slot.
+     * @throws IOException if the file can not be opened or mapped.
+     */
+    private void map(int size) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        slotSize = size;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * slotSize);
+    }
+
+    /**
+     * Checks the header and contents of a slot.
+     *
+     * @param slot is the slot (0 or 1);
+     * @return the generation of the snapshot in the slot; 0 if the slot does not contain a valid snapshot.
+     */
+    private long readHeader(int slot) {
+        int offset = slot * slotSize;
+        int length = map.getInt(offset + 16);
+        if (map.getInt(offset) != SLOT_MAGIC || length < 0 || length > slotSize - SLOT_HEADER_LENGTH) {
+            return 0;
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(map.slice(offset + SLOT_HEADER_LENGTH, length));
+        if ((int) checksum.getValue() != map.getInt(offset + 20)) {
+            LOG.warn("Slot " + slot + " of the snapshot file is not valid.");
+            return 0;
+        }
+        return map.getLong(offset + 4);
+    }
+
+    /**
+     * Reads the snapshots of the games from the newest valid slot.
+     *
+     * @return the snapshots; empty if the file does not contain a valid snapshot.
+     */
+    public List<GameSnapshot> read() {
+        List<GameSnapshot> games = new ArrayList<>();
+        if (generation == 0) {
+            return games;
+        }
+        int offset = newestSlot * slotSize;
+        int count = map.getInt(offset + 12);
+        ByteBuffer buffer = map.slice(offset + SLOT_HEADER_LENGTH, map.getInt(offset + 16));
+        for (int i = 0; i < count; i++) {
+            games.add(GameSnapshot.decode(buffer));
+        }
+        return games;
+    }
+
+    /**
+     * Gets the generation of the newest snapshot in the file.
+     *
+     * @return the generation; 0 if the file does not contain a valid snapshot.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Writes a new snapshot into the slot with the oldest snapshot, and forces it to disk. Only after that, the new
+     * snapshot is the newest one.
+     *
+     * @param games are the snapshots of the games.
+     * @throws IOException if the snapshot can not be written.
+     */
+    public void write(Collection<GameSnapshot> games) throws IOException {
+        contents.clear();
+        for (GameSnapshot game : games) {
+            int length = game.encodedLength();
+            if (contents.remaining() < length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * contents.capacity(), contents.position() + length));
+                contents.flip();
+                contents = larger.put(contents);
+            }
+            game.encode(contents);
+        }
+        contents.flip();
+        if (contents.remaining() > slotSize - SLOT_HEADER_LENGTH) {
+            grow(games.size());
+            return;
+        }
+        int slot = 1 - newestSlot;
+        writeSlot(map, slot * slotSize, games.size());
+        map.force();
+        newestSlot = slot;
+        generation++;
+    }
+
+    /**
+     * Writes the contents with its header into a slot. The header is written after the contents, so a slot that is
+     * written partly never has a valid checksum.
+     *
+     * @param target is the mapped file;
+     * @param offset is the offset of the slot in the file;
+     * @param count  is the number of games in the contents.
+     */
+    private void writeSlot(MappedByteBuffer target, int offset, int count) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(contents.duplicate());
+        int length = contents.remaining();
+        target.put(offset + SLOT_HEADER_LENGTH, contents, 0, length);
+        target.putInt(offset, SLOT_MAGIC).putLong(offset + 4, generation + 1).putInt(offset + 12, count)
+                .putInt(offset + 16, length).putInt(offset + 20, (int) checksum.getValue());
+    }
+
+    /**
+     * Writes the contents into a new file with larger slots, and moves it over the snapshot file.
+     *
+     * @param count is the number of games in the contents.
+     * @throws IOException if the new file can not be written or moved.
+     */
+    private void grow(int count) throws IOException {
+        int size = Math.max(2 * slotSize, Integer.highestOneBit(contents.remaining() + SLOT_HEADER_LENGTH) << 1);
+        Path larger = path.resolveSibling(NAME + ".tmp");
+        try (FileChannel largerChannel = FileChannel.open(larger, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer largerMap = largerChannel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * size);
+            writeSlot(largerMap, 0, count);
+            largerMap.force();
+        }
+        channel.close();
+        Files.move(larger, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(size);
+        newestSlot = 0;
+        generation++;
+        LOG.info("The snapshot file has grown to " + 2L * size / 1024 + " KiB.");
+    }
+
+    /**
+     * Closes the snapshot file.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Not able to close the snapshot file.");
+        }
+    }
+}
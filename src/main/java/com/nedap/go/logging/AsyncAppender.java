@@ -0,0 +1,144 @@
+package com.nedap.go.logging;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Represents the appender that writes log messages asynchronously. Threads that log a message only put it in a ring
+ * buffer of fixed size (claiming a slot with one compare-and-set); one writer thread takes the messages out of the
+ * buffer, formats them and writes them to the output. If the buffer is full, the message is dropped and counted
+ * instead of blocking the thread that logs it.
+ */
+public final class AsyncAppender {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private final PrintStream output;
+    private final AtomicReferenceArray<Event> slots;
+    private final int mask;
+    private final AtomicLong head; // next slot to claim by a producer
+    private volatile long tail; // next slot to read by the writer thread
+    private final LongAdder dropped;
+    private final Thread writerThread;
+    private volatile boolean sleeping;
+
+    /**
+     * Represents one log message, as it is stored in the ring buffer.
+     */
+    private static final class Event {
+        private final long time;
+        private final Level level;
+        private final String category;
+        private final String thread;
+        private final String message;
+
+        private Event(Level level, String category, String message) {
+            this.time = System.currentTimeMillis();
+            this.level = level;
+            this.category = category;
+            this.thread = Thread.currentThread().getName();
+            this.message = message;
+        }
+    }
+
+    /**
+     * Creates an appender and starts its writer thread.
+     *
+     * @param output   is the stream the messages are written to;
+     * @param capacity is the number of messages the ring buffer can hold; rounded up to a power of two.
+     */
+    public AsyncAppender(PrintStream output, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.output = output;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.dropped = new LongAdder();
+        this.writerThread = Thread.ofPlatform().name("log-writer").daemon().unstarted(this::writeEvents);
+        this.writerThread.start();
+    }
+
+    /**
+     * Puts a message in the ring buffer. Never blocks: if the buffer is full, the message is dropped.
+     *
+     * @param level    is the level of the message;
+     * @param category is the category of the logger;
+     * @param message  is the message.
+     */
+    public void append(Level level, String category, String message) {
+        Event event = new Event(level, category, message);
+        long slot;
+        do {
+            slot = head.get();
+            if (slot - tail >= slots.length()) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(slot, slot + 1));
+        slots.set((int) (slot & mask), event);
+        if (sleeping) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Gets the number of messages that were dropped because the ring buffer was full.
+     *
+     * @return the number of dropped messages.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits until all messages that were appended before are written, or until the timeout has passed.
+     *
+     * @param timeoutMillis is the maximum time to wait, in milliseconds.
+     */
+    public void flush(long timeoutMillis) {
+        long target = head.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (tail < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writerThread);
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Takes the messages out of the ring buffer and writes them, until the program stops. Runs on the writer thread.
+     */
+    private void writeEvents() {
+        StringBuilder line = new StringBuilder(128);
+        while (true) {
+            int index = (int) (tail & mask);
+            Event event = slots.get(index);
+            if (event == null) {
+                if (tail == head.get()) {
+                    // nothing to write: flush the output and sleep until a producer wakes this thread up:
+                    output.flush();
+                    sleeping = true;
+                    if (tail == head.get()) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    sleeping = false;
+                } else {
+                    Thread.onSpinWait(); // a slot is claimed, but the producer has not stored its message yet
+                }
+                continue;
+            }
+            slots.set(index, null);
+            line.setLength(0);
+            line.append(LocalTime.ofInstant(Instant.ofEpochMilli(event.time), ZoneId.systemDefault()))
+                    .append(' ').append(event.level)
+                    .append(" [").append(event.thread).append("] ")
+                    .append(event.category).append(" - ").append(event.message);
+            output.println(line);
+            tail = tail + 1;
+        }
+    }
+}
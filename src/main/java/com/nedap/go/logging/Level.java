@@ -0,0 +1,9 @@
+package com.nedap.go.logging;
+
+/**
+ * Represents the level of a log message, from the most detailed (TRACE) to the most severe (ERROR). A logger only
+ * writes messages of its own level or a more severe level; OFF disables a logger completely.
+ */
+public enum Level {
+    TRACE, DEBUG, INFO, WARN, ERROR, OFF
+}
@@ -0,0 +1,117 @@
+package com.nedap.go.logging;
+
+/**
+ * Represents a logger for one category (for example "server.messages"). The level of a logger can be changed while
+ * the program runs (see Logging.setLevel()). A message of a disabled level costs one volatile read and one comparison;
+ * callers that need to build an expensive message should check isEnabled() first. Enabled messages are handed over to
+ * the asynchronous appender, so the calling thread never waits for the console or a file.
+ */
+public final class Logger {
+    private final String category;
+    private volatile Level level;
+
+    /**
+     * Creates a logger. Loggers are created via Logging.getLogger().
+     *
+     * @param category is the category of this logger;
+     * @param level    is the initial level of this logger.
+     */
+    Logger(String category, Level level) {
+        this.category = category;
+        this.level = level;
+    }
+
+    /**
+     * Gets the category of this logger.
+     *
+     * @return the category.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Gets the level of this logger.
+     *
+     * @return the level.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the level of this logger.
+     *
+     * @param level is the new level.
+     */
+    void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Checks whether messages of a level are written by this logger.
+     *
+     * @param messageLevel is the level of interest;
+     * @return true if messages of this level are written, false if not.
+     */
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel.ordinal() >= level.ordinal() && messageLevel != Level.OFF;
+    }
+
+    /**
+     * Writes a message of a level, if this level is enabled.
+     *
+     * @param messageLevel is the level of the message;
+     * @param message      is the message.
+     */
+    public void log(Level messageLevel, String message) {
+        if (isEnabled(messageLevel)) {
+            Logging.appender().append(messageLevel, category, message);
+        }
+    }
+
+    /**
+     * Writes a message of level TRACE.
+     *
+     * @param message is the message.
+     */
+    public void trace(String message) {
+        log(Level.TRACE, message);
+    }
+
+    /**
+     * Writes a message of level DEBUG.
+     *
+     * @param message is the message.
+     */
+    public void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    /**
+     * Writes a message of level INFO.
+     *
+     * @param message is the message.
+     */
+    public void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    /**
+     * Writes a message of level WARN.
+     *
+     * @param message is the message.
+     */
+    public void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    /**
+     * Writes a message of level ERROR.
+     *
+     * @param message is the message.
+     */
+    public void error(String message) {
+        log(Level.ERROR, message);
+    }
+}
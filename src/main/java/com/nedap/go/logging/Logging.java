@@ -0,0 +1,118 @@
+package com.nedap.go.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents the configuration of logging: it creates the loggers, keeps their levels and owns the appender. The
+ * levels are read from the system property go.log, for example "-Dgo.log=WARN,server.messages=DEBUG": a level without
+ * category is the default level, and a level for a category also holds for its sub-categories (so "server=WARN" holds
+ * for "server.messages" as well, unless that category has its own level). The default level is INFO.
+ */
+public final class Logging {
+    public static final String PROPERTY = "go.log";
+    private static final int BUFFER_CAPACITY = 8192;
+    private static final Map<String, Logger> loggers = new ConcurrentHashMap<>();
+    private static final Map<String, Level> configuredLevels = new ConcurrentHashMap<>();
+    private static volatile Level defaultLevel = Level.INFO;
+
+    static {
+        configure(System.getProperty(PROPERTY, ""));
+    }
+
+    /**
+     * Logging is only used via its static methods.
+     */
+    private Logging() {
+    }
+
+    /**
+     * Holds the appender, so its writer thread is only started when the first message is written.
+     */
+    private static final class Holder {
+        private static final AsyncAppender APPENDER = new AsyncAppender(System.out, BUFFER_CAPACITY);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> APPENDER.flush(1000)));
+        }
+    }
+
+    /**
+     * Gets the appender that writes all log messages.
+     *
+     * @return the appender.
+     */
+    public static AsyncAppender appender() {
+        return Holder.APPENDER;
+    }
+
+    /**
+     * Gets the logger of a category. The same category always returns the same logger.
+     *
+     * @param category is the category, with dots between the parts (for example "server.messages");
+     * @return the logger of this category.
+     */
+    public static Logger getLogger(String category) {
+        return loggers.computeIfAbsent(category, name -> new Logger(name, levelOf(name)));
+    }
+
+    /**
+     * Sets the level of a category and its sub-categories.
+     *
+     * @param category is the category; an empty String sets the default level;
+     * @param level    is the new level.
+     */
+    public static void setLevel(String category, Level level) {
+        if (category.isEmpty()) {
+            defaultLevel = level;
+        } else {
+            configuredLevels.put(category, level);
+        }
+        for (Logger logger : loggers.values()) {
+            logger.setLevel(levelOf(logger.getCategory()));
+        }
+    }
+
+    /**
+     * Sets the levels from a configuration String such as "WARN,server.messages=DEBUG". Parts that can not be parsed
+     * are ignored.
+     *
+     * @param configuration is the configuration String.
+     */
+    public static void configure(String configuration) {
+        for (String part : configuration.split(",")) {
+            String[] keyAndValue = part.trim().split("=");
+            try {
+                if (keyAndValue.length == 1 && !keyAndValue[0].isEmpty()) {
+                    setLevel("", Level.valueOf(keyAndValue[0].toUpperCase()));
+                } else if (keyAndValue.length == 2) {
+                    setLevel(keyAndValue[0].trim(), Level.valueOf(keyAndValue[1].trim().toUpperCase()));
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown log level in " + part + ".");
+            }
+        }
+    }
+
+    /**
+     * Determines the level of a category: the level of the category itself, or else of its nearest parent category
+     * that has a level, or else the default level.
+     *
+     * @param category is the category of interest;
+     * @return the level of this category.
+     */
+    private static Level levelOf(String category) {
+        String name = category;
+        while (true) {
+            Level level = configuredLevels.get(name);
+            if (level != null) {
+                return level;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                return defaultLevel;
+            }
+            name = name.substring(0, dot);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.nedap.go.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents a histogram of non-negative values (for example wait times in microseconds) that many threads can record
+ * into at the same time without locking. Like an HDR histogram, values are counted in buckets with a fixed relative
+ * precision: the values below SUB_BUCKETS are counted exactly, and every range from 2^e up to 2^(e+1) - 1 above that is
+ * split into SUB_BUCKETS buckets of equal width. Percentiles are therefore estimates, which are at most 1/SUB_BUCKETS
+ * (6.25%) too high, while recording a value only costs a few atomic additions and the histogram has a fixed size.
+ * <p>
+ * The histogram can be registered as an MXBean (see Metrics), so its summary can be read via JMX.
+ */
+public class Histogram implements HistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // one group of sub-buckets for the exact values, and one per power of two from 2^SUB_BUCKET_BITS up to 2^62:
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private final AtomicLongArray counts;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value is the value to record.
+     */
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(recorded));
+        count.increment();
+        sum.add(recorded);
+        max.accumulateAndGet(recorded, Math::max);
+    }
+
+    /**
+     * Determines the bucket in which a value is counted.
+     *
+     * @param value is the (non-negative) value;
+     * @return the index of the bucket.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Determines the highest value that is counted in a bucket.
+     *
+     * @param bucket is the index of the bucket;
+     * @return the highest value of the bucket.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return the number of recorded values.
+     */
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the average of the recorded values.
+     *
+     * @return the average value; 0 if no values are recorded.
+     */
+    @Override
+    public double getMean() {
+        long numberOfValues = count.sum();
+        return numberOfValues == 0 ? 0 : (double) sum.sum() / numberOfValues;
+    }
+
+    /**
+     * Gets the highest recorded value.
+     *
+     * @return the highest value; 0 if no values are recorded.
+     */
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estimates a percentile of the recorded values: the upper bound of the bucket in which this percentile falls (but
+     * never more than the highest recorded value).
+     *
+     * @param percentile is the percentile of interest, between 0 and 100;
+     * @return the estimated value of the percentile; 0 if no values are recorded.
+     */
+    @Override
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = counts.get(bucket);
+            total += snapshot[bucket];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Gets a summary of this histogram: the number of values, the average, the median, the 99th percentile and the
+     * highest value.
+     *
+     * @return the summary as a String.
+     */
+    @Override
+    public String toString() {
+        return "count " + getCount() + ", mean " + Math.round(getMean()) + ", p50 " + getPercentile(50) + ", p99 "
+                + getPercentile(99) + ", max " + getMax();
+    }
+}
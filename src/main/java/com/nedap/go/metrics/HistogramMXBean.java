@@ -0,0 +1,72 @@
+package com.nedap.go.metrics;
+
+/**
+ * Represents the management interface of a histogram (see Histogram), with which its summary can be read via JMX.
+ */
+public interface HistogramMXBean {
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return the number of recorded values.
+     */
+    long getCount();
+
+    /**
+     * Gets the average of the recorded values.
+     *
+     * @return the average value; 0 if no values are recorded.
+     */
+    double getMean();
+
+    /**
+     * Gets the highest recorded value.
+     *
+     * @return the highest value; 0 if no values are recorded.
+     */
+    long getMax();
+
+    /**
+     * Estimates a percentile of the recorded values.
+     *
+     * @param percentile is the percentile of interest, between 0 and 100;
+     * @return the estimated value of the percentile; 0 if no values are recorded.
+     */
+    long getPercentile(double percentile);
+
+    /**
+     * Estimates the median of the recorded values.
+     *
+     * @return the estimated median.
+     */
+    default long getP50() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Estimates the 90th percentile of the recorded values.
+     *
+     * @return the estimated 90th percentile.
+     */
+    default long getP90() {
+        return getPercentile(90);
+    }
+
+    /**
+     * Estimates the 99th percentile of the recorded values.
+     *
+     * @return the estimated 99th percentile.
+     */
+    default long getP99() {
+        return getPercentile(99);
+    }
+
+    /**
+     * Estimates the 99.9th percentile of the recorded values.
+     *
+     * @return the estimated 99.9th percentile.
+     */
+    default long getP999() {
+        return getPercentile(99.9);
+    }
+}
@@ -0,0 +1,99 @@
+package com.nedap.go.metrics;
+
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Represents the registration of metrics as MBeans at the platform MBean server, so they can be read with any JMX
+ * client (for example JConsole or VisualVM) while the server runs. All names are in the domain com.nedap.go. Metrics
+ * are only read when a JMX client asks for them, so registering them costs nothing while the server runs.
+ */
+public final class Metrics {
+    private static final Logger LOG = Logging.getLogger("metrics");
+    public static final String DOMAIN = "com.nedap.go";
+
+    /**
+     * Metrics is only used via its static methods.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Creates the name of an MBean in the domain com.nedap.go.
+     *
+     * @param properties are the key properties of the name, for example "type=Server,port=1234";
+     * @return the name of the MBean.
+     */
+    public static ObjectName name(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Not a valid MBean name: " + properties, e);
+        }
+    }
+
+    /**
+     * Registers an MBean (or MXBean). An MBean that is already registered under this name is replaced, so a server
+     * that is restarted on the same port registers its new metrics. Failures are logged, as metrics should never stop
+     * the server.
+     *
+     * @param name  is the name of the MBean;
+     * @param mBean is the MBean to register.
+     */
+    public static void register(ObjectName name, Object mBean) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            try {
+                mBeanServer.registerMBean(mBean, name);
+            } catch (InstanceAlreadyExistsException e) {
+                mBeanServer.unregisterMBean(name);
+                mBeanServer.registerMBean(mBean, name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Not able to register the metrics " + name + ": " + e);
+        }
+    }
+
+    /**
+     * Registers an MBean (or MXBean), unless an MBean is already registered under this name. Used for metrics that
+     * are shared by the whole process, such as the timings of the engine.
+     *
+     * @param name  is the name of the MBean;
+     * @param mBean is the MBean to register.
+     */
+    public static void registerIfAbsent(ObjectName name, Object mBean) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        if (mBeanServer.isRegistered(name)) {
+            return;
+        }
+        try {
+            mBeanServer.registerMBean(mBean, name);
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by another thread in the meantime
+        } catch (JMException e) {
+            LOG.warn("Not able to register the metrics " + name + ": " + e);
+        }
+    }
+
+    /**
+     * Unregisters an MBean. Nothing happens if no MBean is registered under this name.
+     *
+     * @param name is the name of the MBean.
+     */
+    public static void unregister(ObjectName name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // already unregistered
+        } catch (JMException e) {
+            LOG.warn("Not able to unregister the metrics " + name + ": " + e);
+        }
+    }
+}
@@ -1,234 +1,755 @@
 package com.nedap.go.server;
 
 import com.nedap.go.Protocol;
+import com.nedap.go.codec.Command;
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.Message;
+import com.nedap.go.codec.MessageEncoder;
+import com.nedap.go.codec.MessageHandler;
+import com.nedap.go.game.Stone;
+import com.nedap.go.logging.Level;
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Represents a clientHandler of the server for a connected client.
+ * Represents a clientHandler of the server for a connected client. The clientHandler either has its own thread that
+ * reads from a blocking socket, or receives its messages from one of the event loops of the server (in NIO mode); in
+ * both cases, each message is decoded without creating Strings for the commands and numbers, and processed by
+ * handleMessage(). Messages to the client are encoded directly into the outbound buffer of the connection.
+ * <p>
+ * A client that asks for MULTIGAME in the handshake can play several games at once over its connection: its game
+ * commands carry the id of their game, and are routed to that game. A client can also watch a running game with
+ * OBSERVE; a client without MULTIGAME watches at most one game at a time, and only while it is not playing.
+ * <p>
+ * A client that has joined gets the token of its session (see Sessions). If the connection of a player is lost, its
+ * games wait for the grace period of the server, in which the player can continue them on a new connection with RESUME
+ * and the token; only a client that quits (or does not come back in time) loses its games by disconnect.
+ * <p>
+ * A client that asks for HEARTBEAT in the handshake gets a PING when it has been silent for the ping interval of the
+ * server, which it should answer with PONG; if it stays silent for the idle timeout, it is disconnected. A client
+ * without HEARTBEAT never gets a PING, and is only disconnected after the idle timeout while it is not queued, playing
+ * or watching a game, as it may wait silently for a long time. The checks run on the timing wheel of the server.
+ * <p>
+ * The messages of a client are rate limited (see RateLimits): a message that exceeds the limits is dropped, and a
+ * client that keeps exceeding them is disconnected, so one client that floods the server can not slow down the games
+ * of the others.
  */
-public class ClientHandler implements Runnable {
-    private final Socket socket;
+public class ClientHandler implements Runnable, MessageHandler {
+    private static final Logger LOG = Logging.getLogger("server");
+    private static final Logger MESSAGES = Logging.getLogger("server.messages");
+    private final Connection connection;
     private final Server server;
-    private PrintWriter writerToClient;
-    private BufferedReader inputFromClient;
+    private final AtomicBoolean closed;
     private String usernameStored;
+    private volatile String sessionToken; // set when the client has joined or resumed its session
+    private volatile long lastReceived; // System.nanoTime() of the last message of the client
+    private volatile TimingWheel.Timeout heartbeat;
+    private final RateLimits.Limiter limiter; // only used while handling the messages of this client
+    private int rejectedInARow; // the messages that exceeded the rate limits since the last accepted message
+    private volatile boolean binary; // set in the handshake; read by the games that this client watches
+    private volatile boolean multiGame;
+    private volatile boolean captures;
+    private volatile boolean heartbeatEnabled; // set in the handshake; read by the checks on the timing wheel
+    private volatile GoGameHandler observedGame; // changed while handling the messages of this client
     public static final String HELLO = "HELLO";
     public static final String USERNAME = "USERNAME";
     public static final String QUEUE = "QUEUE";
     public static final String MOVE = "MOVE";
     public static final String PASS = "PASS";
     public static final String QUIT = "QUIT";
+    public static final String RESIGN = "RESIGN";
+    public static final String RESUME = "RESUME";
     public static final String SEPARATOR = "~";
+    private static final int MAX_REJECTED_IN_A_ROW = 100; // rejected messages after which the client is disconnected
 
     /**
-     * Creates a clientHandler to be able to handle the input from the client that is connected to the server.
+     * Creates a clientHandler to be able to handle the input from the client that is connected to the server. A new
+     * thread is started that reads the input from the socket (a virtual thread if the server runs in VIRTUAL mode).
      *
      * @param socket is the client socket that is needed to establish a connection between server and client
      * @param server is the server a client is connected to
      */
     public ClientHandler(Socket socket, Server server) {
-        this.socket = socket;
+        this(createSocketConnection(socket, server), server);
+        if (connection != null) {
+            server.startClientThread(this);
+        } else {
+            closed.set(true); // so the server does not keep this clientHandler
+        }
+    }
+
+    /**
+     * Creates a clientHandler for a client that is connected via the given connection. No thread is started: the
+     * messages of the client should be passed to handleMessage() by the owner of the connection.
+     *
+     * @param connection is the connection with the client;
+     * @param server     is the server a client is connected to.
+     */
+    public ClientHandler(Connection connection, Server server) {
+        this.connection = connection;
         this.server = server;
+        this.closed = new AtomicBoolean();
+        this.lastReceived = System.nanoTime();
+        this.limiter = server.getRateLimits().newLimiter();
+    }
+
+    /**
+     * Creates the clientHandler of a player of a game that is recovered after a restart of the server. The player has no
+     * connection yet, so its session is restored with the token from the journal and kept for the grace period, like
+     * the session of a player whose connection is lost: the player can continue its games with RESUME and this token,
+     * and loses them by disconnect if it does not come back in time.
+     *
+     * @param username is the username of the player;
+     * @param token    is the session token of the player before the restart;
+     * @param server   is the server that recovered the game;
+     * @return the clientHandler that holds the session until the player resumes it.
+     */
+    static ClientHandler restoreSession(String username, String token, Server server) {
+        ClientHandler clientHandler = new ClientHandler(new ClosedConnection(), server);
+        clientHandler.closed.set(true); // so it never handles messages, and the server does not keep it
+        clientHandler.saveUsername(username);
+        clientHandler.sessionToken = token;
+        server.reserveUsername(username, clientHandler);
+        server.getSessions().restore(token, username, clientHandler);
+        server.getSessions().detach(token, clientHandler, clientHandler::leaveGames);
+        return clientHandler;
+    }
+
+    /**
+     * Creates a blocking connection for a client socket, whose messages are written by the shared writers of the
+     * server.
+     *
+     * @param socket is the client socket;
+     * @param server is the server a client is connected to;
+     * @return the connection with the client; null if the connection could not be established.
+     */
+    private static SocketConnection createSocketConnection(Socket socket, Server server) {
         try {
-            writerToClient = new PrintWriter(socket.getOutputStream(), true);
-            inputFromClient = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            Thread clientHandlerThread = new Thread(this);
-            clientHandlerThread.start();
+            return new SocketConnection(socket, server.getWriters());
         } catch (IOException e) {
-            System.out.println("Connection with the server could not be established.");
+            LOG.warn("Connection with the client could not be established.");
+            return null;
         }
     }
 
     // Methods needed to use the clientHandler:
 
     /**
-     * Closes the clientHandler. To do so, first the client socket is closed, and both the printWriter and
-     * bufferedReader are closed too to prevent leakage. Besides, the server removes this clientHandler from the
-     * list of connected clients, it removes the username from the list of usernames and if the client connected to
-     * this clientHandler was in the queue for playing the game, it is removed from the queue as well.
+     * Closes the clientHandler, for example because the connection is lost. To do so, first the connection with the
+     * client is closed. Besides, the server removes this clientHandler from the list of connected clients, and if the
+     * client connected to this clientHandler was in the queue for playing the game, it is removed from the queue as
+     * well. If the client is still playing games, its session is kept for the grace period: the games (and the
+     * username) wait for the client to resume them on a new connection, and are only ended if it does not. Otherwise,
+     * the username is removed from the list of usernames. Closing a clientHandler that is already closed has no effect.
      */
     public void close() {
+        if (!closeConnection()) {
+            return;
+        }
+        if (!server.getGoGameHandlers(this).isEmpty()
+                && server.getSessions().detach(sessionToken, this, this::leaveGames)) {
+            LOG.info("The connection of " + getUsername() + " is lost; its games wait for it to resume.");
+            return;
+        }
+        server.getSessions().close(sessionToken, this);
+        leaveGames();
+    }
+
+    /**
+     * Closes the clientHandler of a client that quits: its games are ended directly, as a loss by disconnect.
+     */
+    public void quit() {
+        if (closeConnection()) {
+            server.getSessions().close(sessionToken, this);
+            leaveGames();
+        }
+    }
+
+    /**
+     * Closes the connection of this clientHandler, and removes it from the list of connected clients and from the
+     * queue.
+     *
+     * @return true if the clientHandler is closed by this call, false if it was already closed.
+     */
+    private boolean closeConnection() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        if (connection != null) {
+            connection.close();
+        }
+        if (heartbeat != null) {
+            heartbeat.cancel();
+        }
+        server.removeClientHandler(this);
+        server.removeFromQueue(this);
+        return true;
+    }
+
+    /**
+     * Removes the username of this client from the list of usernames, and ends the games it is still playing. Called
+     * when the client quits, or when its session has expired.
+     */
+    private void leaveGames() {
+        server.removeUsername(getUsername(), this);
+        for (GoGameHandler goGameHandler : server.getGoGameHandlers(this)) {
+            goGameHandler.submit(GameCommand.quit(this));
+        }
+    }
+
+    /**
+     * Starts to check every ping interval whether the client is still there (see checkIdle()).
+     */
+    void startHeartbeat() {
+        heartbeat = server.getTimingWheel().schedule(this::checkIdle, server.getPingIntervalMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks how long the client has been silent: a client that has not sent anything for the idle timeout is
+     * disconnected (as if its connection is lost), and a client that has not sent anything for the ping interval gets a
+     * PING. Only a client that asked for HEARTBEAT gets PINGs; a client without HEARTBEAT is only disconnected while it
+     * is not queued, playing or watching a game. Runs on the timing wheel of the server, and schedules the next check.
+     */
+    private void checkIdle() {
+        if (closed.get()) {
+            return;
+        }
+        long silentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastReceived);
+        if (silentMillis >= server.getIdleTimeoutMillis() && (heartbeatEnabled || !isWaitingForGames())) {
+            LOG.info(getUsername() + " has not sent anything for " + silentMillis / 1000 + " seconds; the connection "
+                    + "will be closed.");
+            close();
+            return;
+        }
+        if (heartbeatEnabled && silentMillis >= server.getPingIntervalMillis()) {
+            sendPing();
+        }
+        startHeartbeat();
+    }
+
+    /**
+     * Checks whether the client is queued, playing or watching a game, in which case it may be silent for a long time.
+     *
+     * @return true if the client is queued, playing or watching a game, false if not.
+     */
+    private boolean isWaitingForGames() {
+        GoGameHandler watched = observedGame;
+        return server.isInQueue(this) || !server.getGoGameHandlers(this).isEmpty()
+                || (watched != null && !watched.isFinished());
+    }
+
+    /**
+     * Drops a message that exceeds the rate limits of the server. The client is told so once per series of rejected
+     * messages, and is disconnected if the series gets too long.
+     *
+     * @param message is the rejected message.
+     */
+    private void reject(Message message) {
+        rejectedInARow++;
+        if (rejectedInARow == 1) {
+            LOG.info(getUsername() + " exceeds the rate limits; its messages are dropped.");
+            sendError("Too many messages; " + message.getCommand() + " is ignored.");
+        } else if (rejectedInARow >= MAX_REJECTED_IN_A_ROW) {
+            LOG.warn(getUsername() + " keeps exceeding the rate limits; the connection will be closed.");
+            server.getRateLimits().floodDisconnected();
+            close();
+        }
+    }
+
+    /**
+     * Sends a command of the client to the game it is about. A command without game id goes to the (only) game the
+     * client is playing; a command with game id is routed to that game, if the client is one of its players. Whether
+     * it is the turn of the client is checked by the game itself.
+     *
+     * @param command is the command of the client;
+     * @param gameId  is the id of the game of the command; 0 if the command has no game id.
+     */
+    private void submitToGame(GameCommand command, int gameId) {
+        GoGameHandler goGameHandler = gameId == 0 ? server.getGoGameHandler(this) : server.getGoGameHandler(gameId);
+        if (goGameHandler == null
+                || (goGameHandler.getClientHandler1() != this && goGameHandler.getClientHandler2() != this)) {
+            LOG.info(getUsername() + " is not playing game " + gameId + ".");
+        } else {
+            goGameHandler.submit(command);
+        }
+    }
+
+    /**
+     * Runs this operation. As long as the socket is not closed (= as long as the client is connected to the server),
+     * the input from the client is read and processed. Only used for blocking connections.
+     */
+    @Override
+    public void run() {
+        SocketConnection socketConnection = (SocketConnection) connection;
         try {
-            socket.close();
-            writerToClient.close();
-            inputFromClient.close();
-            server.removeClientHandler(this);
-            server.removeUsername(getUsername());
-            if (server.getWaitingQueue().contains(this)) {
-                server.removeFromQueue(this);
+            while (!socketConnection.isClosed() && socketConnection.read(this)) {
+                // each received message is passed to handleMessage()
             }
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            // the connection is lost, or the client does not follow the protocol
         }
+        close();
     }
 
     /**
-     * Runs this operation. As long as the socket is not closed (= as long as the client is connected to the server),
-     * the input from the client can be processed. Input comes in from and goes back to the clientHandler via
-     * predefined format as described in the protocol.
+     * Processes one message from the client. Input comes in from and goes back to the clientHandler via predefined
+     * format as described in the protocol. Messages that are received after closing are ignored.
+     *
+     * @param message is the decoded message as received from the client; only valid during this call.
      */
     @Override
-    public void run() {
-        int queueCount = 0;
-        while (!socket.isClosed()) {
-            try {
-                String clientInput = inputFromClient.readLine();
-                if (clientInput == null) {
-                    close();
-                    break;
+    public void handleMessage(Message message) {
+        if (closed.get()) {
+            return;
+        }
+        lastReceived = System.nanoTime();
+        if (MESSAGES.isEnabled(Level.DEBUG)) {
+            MESSAGES.debug("received from " + getUsername() + ": " + message);
+        }
+        // a client that plays several games at once may send the moves of all of them:
+        if (!limiter.tryAcquire(message.getCommand(), server.getNumberOfGames(this))) {
+            reject(message);
+            return;
+        }
+        rejectedInARow = 0;
+        switch (message.getCommand()) {
+            case HELLO:
+                // the capabilities of the client follow its description:
+                for (int index = 1; index < message.getFieldCount(); index++) {
+                    String capability = message.getString(index);
+                    binary |= Protocol.BINARY.equals(capability);
+                    multiGame |= Protocol.MULTIGAME.equals(capability);
+                    captures |= Protocol.CAPTURES.equals(capability);
+                    heartbeatEnabled |= Protocol.HEARTBEAT.equals(capability);
+                }
+                sendWelcome("Server by Arjonne", binary, multiGame, captures, heartbeatEnabled);
+                if (binary) {
+                    connection.setFraming(Framing.BINARY);
+                }
+                if (multiGame) {
+                    connection.setGameIds(true);
                 }
-                String[] split = clientInput.split(SEPARATOR);
-                String command = split[0];
-                switch (command) {
-                    case HELLO:
-                        System.out.println(clientInput);
-                        sendWelcome("Server by Arjonne");
-                        break;
-                    case USERNAME:
-                        String username = split[1];
-                        createUsername(username, clientInput);
-                        break;
-                    case QUEUE:
-                        queueCount++;
-                        if (queueCount % 2 != 0) {
-                            enterQueue(clientInput);
-                            System.out.println(getUsername() + " has successfully entered the queue. Waiting for a second player....");
-                            server.createNewGame();
-                        } else {
-                            leaveQueue();
-                        }
-                        break;
-                    case MOVE:
-                        int row = Integer.parseInt(split[1]);
-                        int column = Integer.parseInt(split[2]);
-                        server.getGoGameHandler(this).setWantsToCheckIfMoveIsValid(true, row, column);
-                        break;
-                    case PASS:
-                        server.getGoGameHandler(this).setWantsToPassInReferenceGame(true);
-                        break;
-                    case QUIT:
-                        queueCount = 0;
-                        server.getGoGameHandler(this).setHasQuited(true);
-                        close();
-                        break;
-                    default:
-                        System.out.println("The input is not correct.");
-                        break;
+                break;
+            case USERNAME:
+                String username = message.getString(0);
+                if (username == null) {
+                    LOG.info("The input of " + getUsername() + " is not correct: " + message);
+                } else {
+                    createUsername(username, message.toString());
+                }
+                break;
+            case RESUME:
+                String token = message.getString(0);
+                if (token == null) {
+                    LOG.info("The input of " + getUsername() + " is not correct: " + message);
+                } else {
+                    resume(token);
+                }
+                break;
+            case QUEUE:
+                // QUEUE enters the queue, or leaves it if this client is already waiting; only a client that uses
+                // MULTIGAME can enter the queue while it is playing a game:
+                if (!multiGame && server.getGoGameHandler(this) != null) {
+                    LOG.info(getUsername() + " is already playing a game.");
+                } else if (!server.isInQueue(this)) {
+                    if (!multiGame) {
+                        stopObserving();
+                    }
+                    LOG.info(getUsername() + " has successfully entered the queue. Waiting for a second player....");
+                    enterQueue(message.toString());
+                } else {
+                    leaveQueue();
+                }
+                break;
+            case MOVE:
+                try {
+                    int row = message.getInt(0);
+                    int column = message.getInt(1);
+                    submitToGame(GameCommand.move(this, row, column), message.getGameId());
+                } catch (NumberFormatException e) {
+                    LOG.info("The input of " + getUsername() + " is not correct: " + message);
+                }
+                break;
+            case PASS:
+                submitToGame(GameCommand.pass(this), message.getGameId());
+                break;
+            case RESIGN:
+                submitToGame(GameCommand.resign(this), message.getGameId());
+                break;
+            case OBSERVE:
+                try {
+                    observe(message.getInt(0));
+                } catch (NumberFormatException e) {
+                    LOG.info("The input of " + getUsername() + " is not correct: " + message);
                 }
-            } catch (IOException e) {
-                close();
                 break;
+            case PING:
+                sendPong();
+                break;
+            case PONG:
+                // the client is still there, which is all that a PONG says
+                break;
+            case QUIT:
+                // quitting also ends the games this client is playing:
+                quit();
+                break;
+            default:
+                LOG.info("The input of " + getUsername() + " is not correct: " + message);
+                break;
+        }
+    }
+
+    /**
+     * Continues the session of a client on this connection, after its previous connection was lost: this clientHandler
+     * takes over the username of the session, and each game of the session sends the board (and YOURTURN) to it. If
+     * the previous connection still seems to be open, it is closed without ending the games.
+     *
+     * @param token is the token of the session, as sent with JOINED.
+     */
+    private void resume(String token) {
+        if (getUsername() != null) {
+            sendError("You cannot resume a session after choosing a username.");
+            return;
+        }
+        ClientHandler previous = server.getSessions().resume(token, this);
+        if (previous == null) {
+            sendError("This session is unknown or has expired.");
+            return;
+        }
+        previous.closeConnection();
+        String username = previous.getUsername();
+        server.transferUsername(username, previous, this);
+        saveUsername(username);
+        sessionToken = token;
+        sendJoined(username + " has resumed its session.", token);
+        for (GoGameHandler goGameHandler : server.getGoGameHandlers(previous)) {
+            goGameHandler.submit(GameCommand.resume(previous, this));
+        }
+        LOG.info(username + " has resumed its session.");
+    }
+
+    /**
+     * Lets this client watch a running game. A client without MULTIGAME cannot tell the messages of different games
+     * apart, so it stops watching its previous game, and cannot watch while it is playing itself.
+     *
+     * @param gameId is the id of the game to watch.
+     */
+    private void observe(int gameId) {
+        GoGameHandler goGameHandler = server.getGoGameHandler(gameId);
+        if (goGameHandler == null || !goGameHandler.isStarted()) {
+            sendError("Game " + gameId + " is not running.");
+        } else if (!multiGame && server.getGoGameHandler(this) != null) {
+            sendError("You cannot watch a game while you are playing.");
+        } else {
+            if (!multiGame && goGameHandler != observedGame) {
+                stopObserving();
             }
+            observedGame = goGameHandler;
+            goGameHandler.submit(GameCommand.observe(this));
+        }
+    }
+
+    /**
+     * Stops watching the game that this client watches (if the game is still running).
+     */
+    private void stopObserving() {
+        if (observedGame != null) {
+            observedGame.submit(GameCommand.unobserve(this));
+            observedGame = null;
         }
     }
 
+    /**
+     * Checks whether this clientHandler is closed.
+     *
+     * @return true if the clientHandler is closed, false if not.
+     */
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Gets the token of the session of this client, which a game keeps in the journal so the client can resume it
+     * after a restart of the server.
+     *
+     * @return the session token; null if the client has not joined.
+     */
+    String getSessionToken() {
+        return sessionToken;
+    }
+
+    /**
+     * Gets the number of bytes that are waiting to be written to the client, for the metrics of the server.
+     *
+     * @return the number of waiting bytes; 0 if this clientHandler has no connection.
+     */
+    int getPendingBytes() {
+        return connection == null ? 0 : connection.getPendingBytes();
+    }
+
+    /**
+     * Checks whether the client uses binary framing (see the handshake).
+     *
+     * @return true if the client uses binary framing, false if it uses text framing.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Checks whether the client uses CAPTURES, so moves are sent with the stones they capture.
+     *
+     * @return true if the client uses CAPTURES, false if not.
+     */
+    public boolean isCaptures() {
+        return captures;
+    }
+
+    /**
+     * Checks whether the client uses MULTIGAME, so its game messages carry the id of their game.
+     *
+     * @return true if the client uses MULTIGAME, false if not.
+     */
+    public boolean isMultiGame() {
+        return multiGame;
+    }
+
     // Methods needed to send the messages to the client:
 
     /**
-     * Sends the welcome message as part of the handshake in the correct format to the client. Besides that,
-     * the formatted message is visible in the server TUI.
+     * Starts a message to the client, which is encoded directly into the outbound buffer of the connection.
+     *
+     * @param command is the command of the message;
+     * @return the encoder to add the fields of the message with; finish the message with send().
+     */
+    private MessageEncoder beginMessage(Command command) {
+        return connection.beginMessage().command(command);
+    }
+
+    /**
+     * Starts a message about a game to the client. In binary framing, or if the client uses MULTIGAME, the id of the
+     * game is part of the message.
+     *
+     * @param command is the command of the message;
+     * @param gameId  is the id of the game the message is about;
+     * @return the encoder to add the fields of the message with; finish the message with send().
+     */
+    private MessageEncoder beginMessage(Command command, int gameId) {
+        return connection.beginMessage().command(command, gameId);
+    }
+
+    /**
+     * Sends the message that is started with beginMessage() to the client. If the category server.messages is enabled
+     * at level DEBUG, the message is logged as well.
+     *
+     * @param message is the encoder with the message in the format of the protocol.
+     */
+    private void send(MessageEncoder message) {
+        if (MESSAGES.isEnabled(Level.DEBUG)) {
+            MESSAGES.debug("sent to " + getUsername() + ": " + message.getLastMessage());
+        }
+        connection.endMessage();
+    }
+
+    /**
+     * Sends a message that is already encoded in the encoding of this client (see Spectators), such as a move of a game
+     * that this client watches. A message that does not fit in the outbound buffer is skipped.
+     *
+     * @param message is the buffer with the encoded message; its position does not change;
+     * @return false if the message is skipped because this client does not read its messages fast enough, true if not.
+     */
+    boolean sendEncoded(ByteBuffer message) {
+        return connection.sendEncoded(message, Spectators.MAX_PENDING_BYTES);
+    }
+
+    /**
+     * Sends the welcome message as part of the handshake in the correct format to the client. The message
+     * is logged at level DEBUG.
      *
      * @param serverID is the ID of the server.
      */
     public void sendWelcome(String serverID) {
-        String serverIdFormatted = Protocol.welcomeMessage(serverID);
-        writerToClient.println(serverIdFormatted);
-        System.out.println(serverIdFormatted);
+        send(beginMessage(Command.WELCOME).field(serverID));
+    }
+
+    /**
+     * Sends the welcome message as part of the handshake in the correct format to the client, with the capabilities
+     * (of the ones the client listed in HELLO) that the server accepts. The message is logged at level DEBUG.
+     *
+     * @param serverID  is the ID of the server;
+     * @param binary    is true if binary framing is accepted, false if not;
+     * @param multiGame is true if several games over this connection are accepted, false if not;
+     * @param captures  is true if moves are sent with the stones they capture, false if not;
+     * @param heartbeat is true if the client is pinged when it is silent, false if not.
+     */
+    public void sendWelcome(String serverID, boolean binary, boolean multiGame, boolean captures, boolean heartbeat) {
+        MessageEncoder message = beginMessage(Command.WELCOME).field(serverID);
+        if (binary) {
+            message.field(Protocol.BINARY);
+        }
+        if (multiGame) {
+            message.field(Protocol.MULTIGAME);
+        }
+        if (captures) {
+            message.field(Protocol.CAPTURES);
+        }
+        if (heartbeat) {
+            message.field(Protocol.HEARTBEAT);
+        }
+        send(message);
     }
 
     /**
      * Sends a message that the entered username is already taken as part of the handshake in the correct format to the
-     * clientHandler. Besides that, the formatted message is visible in the server TUI.
+     * clientHandler. The message is logged at level DEBUG.
      *
      * @param message is the message that describes that the username is not accepted as it is already in use.
      */
     public void sendUsernameTaken(String message) {
-        String messageFormatted = Protocol.usernameTaken(message);
-        writerToClient.println(messageFormatted);
-        System.out.println(messageFormatted);
+        send(beginMessage(Command.USERNAMETAKEN).field(message));
     }
 
     /**
      * Sends a message that the client is correctly connected to the server as part of the handshake in the correct
-     * format to the clientHandler. Besides that, the formatted message is visible in the server TUI.
+     * format to the clientHandler. The message is logged at level DEBUG.
      *
      * @param message is the message with description of the correct connection for the client.
      */
     public void sendJoined(String message) {
-        String messageFormatted = Protocol.joined(message);
-        writerToClient.println(messageFormatted);
-        System.out.println(messageFormatted);
+        send(beginMessage(Command.JOINED).field(message));
+    }
+
+    /**
+     * Sends a message that the client is correctly connected to the server, with the token of its session, in the
+     * correct format to the clientHandler. The message is logged at level DEBUG.
+     *
+     * @param message is the message with description of the correct connection for the client;
+     * @param token   is the token with which the client can resume its session (see RESUME).
+     */
+    public void sendJoined(String message, String token) {
+        send(beginMessage(Command.JOINED).field(message).field(token));
     }
 
     /**
-     * Sends a message to the client that a new game is started in the correct format to the clientHandler. Besides
-     * that, the formatted message is visible in the server TUI.
+     * Sends a message to the client that a new game is started in the correct format to the clientHandler. The message
+     * is logged at level DEBUG.
+     *
+     * @param gameId    is the id of the new game;
+     * @param username1 is the username of player 1 (black);
+     * @param username2 is the username of player 2 (white).
      */
-    public void sendNewGame(String username1, String username2) {
-        String messageFormatted = Protocol.newGame(username1, username2);
-        writerToClient.println(messageFormatted);
-        System.out.println(messageFormatted);
+    public void sendNewGame(int gameId, String username1, String username2) {
+        send(beginMessage(Command.NEWGAME, gameId).field(username1).field(username2));
     }
 
     /**
-     * Sends a message to the client whose turn it is in the correct format to the clientHandler. Besides
-     * that, the formatted message is visible in the server TUI.
+     * Sends a message to the client whose turn it is in the correct format to the clientHandler. The message is logged
+     * at level DEBUG.
+     *
+     * @param gameId is the id of the game in which it is the turn of the client.
      */
-    public void sendYourTurn() {
-        String yourTurn = Protocol.yourTurn();
-        writerToClient.println(yourTurn);
-        System.out.println(yourTurn);
+    public void sendYourTurn(int gameId) {
+        send(beginMessage(Command.YOURTURN, gameId));
     }
 
     /**
-     * Sends a message to both clients with which client made what move in the correct format. Besides that, the
-     * formatted message is visible in the server TUI.
+     * Sends a message to both clients with which client made what move in the correct format. The message is logged
+     * at level DEBUG.
      *
+     * @param gameId   is the id of the game in which this move is made;
      * @param username is the username of the client that made this move;
      * @param row      is the row of the position of this move;
-     * @param column   is the column of the position of this move.
+     * @param column   is the column of the position of this move;
+     * @param captured are the positions of the stones that this move captured (see Protocol.capturedPositions()),
+     *                 which are only sent if the client uses CAPTURES.
      */
-    public void sendMove(String username, int row, int column) {
-        String moveFormatted = Protocol.move(username, row, column);
-        writerToClient.println(moveFormatted);
-        System.out.println(moveFormatted);
+    public void sendMove(int gameId, String username, int row, int column, String captured) {
+        MessageEncoder message = beginMessage(Command.MOVE, gameId).field(username).field(row).field(column);
+        if (captures) {
+            message.field(captured);
+        }
+        send(message);
     }
 
     /**
-     * Sends a message to both clients with which client passed in the correct format to the client. Besides
-     * that, the formatted message is visible in the server TUI.
+     * Sends a message to both clients with which client passed in the correct format to the client. The message is
+     * logged at level DEBUG.
      *
+     * @param gameId   is the id of the game in which the client passed;
      * @param username is the username of the client that passed.
      */
-    public void sendPass(String username) {
-        String passFormatted = Protocol.pass(username);
-        writerToClient.println(passFormatted);
-        System.out.println(passFormatted);
+    public void sendPass(int gameId, String username) {
+        send(beginMessage(Command.MOVE, gameId).field(username).field(Command.PASS));
+    }
+
+    /**
+     * Sends a snapshot of a running game to a client that starts watching it. The message is logged at level DEBUG.
+     *
+     * @param gameId        is the id of the game;
+     * @param usernameBlack is the username of the player with the black stones;
+     * @param usernameWhite is the username of the player with the white stones;
+     * @param board         is the board, with one character per position (see com.nedap.go.Protocol.BOARD);
+     * @param stoneToMove   is the stone of the player whose turn it is.
+     */
+    public void sendBoard(int gameId, String usernameBlack, String usernameWhite, String board, Stone stoneToMove) {
+        send(beginMessage(Command.BOARD, gameId).field(usernameBlack).field(usernameWhite).field(board)
+                .field(stoneToMove.name()));
+    }
+
+    /**
+     * Sends a ping to the client, which should answer with a pong. The message is logged at level DEBUG.
+     */
+    public void sendPing() {
+        send(beginMessage(Command.PING));
+    }
+
+    /**
+     * Sends a pong to the client, as the answer to its ping. The message is logged at level DEBUG.
+     */
+    public void sendPong() {
+        send(beginMessage(Command.PONG));
+    }
+
+    /**
+     * Sends an error message to the client in the correct format. The message is logged at level DEBUG.
+     *
+     * @param message is the description of the error.
+     */
+    public void sendError(String message) {
+        send(beginMessage(Command.ERROR).field(message));
     }
 
     /**
      * Sends a message to the client that an invalid move was made in the correct format. This message was only sent to
-     * the client that made this invalid move. Besides that, the formatted message is visible in the server TUI.
+     * the client that made this invalid move. The message is logged at level DEBUG.
+     *
+     * @param gameId is the id of the game in which the invalid move was made.
      */
-    public void sendInvalidMove() {
-        String invalidMoveFormatted = Protocol.invalidMove();
-        writerToClient.println(invalidMoveFormatted);
-        System.out.println(invalidMoveFormatted);
+    public void sendInvalidMove(int gameId) {
+        send(beginMessage(Command.INVALIDMOVE, gameId));
     }
 
     /**
      * Sends a message to both clients that the game is over in the correct format to the clientHandler. This message is
-     * sent to both participating clients. Besides that, the formatted message is visible in the server TUI.
+     * sent to both participating clients. The message is logged at level DEBUG.
+     *
+     * @param gameId         is the id of the game that is over;
+     * @param reason         is the reason the game is over (DISCONNECT, RESIGN, TIMEOUT or VICTORY);
+     * @param usernameWinner is the username of the winner.
      */
-    public void sendGameOver(String reason, String usernameWinner) {
-        String gameOverFormatted = Protocol.gameOver(reason, usernameWinner);
-        writerToClient.println(gameOverFormatted);
-        System.out.println(gameOverFormatted);
+    public void sendGameOver(int gameId, String reason, String usernameWinner) {
+        if (!reason.equals(Protocol.DISCONNECT) && !reason.equals(Protocol.RESIGN)
+                && !reason.equals(Protocol.TIMEOUT)) {
+            reason = Protocol.VICTORY;
+        }
+        send(beginMessage(Command.GAMEOVER, gameId).field(reason).field(usernameWinner));
     }
 
     // Methods needed to process information received from the client:
@@ -240,12 +761,18 @@ public class ClientHandler implements Runnable {
      * @param clientInput is the command input line as received from the client.
      */
     public void createUsername(String username, String clientInput) {
-        if ((server.getListOfUsernames().contains(username))) {
+        if (!server.reserveUsername(username, this)) {
             sendUsernameTaken("This username is already used by another player; choose another username.");
         } else {
-            System.out.println(clientInput);
-            server.addUsername(username);
-            sendJoined(username + " has successfully connected to the server.");
+            // a client that changes its username releases its previous username (and session):
+            if (getUsername() != null && !getUsername().equals(username)) {
+                server.removeUsername(getUsername(), this);
+            }
+            if (!username.equals(getUsername())) {
+                server.getSessions().close(sessionToken, this);
+                sessionToken = server.getSessions().open(username, this);
+            }
+            sendJoined(username + " has successfully connected to the server.", sessionToken);
             saveUsername(username);
         }
     }
@@ -275,7 +802,6 @@ public class ClientHandler implements Runnable {
      */
     public void enterQueue(String clientInput) {
         server.addToQueue(this);
-        System.out.println(clientInput);
     }
 
     /**
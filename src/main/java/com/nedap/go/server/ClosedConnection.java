@@ -0,0 +1,106 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents the connection of a clientHandler that has no connection (yet): the player of a game that is recovered
+ * after a restart of the server, until it resumes its session on a new connection (see Sessions). Messages to it are
+ * encoded and discarded, so the game does not need to know whether its players are connected.
+ */
+final class ClosedConnection implements Connection {
+    private final ReentrantLock lock;
+    private final MessageEncoder discarded;
+
+    /**
+     * Creates a connection that discards all messages.
+     */
+    ClosedConnection() {
+        this.lock = new ReentrantLock();
+        this.discarded = new MessageEncoder();
+    }
+
+    /**
+     * Starts a message that is discarded. The encoder stays locked for other senders until endMessage() is called,
+     * which must be called by the same thread.
+     *
+     * @return the encoder to encode the message with.
+     */
+    @Override
+    public MessageEncoder beginMessage() {
+        lock.lock();
+        return discarded;
+    }
+
+    /**
+     * Discards the message that is started with beginMessage().
+     */
+    @Override
+    public void endMessage() {
+        try {
+            discarded.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards a message that is already encoded.
+     *
+     * @param message         is the buffer with the encoded message; its position does not change;
+     * @param maxPendingBytes is the maximum number of bytes that may be waiting after adding the message;
+     * @return true, as nothing is ever waiting.
+     */
+    @Override
+    public boolean sendEncoded(ByteBuffer message, int maxPendingBytes) {
+        return true;
+    }
+
+    /**
+     * Ignores the framing, as no messages are sent.
+     *
+     * @param framing is the framing of the next messages.
+     */
+    @Override
+    public void setFraming(Framing framing) {
+    }
+
+    /**
+     * Ignores the game ids, as no messages are sent.
+     *
+     * @param gameIds is true if game commands carry the id of their game, false if not.
+     */
+    @Override
+    public void setGameIds(boolean gameIds) {
+    }
+
+    /**
+     * Gets the number of bytes that are waiting to be written.
+     *
+     * @return 0, as messages are discarded directly.
+     */
+    @Override
+    public int getPendingBytes() {
+        return 0;
+    }
+
+    /**
+     * Closes the connection, which is already closed.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Checks whether the connection is closed.
+     *
+     * @return true, as this connection is always closed.
+     */
+    @Override
+    public boolean isClosed() {
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageEncoder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Represents the connection between the server and one client, over which a clientHandler sends its messages. The
+ * connection can either be a blocking socket (read by a thread per client) or a non-blocking channel (read by one of
+ * the event loops of the server).
+ */
+public interface Connection {
+    // maximum number of bytes that may wait to be written to a client; a client that lags further behind is dropped:
+    int MAX_PENDING_BYTES = 64 * 1024;
+
+    /**
+     * Starts a message (one line of the protocol) to the client, which is encoded directly into the outbound buffer of
+     * the connection. Other threads cannot send messages to this client until endMessage() is called, so the message
+     * must be finished directly, by the same thread.
+     *
+     * @return the encoder to encode the message with.
+     */
+    MessageEncoder beginMessage();
+
+    /**
+     * Finishes the message that is started with beginMessage(). Sending never blocks: the message is written later,
+     * together with the other waiting messages.
+     */
+    void endMessage();
+
+    /**
+     * Sends a message that is already encoded for this connection (in its framing, and with or without game ids), such
+     * as a message that is broadcast to the spectators of a game. Unlike endMessage(), a message that does not fit is
+     * skipped, and the connection stays open.
+     *
+     * @param message         is the buffer with the encoded message; its position does not change, so the same
+     *                        buffer can be sent to many connections;
+     * @param maxPendingBytes is the maximum number of bytes that may be waiting after adding the message;
+     * @return false if the message is skipped because too many bytes are waiting, true if not.
+     */
+    boolean sendEncoded(ByteBuffer message, int maxPendingBytes);
+
+    /**
+     * Sends a message that is already formatted as a String (see com.nedap.go.Protocol) to the client.
+     *
+     * @param message is the message to send, without line separator.
+     */
+    default void send(String message) {
+        MessageEncoder encoder = beginMessage();
+        try {
+            encoder.text(message);
+        } finally {
+            endMessage();
+        }
+    }
+
+    /**
+     * Switches the framing of the connection, for both the received and the sent messages (see Framing). Only called
+     * while handling a received message, so the framing changes directly after that message.
+     *
+     * @param framing is the framing of the next messages.
+     */
+    void setFraming(Framing framing);
+
+    /**
+     * Sets whether game commands start with the id of their game, for both the received and the sent messages (see
+     * com.nedap.go.Protocol.MULTIGAME). Only called while handling a received message, like setFraming().
+     *
+     * @param gameIds is true if game commands carry the id of their game, false if not.
+     */
+    void setGameIds(boolean gameIds);
+
+    /**
+     * Gets the number of bytes that are waiting to be written to the client, for the metrics of the server.
+     *
+     * @return the number of waiting bytes.
+     */
+    int getPendingBytes();
+
+    /**
+     * Closes the connection with the client.
+     */
+    void close();
+
+    /**
+     * Checks whether the connection is closed.
+     *
+     * @return true if the connection is closed, false if not.
+     */
+    boolean isClosed();
+}
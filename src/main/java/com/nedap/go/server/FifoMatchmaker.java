@@ -0,0 +1,189 @@
+package com.nedap.go.server;
+
+import com.nedap.go.metrics.Histogram;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Represents a matchmaker that pairs players in the order in which they entered the queue (first come, first served).
+ * The matchmaker does not use any lock: the queue is a lock-free deque, and each player has a ticket whose state is
+ * changed with compare-and-set, so a player can never be paired twice, or be paired and cancelled at the same time.
+ * Every thread that adds a player also tries to pair the players in the queue, so pairing happens continuously instead
+ * of only when the queue has exactly two players.
+ */
+public class FifoMatchmaker implements Matchmaker {
+    private final BiConsumer<ClientHandler, ClientHandler> startGame;
+    private final Deque<Ticket> queue;
+    private final AtomicInteger ticketsInQueue;
+    private final Map<ClientHandler, Ticket> tickets;
+    private final Histogram waitTimes;
+
+    /**
+     * Represents the ticket of a waiting player. A ticket is waiting, claimed (by a thread that tries to pair it),
+     * matched or cancelled; only a waiting ticket can be claimed or cancelled.
+     */
+    private static final class Ticket {
+        private static final int WAITING = 0;
+        private static final int CLAIMED = 1;
+        private static final int MATCHED = 2;
+        private static final int CANCELLED = 3;
+        private final ClientHandler clientHandler;
+        private final long enqueuedAt;
+        private final AtomicInteger state;
+
+        private Ticket(ClientHandler clientHandler) {
+            this.clientHandler = clientHandler;
+            this.enqueuedAt = System.nanoTime();
+            this.state = new AtomicInteger(WAITING);
+        }
+    }
+
+    /**
+     * Creates a first come, first served matchmaker.
+     *
+     * @param startGame is called for every pair of players, with the player that has waited longest first.
+     */
+    public FifoMatchmaker(BiConsumer<ClientHandler, ClientHandler> startGame) {
+        this.startGame = startGame;
+        this.queue = new ConcurrentLinkedDeque<>();
+        this.ticketsInQueue = new AtomicInteger();
+        this.tickets = new ConcurrentHashMap<>();
+        this.waitTimes = new Histogram();
+    }
+
+    /**
+     * Adds a player at the end of the queue, and pairs the waiting players.
+     *
+     * @param clientHandler is the clientHandler of the player that wants to play a game.
+     */
+    @Override
+    public void enqueue(ClientHandler clientHandler) {
+        Ticket ticket = new Ticket(clientHandler);
+        if (tickets.putIfAbsent(clientHandler, ticket) != null) {
+            return; // this player is already waiting
+        }
+        queue.addLast(ticket);
+        ticketsInQueue.incrementAndGet();
+        pairWaitingPlayers();
+    }
+
+    /**
+     * Removes a player from the queue by cancelling its ticket.
+     *
+     * @param clientHandler is the clientHandler of the player that does not want to wait anymore;
+     * @return true if the player was waiting and is removed, false if the player was not waiting (or has just been
+     * paired).
+     */
+    @Override
+    public boolean cancel(ClientHandler clientHandler) {
+        Ticket ticket = tickets.get(clientHandler);
+        if (ticket == null) {
+            return false;
+        }
+        while (true) {
+            int state = ticket.state.get();
+            if (state == Ticket.WAITING && ticket.state.compareAndSet(Ticket.WAITING, Ticket.CANCELLED)) {
+                // the ticket stays in the queue, and is skipped when it is polled:
+                tickets.remove(clientHandler, ticket);
+                return true;
+            } else if (state == Ticket.MATCHED || state == Ticket.CANCELLED) {
+                return false;
+            }
+            // the ticket is claimed by a thread that is pairing it; wait until it is matched or waiting again:
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Checks whether a player has a ticket that is not matched or cancelled yet.
+     *
+     * @param clientHandler is the clientHandler of the player of interest;
+     * @return true if the player is waiting, false if not.
+     */
+    @Override
+    public boolean isWaiting(ClientHandler clientHandler) {
+        return tickets.containsKey(clientHandler);
+    }
+
+    /**
+     * Gets the number of players that are waiting for a game.
+     *
+     * @return the number of waiting players.
+     */
+    @Override
+    public int getNumberOfWaitingPlayers() {
+        return tickets.size();
+    }
+
+    /**
+     * Gets the histogram of the time (in microseconds) paired players have waited in the queue.
+     *
+     * @return the histogram of wait times.
+     */
+    @Override
+    public Histogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    // Methods needed to pair players:
+
+    /**
+     * Pairs the players in the queue, two by two, for as long as at least two tickets are in the queue. If only one
+     * waiting ticket can be claimed (another thread is pairing the other one), the claimed ticket is put back at the
+     * front of the queue, and the number of tickets is checked again, so no player is left behind.
+     */
+    private void pairWaitingPlayers() {
+        while (ticketsInQueue.get() >= 2) {
+            Ticket first = claimNextTicket();
+            if (first == null) {
+                return;
+            }
+            Ticket second = claimNextTicket();
+            if (second == null) {
+                first.state.set(Ticket.WAITING);
+                queue.addFirst(first);
+                ticketsInQueue.incrementAndGet();
+                continue;
+            }
+            match(first, second);
+        }
+    }
+
+    /**
+     * Takes the first waiting ticket from the queue and claims it. Cancelled tickets are skipped.
+     *
+     * @return the claimed ticket; null if the queue has no waiting ticket.
+     */
+    private Ticket claimNextTicket() {
+        Ticket ticket = queue.pollFirst();
+        while (ticket != null) {
+            ticketsInQueue.decrementAndGet();
+            if (ticket.state.compareAndSet(Ticket.WAITING, Ticket.CLAIMED)) {
+                return ticket;
+            }
+            ticket = queue.pollFirst();
+        }
+        return null;
+    }
+
+    /**
+     * Pairs two claimed tickets: the wait times are recorded and the game is started.
+     *
+     * @param first  is the ticket of the player that has waited longest;
+     * @param second is the ticket of the other player.
+     */
+    private void match(Ticket first, Ticket second) {
+        long now = System.nanoTime();
+        for (Ticket ticket : new Ticket[]{first, second}) {
+            ticket.state.set(Ticket.MATCHED);
+            tickets.remove(ticket.clientHandler, ticket);
+            waitTimes.record((now - ticket.enqueuedAt) / 1000);
+        }
+        startGame.accept(first.clientHandler, second.clientHandler);
+    }
+}
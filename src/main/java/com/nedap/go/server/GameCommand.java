@@ -0,0 +1,189 @@
+package com.nedap.go.server;
+
+/**
+ * Represents a command of a player for the game this player is playing (a move, a pass, a quit, a resign or a resume on
+ * a new connection), of a spectator that starts or stops watching a game, or of the server and the clock of the game
+ * (the start and the timeout). The clientHandler of the client sends these commands to the gameHandler, which
+ * processes them one by one in the order in which they are received.
+ */
+public final class GameCommand {
+    /**
+     * The types of commands a player can send to a game.
+     */
+    public enum Type {
+        MOVE, PASS, QUIT, RESIGN, OBSERVE, UNOBSERVE, RESUME, TIMEOUT, START
+    }
+
+    private final Type type;
+    private final ClientHandler clientHandler;
+    private final ClientHandler previousClientHandler;
+    private final int row;
+    private final int column;
+
+    /**
+     * Creates a command.
+     *
+     * @param type          is the type of this command;
+     * @param clientHandler is the clientHandler of the player that sends this command;
+     * @param row           is the row of the move (only used for a move);
+     * @param column        is the column of the move (only used for a move).
+     */
+    private GameCommand(Type type, ClientHandler clientHandler, int row, int column) {
+        this(type, clientHandler, null, row, column);
+    }
+
+    /**
+     * Creates a command.
+     *
+     * @param type                  is the type of this command;
+     * @param clientHandler         is the clientHandler of the player that sends this command;
+     * @param previousClientHandler is the clientHandler of the lost connection (only used for a resume);
+     * @param row                   is the row of the move (only used for a move);
+     * @param column                is the column of the move (only used for a move).
+     */
+    private GameCommand(Type type, ClientHandler clientHandler, ClientHandler previousClientHandler, int row,
+                        int column) {
+        this.type = type;
+        this.clientHandler = clientHandler;
+        this.previousClientHandler = previousClientHandler;
+        this.row = row;
+        this.column = column;
+    }
+
+    /**
+     * Creates a command to place a stone.
+     *
+     * @param clientHandler is the clientHandler of the player that makes the move;
+     * @param row           is the row this player wants to place a stone;
+     * @param column        is the column this player wants to place a stone;
+     * @return the move command.
+     */
+    public static GameCommand move(ClientHandler clientHandler, int row, int column) {
+        return new GameCommand(Type.MOVE, clientHandler, row, column);
+    }
+
+    /**
+     * Creates a command to pass.
+     *
+     * @param clientHandler is the clientHandler of the player that passes;
+     * @return the pass command.
+     */
+    public static GameCommand pass(ClientHandler clientHandler) {
+        return new GameCommand(Type.PASS, clientHandler, -1, -1);
+    }
+
+    /**
+     * Creates a command to quit the game (also used when the connection with the player is lost).
+     *
+     * @param clientHandler is the clientHandler of the player that quits;
+     * @return the quit command.
+     */
+    public static GameCommand quit(ClientHandler clientHandler) {
+        return new GameCommand(Type.QUIT, clientHandler, -1, -1);
+    }
+
+    /**
+     * Creates a command to resign.
+     *
+     * @param clientHandler is the clientHandler of the player that resigns;
+     * @return the resign command.
+     */
+    public static GameCommand resign(ClientHandler clientHandler) {
+        return new GameCommand(Type.RESIGN, clientHandler, -1, -1);
+    }
+
+    /**
+     * Creates a command to start watching the game. The spectator first gets a snapshot of the board, and then the
+     * moves of the game.
+     *
+     * @param clientHandler is the clientHandler of the spectator;
+     * @return the observe command.
+     */
+    public static GameCommand observe(ClientHandler clientHandler) {
+        return new GameCommand(Type.OBSERVE, clientHandler, -1, -1);
+    }
+
+    /**
+     * Creates a command to stop watching the game.
+     *
+     * @param clientHandler is the clientHandler of the spectator;
+     * @return the unobserve command.
+     */
+    public static GameCommand unobserve(ClientHandler clientHandler) {
+        return new GameCommand(Type.UNOBSERVE, clientHandler, -1, -1);
+    }
+
+    /**
+     * Creates a command to let a player continue the game on a new connection, after its connection was lost.
+     *
+     * @param previousClientHandler is the clientHandler of the lost connection, which is a player of the game;
+     * @param clientHandler         is the clientHandler of the new connection;
+     * @return the resume command.
+     */
+    public static GameCommand resume(ClientHandler previousClientHandler, ClientHandler clientHandler) {
+        return new GameCommand(Type.RESUME, clientHandler, previousClientHandler, -1, -1);
+    }
+
+    /**
+     * Creates a command that the clock of the game has run out for the player whose turn it is.
+     *
+     * @return the timeout command.
+     */
+    public static GameCommand timeout() {
+        return new GameCommand(Type.TIMEOUT, null, -1, -1);
+    }
+
+    /**
+     * Creates a command to start the game, after it is registered at the server.
+     *
+     * @return the start command.
+     */
+    public static GameCommand start() {
+        return new GameCommand(Type.START, null, -1, -1);
+    }
+
+    /**
+     * Gets the type of this command.
+     *
+     * @return the type of this command.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the clientHandler of the player that sends this command.
+     *
+     * @return the clientHandler of the sender.
+     */
+    public ClientHandler getClientHandler() {
+        return clientHandler;
+    }
+
+    /**
+     * Gets the clientHandler of the lost connection of the player that resumes the game.
+     *
+     * @return the previous clientHandler; null if this command is not a resume.
+     */
+    public ClientHandler getPreviousClientHandler() {
+        return previousClientHandler;
+    }
+
+    /**
+     * Gets the row of the move.
+     *
+     * @return the row of the move; -1 if this command is not a move.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Gets the column of the move.
+     *
+     * @return the column of the move; -1 if this command is not a move.
+     */
+    public int getColumn() {
+        return column;
+    }
+}
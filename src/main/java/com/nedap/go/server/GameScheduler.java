@@ -0,0 +1,177 @@
+package com.nedap.go.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents the scheduler that runs all games of the server on a bounded pool of worker threads. A game does not have
+ * its own thread: it is only scheduled when a command arrives in its mailbox (see GoGameHandler), so the number of
+ * games is limited by memory instead of by the number of threads of the operating system.
+ * <p>
+ * The pool is a work-stealing ForkJoinPool in FIFO mode with one worker per processor; an idle worker takes over games
+ * that are waiting for a busy worker. In VIRTUAL mode, every run of a game gets its own virtual thread instead.
+ * <p>
+ * The scheduler keeps metrics on the number of games waiting for a worker, the number of commands waiting in the
+ * mailboxes of all games, and the scheduling delay (the time between scheduling a game and running it).
+ */
+public class GameScheduler {
+    private final ExecutorService executor;
+    private final AtomicInteger pendingRuns;
+    private final AtomicInteger maxPendingRuns;
+    private final AtomicLong pendingCommands;
+    private final LongAdder runs;
+    private final LongAdder totalDelayNanos;
+    private final AtomicLong maxDelayNanos;
+
+    /**
+     * Creates a scheduler with one worker per available processor.
+     *
+     * @param mode is the mode of the server; in VIRTUAL mode, games run on virtual threads.
+     */
+    public GameScheduler(ServerMode mode) {
+        this(mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a scheduler with a specific number of workers.
+     *
+     * @param mode        is the mode of the server; in VIRTUAL mode, games run on virtual threads;
+     * @param parallelism is the number of worker threads (not used in VIRTUAL mode).
+     */
+    public GameScheduler(ServerMode mode, int parallelism) {
+        if (mode == ServerMode.VIRTUAL) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("game-", 0).factory());
+        } else {
+            this.executor = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+        this.pendingRuns = new AtomicInteger();
+        this.maxPendingRuns = new AtomicInteger();
+        this.pendingCommands = new AtomicLong();
+        this.runs = new LongAdder();
+        this.totalDelayNanos = new LongAdder();
+        this.maxDelayNanos = new AtomicLong();
+    }
+
+    /**
+     * Schedules a task (the run of a game) on one of the workers.
+     *
+     * @param task is the task to run.
+     */
+    public void schedule(Runnable task) {
+        long scheduledAt = System.nanoTime();
+        maxPendingRuns.accumulateAndGet(pendingRuns.incrementAndGet(), Math::max);
+        executor.execute(() -> {
+            pendingRuns.decrementAndGet();
+            long delay = System.nanoTime() - scheduledAt;
+            runs.increment();
+            totalDelayNanos.add(delay);
+            maxDelayNanos.accumulateAndGet(delay, Math::max);
+            task.run();
+        });
+    }
+
+    /**
+     * Stops the scheduler: games that are running are finished, but no new runs are started.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Methods to keep track of the commands in the mailboxes of the games:
+
+    /**
+     * Registers that a command is added to the mailbox of a game.
+     */
+    void commandQueued() {
+        pendingCommands.incrementAndGet();
+    }
+
+    /**
+     * Registers that a command is taken from the mailbox of a game.
+     */
+    void commandTaken() {
+        pendingCommands.decrementAndGet();
+    }
+
+    // Getters of the metrics:
+
+    /**
+     * Gets the number of games that are scheduled, but not yet running.
+     *
+     * @return the number of games waiting for a worker.
+     */
+    public int getPendingRuns() {
+        return pendingRuns.get();
+    }
+
+    /**
+     * Gets the highest number of games that were waiting for a worker at the same time.
+     *
+     * @return the maximum number of games waiting for a worker.
+     */
+    public int getMaxPendingRuns() {
+        return maxPendingRuns.get();
+    }
+
+    /**
+     * Gets the number of commands that are waiting in the mailboxes of all games.
+     *
+     * @return the number of waiting commands.
+     */
+    public long getPendingCommands() {
+        return pendingCommands.get();
+    }
+
+    /**
+     * Gets the number of times a game has been run.
+     *
+     * @return the number of runs.
+     */
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    /**
+     * Gets the average time between scheduling a game and running it.
+     *
+     * @return the average scheduling delay in nanoseconds; 0 if no game has run yet.
+     */
+    public long getAverageDelayNanos() {
+        long numberOfRuns = runs.sum();
+        return numberOfRuns == 0 ? 0 : totalDelayNanos.sum() / numberOfRuns;
+    }
+
+    /**
+     * Gets the longest time between scheduling a game and running it.
+     *
+     * @return the maximum scheduling delay in nanoseconds.
+     */
+    public long getMaxDelayNanos() {
+        return maxDelayNanos.get();
+    }
+
+    /**
+     * Gets a summary of the metrics of this scheduler.
+     *
+     * @return the metrics as a String.
+     */
+    @Override
+    public String toString() {
+        return "games waiting: " + getPendingRuns() + " (max " + getMaxPendingRuns() + "), commands waiting: "
+                + getPendingCommands() + ", runs: " + getRuns() + ", scheduling delay: average "
+                + getAverageDelayNanos() / 1000 + " us, max " + getMaxDelayNanos() / 1000 + " us";
+    }
+}
@@ -1,141 +1,419 @@
 package com.nedap.go.server;
 
+import com.nedap.go.Protocol;
+import com.nedap.go.codec.Command;
 import com.nedap.go.game.*;
-import jdk.swing.interop.SwingInterOpUtils;
+import com.nedap.go.journal.GameSnapshot;
+import com.nedap.go.journal.JournalRecord;
+import com.nedap.go.journal.MoveJournal;
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Represents a gameHandler of the server for handling the game-related input from two connected clients.
+ * Represents a gameHandler of the server for handling the game-related input from two connected clients. The
+ * clientHandlers send their commands to the mailbox of this gameHandler (see submit()). A game does not have a thread
+ * of its own: when a command arrives, the game is scheduled on the GameScheduler, which runs it on one of its workers
+ * until the mailbox is empty. A game is never scheduled twice at the same time, so the state of the game is only
+ * changed by one thread at a time and no locks are needed; a waiting game does not use any CPU or thread.
+ * <p>
+ * Other clients can watch the game (see Spectators): each move is encoded once for all spectators, and spectators that
+ * are too slow are removed, so the players never wait for them.
+ * <p>
+ * If the server keeps a journal (see MoveJournal), the start of the game, every move and pass and the end of the game
+ * are appended to it, so the game can be recovered when the server restarts. After every change, the game also
+ * publishes an immutable snapshot of its state (see GameSnapshot), which the server writes to its snapshot file from
+ * time to time without waiting for the game. The journal and the snapshots keep the session tokens of the players, so a
+ * game that is recovered after a restart of the server continues as soon as its players resume their sessions.
+ * <p>
+ * A player whose connection is lost can continue the game on a new connection (see Sessions): the clientHandler of the
+ * player is then replaced by the one of the new connection, which gets a snapshot of the board instead of the moves it
+ * has missed.
+ * <p>
+ * The player whose turn it is has a clock on the timing wheel of the server: a limited time per move, and optionally a
+ * limited total time for all its moves. When the clock runs out, a TIMEOUT command is sent to the mailbox of the game,
+ * and the player loses the game, so a player that never answers YOURTURN cannot keep a game running forever.
  */
 public class GoGameHandler implements Runnable {
-    private ClientHandler clientHandler1;
-    private ClientHandler clientHandler2;
-    private Game game;
-    private Player playerBlack;
-    private Player playerWhite;
-    private boolean wantsToCheckIfMoveIsValid;
-    private boolean wantsToPassInReferenceGame;
-    private boolean wantsToCheckForGameOver;
-    private boolean hasQuited;
-    private boolean quit;
-    private int row;
-    private int column;
+    private static final Logger LOG = Logging.getLogger("server.game");
+    // replaced when a player resumes the game on a new connection; read by the clientHandlers to route their commands:
+    private volatile ClientHandler clientHandler1;
+    private volatile ClientHandler clientHandler2;
+    private final Game game;
+    private final Player playerBlack;
+    private final Player playerWhite;
+    private final String blackToken; // the session tokens of the players, kept in the journal; null without session
+    private final String whiteToken;
+    private final boolean recovered; // whether the game was running before a restart of the server
+    private static final int MAX_COMMANDS_PER_RUN = 16; // after this many commands, other games get a turn first
+    private final int id;
+    private final Server server;
+    private final GameScheduler scheduler;
+    private final Queue<GameCommand> mailbox;
+    private final AtomicBoolean scheduled;
+    private final Spectators spectators;
+    private final MoveJournal journal;
+    private long journalSequence; // sequence number of the last record of this game in the journal
+    private long[] previousBoards; // hashes of the former states of the board, only added to (shared by snapshots)
+    private int previousBoardCount;
+    private volatile GameSnapshot snapshot;
+    private final TimingWheel timingWheel;
+    private final long moveTimeNanos; // 0 if there is no limit per move
+    private final long[] remainingNanos; // main time left per stone (by ordinal); Long.MAX_VALUE if there is no limit
+    private TimingWheel.Timeout clock; // the clock of the player whose turn it is; null if no clock is running
+    private Stone clockStone;
+    private long clockStarted; // System.nanoTime() at which the clock was started
+    private long clockLimitNanos; // the time the player whose turn it is has for this move
+    private volatile boolean started;
+    private volatile boolean quit;
+    private volatile boolean cancelled; // the game is stopped with the server, so it is not ended in the journal
     public static final String DISCONNECT = "DISCONNECT";
     public static final String VICTORY = "VICTORY";
+    public static final String RESIGN = "RESIGN";
+    public static final String TIMEOUT = "TIMEOUT";
 
 
     /**
      * Creates a gameHandler to be able to process all game and its rules related information from two clients connected
-     * to the server via the clientHandlers that are connected to this gameHandler.
+     * to the server via the clientHandlers that are connected to this gameHandler. The reference game is created
+     * directly (the gameHandler on the server side does not need a GUI representation of the board); the game starts
+     * when createNewGame() is called.
      *
+     * @param id             is the id of this game on the server;
      * @param clientHandler1 is the clientHandler from the first player using the connected client;
-     * @param clientHandler2 is the clientHandler from the second player using the connected client.
+     * @param clientHandler2 is the clientHandler from the second player using the connected client;
+     * @param server         is the server that hosts this game; its scheduler runs this game when commands arrive.
+     */
+    public GoGameHandler(int id, ClientHandler clientHandler1, ClientHandler clientHandler2, Server server) {
+        this(id, clientHandler1, clientHandler2, server, new Game(new Player(clientHandler1.getUsername(), Stone.BLACK),
+                new Player(clientHandler2.getUsername(), Stone.WHITE), new Board(), null), false);
+    }
+
+    /**
+     * Creates the gameHandler of a game that was running before a restart of the server, in the state of its snapshot.
+     * Its players have no connection yet (see ClientHandler.restoreSession()); when the game is started with
+     * createNewGame(), it is not journaled again, and the players get the board once they resume their sessions.
+     *
+     * @param snapshot       is the snapshot of the recovered game, with all its records of the journal;
+     * @param clientHandler1 is the clientHandler of the player with black;
+     * @param clientHandler2 is the clientHandler of the player with white;
+     * @param server         is the server that hosts this game.
+     */
+    GoGameHandler(GameSnapshot snapshot, ClientHandler clientHandler1, ClientHandler clientHandler2, Server server) {
+        this(snapshot.getGameId(), clientHandler1, clientHandler2, server, snapshot.restore(), true);
+        this.journalSequence = snapshot.getSequence();
+        long[] hashes = game.getPreviousBoards();
+        this.previousBoards = Arrays.copyOf(hashes, Math.max(previousBoards.length, hashes.length));
+        this.previousBoardCount = hashes.length;
+        // the snapshot is published directly, so the game is never missing in the snapshot file:
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Creates a gameHandler for a game.
+     *
+     * @param id             is the id of this game on the server;
+     * @param clientHandler1 is the clientHandler of the player with black;
+     * @param clientHandler2 is the clientHandler of the player with white;
+     * @param server         is the server that hosts this game;
+     * @param game           is the reference game;
+     * @param recovered      is true if the game was running before a restart of the server, false if it is new.
      */
-    public GoGameHandler(ClientHandler clientHandler1, ClientHandler clientHandler2) {
+    private GoGameHandler(int id, ClientHandler clientHandler1, ClientHandler clientHandler2, Server server, Game game,
+                          boolean recovered) {
+        this.id = id;
         this.clientHandler1 = clientHandler1;
         this.clientHandler2 = clientHandler2;
-        createNewGame();
+        this.server = server;
+        this.scheduler = server.getGameScheduler();
+        this.mailbox = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean();
+        this.spectators = new Spectators(id);
+        this.journal = server.getJournal();
+        this.previousBoards = new long[64];
+        this.timingWheel = server.getTimingWheel();
+        this.moveTimeNanos = TimeUnit.MILLISECONDS.toNanos(server.getMoveTimeMillis());
+        long mainTimeNanos = server.getMainTimeMillis() > 0 ? TimeUnit.MILLISECONDS.toNanos(server.getMainTimeMillis())
+                : Long.MAX_VALUE;
+        this.remainingNanos = new long[]{mainTimeNanos, mainTimeNanos};
+        this.game = game;
+        this.playerBlack = game.getPlayerBlack();
+        this.playerWhite = game.getPlayerWhite();
+        this.blackToken = clientHandler1.getSessionToken();
+        this.whiteToken = clientHandler2.getSessionToken();
+        this.recovered = recovered;
+        // the engine is watched via the metrics of the server (see ServerMetrics):
+        game.setTimed(true);
+    }
+
+    /**
+     * Gets the id of this game on the server.
+     *
+     * @return the id of this game.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the clientHandler of the player with the black stones.
+     *
+     * @return the clientHandler of the first player.
+     */
+    public ClientHandler getClientHandler1() {
+        return clientHandler1;
+    }
+
+    /**
+     * Gets the clientHandler of the player with the white stones.
+     *
+     * @return the clientHandler of the second player.
+     */
+    public ClientHandler getClientHandler2() {
+        return clientHandler2;
+    }
+
+    /**
+     * Cancels this game: commands that are still in the mailbox are not processed anymore, and no messages are sent to
+     * the players. Used when the server stops.
+     */
+    public void cancel() {
+        cancelled = true;
+        quit = true;
+    }
+
+    /**
+     * Checks whether this game has started, so it can be watched.
+     *
+     * @return true if the start of the game has been processed (see createNewGame()), false if not.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Checks whether this game has ended (or is cancelled).
+     *
+     * @return true if the game has ended, false if not.
+     */
+    public boolean isFinished() {
+        return quit;
+    }
+
+    /**
+     * Gets the newest snapshot of the state of this game.
+     *
+     * @return the snapshot; null if the server does not keep a journal, or if the game has not started yet.
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
-     * Runs this operation. As long as the game is not over, the gameHandler waits on input from the clientHandler to
-     * do checks on the rules and keep track of the game. When the game is over, it will return the winner.
+     * Sends a command of a player to this game. The command is processed by a worker of the scheduler, after all
+     * commands that were sent before. If the game is not scheduled yet, it is scheduled now.
+     *
+     * @param command is the command of the player.
+     */
+    public void submit(GameCommand command) {
+        if (quit) {
+            return;
+        }
+        mailbox.add(command);
+        scheduler.commandQueued();
+        scheduleIfNeeded();
+    }
+
+    /**
+     * Schedules this game on the scheduler if there are commands in the mailbox and the game is not scheduled yet.
+     */
+    private void scheduleIfNeeded() {
+        if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this);
+        }
+    }
+
+    /**
+     * Runs this operation: processes the commands in the mailbox (at most MAX_COMMANDS_PER_RUN, so one busy game cannot
+     * keep a worker to itself). Only one worker runs a game at the same time. If commands are left (or arrived while
+     * processing), the game is scheduled again. A command that throws an exception is logged and skipped, and the game
+     * is always released by the worker, so a failing command never blocks the later commands of the game.
      */
     @Override
     public void run() {
-        quit = false;
-        while (!quit) {
-            // built sleep in as the loop does not work otherwise...
-            try {
-                Thread.sleep(200);
-            } catch (InterruptedException e) {
-                System.out.println("Not able to wait for 2 seconds.");
+        try {
+            for (int i = 0; i < MAX_COMMANDS_PER_RUN; i++) {
+                GameCommand command = mailbox.poll();
+                if (command == null) {
+                    break;
+                }
+                scheduler.commandTaken();
+                if (!quit) {
+                    try {
+                        processCommand(command);
+                    } catch (RuntimeException e) {
+                        LOG.error("Game " + id + " could not process " + command.getType() + " (" + e
+                                + "); the command is skipped.");
+                    }
+                    if (quit && !cancelled) {
+                        // the game has ended, so it is removed from the server (and will not be recovered anymore):
+                        stopClock();
+                        journal(JournalRecord.end(id));
+                        server.removeGame(this);
+                        LOG.info("Game " + id + " has been ended. You can close the board.");
+                    }
+                }
             }
-            if (wantsToCheckIfMoveIsValid) {
-                checkIfMoveIsValid(row, column);
-            } else if (wantsToPassInReferenceGame) {
-                passInReferenceGame();
-            } else if (wantsToCheckForGameOver) {
-                checkOnGameOver();
-            } else if (hasQuited) {
-                processQuit();
+        } finally {
+            scheduled.set(false);
+            if (quit) {
+                discardCommands();
+            } else {
+                scheduleIfNeeded();
             }
         }
-        System.out.println("This game has been ended. You can close the board.");
     }
 
-    // Methods that the go can use to get or set the state of a boolean in order to invoke a specific method:
-
     /**
-     * Changes the boolean to be able to know whether the position should be checked on validity now.
-     *
-     * @param wantsToCheckIfMoveIsValid is the boolean that represents whether a position should be checked on being a
-     *                                  valid move or not.
+     * Removes all commands from the mailbox of a game that has ended.
      */
-    public void setWantsToCheckIfMoveIsValid(boolean wantsToCheckIfMoveIsValid, int row, int column) {
-        this.row = row;
-        this.column = column;
-        this.wantsToCheckIfMoveIsValid = wantsToCheckIfMoveIsValid;
+    private void discardCommands() {
+        while (mailbox.poll() != null) {
+            scheduler.commandTaken();
+        }
     }
 
     /**
-     * Changes the boolean to be able to know whether a pass should be processed now.
+     * Processes one command of a player.
      *
-     * @param wantsToPassInReferenceGame is the boolean that represents whether a player wants to pass or not.
+     * @param command is the command to process.
      */
-    public void setWantsToPassInReferenceGame(boolean wantsToPassInReferenceGame) {
-        this.wantsToPassInReferenceGame = wantsToPassInReferenceGame;
+    private void processCommand(GameCommand command) {
+        switch (command.getType()) {
+            case MOVE:
+                if (isTurnOf(command.getClientHandler())) {
+                    checkIfMoveIsValid(command.getRow(), command.getColumn());
+                }
+                break;
+            case PASS:
+                if (isTurnOf(command.getClientHandler())) {
+                    passInReferenceGame();
+                }
+                break;
+            case RESIGN:
+                processResign(command.getClientHandler());
+                break;
+            case QUIT:
+                processQuit(command.getClientHandler());
+                break;
+            case OBSERVE:
+                processObserve(command.getClientHandler());
+                break;
+            case UNOBSERVE:
+                spectators.remove(command.getClientHandler());
+                break;
+            case RESUME:
+                processResume(command.getPreviousClientHandler(), command.getClientHandler());
+                break;
+            case TIMEOUT:
+                processTimeout();
+                break;
+            case START:
+                processStart();
+                break;
+        }
     }
 
     /**
-     * Changes the boolean to be able to know whether a quit message should be processed now.
+     * Checks whether a move (or a pass) is sent by the player whose turn it is. A player that sends one when it is not
+     * its turn gets an ERROR, and the command is ignored, so it can never play for the other player.
      *
-     * @param hasQuited is the boolean that represents whether a player wants to quit or not.
+     * @param clientHandler is the clientHandler that sent the command;
+     * @return true if it is the turn of this client, false if not.
      */
-    public void setHasQuited(boolean hasQuited) {
-        this.hasQuited = hasQuited;
+    private boolean isTurnOf(ClientHandler clientHandler) {
+        ClientHandler current = game.getCurrentPlayer() == playerBlack ? clientHandler1 : clientHandler2;
+        if (clientHandler == current) {
+            return true;
+        }
+        LOG.info(clientHandler.getUsername() + " tried to play in game " + id + " while it is not its turn.");
+        clientHandler.sendError("It is not your turn in game " + id + ".");
+        return false;
     }
 
-    // Methods that can be called by the clientHandler by changing the state of a boolean:
+    // Methods that are called to process the commands of the clientHandlers:
 
     /**
-     * Creates a new GO game, with two players and a board (the gameHandler on the server side does not need to have a
-     * GUI representation of the board).
+     * Starts the game. Like every other change of the game, the start is a command in the mailbox of the game, so it is
+     * processed by the game itself before the first move of a player, and not by the thread of the matchmaker.
      */
     public void createNewGame() {
-        playerBlack = new Player(clientHandler1.getUsername(), Stone.BLACK);
-        playerWhite = new Player(clientHandler2.getUsername(), Stone.WHITE);
-        Board board = new Board();
-        GoGUI goGUI = new GoGUI(Board.SIZE);
-        game = new Game(playerBlack, playerWhite, board, goGUI);
-        clientHandler1.sendNewGame(clientHandler1.getUsername(), clientHandler2.getUsername());
-        clientHandler2.sendNewGame(clientHandler1.getUsername(), clientHandler2.getUsername());
-        // As player black always starts with the game, send yourTurn to this player:
-        clientHandler1.sendYourTurn();
+        submit(GameCommand.start());
+    }
+
+    /**
+     * Processes the start of the game: the start is journaled (with the session tokens of the players), the clock of
+     * black is started, and both players get NEWGAME, after which black (who always starts the game) gets YOURTURN. A
+     * recovered game is already in the journal; only the clock of the player whose turn it is is started.
+     */
+    private void processStart() {
+        if (recovered) {
+            startClock();
+            started = true;
+            return;
+        }
+        journal(JournalRecord.start(id, playerBlack.getUsername(), playerWhite.getUsername(), blackToken, whiteToken));
+        publishSnapshot();
+        startClock();
+        started = true;
+        clientHandler1.sendNewGame(id, clientHandler1.getUsername(), clientHandler2.getUsername());
+        clientHandler2.sendNewGame(id, clientHandler1.getUsername(), clientHandler2.getUsername());
+        clientHandler1.sendYourTurn(id);
     }
 
     /**
-     * Performs a check on the reference board whether the move a player suggested is a valid move. If this move is a
-     * valid move, it is placed on the reference board to be able to keep track of the current game state on the server
-     * side, and a message is sent to the players using the clients connected to the clientHandlers of the move to be
-     * played (or that the move is invalid to the player whose move is invalid).
+     * Performs a check on the reference board whether the move a player suggested is a valid move, and executes it in
+     * the same pass (see Game.tryPlay()). If this move is a valid move, it is placed on the reference board to be able
+     * to keep track of the current game state on the server side, and a message is sent to the players using the
+     * clients connected to the clientHandlers of the move that is played, with the stones it has captured (or that the
+     * move is invalid to the player whose move is invalid).
      *
      * @param row    is the row this player wants to place a stone;
      * @param column is the column this player wants to place a stone;
      */
     public void checkIfMoveIsValid(int row, int column) {
-        if (!game.isValidMove(row, column)) {
-            if (game.getCurrentPlayer() == playerBlack) {
-                clientHandler1.sendInvalidMove();
+        long start = System.nanoTime();
+        Player player = game.getCurrentPlayer();
+        MoveResult result = game.tryPlay(row, column);
+        if (!result.isAccepted()) {
+            if (player == playerBlack) {
+                clientHandler1.sendInvalidMove(id);
             } else {
-                clientHandler2.sendInvalidMove();
+                clientHandler2.sendInvalidMove(id);
             }
         } else {
-            clientHandler1.sendMove(game.getCurrentPlayer().getUsername(), row, column);
-            clientHandler2.sendMove(game.getCurrentPlayer().getUsername(), row, column);
-            game.doMove(row, column);
+            stopClock();
+            journal(JournalRecord.move(id, row, column));
+            addPreviousBoard(result.getHash());
+            publishSnapshot();
+            String username = player.getUsername();
+            String captured = Protocol.capturedPositions(result.getCaptured());
+            clientHandler1.sendMove(id, username, row, column, captured);
+            clientHandler2.sendMove(id, username, row, column, captured);
+            spectators.broadcast((message, captures) -> {
+                message.command(Command.MOVE, id).field(username).field(row).field(column);
+                if (captures) {
+                    message.field(captured);
+                }
+            });
         }
-        wantsToCheckIfMoveIsValid = false;
-        wantsToCheckForGameOver = true;
+        server.getMetrics().moveHandled(result.isAccepted(), System.nanoTime() - start);
+        checkOnGameOver();
     }
 
     /**
@@ -143,44 +421,227 @@ public class GoGameHandler implements Runnable {
      * using the clients connected to the clientHandlers of a pass.
      */
     public void passInReferenceGame() {
-        clientHandler1.sendPass(game.getCurrentPlayer().getUsername());
-        clientHandler2.sendPass(game.getCurrentPlayer().getUsername());
+        String username = game.getCurrentPlayer().getUsername();
+        clientHandler1.sendPass(id, username);
+        clientHandler2.sendPass(id, username);
+        spectators.broadcast((message, captures) -> message.command(Command.MOVE, id).field(username)
+                .field(Command.PASS));
+        stopClock();
         game.pass();
-        wantsToPassInReferenceGame = false;
-        wantsToCheckForGameOver = true;
+        journal(JournalRecord.pass(id));
+        publishSnapshot();
+        checkOnGameOver();
     }
 
     /**
      * Checks whether the game is over based on the information in this reference game. If the game is not over, the
-     * player whose turn it is next will be informed. Otherwise, a message will be sent that the game is over and the
-     * winner will be shown.
+     * player whose turn it is next will be informed, and its clock is started (unless it is still running, after an
+     * invalid move). Otherwise, a message will be sent that the game is over and the winner will be shown.
      */
     public void checkOnGameOver() {
         if (game.isGameOver()) {
-            clientHandler1.sendGameOver(VICTORY, game.getWinner());
-            clientHandler2.sendGameOver(VICTORY, game.getWinner());
+            String winner = game.getWinner();
+            clientHandler1.sendGameOver(id, VICTORY, winner);
+            clientHandler2.sendGameOver(id, VICTORY, winner);
+            broadcastGameOver(VICTORY, winner);
+            recordResult(winner);
             quit = true;
         } else {
             if (game.getCurrentPlayer() == playerBlack) {
-                clientHandler1.sendYourTurn();
+                clientHandler1.sendYourTurn(id);
             } else {
-                clientHandler2.sendYourTurn();
+                clientHandler2.sendYourTurn(id);
+            }
+            if (clock == null) {
+                startClock();
             }
         }
-        wantsToCheckForGameOver = false;
+    }
+
+    // Methods needed to keep the clocks of the players:
+
+    /**
+     * Starts the clock of the player whose turn it is: the player has the time per move, or the rest of its main time
+     * if that is less. If there is no limit at all, no clock is started.
+     */
+    private void startClock() {
+        clockStone = game.getStone(game.getCurrentPlayer());
+        long remaining = remainingNanos[clockStone.ordinal()];
+        clockLimitNanos = moveTimeNanos > 0 ? Math.min(moveTimeNanos, remaining) : remaining;
+        clockStarted = System.nanoTime();
+        if (clockLimitNanos != Long.MAX_VALUE) {
+            clock = timingWheel.schedule(() -> submit(GameCommand.timeout()), clockLimitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops the clock of the player whose turn it was, and subtracts the time it has used from its main time.
+     */
+    private void stopClock() {
+        if (clock != null) {
+            clock.cancel();
+            clock = null;
+        }
+        if (clockStone != null && remainingNanos[clockStone.ordinal()] != Long.MAX_VALUE) {
+            remainingNanos[clockStone.ordinal()] -= System.nanoTime() - clockStarted;
+        }
+        clockStone = null;
     }
 
     /**
-     * Processes the quit message that is received if a player has quited during playing a game. A message will be sent
-     * to the player that is still in the game.
+     * Processes the timeout of the clock: the player whose turn it is loses the game, and both players will be
+     * informed. A timeout that was already on its way when the player moved is ignored, as the clock of the next player
+     * has not run out yet.
      */
-    public void processQuit() {
-        if (game.getCurrentPlayer() == playerBlack) {
-            clientHandler1.sendGameOver(DISCONNECT, clientHandler2.getUsername());
+    public void processTimeout() {
+        if (clock == null || System.nanoTime() - clockStarted < clockLimitNanos) {
+            return;
+        }
+        clock = null;
+        String winner = game.getCurrentPlayer() == playerBlack ? playerWhite.getUsername() : playerBlack.getUsername();
+        LOG.info(game.getCurrentPlayer().getUsername() + " has run out of time in game " + id + ".");
+        clientHandler1.sendGameOver(id, TIMEOUT, winner);
+        clientHandler2.sendGameOver(id, TIMEOUT, winner);
+        broadcastGameOver(TIMEOUT, winner);
+        recordResult(winner);
+        quit = true;
+    }
+
+    /**
+     * Processes the resign message: the game ends directly and the opponent of the player that resigned wins. Both
+     * players will be informed.
+     *
+     * @param resigningClientHandler is the clientHandler of the player that resigns.
+     */
+    public void processResign(ClientHandler resigningClientHandler) {
+        if (resigningClientHandler == clientHandler1) {
+            game.resign(playerBlack);
+        } else {
+            game.resign(playerWhite);
+        }
+        clientHandler1.sendGameOver(id, RESIGN, game.getWinner());
+        clientHandler2.sendGameOver(id, RESIGN, game.getWinner());
+        broadcastGameOver(RESIGN, game.getWinner());
+        recordResult(game.getWinner());
+        quit = true;
+    }
+
+    /**
+     * Processes the quit message that is received if a player has quited (or lost the connection) during playing a
+     * game. A message will be sent to the player that is still in the game, who is the winner.
+     *
+     * @param quitingClientHandler is the clientHandler of the player that quits (or whose connection is lost).
+     */
+    public void processQuit(ClientHandler quitingClientHandler) {
+        if (quitingClientHandler == clientHandler1) {
+            clientHandler2.sendGameOver(id, DISCONNECT, clientHandler2.getUsername());
+            broadcastGameOver(DISCONNECT, clientHandler2.getUsername());
+            recordResult(clientHandler2.getUsername());
         } else {
-            clientHandler2.sendGameOver(DISCONNECT, clientHandler1.getUsername());
+            clientHandler1.sendGameOver(id, DISCONNECT, clientHandler1.getUsername());
+            broadcastGameOver(DISCONNECT, clientHandler1.getUsername());
+            recordResult(clientHandler1.getUsername());
         }
-        hasQuited = false;
         quit = true;
     }
+
+    /**
+     * Processes the resume of a player on a new connection: the clientHandler of the lost connection is replaced by the
+     * new one, which gets a snapshot of the board (instead of the moves it has missed), and YOURTURN if it is its turn.
+     *
+     * @param previous is the clientHandler of the lost connection of the player;
+     * @param resumed  is the clientHandler of the new connection.
+     */
+    public void processResume(ClientHandler previous, ClientHandler resumed) {
+        if (previous == clientHandler1) {
+            clientHandler1 = resumed;
+        } else if (previous == clientHandler2) {
+            clientHandler2 = resumed;
+        } else {
+            return;
+        }
+        server.replaceClientOfGame(this, previous, resumed);
+        resumed.sendBoard(id, playerBlack.getUsername(), playerWhite.getUsername(), game.getBoard().toString(),
+                game.getStone(game.getCurrentPlayer()));
+        if ((game.getCurrentPlayer() == playerBlack) == (resumed == clientHandler1)) {
+            resumed.sendYourTurn(id);
+        }
+    }
+
+    /**
+     * Processes the observe message of a client that wants to watch this game: the spectator gets a snapshot of the
+     * board, followed by all moves that are made from now on. As the snapshot is sent by the same thread that sends
+     * the moves, no move is missed or sent twice. The players themselves cannot watch their own game.
+     *
+     * @param spectator is the clientHandler of the client that wants to watch.
+     */
+    public void processObserve(ClientHandler spectator) {
+        if (spectator == clientHandler1 || spectator == clientHandler2) {
+            LOG.info(spectator.getUsername() + " cannot watch game " + id + " as it is playing it.");
+        } else if (spectators.add(spectator)) {
+            spectator.sendBoard(id, playerBlack.getUsername(), playerWhite.getUsername(), game.getBoard().toString(),
+                    game.getStone(game.getCurrentPlayer()));
+        }
+    }
+
+    /**
+     * Sends the message that the game is over to all spectators, who then stop watching.
+     *
+     * @param reason         is the reason the game is over (DISCONNECT, RESIGN or VICTORY);
+     * @param usernameWinner is the username of the winner.
+     */
+    private void broadcastGameOver(String reason, String usernameWinner) {
+        spectators.broadcast((message, captures) -> message.command(Command.GAMEOVER, id).field(reason)
+                .field(usernameWinner));
+        spectators.clear();
+    }
+
+    /**
+     * Appends a record of this game to the journal of the server, if the server keeps a journal.
+     *
+     * @param record is the record to append.
+     */
+    private void journal(JournalRecord record) {
+        if (journal != null) {
+            journalSequence = journal.append(record);
+        }
+    }
+
+    /**
+     * Adds the hash of the board after a move to the former states of the board. The array is only added to, and
+     * replaced by a larger copy when it is full, so the hashes of earlier snapshots never change.
+     *
+     * @param boardHash is the hash of the board after the move.
+     */
+    private void addPreviousBoard(long boardHash) {
+        if (previousBoardCount == previousBoards.length) {
+            previousBoards = Arrays.copyOf(previousBoards, 2 * previousBoards.length);
+        }
+        previousBoards[previousBoardCount++] = boardHash;
+    }
+
+    /**
+     * Publishes a snapshot of the current state of this game, if the server keeps a journal. Only the board is copied.
+     */
+    private void publishSnapshot() {
+        if (journal != null) {
+            snapshot = GameSnapshot.of(id, journalSequence, game, blackToken, whiteToken, previousBoards,
+                    previousBoardCount);
+        }
+    }
+
+    /**
+     * Updates the ratings of both players with the result of this game.
+     *
+     * @param winner is the username of the winner; any other value (such as "none") counts as a draw.
+     */
+    private void recordResult(String winner) {
+        double scoreBlack = 0.5;
+        if (playerBlack.getUsername() != null && playerBlack.getUsername().equals(winner)) {
+            scoreBlack = 1;
+        } else if (playerWhite.getUsername() != null && playerWhite.getUsername().equals(winner)) {
+            scoreBlack = 0;
+        }
+        server.getRatings().recordResult(playerBlack.getUsername(), playerWhite.getUsername(), scoreBlack);
+    }
 }
@@ -0,0 +1,72 @@
+package com.nedap.go.server;
+
+import com.nedap.go.metrics.Histogram;
+
+import java.util.Map;
+
+/**
+ * Represents the matchmaker of the server: it keeps the players that are waiting for a game, and pairs them as soon as
+ * a suitable opponent is available. For every pair, the matchmaker asks the server to start a game.
+ */
+public interface Matchmaker {
+
+    /**
+     * Adds a player to the queue. Nothing happens if this player is already waiting.
+     *
+     * @param clientHandler is the clientHandler of the player that wants to play a game.
+     */
+    void enqueue(ClientHandler clientHandler);
+
+    /**
+     * Removes a player from the queue.
+     *
+     * @param clientHandler is the clientHandler of the player that does not want to wait anymore;
+     * @return true if the player was waiting and is removed, false if the player was not waiting (or has just been
+     * paired).
+     */
+    boolean cancel(ClientHandler clientHandler);
+
+    /**
+     * Checks whether a player is waiting for a game.
+     *
+     * @param clientHandler is the clientHandler of the player of interest;
+     * @return true if the player is waiting, false if not.
+     */
+    boolean isWaiting(ClientHandler clientHandler);
+
+    /**
+     * Gets the number of players that are waiting for a game.
+     *
+     * @return the number of waiting players.
+     */
+    int getNumberOfWaitingPlayers();
+
+    /**
+     * Gets the histogram of the time (in microseconds) paired players have waited in the queue.
+     *
+     * @return the histogram of wait times.
+     */
+    Histogram getWaitTimes();
+
+    /**
+     * Gets the histograms of the time (in microseconds) paired players have waited, per rating bucket. The key of the
+     * map is the lowest rating of the bucket. By default, wait times are not kept per bucket.
+     *
+     * @return the histograms of wait times per bucket; empty if the matchmaker does not use ratings.
+     */
+    default Map<Integer, Histogram> getWaitTimesPerBucket() {
+        return Map.of();
+    }
+
+    /**
+     * Starts the matchmaker. By default, there is nothing to start.
+     */
+    default void start() {
+    }
+
+    /**
+     * Stops the matchmaker. By default, there is nothing to stop.
+     */
+    default void close() {
+    }
+}
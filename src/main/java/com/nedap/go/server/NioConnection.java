@@ -0,0 +1,274 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageDecoder;
+import com.nedap.go.codec.MessageEncoder;
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Represents a non-blocking connection with a client via a socket channel, which is handled by one NioEventLoop.
+ * Incoming bytes are decoded until a complete line (one message of the protocol) is received, which is then passed
+ * to the clientHandler. Outgoing messages are encoded into the outbound buffer and written by the event loop as soon
+ * as the channel is ready, so sending a message never blocks the thread that sends it. The event loop writes all
+ * waiting messages of a connection once per turn, with a single write. If the client does not read its messages and
+ * more than MAX_PENDING_BYTES are waiting, the client is too slow and the connection is dropped.
+ */
+public class NioConnection implements Connection {
+    private static final Logger LOG = Logging.getLogger("server.connection");
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final NioEventLoop eventLoop;
+    private final MessageDecoder decoder;
+    private final OutboundBuffer outbound;
+    private final AtomicBoolean flushScheduled;
+    private ClientHandler clientHandler;
+    private ByteBuffer writeBuffer; // messages taken from the outbound buffer that are not completely written yet
+    private volatile boolean closed;
+
+    /**
+     * Creates a non-blocking connection.
+     *
+     * @param channel   is the channel of the client;
+     * @param key       is the key with which the channel is registered at the selector of the event loop;
+     * @param eventLoop is the event loop that handles this connection.
+     */
+    public NioConnection(SocketChannel channel, SelectionKey key, NioEventLoop eventLoop) {
+        this.channel = channel;
+        this.key = key;
+        this.eventLoop = eventLoop;
+        this.decoder = new MessageDecoder();
+        this.outbound = new OutboundBuffer();
+        this.flushScheduled = new AtomicBoolean();
+    }
+
+    /**
+     * Sets the clientHandler to which the received messages are passed.
+     *
+     * @param clientHandler is the clientHandler of this connection.
+     */
+    public void setClientHandler(ClientHandler clientHandler) {
+        this.clientHandler = clientHandler;
+    }
+
+    // Methods that are called by the event loop:
+
+    /**
+     * Reads all bytes that are available on the channel, and passes each complete message to the clientHandler. Only
+     * called by the event loop.
+     *
+     * @param readBuffer is the (shared) buffer of the event loop to read into.
+     */
+    void read(ByteBuffer readBuffer) {
+        readBuffer.clear();
+        int bytesRead;
+        try {
+            bytesRead = channel.read(readBuffer);
+        } catch (IOException e) {
+            clientHandler.close();
+            return;
+        }
+        if (bytesRead == -1) {
+            clientHandler.close();
+            return;
+        }
+        readBuffer.flip();
+        try {
+            decoder.decode(readBuffer, clientHandler);
+        } catch (ProtocolException e) {
+            LOG.warn("The client does not follow the protocol (" + e.getMessage() + "); the connection will be closed.");
+            clientHandler.close();
+        }
+    }
+
+    /**
+     * Writes the waiting messages to the channel. If the channel cannot accept everything, the event loop is asked to
+     * call this method again as soon as the channel is ready for writing. Only called by the event loop.
+     */
+    void flush() {
+        flushScheduled.set(false);
+        if (!key.isValid()) {
+            return; // the channel is closed
+        }
+        try {
+            while (true) {
+                if (writeBuffer == null) {
+                    MessageEncoder messages = outbound.take();
+                    if (messages == null) {
+                        break;
+                    }
+                    writeBuffer = messages.toByteBuffer();
+                }
+                channel.write(writeBuffer);
+                if (writeBuffer.hasRemaining()) {
+                    // the channel is full; continue when it is ready for writing again:
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                writeBuffer = null;
+                outbound.written();
+            }
+            if (key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            clientHandler.close();
+        }
+    }
+
+    /**
+     * Closes the connection after the event loop failed to handle it (for example because handling a message of the
+     * client threw an exception), as if the connection is lost. Only called by the event loop.
+     *
+     * @param e is the exception with which handling the connection failed.
+     */
+    void closeAfterFailure(RuntimeException e) {
+        LOG.error("Not able to handle the connection of " + clientHandler.getUsername() + " (" + e
+                + "); the connection will be closed.");
+        try {
+            clientHandler.close();
+        } catch (RuntimeException closeException) {
+            // the clientHandler could not clean up, but the channel is closed anyway:
+            close();
+        }
+    }
+
+    // Methods of the connection:
+
+    /**
+     * Starts a message to the client, which is encoded directly into the outbound buffer.
+     *
+     * @return the encoder to encode the message with.
+     */
+    @Override
+    public MessageEncoder beginMessage() {
+        return outbound.begin();
+    }
+
+    /**
+     * Finishes the message to the client, which is then written by the event loop. If too many bytes are waiting to
+     * be written, the connection is dropped.
+     */
+    @Override
+    public void endMessage() {
+        if (!outbound.end()) {
+            LOG.warn("The client does not read its messages fast enough; the connection will be dropped.");
+            outbound.discard();
+            clientHandler.close();
+            return;
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Sends a message that is already encoded for this connection, which is then written by the event loop.
+     *
+     * @param message         is the buffer with the encoded message; its position does not change;
+     * @param maxPendingBytes is the maximum number of bytes that may be waiting after adding the message;
+     * @return false if the message is skipped because too many bytes are waiting, true if not.
+     */
+    @Override
+    public boolean sendEncoded(ByteBuffer message, int maxPendingBytes) {
+        if (!outbound.add(message, maxPendingBytes)) {
+            return false;
+        }
+        scheduleFlush();
+        return true;
+    }
+
+    /**
+     * Lets the event loop write all messages of this connection at the end of its current (or next) turn, if that is
+     * not planned yet.
+     */
+    private void scheduleFlush() {
+        if (!closed && flushScheduled.compareAndSet(false, true)) {
+            eventLoop.scheduleFlush(this);
+        }
+    }
+
+    /**
+     * Switches the framing of the connection, for both the received and the sent messages.
+     *
+     * @param framing is the framing of the next messages.
+     */
+    @Override
+    public void setFraming(Framing framing) {
+        decoder.setFraming(framing);
+        outbound.setFraming(framing);
+    }
+
+    /**
+     * Sets whether game commands start with the id of their game, for both the received and the sent messages.
+     *
+     * @param gameIds is true if game commands carry the id of their game, false if not.
+     */
+    @Override
+    public void setGameIds(boolean gameIds) {
+        decoder.setGameIds(gameIds);
+        outbound.setGameIds(gameIds);
+    }
+
+    /**
+     * Closes the connection. The messages that are still waiting are written if the channel accepts them directly;
+     * then the channel is closed by the event loop.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        outbound.close();
+        if (eventLoop.inEventLoop()) {
+            closeChannel();
+        } else {
+            eventLoop.execute(this::closeChannel);
+        }
+    }
+
+    /**
+     * Closes the channel after a last attempt to write the waiting messages. The channel is closed even if that last
+     * attempt fails. Only called by the event loop.
+     */
+    private void closeChannel() {
+        try {
+            if (key.isValid()) {
+                flush();
+            }
+        } finally {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Not able to close the channel of the client.");
+            }
+        }
+    }
+
+    /**
+     * Gets the number of bytes that are waiting to be written to the client.
+     *
+     * @return the number of waiting bytes.
+     */
+    @Override
+    public int getPendingBytes() {
+        return outbound.getPendingBytes();
+    }
+
+    /**
+     * Checks whether the connection is closed.
+     *
+     * @return true if the connection is closed, false if not.
+     */
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,215 @@
+package com.nedap.go.server;
+
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Represents one event loop of the server in NIO mode. Each event loop has its own thread and selector, and handles
+ * the reading and writing of many non-blocking connections. Other threads never touch the channels of an event loop
+ * directly: they hand over their work as a task (see execute()), which the event loop runs between two selects.
+ */
+public class NioEventLoop implements Runnable {
+    private static final Logger LOG = Logging.getLogger("server.connection");
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks;
+    // one read buffer is shared by all connections of this event loop, as reading only happens on this thread:
+    private final ByteBuffer readBuffer;
+    // connections with messages to write at the end of the current turn (only used by the thread of this event loop):
+    private final List<NioConnection> pendingFlushes;
+    private volatile boolean running;
+
+    /**
+     * Creates a new event loop. The event loop starts handling connections after calling start().
+     *
+     * @param name is the name of the thread of this event loop;
+     * @throws IOException if the selector could not be opened.
+     */
+    public NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        this.pendingFlushes = new ArrayList<>();
+    }
+
+    /**
+     * Starts the thread of this event loop.
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stops this event loop: the thread is stopped and the selector is closed.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOG.warn("Not able to close the selector of " + thread.getName() + ".");
+        }
+    }
+
+    /**
+     * Checks whether the current thread is the thread of this event loop.
+     *
+     * @return true if this method is called by the thread of this event loop, false if not.
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Hands over a task to this event loop, which will run it on its own thread as soon as possible.
+     *
+     * @param task is the task to run on the thread of this event loop.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Asks this event loop to write the queued messages of a connection at the end of its current turn. All messages
+     * that are sent to a connection during one turn are therefore written together.
+     *
+     * @param connection is the connection with messages to write.
+     */
+    public void scheduleFlush(NioConnection connection) {
+        if (inEventLoop()) {
+            pendingFlushes.add(connection);
+        } else {
+            execute(() -> pendingFlushes.add(connection));
+        }
+    }
+
+    /**
+     * Registers a newly accepted channel with this event loop: a connection and clientHandler are created for this
+     * channel, and the event loop starts reading from it. If this fails in any way, the channel is closed and the
+     * permit of the connection is given back.
+     *
+     * @param channel is the newly accepted channel of a client;
+     * @param server  is the server the client is connected to.
+     */
+    public void register(SocketChannel channel, Server server) {
+        execute(() -> {
+            ClientHandler clientHandler = null;
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                NioConnection connection = new NioConnection(channel, key, this);
+                clientHandler = new ClientHandler(connection, server);
+                connection.setClientHandler(clientHandler);
+                key.attach(connection);
+                server.addClientHandler(clientHandler);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Connection with the client could not be established (" + e + ").");
+                // the permit is given back once: with the clientHandler if it was added already, or directly if not:
+                if (clientHandler == null || !server.removeClientHandler(clientHandler)) {
+                    server.releaseConnectionPermit();
+                }
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    LOG.warn("Not able to close the channel of the client.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs this event loop. As long as the event loop is running, it waits until at least one of its channels is
+     * ready to read or write (or until a task is handed over), and then handles these channels and tasks. At the end
+     * of each turn, the messages that were sent during the turn are written. A connection that can not be handled (for
+     * example because one of its messages throws an exception) is closed, while the event loop continues.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (connection == null) {
+                        continue;
+                    }
+                    // an exception of one connection only closes that connection, and never stops the event loop:
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (RuntimeException e) {
+                        connection.closeAfterFailure(e);
+                    }
+                }
+                flushPendingConnections();
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    LOG.error("The event loop " + thread.getName() + " could not select its connections.");
+                }
+            }
+        }
+        runTasks();
+        flushPendingConnections();
+    }
+
+    /**
+     * Writes the queued messages of all connections that have sent messages during this turn.
+     */
+    private void flushPendingConnections() {
+        for (int i = 0; i < pendingFlushes.size(); i++) {
+            NioConnection connection = pendingFlushes.get(i);
+            try {
+                connection.flush();
+            } catch (RuntimeException e) {
+                connection.closeAfterFailure(e);
+            }
+        }
+        pendingFlushes.clear();
+    }
+
+    /**
+     * Runs all tasks that are handed over to this event loop. A task that throws an exception is logged, and never
+     * stops the event loop (the tasks about a connection close that connection themselves when they fail).
+     */
+    private void runTasks() {
+        Runnable task = tasks.poll();
+        while (task != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.error("The event loop " + thread.getName() + " could not run a task (" + e + ").");
+            }
+            task = tasks.poll();
+        }
+    }
+}
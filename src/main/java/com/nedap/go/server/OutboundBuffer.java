@@ -0,0 +1,213 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents the outbound messages of a connection, in two buffers that are swapped: threads that send messages
+ * encode them into the pending buffer, while the writer of the connection writes the other buffer. When the writer is
+ * done, it takes all messages that were sent in the meantime at once. Both buffers are reused, so sending a message
+ * does not create any objects. If more than MAX_PENDING_BYTES are waiting, new messages are refused.
+ */
+class OutboundBuffer {
+    private final ReentrantLock lock;
+    private MessageEncoder pending;
+    private MessageEncoder writing;
+    private volatile int writingLength; // bytes of the buffer that is being written (0 if nothing is being written)
+    private volatile int pendingLength; // bytes of the pending buffer, for the metrics of the server
+    private boolean closed;
+
+    /**
+     * Creates an empty outbound buffer.
+     */
+    OutboundBuffer() {
+        this.lock = new ReentrantLock();
+        this.pending = new MessageEncoder();
+        this.writing = new MessageEncoder();
+    }
+
+    // Methods needed to send a message:
+
+    /**
+     * Starts a new message. The buffer stays locked for other senders until end() is called, which must be called by
+     * the same thread.
+     *
+     * @return the encoder to encode the message with.
+     */
+    MessageEncoder begin() {
+        lock.lock();
+        return pending;
+    }
+
+    /**
+     * Finishes the message that is started with begin(). The message is discarded if the buffer is closed, or if too
+     * many bytes would be waiting.
+     *
+     * @return false if the message is refused because too many bytes are waiting, true if not.
+     */
+    boolean end() {
+        try {
+            pending.end();
+            if (closed) {
+                pending.discardMessage();
+                return true;
+            }
+            if (pending.getLength() + writingLength > Connection.MAX_PENDING_BYTES) {
+                pending.discardMessage();
+                return false;
+            }
+            pendingLength = pending.getLength();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a message that is already encoded (with the framing and game ids of this buffer), for example a message that
+     * is broadcast to many clients. The message is refused if more than maxPendingBytes would be waiting.
+     *
+     * @param message         is the buffer with the finished message; its position does not change;
+     * @param maxPendingBytes is the maximum number of bytes that may be waiting after adding the message;
+     * @return false if the message is refused because too many bytes are waiting, true if not.
+     */
+    boolean add(ByteBuffer message, int maxPendingBytes) {
+        lock.lock();
+        try {
+            if (closed) {
+                return true;
+            }
+            if (pending.getLength() + message.remaining() + writingLength > maxPendingBytes) {
+                return false;
+            }
+            pending.encoded(message);
+            pendingLength = pending.getLength();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the framing of the messages that are sent from now on.
+     *
+     * @param framing is the framing of the next messages.
+     */
+    void setFraming(Framing framing) {
+        lock.lock();
+        try {
+            pending.setFraming(framing);
+            writing.setFraming(framing);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets whether game commands in text framing start with the id of their game, for the messages that are sent from
+     * now on.
+     *
+     * @param gameIds is true if game commands carry the id of their game, false if not.
+     */
+    void setGameIds(boolean gameIds) {
+        lock.lock();
+        try {
+            pending.setGameIds(gameIds);
+            writing.setGameIds(gameIds);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the buffer: messages that are sent after closing are discarded, while the messages that are already
+     * waiting can still be taken by the writer.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the buffer and discards all messages that are waiting.
+     */
+    void discard() {
+        lock.lock();
+        try {
+            closed = true;
+            pending.clear();
+            pendingLength = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Methods needed by the writer of the connection:
+
+    /**
+     * Takes all waiting messages to write them, without waiting. Call written() when they are written completely.
+     *
+     * @return the buffer with the waiting messages; null if no messages are waiting.
+     */
+    MessageEncoder take() {
+        lock.lock();
+        try {
+            return pending.isEmpty() ? null : swap();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the buffer is closed, so no new messages will be added.
+     *
+     * @return true if the buffer is closed, false if not.
+     */
+    boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Swaps the pending buffer with the (empty) buffer that has been written. Only called while locked.
+     *
+     * @return the buffer with the waiting messages.
+     */
+    private MessageEncoder swap() {
+        MessageEncoder taken = pending;
+        pending = writing;
+        writing = taken;
+        writingLength = taken.getLength();
+        pendingLength = pending.getLength();
+        return taken;
+    }
+
+    /**
+     * Marks the buffer that was taken as written, so it can be reused for new messages.
+     */
+    void written() {
+        writing.clear();
+        writingLength = 0;
+    }
+
+    /**
+     * Gets the number of bytes that are waiting to be written: both the messages that are being written and the ones
+     * that are sent since. Does not lock, so the number may be slightly outdated.
+     *
+     * @return the number of waiting bytes.
+     */
+    int getPendingBytes() {
+        return pendingLength + writingLength;
+    }
+}
@@ -0,0 +1,202 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Command;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents the rate limits of the connections of the server, and the metrics of the messages and connections that
+ * are rejected. Every connection gets its own limiter (see newLimiter()) with a token bucket for all its messages and a
+ * token bucket per command, so a client that floods the server with one command (for example MOVE) can still send the
+ * other commands, and one client can never take more than its share of the workers of the server. The burst of each
+ * bucket is twice its rate per second (and at least one message). A client that plays several games over one
+ * connection (MULTIGAME) gets the limits of its MOVE and PASS buckets and of its message bucket once per game, so a bot
+ * that plays many games at once is limited like the same number of single-game connections.
+ * <p>
+ * The limits are read from system properties: go.messageRate (messages per second per connection, default 50) and
+ * go.commandRate (messages of one command per second per connection, default 20).
+ */
+public final class RateLimits {
+    public static final String MESSAGE_RATE_PROPERTY = "go.messageRate";
+    public static final String COMMAND_RATE_PROPERTY = "go.commandRate";
+    private static final int DEFAULT_MESSAGE_RATE = 50;
+    private static final int DEFAULT_COMMAND_RATE = 20;
+    private final double messageRate;
+    private final double commandRate;
+    private final LongAdder[] rejectedByCommand;
+    private final LongAdder floodDisconnects;
+    private final LongAdder delayedAccepts;
+
+    /**
+     * Represents the rate limits of one connection. Only used by the thread that handles the messages of the
+     * connection.
+     */
+    final class Limiter {
+        private final TokenBucket messages;
+        private final TokenBucket[] commands;
+
+        /**
+         * Creates the limiter of a new connection, with full buckets.
+         */
+        private Limiter() {
+            this.messages = new TokenBucket(messageRate, Math.max(1, 2 * messageRate), System.nanoTime());
+            this.commands = new TokenBucket[Command.values().length];
+        }
+
+        /**
+         * Checks whether a message is within the rate limits of a connection that plays at most one game.
+         *
+         * @param command is the command of the message;
+         * @return true if the message may be handled, false if it should be dropped.
+         */
+        boolean tryAcquire(Command command) {
+            return tryAcquire(command, 1);
+        }
+
+        /**
+         * Checks whether a message is within the rate limits of the connection. A message that is not, is counted as
+         * rejected.
+         *
+         * @param command is the command of the message;
+         * @param games   is the number of games the connection is playing;
+         * @return true if the message may be handled, false if it should be dropped.
+         */
+        boolean tryAcquire(Command command, int games) {
+            long now = System.nanoTime();
+            int scale = Math.max(1, games);
+            // the moves of the games of a connection add up, the other commands do not:
+            int commandScale = command == Command.MOVE || command == Command.PASS ? scale : 1;
+            TokenBucket bucket = commands[command.ordinal()];
+            if (bucket == null) {
+                bucket = new TokenBucket(commandRate, Math.max(1, 2 * commandRate), now);
+                commands[command.ordinal()] = bucket;
+            }
+            if (!messages.tryTake(now, scale)) {
+                rejectedByCommand[command.ordinal()].increment();
+                return false;
+            }
+            if (!bucket.tryTake(now, commandScale)) {
+                // the message does not count for the other commands:
+                messages.giveBack(scale);
+                rejectedByCommand[command.ordinal()].increment();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Creates the rate limits with the rates of the system properties.
+     */
+    public RateLimits() {
+        this(Integer.getInteger(MESSAGE_RATE_PROPERTY, DEFAULT_MESSAGE_RATE),
+                Integer.getInteger(COMMAND_RATE_PROPERTY, DEFAULT_COMMAND_RATE));
+    }
+
+    /**
+     * Creates the rate limits.
+     *
+     * @param messageRate is the number of messages per second of one connection;
+     * @param commandRate is the number of messages per second of one command of one connection.
+     */
+    public RateLimits(double messageRate, double commandRate) {
+        this.messageRate = messageRate;
+        this.commandRate = commandRate;
+        this.rejectedByCommand = new LongAdder[Command.values().length];
+        for (int i = 0; i < rejectedByCommand.length; i++) {
+            rejectedByCommand[i] = new LongAdder();
+        }
+        this.floodDisconnects = new LongAdder();
+        this.delayedAccepts = new LongAdder();
+    }
+
+    /**
+     * Creates the limiter of a new connection.
+     *
+     * @return the limiter.
+     */
+    Limiter newLimiter() {
+        return new Limiter();
+    }
+
+    /**
+     * Registers that a connection is closed, as it kept sending messages that exceed the rate limits.
+     */
+    void floodDisconnected() {
+        floodDisconnects.increment();
+    }
+
+    /**
+     * Registers that the server waited with accepting a connection, as it had the maximum number of connections.
+     */
+    void acceptDelayed() {
+        delayedAccepts.increment();
+    }
+
+    // Getters of the metrics:
+
+    /**
+     * Gets the number of messages of one command that are rejected by the rate limits.
+     *
+     * @param command is the command;
+     * @return the number of rejected messages.
+     */
+    public long getRejected(Command command) {
+        return rejectedByCommand[command.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of messages that are rejected by the rate limits.
+     *
+     * @return the number of rejected messages of all commands.
+     */
+    public long getRejected() {
+        long rejected = 0;
+        for (LongAdder adder : rejectedByCommand) {
+            rejected += adder.sum();
+        }
+        return rejected;
+    }
+
+    /**
+     * Gets the number of connections that are closed, as they kept exceeding the rate limits.
+     *
+     * @return the number of closed connections.
+     */
+    public long getFloodDisconnects() {
+        return floodDisconnects.sum();
+    }
+
+    /**
+     * Gets the number of times the server waited with accepting a connection, as it had the maximum number of
+     * connections.
+     *
+     * @return the number of delayed accepts.
+     */
+    public long getDelayedAccepts() {
+        return delayedAccepts.sum();
+    }
+
+    /**
+     * Gets a summary of the metrics of the rate limits.
+     *
+     * @return the metrics as a String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("rejected messages: " + getRejected());
+        String separator = " (";
+        for (Command command : Command.values()) {
+            long rejected = getRejected(command);
+            if (rejected > 0) {
+                summary.append(separator).append(command).append(' ').append(rejected);
+                separator = ", ";
+            }
+        }
+        if (!separator.equals(" (")) {
+            summary.append(')');
+        }
+        return summary + ", flood disconnects: " + getFloodDisconnects() + ", delayed accepts: "
+                + getDelayedAccepts();
+    }
+}
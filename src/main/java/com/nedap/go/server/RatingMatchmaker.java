@@ -0,0 +1,267 @@
+package com.nedap.go.server;
+
+import com.nedap.go.metrics.Histogram;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Represents a matchmaker that pairs players with a similar rating. Waiting players are kept in a skip list sorted on
+ * rating, so adding, removing and finding the nearest opponent all take O(log n), also with tens of thousands of
+ * waiting players. Pairing happens in rounds on a fixed tick: in each round, the players that have waited longest are
+ * paired first, with the waiting player whose rating is nearest. The rating difference a player accepts grows with the
+ * time this player has waited, and after MAX_WAIT_SECONDS any opponent is accepted, so the wait time is bounded.
+ * <p>
+ * Wait times are recorded per rating bucket (BUCKET_WIDTH rating points wide), so the percentiles show whether players
+ * with a rare rating wait longer than others.
+ */
+public class RatingMatchmaker implements Matchmaker {
+    public static final int BUCKET_WIDTH = 100;
+    public static final long TICK_MILLIS = 250;
+    public static final int BASE_WINDOW = 50; // rating difference that is always accepted
+    public static final int WINDOW_GROWTH_PER_SECOND = 25;
+    public static final int MAX_WAIT_SECONDS = 30;
+    private final BiConsumer<ClientHandler, ClientHandler> startGame;
+    private final ToIntFunction<ClientHandler> ratingOf;
+    private final NavigableMap<Ticket, Ticket> byRating;
+    private final NavigableMap<Long, Ticket> byAge;
+    private final Map<ClientHandler, Ticket> tickets;
+    private final AtomicLong nextSequence;
+    private final Histogram waitTimes;
+    private final Map<Integer, Histogram> waitTimesPerBucket;
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Represents the ticket of a waiting player. Tickets are sorted on rating; tickets with the same rating are sorted
+     * on the order in which the players entered the queue.
+     */
+    private static final class Ticket implements Comparable<Ticket> {
+        private final ClientHandler clientHandler;
+        private final int rating;
+        private final long sequence;
+        private final long enqueuedAt;
+
+        private Ticket(ClientHandler clientHandler, int rating, long sequence, long enqueuedAt) {
+            this.clientHandler = clientHandler;
+            this.rating = rating;
+            this.sequence = sequence;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            int byRating = Integer.compare(rating, other.rating);
+            return byRating != 0 ? byRating : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Creates a rating-based matchmaker. Pairing rounds only run after start() is called.
+     *
+     * @param startGame is called for every pair of players, with the player that has waited longest first;
+     * @param ratingOf  gives the rating of a player.
+     */
+    public RatingMatchmaker(BiConsumer<ClientHandler, ClientHandler> startGame, ToIntFunction<ClientHandler> ratingOf) {
+        this.startGame = startGame;
+        this.ratingOf = ratingOf;
+        this.byRating = new ConcurrentSkipListMap<>();
+        this.byAge = new ConcurrentSkipListMap<>();
+        this.tickets = new ConcurrentHashMap<>();
+        this.nextSequence = new AtomicLong();
+        this.waitTimes = new Histogram();
+        this.waitTimesPerBucket = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Starts the thread that runs a pairing round every TICK_MILLIS milliseconds.
+     */
+    @Override
+    public synchronized void start() {
+        if (ticker == null) {
+            ticker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("matchmaker").daemon().factory());
+            ticker.scheduleAtFixedRate(() -> pairPlayers(System.nanoTime()), TICK_MILLIS, TICK_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the thread that runs the pairing rounds.
+     */
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Adds a player to the queue, with its current rating. The player is paired in one of the next rounds.
+     *
+     * @param clientHandler is the clientHandler of the player that wants to play a game.
+     */
+    @Override
+    public void enqueue(ClientHandler clientHandler) {
+        Ticket ticket = new Ticket(clientHandler, ratingOf.applyAsInt(clientHandler), nextSequence.incrementAndGet(),
+                System.nanoTime());
+        if (tickets.putIfAbsent(clientHandler, ticket) != null) {
+            return; // this player is already waiting
+        }
+        byAge.put(ticket.sequence, ticket);
+        byRating.put(ticket, ticket);
+    }
+
+    /**
+     * Removes a player from the queue.
+     *
+     * @param clientHandler is the clientHandler of the player that does not want to wait anymore;
+     * @return true if the player was waiting and is removed, false if the player was not waiting (or has just been
+     * paired).
+     */
+    @Override
+    public boolean cancel(ClientHandler clientHandler) {
+        Ticket ticket = tickets.get(clientHandler);
+        // whoever removes the ticket from the rating map first (this thread or the pairing round) owns it:
+        if (ticket == null || byRating.remove(ticket) == null) {
+            return false;
+        }
+        byAge.remove(ticket.sequence);
+        tickets.remove(clientHandler, ticket);
+        return true;
+    }
+
+    /**
+     * Checks whether a player is waiting for a game.
+     *
+     * @param clientHandler is the clientHandler of the player of interest;
+     * @return true if the player is waiting, false if not.
+     */
+    @Override
+    public boolean isWaiting(ClientHandler clientHandler) {
+        return tickets.containsKey(clientHandler);
+    }
+
+    /**
+     * Gets the number of players that are waiting for a game.
+     *
+     * @return the number of waiting players.
+     */
+    @Override
+    public int getNumberOfWaitingPlayers() {
+        return tickets.size();
+    }
+
+    /**
+     * Gets the histogram of the time (in microseconds) paired players of all ratings have waited in the queue.
+     *
+     * @return the histogram of wait times.
+     */
+    @Override
+    public Histogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * Gets the histograms of the time (in microseconds) paired players have waited, per rating bucket. The key of the
+     * map is the lowest rating of the bucket; the buckets are sorted on rating.
+     *
+     * @return the histograms of wait times per bucket.
+     */
+    @Override
+    public Map<Integer, Histogram> getWaitTimesPerBucket() {
+        return waitTimesPerBucket;
+    }
+
+    // Methods needed to pair players:
+
+    /**
+     * Determines the rating difference a player accepts after waiting for some time.
+     *
+     * @param waitNanos is the time the player has waited, in nanoseconds;
+     * @return the accepted rating difference; Integer.MAX_VALUE if the player has waited MAX_WAIT_SECONDS or more.
+     */
+    static int acceptedDifference(long waitNanos) {
+        long waitSeconds = TimeUnit.NANOSECONDS.toSeconds(waitNanos);
+        if (waitSeconds >= MAX_WAIT_SECONDS) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) (BASE_WINDOW + WINDOW_GROWTH_PER_SECOND * waitSeconds);
+    }
+
+    /**
+     * Runs one pairing round. The players are visited in the order in which they entered the queue; each player is
+     * paired with the waiting player with the nearest rating, if the rating difference is accepted by one of both.
+     * Only one round runs at the same time.
+     *
+     * @param now is the current time (System.nanoTime()).
+     */
+    synchronized void pairPlayers(long now) {
+        for (Ticket ticket : byAge.values()) {
+            if (!byRating.containsKey(ticket)) {
+                continue; // paired in this round, or cancelled
+            }
+            Ticket opponent = findNearestOpponent(ticket);
+            if (opponent == null) {
+                continue;
+            }
+            int accepted = Math.max(acceptedDifference(now - ticket.enqueuedAt),
+                    acceptedDifference(now - opponent.enqueuedAt));
+            if (Math.abs(ticket.rating - opponent.rating) > accepted) {
+                continue;
+            }
+            // both tickets are removed; if a player has cancelled in the meantime, the other ticket is put back:
+            if (byRating.remove(ticket) == null) {
+                continue;
+            }
+            if (byRating.remove(opponent) == null) {
+                byRating.put(ticket, ticket);
+                continue;
+            }
+            match(ticket, opponent, now);
+        }
+    }
+
+    /**
+     * Finds the waiting player with the rating nearest to the rating of a ticket.
+     *
+     * @param ticket is the ticket of the player that looks for an opponent;
+     * @return the ticket of the nearest opponent; null if no other player is waiting.
+     */
+    private Ticket findNearestOpponent(Ticket ticket) {
+        Ticket lower = byRating.lowerKey(ticket);
+        Ticket higher = byRating.higherKey(ticket);
+        if (lower == null) {
+            return higher;
+        } else if (higher == null) {
+            return lower;
+        }
+        return ticket.rating - lower.rating <= higher.rating - ticket.rating ? lower : higher;
+    }
+
+    /**
+     * Pairs two tickets that are removed from the rating map: the wait times are recorded and the game is started.
+     *
+     * @param first  is the ticket of the player that has waited longest;
+     * @param second is the ticket of the other player;
+     * @param now    is the current time (System.nanoTime()).
+     */
+    private void match(Ticket first, Ticket second, long now) {
+        for (Ticket ticket : new Ticket[]{first, second}) {
+            byAge.remove(ticket.sequence);
+            tickets.remove(ticket.clientHandler, ticket);
+            long waitMicros = Math.max(0, now - ticket.enqueuedAt) / 1000;
+            waitTimes.record(waitMicros);
+            int bucket = Math.floorDiv(ticket.rating, BUCKET_WIDTH) * BUCKET_WIDTH;
+            waitTimesPerBucket.computeIfAbsent(bucket, ignored -> new Histogram()).record(waitMicros);
+        }
+        startGame.accept(first.clientHandler, second.clientHandler);
+    }
+}
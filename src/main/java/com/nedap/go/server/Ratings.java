@@ -0,0 +1,53 @@
+package com.nedap.go.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents the Elo ratings of the players of the server. Every player starts with the default rating; after each
+ * game, the ratings of both players are updated with the Elo formula. The ratings are kept as long as the server runs.
+ */
+public class Ratings {
+    public static final int DEFAULT_RATING = 1500;
+    private static final double K_FACTOR = 32; // maximum change of a rating after one game
+    private final Map<String, Integer> ratings;
+
+    /**
+     * Creates an empty registry of ratings.
+     */
+    public Ratings() {
+        this.ratings = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the rating of a player.
+     *
+     * @param username is the username of the player;
+     * @return the rating of the player; the default rating if the player has not played a game yet.
+     */
+    public int getRating(String username) {
+        if (username == null) {
+            return DEFAULT_RATING;
+        }
+        return ratings.getOrDefault(username, DEFAULT_RATING);
+    }
+
+    /**
+     * Updates the ratings of both players after a game.
+     *
+     * @param usernameBlack is the username of the player with black;
+     * @param usernameWhite is the username of the player with white;
+     * @param scoreBlack    is the score of black: 1 for a win, 0.5 for a draw and 0 for a loss.
+     */
+    public void recordResult(String usernameBlack, String usernameWhite, double scoreBlack) {
+        if (usernameBlack == null || usernameWhite == null) {
+            return;
+        }
+        int ratingBlack = getRating(usernameBlack);
+        int ratingWhite = getRating(usernameWhite);
+        double expectedBlack = 1.0 / (1.0 + Math.pow(10, (ratingWhite - ratingBlack) / 400.0));
+        int change = (int) Math.round(K_FACTOR * (scoreBlack - expectedBlack));
+        ratings.merge(usernameBlack, DEFAULT_RATING + change, (rating, ignored) -> rating + change);
+        ratings.merge(usernameWhite, DEFAULT_RATING - change, (rating, ignored) -> rating - change);
+    }
+}
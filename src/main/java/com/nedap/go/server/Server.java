@@ -1,41 +1,174 @@
 package com.nedap.go.server;
 
+import com.nedap.go.game.Board;
+import com.nedap.go.game.Game;
+import com.nedap.go.game.Player;
+import com.nedap.go.game.Stone;
+import com.nedap.go.journal.GameSnapshot;
+import com.nedap.go.journal.JournalRecord;
+import com.nedap.go.journal.JournalReplay;
+import com.nedap.go.journal.MoveJournal;
+import com.nedap.go.journal.SnapshotFile;
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Represents the server that hosts the GO game.
+ * Represents the server that hosts the GO game. Depending on its mode, the server either starts a (platform or virtual)
+ * thread per connected client, or lets a small number of event loops handle all connections (see ServerMode).
  */
 public class Server implements Runnable {
+    private static final Logger LOG = Logging.getLogger("server");
+    public static final String MODE_PROPERTY = "go.serverMode"; // system property with the mode of the ServerTUI
+    public static final String MATCHMAKER_PROPERTY = "go.matchmaker"; // FIFO (default) or RATING
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "go.snapshotInterval"; // seconds between snapshots
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 10;
+    public static final String RESUME_GRACE_PROPERTY = "go.resumeGrace"; // seconds in which a lost player can resume
+    private static final int DEFAULT_RESUME_GRACE = 30;
+    public static final String MOVE_TIME_PROPERTY = "go.moveTime"; // seconds per move; 0 for no limit
+    private static final int DEFAULT_MOVE_TIME = 60;
+    public static final String MAIN_TIME_PROPERTY = "go.mainTime"; // seconds per player per game; 0 for no limit
+    public static final String PING_INTERVAL_PROPERTY = "go.pingInterval"; // seconds of silence before a PING
+    private static final int DEFAULT_PING_INTERVAL = 30;
+    public static final String IDLE_TIMEOUT_PROPERTY = "go.idleTimeout"; // seconds of silence before disconnecting
+    private static final int DEFAULT_IDLE_TIMEOUT = 120;
+    public static final String MAX_CONNECTIONS_PROPERTY = "go.maxConnections"; // connections the server handles at once
+    private static final int DEFAULT_MAX_CONNECTIONS = 10_000;
+    private static final int ACCEPT_BACKLOG = 1024; // number of pending connections the operating system may queue
     private final int port;
+    private final ServerMode mode;
+    private final ThreadFactory clientThreadFactory;
+    private ExecutorService writers; // write the messages of blocking connections (see SocketConnection)
+    private GameScheduler gameScheduler;
     private ServerSocket serverSocket;
+    private ServerSocketChannel serverSocketChannel;
+    private NioEventLoop[] eventLoops;
+    private int nextEventLoop;
     private Thread socketThread;
     private boolean isOpen;
-    private final List<ClientHandler> handlers;
-    private final List<String> usernames;
-    private final Queue<ClientHandler> waitingQueue;
-    private Map<ClientHandler, GoGameHandler> storageOfGameHandlerPerClientHandler;
+    private final Set<ClientHandler> handlers;
+    private final int maxConnections;
+    // a permit per connection that may be handled; the socket thread waits for one before it accepts a connection:
+    private final Semaphore connectionPermits;
+    private final RateLimits rateLimits;
+    private final ServerMetrics metrics;
+    private final Map<String, ClientHandler> usernames;
+    private final Sessions sessions;
+    private final TimingWheel timingWheel;
+    private final long moveTimeMillis;
+    private final long mainTimeMillis;
+    private final long pingIntervalMillis;
+    private final long idleTimeoutMillis;
+    private final Matchmaker matchmaker;
+    private final Ratings ratings;
+    // the games per clientHandler; a client that uses MULTIGAME can play several games at once:
+    private final Map<ClientHandler, Set<GoGameHandler>> storageOfGameHandlerPerClientHandler;
+    private final Map<Integer, GoGameHandler> games;
+    private final AtomicInteger nextGameId;
+    private final Path journalDirectory;
+    private MoveJournal journal;
+    private SnapshotFile snapshotFile;
+    private ScheduledExecutorService snapshotter;
+    // the games that were running when the server stopped, rebuilt from the snapshot file and the journal, until they
+    // are continued (see restoreRecoveredGames()) or ended:
+    private final Map<Integer, GameSnapshot> recoveredGames;
 
     // Methods needed to start and stop the ability to connect to the server:
 
     /**
-     * Creates the server to be able to play the game.
+     * Creates the server to be able to play the game. Each connected client gets its own thread.
      *
      * @param port is the port number that is needed to be able to connect to the server
      */
     public Server(int port, InetAddress address) {
+        this(port, address, ServerMode.BLOCKING);
+    }
+
+    /**
+     * Creates the server to be able to play the game, with the given way of handling connections.
+     *
+     * @param port is the port number that is needed to be able to connect to the server;
+     * @param mode is the way the server handles the connections with its clients.
+     */
+    public Server(int port, InetAddress address, ServerMode mode) {
+        this(port, address, mode, System.getProperty(MoveJournal.PROPERTY) == null ? null
+                : Path.of(System.getProperty(MoveJournal.PROPERTY)));
+    }
+
+    /**
+     * Creates the server to be able to play the game, with the given way of handling connections, which keeps a journal
+     * of its running games (see MoveJournal), so they can be recovered after a restart.
+     *
+     * @param port             is the port number that is needed to be able to connect to the server;
+     * @param mode             is the way the server handles the connections with its clients;
+     * @param journalDirectory is the directory of the journal; null if the server does not keep a journal.
+     */
+    public Server(int port, InetAddress address, ServerMode mode, Path journalDirectory) {
         this.port = port;
+        this.mode = mode;
+        // in VIRTUAL mode, the threads of clientHandlers are virtual threads:
+        if (mode == ServerMode.VIRTUAL) {
+            this.clientThreadFactory = Thread.ofVirtual().name("client-", 0).factory();
+        } else {
+            this.clientThreadFactory = Thread.ofPlatform().name("client-", 0).factory();
+        }
         // a new list is created that stores all clientsHandlers that are created to be able to communicate to clients:
-        this.handlers = new ArrayList<>();
-        // a new list is created that stores all usernames to be able to avoid double use of the same username:
-        this.usernames = new ArrayList<>();
-        // a queue is created in which clients (players) who want to play Go can wait until a second player is available:
-        this.waitingQueue = new LinkedList<>();
+        // (all registries of the server are concurrent hash maps, as they are used by the threads of all clients):
+        this.handlers = ConcurrentHashMap.newKeySet();
+        // at most maxConnections clients are handled at once; the next ones wait in the backlog of the server socket:
+        this.maxConnections = Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS);
+        this.connectionPermits = new Semaphore(maxConnections);
+        this.rateLimits = new RateLimits();
+        this.metrics = new ServerMetrics(this);
+        // a new map is created that stores all usernames (and their clientHandler) to avoid double use of a username:
+        this.usernames = new ConcurrentHashMap<>();
+        // all timeouts of the server (clocks, heartbeats and sessions) run on one timing wheel:
+        this.timingWheel = new TimingWheel();
+        this.moveTimeMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger(MOVE_TIME_PROPERTY, DEFAULT_MOVE_TIME));
+        this.mainTimeMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger(MAIN_TIME_PROPERTY, 0));
+        this.pingIntervalMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger(PING_INTERVAL_PROPERTY,
+                DEFAULT_PING_INTERVAL));
+        this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger(IDLE_TIMEOUT_PROPERTY,
+                DEFAULT_IDLE_TIMEOUT));
+        // the sessions of the clients, which are kept for a while when the connection of a player is lost:
+        this.sessions = new Sessions(timingWheel, TimeUnit.SECONDS.toMillis(Integer.getInteger(RESUME_GRACE_PROPERTY,
+                DEFAULT_RESUME_GRACE)));
+        // the ratings of the players are kept to be able to pair players of similar strength:
+        this.ratings = new Ratings();
+        // a matchmaker is created at which clients (players) who want to play Go can wait until a second player is
+        // available; with -Dgo.matchmaker=RATING, players are paired with a player of similar rating:
+        if ("RATING".equalsIgnoreCase(System.getProperty(MATCHMAKER_PROPERTY))) {
+            this.matchmaker = new RatingMatchmaker(this::createNewGame,
+                    clientHandler -> ratings.getRating(clientHandler.getUsername()));
+        } else {
+            this.matchmaker = new FifoMatchmaker(this::createNewGame);
+        }
         // a map is created to be able to store the gamehandler a clienthandlers is connected to:
-        this.storageOfGameHandlerPerClientHandler = new HashMap<>();
+        this.storageOfGameHandlerPerClientHandler = new ConcurrentHashMap<>();
+        // a map is created to be able to find a running game by its id:
+        this.games = new ConcurrentHashMap<>();
+        this.nextGameId = new AtomicInteger();
+        this.journalDirectory = journalDirectory;
+        this.recoveredGames = new ConcurrentHashMap<>();
         // after creating this server, it is not opened yet:
         isOpen = false;
     }
@@ -48,22 +181,277 @@ public class Server implements Runnable {
      */
     public void start() {
         if (isOpenForConnection()) {
-            System.out.println("Server is already in use.");
+            LOG.warn("Server is already in use.");
             return; // stop as server is already in use.
         }
         if (port < 0 || port > 65535) {
-            System.out.println(port + " is not a valid port number");
+            LOG.warn(port + " is not a valid port number");
             return; // stop as port does not exist.
         } else {
             try {
-                serverSocket = new ServerSocket(port);
+                if (mode == ServerMode.NIO) {
+                    startEventLoops();
+                } else {
+                    serverSocket = new ServerSocket(port);
+                }
             } catch (IOException e) {
-                System.out.println("Not able to start the server with this port.");
+                LOG.error("Not able to start the server with this port.");
             }
         }
+        // the games that were running before a restart are recovered before the first client is accepted:
+        if (journalDirectory != null) {
+            openJournal();
+        }
+        // all games of this server run on the workers of the game scheduler:
+        gameScheduler = new GameScheduler(mode);
+        // the writers are shared by all blocking connections, and only hold a thread while they write; in VIRTUAL mode,
+        // each write gets a virtual thread:
+        if (mode == ServerMode.VIRTUAL) {
+            writers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("writer-", 0).factory());
+        } else {
+            writers = Executors.newCachedThreadPool(Thread.ofPlatform().name("writer-", 0).factory());
+        }
+        timingWheel.start();
+        // the recovered games wait for their players to resume their sessions; the games of which the journal has no
+        // sessions can not be continued, so they are ended after the grace period in which a player could have resumed:
+        restoreRecoveredGames();
+        if (!recoveredGames.isEmpty()) {
+            timingWheel.schedule(this::endRecoveredGames, sessions.getGracePeriodMillis(), TimeUnit.MILLISECONDS);
+        }
+        matchmaker.start();
         socketThread = new Thread(this);
         socketThread.start();
         isOpen = true;
+        // the metrics of the server can be read via JMX while it runs (registered by port, so after opening):
+        metrics.start();
+    }
+
+    /**
+     * Opens the server socket channel and starts one event loop per available processor. The channel itself stays in
+     * blocking mode: only the socket thread accepts connections, and hands each new channel over to an event loop.
+     *
+     * @throws IOException if the channel could not be opened or an event loop could not be created.
+     */
+    private void startEventLoops() throws IOException {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+        serverSocket = serverSocketChannel.socket();
+        eventLoops = new NioEventLoop[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new NioEventLoop("event-loop-" + i);
+            eventLoops[i].start();
+        }
+    }
+
+    /**
+     * Rebuilds the games that were running when the server stopped (or crashed) from the snapshot file and the journal,
+     * and opens the journal for the games of this server. A new snapshot of the recovered games is written directly,
+     * so their records in the journal are not needed anymore, and from then on a snapshot of all games is written every
+     * few seconds. New games get an id that is higher than all ids in the journal. The recovered games are continued
+     * when the server starts (see restoreRecoveredGames()). If the journal can not be read or written, the server runs
+     * without journal.
+     */
+    private void openJournal() {
+        try {
+            long startTime = System.nanoTime();
+            Files.createDirectories(journalDirectory);
+            snapshotFile = new SnapshotFile(journalDirectory);
+            JournalReplay replay = JournalReplay.read(journalDirectory, snapshotFile.read());
+            List<Integer> lostGames = new ArrayList<>();
+            // the recovered games include all records that are read:
+            long sequence = replay.getNextSequence() - 1;
+            for (Map.Entry<Integer, List<JournalRecord>> entry : replay.getLiveGames().entrySet()) {
+                GameSnapshot recovered = recoverGame(entry.getKey(), replay.getSnapshot(entry.getKey()),
+                        entry.getValue(), sequence);
+                if (recovered != null) {
+                    recoveredGames.put(entry.getKey(), recovered);
+                } else {
+                    lostGames.add(entry.getKey());
+                }
+            }
+            nextGameId.set(replay.getLastGameId());
+            journal = new MoveJournal(journalDirectory, MoveJournal.fsyncFromProperty(),
+                    MoveJournal.DEFAULT_SEGMENT_SIZE, replay);
+            // the games that can not be recovered are ended, so their records are not kept forever:
+            for (int id : lostGames) {
+                journal.append(JournalRecord.end(id));
+            }
+            writeSnapshot();
+            LOG.info("Recovered " + recoveredGames.size() + " running games in "
+                    + (System.nanoTime() - startTime) / 1_000_000 + " ms.");
+            int interval = Integer.getInteger(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL);
+            if (interval <= 0) {
+                LOG.warn(interval + " is not a valid value of " + SNAPSHOT_INTERVAL_PROPERTY + " (at least 1 second); a "
+                        + "snapshot is written every " + DEFAULT_SNAPSHOT_INTERVAL + " seconds.");
+                interval = DEFAULT_SNAPSHOT_INTERVAL;
+            }
+            snapshotter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("snapshotter").daemon()
+                    .factory());
+            snapshotter.scheduleWithFixedDelay(this::writeSnapshot, interval, interval, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            LOG.error("Not able to open the journal in " + journalDirectory + " (" + e.getMessage()
+                    + "); running games will not be recovered.");
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds a game from its snapshot (or from the start) and its records in the journal, by playing its moves and
+     * passes again (without GUI), and takes a new snapshot of it, with the session tokens of its players.
+     *
+     * @param id       is the id of the game;
+     * @param snapshot is the snapshot of the game; null if the game has no snapshot;
+     * @param records  are the records of the game after its snapshot, or starting with its START record;
+     * @param sequence is the sequence number of the last record that is read from the journal;
+     * @return the snapshot of the rebuilt game; null if the game has no snapshot and no START record, or if a move of
+     * the journal is not valid in the rebuilt game.
+     */
+    private GameSnapshot recoverGame(int id, GameSnapshot snapshot, List<JournalRecord> records, long sequence) {
+        Game game;
+        String blackToken;
+        String whiteToken;
+        if (snapshot != null) {
+            game = snapshot.restore();
+            blackToken = snapshot.getBlackToken();
+            whiteToken = snapshot.getWhiteToken();
+        } else if (!records.isEmpty() && records.get(0).getType() == JournalRecord.Type.START) {
+            JournalRecord start = records.get(0);
+            game = new Game(new Player(start.getBlack(), Stone.BLACK), new Player(start.getWhite(), Stone.WHITE),
+                    new Board(), null);
+            blackToken = start.getBlackToken();
+            whiteToken = start.getWhiteToken();
+        } else {
+            return null;
+        }
+        for (JournalRecord record : records) {
+            if (record.getType() == JournalRecord.Type.PASS) {
+                game.pass();
+            } else if (record.getType() == JournalRecord.Type.MOVE
+                    && !game.tryPlay(record.getRow(), record.getColumn()).isAccepted()) {
+                LOG.warn("Game " + id + " can not be recovered: " + record + " is not valid.");
+                return null;
+            }
+        }
+        return GameSnapshot.of(id, sequence, game, blackToken, whiteToken);
+    }
+
+    /**
+     * Continues the recovered games of which the journal has the sessions of both players: each gets a gameHandler
+     * whose players hold their restored sessions without connection (see ClientHandler.restoreSession()), so a player
+     * continues the game with RESUME and its token from before the restart, and loses it by disconnect if it does not
+     * come back within the grace period. A player of several games gets one clientHandler for all of them. The clocks
+     * start again with the full time. The other recovered games are kept until endRecoveredGames().
+     */
+    private void restoreRecoveredGames() {
+        Map<String, ClientHandler> players = new HashMap<>();
+        int restored = 0;
+        for (GameSnapshot snapshot : recoveredGames.values()) {
+            if (snapshot.getBlackToken() == null || snapshot.getWhiteToken() == null) {
+                continue;
+            }
+            ClientHandler black = players.computeIfAbsent(snapshot.getBlackToken(),
+                    token -> ClientHandler.restoreSession(snapshot.getBlack(), token, this));
+            ClientHandler white = players.computeIfAbsent(snapshot.getWhiteToken(),
+                    token -> ClientHandler.restoreSession(snapshot.getWhite(), token, this));
+            GoGameHandler goGameHandler = new GoGameHandler(snapshot, black, white, this);
+            // the game is saved before it is removed from the recovered games, so it is in every snapshot:
+            games.put(snapshot.getGameId(), goGameHandler);
+            addGameOfClient(black, goGameHandler);
+            addGameOfClient(white, goGameHandler);
+            recoveredGames.remove(snapshot.getGameId());
+            goGameHandler.createNewGame();
+            restored++;
+        }
+        if (restored > 0) {
+            LOG.info("Restored " + restored + " recovered games; they wait for their players to resume them.");
+        }
+    }
+
+    /**
+     * Ends the games that are recovered when the server started, but can not be continued as the journal does not
+     * have the sessions of their players: each gets an END record in the journal and is removed, so it is not in the
+     * next snapshot, and its records are not kept in the journal anymore. Runs on the timing wheel, once the resume
+     * grace of the server has passed after the start. Recovered games that are still there when the server stops are
+     * kept, and recovered again after the next restart.
+     */
+    private void endRecoveredGames() {
+        int ended = 0;
+        for (Integer id : recoveredGames.keySet()) {
+            if (recoveredGames.remove(id) != null && journal != null) {
+                journal.append(JournalRecord.end(id));
+                ended++;
+            }
+        }
+        LOG.info("Ended " + ended + " recovered games, as their players have not continued them.");
+    }
+
+    /**
+     * Writes a snapshot of all running games (and the recovered games) to the snapshot file, and reports it to the
+     * journal. The games are not stopped: the newest snapshot that each game has published is written. Runs on the
+     * snapshotter thread, and once more when the server stops.
+     */
+    private synchronized void writeSnapshot() {
+        List<GameSnapshot> snapshots = new ArrayList<>(recoveredGames.values());
+        for (GoGameHandler goGameHandler : games.values()) {
+            GameSnapshot snapshot = goGameHandler.getSnapshot();
+            if (snapshot != null) {
+                snapshots.add(snapshot);
+            }
+        }
+        try {
+            long startTime = System.nanoTime();
+            snapshotFile.write(snapshots);
+            journal.snapshotWritten(snapshots);
+            LOG.debug("Wrote a snapshot of " + snapshots.size() + " games in "
+                    + (System.nanoTime() - startTime) / 1_000 + " us.");
+        } catch (IOException e) {
+            LOG.error("Not able to write the snapshot file (" + e.getMessage() + ").");
+        }
+    }
+
+    /**
+     * Gets the journal of the running games of this server.
+     *
+     * @return the journal; null if the server does not keep a journal (or has not been started).
+     */
+    public MoveJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Gets a game that was running when the server stopped, as it is rebuilt from the snapshot file and the journal, and
+     * that can not be continued as the journal does not have the sessions of its players (the other recovered games
+     * are running games again, see getGoGameHandler()). These games are only kept for the resume grace after the start
+     * of the server.
+     *
+     * @param id is the id of the game;
+     * @return a new game in the state of the recovered game; null if no game with this id is recovered.
+     */
+    public Game getRecoveredGame(int id) {
+        GameSnapshot snapshot = recoveredGames.get(id);
+        return snapshot == null ? null : snapshot.restore();
+    }
+
+    /**
+     * Gets the number of games that were running when the server stopped, are rebuilt from the snapshot file and the
+     * journal, and can not be continued as the journal does not have the sessions of their players.
+     *
+     * @return the number of recovered games.
+     */
+    public int getNumberOfRecoveredGames() {
+        return recoveredGames.size();
+    }
+
+    /**
+     * Gets the way the server handles the connections with its clients.
+     *
+     * @return the mode of this server.
+     */
+    public ServerMode getMode() {
+        return mode;
     }
 
     /**
@@ -88,30 +476,58 @@ public class Server implements Runnable {
      */
     public void stop() {
         if (!isOpenForConnection()) {
-            System.out.println("The server is not open for connections yet");
+            LOG.warn("The server is not open for connections yet");
             return;
         }
-        // closes all clientHandlers in the list of handlers that currently handle clients that are connected to the server:
-        while (!handlers.isEmpty()) {
-            handlers.get(0).close();
+        // cancels all games that are still running:
+        for (GoGameHandler goGameHandler : games.values()) {
+            goGameHandler.cancel();
+            removeGame(goGameHandler);
+        }
+        // closes all clientHandlers in the set of handlers that currently handle clients that are connected to the server:
+        for (ClientHandler clientHandler : handlers) {
+            clientHandler.close();
         }
         // after all clientHandlers are closed, try to close the serverSocket as well:
         try {
             serverSocket.close();
         } catch (IOException e) {
-            System.out.println("Server has already stopped or was not even opened at all.");
+            LOG.error("Server has already stopped or was not even opened at all.");
             throw new RuntimeException(e);
         }
         // after the serverSocket is closed, try to join the socketThread with the main thread:
         try {
             socketThread.join();
         } catch (InterruptedException e) {
-            System.out.println("Cannot join main thread.");
+            LOG.error("Cannot join main thread.");
             throw new RuntimeException(e);
         }
+        // in NIO mode, the event loops are stopped after the connections and the server socket are closed:
+        if (eventLoops != null) {
+            for (NioEventLoop eventLoop : eventLoops) {
+                eventLoop.stop();
+            }
+            eventLoops = null;
+        }
+        // the writes that are already handed off (the last messages of the closed connections) still run:
+        writers.shutdown();
+        matchmaker.close();
+        gameScheduler.shutdown();
+        sessions.clear();
+        metrics.stop();
+        timingWheel.stop();
+        // the games that are cancelled are not ended in the journal, so they are recovered when the server restarts
+        // (the last snapshot makes the restart fast):
+        if (journal != null) {
+            snapshotter.shutdownNow();
+            writeSnapshot();
+            snapshotFile.close();
+            journal.close();
+            journal = null;
+        }
         // when the socketThread has joined the main thread, the server is closed and not accepting any connections anymore:
         isOpen = false;
-        System.out.println("Server is closed.");
+        LOG.info("Server is closed.");
     }
 
     /**
@@ -126,83 +542,287 @@ public class Server implements Runnable {
     /**
      * Runs this operation. As long as the serverSocket is not closed (i.e. the server is not closed), it is accepting
      * new connections. When a client wants to connect, a new clientHandler is created and added to the list of active
-     * clientHandlers.
+     * clientHandlers. In NIO mode, each new connection is handed over to the next event loop (round robin), which
+     * creates the clientHandler. While the server handles the maximum number of connections, no new connection is
+     * accepted until one is closed: the new connections wait in the backlog of the server socket.
      */
     @Override
     public void run() {
         try {
-            while (!serverSocket.isClosed()) {
+            if (serverSocketChannel != null) {
+                while (serverSocketChannel.isOpen() && acquireConnectionPermit()) {
+                    SocketChannel channel = serverSocketChannel.accept();
+                    eventLoops[nextEventLoop].register(channel, this);
+                    nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+                }
+                return;
+            }
+            while (!serverSocket.isClosed() && acquireConnectionPermit()) {
                 Socket socket = serverSocket.accept();
                 ClientHandler clientHandler = new ClientHandler(socket, this);
                 addClientHandler(clientHandler);
             }
         } catch (IOException e) {
-            System.out.println("Not able to make a connection between server and client via clientHandler OR server is just closed.");
+            LOG.info("Not able to make a connection between server and client via clientHandler OR server is just closed.");
         }
     }
 
+    /**
+     * Waits until the server may handle one more connection. Only used by the socket thread.
+     *
+     * @return true if a connection may be accepted, false if the server is closed while waiting.
+     */
+    private boolean acquireConnectionPermit() {
+        if (connectionPermits.tryAcquire()) {
+            return true;
+        }
+        rateLimits.acceptDelayed();
+        LOG.warn("The server handles " + maxConnections + " connections; new connections wait until one is closed.");
+        try {
+            while (serverSocketChannel != null ? serverSocketChannel.isOpen() : !serverSocket.isClosed()) {
+                if (connectionPermits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Gives back the permit of an accepted connection for which no clientHandler is kept, for example because the
+     * connection could not be established.
+     */
+    void releaseConnectionPermit() {
+        connectionPermits.release();
+    }
+
+    /**
+     * Starts the thread that reads the input of a connected client (a virtual thread in VIRTUAL mode).
+     *
+     * @param clientHandler is the clientHandler of the connected client.
+     */
+    public void startClientThread(ClientHandler clientHandler) {
+        clientThreadFactory.newThread(clientHandler).start();
+    }
+
+    /**
+     * Gets the factory that creates the threads of the connected clients (virtual threads in VIRTUAL mode).
+     *
+     * @return the thread factory for client threads.
+     */
+    public ThreadFactory getClientThreadFactory() {
+        return clientThreadFactory;
+    }
+
+    /**
+     * Gets the writers that write the messages of the blocking connections to their sockets.
+     *
+     * @return the executor of the writers.
+     */
+    Executor getWriters() {
+        return writers;
+    }
+
     // Methods to add and remove clientHandler of connected client to a list to keep track of all connections:
 
     /**
-     * Adds the clientHandler of a newly connected client to the list of connected clientHandlers.
+     * Adds the clientHandler of a newly connected client to the list of connected clientHandlers, and starts to check
+     * whether the client is still there (see ClientHandler.startHeartbeat()). A clientHandler that is already closed
+     * (because its connection was lost right away) is not kept, and gives back its connection permit.
      *
      * @param clientHandler is the new clientHandler of the newly connected client.
      */
-    public synchronized void addClientHandler(ClientHandler clientHandler) {
+    public void addClientHandler(ClientHandler clientHandler) {
         handlers.add(clientHandler);
+        if (clientHandler.isClosed()) {
+            removeClientHandler(clientHandler);
+            return;
+        }
+        clientHandler.startHeartbeat();
     }
 
     /**
      * Removes the clientHandler from the list of connected clientHandlers when the connection with the Client is closed.
      *
-     * @param clientHandler is the clientHandler of the closed connection with the client.
+     * @param clientHandler is the clientHandler of the closed connection with the client;
+     * @return true if the clientHandler is removed (and the permit of its connection is given back), false if it was
+     * not in the list.
      */
-    public synchronized void removeClientHandler(ClientHandler clientHandler) {
-        handlers.remove(clientHandler);
+    public boolean removeClientHandler(ClientHandler clientHandler) {
+        // the permit of the connection is given back exactly once, by the call that removes the clientHandler:
+        if (handlers.remove(clientHandler)) {
+            connectionPermits.release();
+            return true;
+        }
+        return false;
     }
 
     // Methods to add, remove and get all usernames of players using clients connected via clientHandlers to this
     // server:
 
     /**
-     * Adds the username of a newly connected client to the list of connected clients (players).
+     * Reserves a username for a newly connected client (player). Checking whether the username is free and reserving
+     * it is done in one atomic step, so two clients can never get the same username.
+     *
+     * @param username      is the username this client (player) wants to use;
+     * @param clientHandler is the clientHandler of this client;
+     * @return true if the username is reserved for this client, false if it is already used by another client.
+     */
+    public boolean reserveUsername(String username, ClientHandler clientHandler) {
+        ClientHandler owner = usernames.putIfAbsent(username, clientHandler);
+        return owner == null || owner == clientHandler;
+    }
+
+    /**
+     * Removes the username from the connected clients when the connection with this Client is closed. The username is
+     * only removed if it is reserved by this client.
+     *
+     * @param username      is the username of client that has ended the connection; can be null if the client has no
+     *                      username yet;
+     * @param clientHandler is the clientHandler of this client.
+     */
+    public void removeUsername(String username, ClientHandler clientHandler) {
+        if (username != null) {
+            usernames.remove(username, clientHandler);
+        }
+    }
+
+    /**
+     * Transfers a reserved username to the clientHandler of a client that resumes its session on a new connection.
      *
-     * @param username is the username this client (player) uses.
+     * @param username      is the username of the session;
+     * @param previous      is the clientHandler of the lost connection;
+     * @param clientHandler is the clientHandler of the new connection.
      */
-    public synchronized void addUsername(String username) {
-        if (!usernames.contains(username)) {
-            usernames.add(username);
+    public void transferUsername(String username, ClientHandler previous, ClientHandler clientHandler) {
+        if (!usernames.replace(username, previous, clientHandler)) {
+            usernames.putIfAbsent(username, clientHandler);
         }
     }
 
     /**
-     * Removes the username from the list of connected clients when the connection with this Client is closed.
+     * Gets the rate limits of the connections of this server, with the metrics of the rejected messages and
+     * connections.
+     *
+     * @return the rate limits.
+     */
+    public RateLimits getRateLimits() {
+        return rateLimits;
+    }
+
+    /**
+     * Gets the metrics of this server.
+     *
+     * @return the metrics.
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the clientHandlers of the clients that are connected to this server.
+     *
+     * @return the connected clientHandlers, as an unmodifiable view.
+     */
+    Set<ClientHandler> getClientHandlers() {
+        return Collections.unmodifiableSet(handlers);
+    }
+
+    /**
+     * Gets the number of connections this server handles at the moment.
+     *
+     * @return the number of connected clientHandlers.
+     */
+    public int getNumberOfConnections() {
+        return handlers.size();
+    }
+
+    /**
+     * Gets the maximum number of connections this server handles at once.
+     *
+     * @return the maximum number of connections.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Gets the timing wheel that runs the timeouts of this server.
+     *
+     * @return the timing wheel.
+     */
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    /**
+     * Gets the time a player may think about one move.
+     *
+     * @return the time per move in milliseconds; 0 if there is no limit.
+     */
+    long getMoveTimeMillis() {
+        return moveTimeMillis;
+    }
+
+    /**
+     * Gets the total time a player may think about all its moves in a game.
+     *
+     * @return the time per player in milliseconds; 0 if there is no limit.
+     */
+    long getMainTimeMillis() {
+        return mainTimeMillis;
+    }
+
+    /**
+     * Gets the time after which a client that has not sent anything gets a PING.
+     *
+     * @return the ping interval in milliseconds.
+     */
+    long getPingIntervalMillis() {
+        return pingIntervalMillis;
+    }
+
+    /**
+     * Gets the time after which a client that has not sent anything (not even a PONG) is disconnected.
+     *
+     * @return the idle timeout in milliseconds.
+     */
+    long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Gets the sessions of the clients of this server.
      *
-     * @param username is the username of client that has ended the connection.
+     * @return the sessions.
      */
-    public synchronized void removeUsername(String username) {
-        usernames.remove(username);
+    Sessions getSessions() {
+        return sessions;
     }
 
     /**
-     * Gets the list of all usernames that are currently in use.
+     * Gets the list of all usernames that are currently in use. The list is a copy, so it does not change when clients
+     * connect or disconnect.
      *
      * @return the list of all usernames
      */
-    public synchronized List<String> getListOfUsernames() {
-        return usernames;
+    public List<String> getListOfUsernames() {
+        return List.copyOf(usernames.keySet());
     }
 
     // Methods to add, remove and get all clientHandlers of players using clients connected via these clientHandlers
     // to the queue to be able to wait for playing a game:
 
     /**
-     * Adds the client to the queue to wait for another client to be able to play a GO game.
+     * Adds the client to the queue to wait for another client to be able to play a GO game. As soon as another client
+     * is waiting, the matchmaker pairs both clients and a new game is created.
      *
      * @param clientHandler is the clientHandler of the client that enters the queue.
      */
-    public synchronized void addToQueue(ClientHandler clientHandler) {
-        waitingQueue.add(clientHandler);
+    public void addToQueue(ClientHandler clientHandler) {
+        matchmaker.enqueue(clientHandler);
     }
 
     /**
@@ -210,42 +830,175 @@ public class Server implements Runnable {
      *
      * @param clientHandler is the clientHandler of the client that leaves the queue.
      */
-    public synchronized void removeFromQueue(ClientHandler clientHandler) {
-        waitingQueue.remove(clientHandler);
+    public void removeFromQueue(ClientHandler clientHandler) {
+        matchmaker.cancel(clientHandler);
     }
 
     /**
-     * Gets the queue in which clients connecting via clientHandlers to this server are waiting to play a GO game.
+     * Checks whether a client is in the queue, waiting to play a GO game.
      *
-     * @return the queue with waiting clients for playing a GO game.
+     * @param clientHandler is the clientHandler of the client of interest;
+     * @return true if the client is waiting, false if not.
      */
-    public Queue<ClientHandler> getWaitingQueue() {
-        return waitingQueue;
+    public boolean isInQueue(ClientHandler clientHandler) {
+        return matchmaker.isWaiting(clientHandler);
     }
 
     /**
-     * Creates a new thread for playing a game with two players. In this thread, the reference game is created as well.
+     * Gets the matchmaker that pairs the clients that are waiting to play a GO game.
+     *
+     * @return the matchmaker of this server.
      */
-    public void createNewGame() {
-        if (waitingQueue.size() == 2) {
-            System.out.println("A new game will be created.");
-            ClientHandler clientHandler1 = getWaitingQueue().poll();
-            ClientHandler clientHandler2 = getWaitingQueue().poll();
-            // create the new game in the gameHandlerThread.
-            GoGameHandler goGameHandler = new GoGameHandler(clientHandler1, clientHandler2);
-            // save the combination of clientHandler and gameHandler in the map:
-            storageOfGameHandlerPerClientHandler.put(clientHandler1, goGameHandler);
-            storageOfGameHandlerPerClientHandler.put(clientHandler2, goGameHandler);
-            new Thread(goGameHandler).start();
-        }
+    public Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
+
+    /**
+     * Gets the ratings of the players of this server.
+     *
+     * @return the ratings of the players.
+     */
+    public Ratings getRatings() {
+        return ratings;
+    }
+
+    /**
+     * Creates a new game with two players that are paired by the matchmaker, which is run by the game scheduler. The
+     * reference game is created as well.
+     *
+     * @param clientHandler1 is the clientHandler of the player that has waited longest, who plays with black;
+     * @param clientHandler2 is the clientHandler of the other player, who plays with white.
+     */
+    private void createNewGame(ClientHandler clientHandler1, ClientHandler clientHandler2) {
+        LOG.info("A new game will be created.");
+        // create the new game, which is run by the game scheduler when the players send their commands:
+        int id = nextGameId.incrementAndGet();
+        GoGameHandler goGameHandler = new GoGameHandler(id, clientHandler1, clientHandler2, this);
+        // save the game by its id, and the combination of clientHandler and gameHandler in the map:
+        games.put(id, goGameHandler);
+        addGameOfClient(clientHandler1, goGameHandler);
+        addGameOfClient(clientHandler2, goGameHandler);
+        // only start the game after it is saved, so the first move of a player always finds the game:
+        goGameHandler.createNewGame();
     }
 
     /**
-     * Get the goGameHandler that a clientHandler is connected to.
+     * Gets the scheduler that runs the games of this server, for example to look at its metrics.
      *
-     * @return the goGameHandler of interest.
+     * @return the game scheduler; null if the server has not been started.
+     */
+    public GameScheduler getGameScheduler() {
+        return gameScheduler;
+    }
+
+    /**
+     * Removes a game that has ended from the registries of the server, so its clientHandlers are not connected to it
+     * anymore.
+     *
+     * @param goGameHandler is the gameHandler of the game that has ended.
+     */
+    public void removeGame(GoGameHandler goGameHandler) {
+        games.remove(goGameHandler.getId(), goGameHandler);
+        removeGameOfClient(goGameHandler.getClientHandler1(), goGameHandler);
+        removeGameOfClient(goGameHandler.getClientHandler2(), goGameHandler);
+    }
+
+    /**
+     * Saves that a client plays a game. The set of games of the client is changed atomically, so a game that ends at
+     * the same time never removes the set while another game is added to it.
+     *
+     * @param clientHandler is the clientHandler of the client;
+     * @param goGameHandler is the gameHandler of the game the client plays.
+     */
+    private void addGameOfClient(ClientHandler clientHandler, GoGameHandler goGameHandler) {
+        storageOfGameHandlerPerClientHandler.compute(clientHandler, (key, gamesOfClient) -> {
+            Set<GoGameHandler> result = gamesOfClient == null ? ConcurrentHashMap.newKeySet() : gamesOfClient;
+            result.add(goGameHandler);
+            return result;
+        });
+    }
+
+    /**
+     * Moves a game from the clientHandler of a lost connection to the clientHandler of the new connection of the same
+     * player. Called by the game itself, so it never runs at the same time as removeGame().
+     *
+     * @param goGameHandler is the gameHandler of the game;
+     * @param previous      is the clientHandler of the lost connection;
+     * @param clientHandler is the clientHandler of the new connection.
+     */
+    void replaceClientOfGame(GoGameHandler goGameHandler, ClientHandler previous, ClientHandler clientHandler) {
+        removeGameOfClient(previous, goGameHandler);
+        addGameOfClient(clientHandler, goGameHandler);
+    }
+
+    /**
+     * Removes a game from the games of a client; the set of games is removed as soon as it is empty.
+     *
+     * @param clientHandler is the clientHandler of the client;
+     * @param goGameHandler is the gameHandler of the game that has ended.
+     */
+    private void removeGameOfClient(ClientHandler clientHandler, GoGameHandler goGameHandler) {
+        storageOfGameHandlerPerClientHandler.computeIfPresent(clientHandler, (key, gamesOfClient) -> {
+            gamesOfClient.remove(goGameHandler);
+            return gamesOfClient.isEmpty() ? null : gamesOfClient;
+        });
+    }
+
+    /**
+     * Get the goGameHandler that a clientHandler is connected to. If the client plays several games at once, one of
+     * them is returned; use getGoGameHandlers() to get all of them.
+     *
+     * @return the goGameHandler of interest; null if the client is not playing a game.
      */
     public GoGameHandler getGoGameHandler(ClientHandler clientHandler) {
-        return storageOfGameHandlerPerClientHandler.get(clientHandler);
+        Set<GoGameHandler> gamesOfClient = storageOfGameHandlerPerClientHandler.get(clientHandler);
+        if (gamesOfClient == null) {
+            return null;
+        }
+        for (GoGameHandler goGameHandler : gamesOfClient) {
+            return goGameHandler;
+        }
+        return null;
+    }
+
+    /**
+     * Gets all games that a clientHandler is connected to.
+     *
+     * @param clientHandler is the clientHandler of interest;
+     * @return a copy of the set of games of this client; empty if the client is not playing a game.
+     */
+    public Set<GoGameHandler> getGoGameHandlers(ClientHandler clientHandler) {
+        Set<GoGameHandler> gamesOfClient = storageOfGameHandlerPerClientHandler.get(clientHandler);
+        return gamesOfClient == null ? Set.of() : Set.copyOf(gamesOfClient);
+    }
+
+    /**
+     * Gets the number of games that a clientHandler is connected to, without copying them.
+     *
+     * @param clientHandler is the clientHandler of interest;
+     * @return the number of games of this client; 0 if the client is not playing a game.
+     */
+    public int getNumberOfGames(ClientHandler clientHandler) {
+        Set<GoGameHandler> gamesOfClient = storageOfGameHandlerPerClientHandler.get(clientHandler);
+        return gamesOfClient == null ? 0 : gamesOfClient.size();
+    }
+
+    /**
+     * Gets a running game by its id.
+     *
+     * @param id is the id of the game;
+     * @return the goGameHandler of the game; null if no game with this id is running.
+     */
+    public GoGameHandler getGoGameHandler(int id) {
+        return games.get(id);
+    }
+
+    /**
+     * Gets the number of games that are currently running.
+     *
+     * @return the number of running games.
+     */
+    public int getNumberOfGames() {
+        return games.size();
     }
 }
\ No newline at end of file
@@ -0,0 +1,371 @@
+package com.nedap.go.server;
+
+import com.nedap.go.game.Game;
+import com.nedap.go.metrics.Histogram;
+import com.nedap.go.metrics.Metrics;
+
+import javax.management.ObjectName;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents the metrics of the server: the connections, queued players and live games, the moves that are played
+ * (in total and per second) and how long the games take to handle them, the bytes waiting to be written to the
+ * clients, and the metrics of the game scheduler, the rate limits and the engine. Counting a move only costs an atomic
+ * addition and a histogram record; all other metrics are read from their owners when they are asked for, so the
+ * metrics can stay on in production.
+ * <p>
+ * While the server runs, the metrics are registered as MXBeans under com.nedap.go:type=Server,port=..., together with
+ * the histograms of the move handling times, the queue wait times and the timings of the engine, so they can be read
+ * with any JMX client. With the rating matchmaker, the queue wait times of each rating bucket are registered as well
+ * (name=queueWaitTimes,bucket=...), as soon as the first player of the bucket has been paired. toString() gives all
+ * metrics as plain text (see ServerTUI).
+ */
+public final class ServerMetrics implements ServerMetricsMXBean {
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    private final Server server;
+    private final LongAdder moves;
+    private final LongAdder invalidMoves;
+    private final Histogram moveTimes;
+    private volatile double movesPerSecond;
+    private volatile double invalidMovesPerSecond;
+    // the counts at the last sample; only used on the timing wheel:
+    private long lastSampleTime;
+    private long lastMoves;
+    private long lastInvalidMoves;
+    private volatile TimingWheel.Timeout sampler;
+    private ObjectName[] names;
+    private String port; // the key property of the names of this server
+    private final Map<Integer, ObjectName> bucketNames; // the registered queue wait times per rating bucket
+
+    /**
+     * Creates the metrics of a server.
+     *
+     * @param server is the server of which these are the metrics.
+     */
+    ServerMetrics(Server server) {
+        this.server = server;
+        this.moves = new LongAdder();
+        this.invalidMoves = new LongAdder();
+        this.moveTimes = new Histogram();
+        this.bucketNames = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Registers the metrics as MXBeans, and starts to sample the moves per second on the timing wheel of the server.
+     * Called when the server is started.
+     */
+    synchronized void start() {
+        port = "port=" + server.getPort();
+        names = new ObjectName[]{Metrics.name("type=Server," + port),
+                Metrics.name("type=Histogram," + port + ",name=moveTimes"),
+                Metrics.name("type=Histogram," + port + ",name=queueWaitTimes")};
+        Metrics.register(names[0], this);
+        Metrics.register(names[1], moveTimes);
+        Metrics.register(names[2], server.getMatchmaker().getWaitTimes());
+        // the timings of the engine are shared by all servers of the process:
+        Metrics.registerIfAbsent(Metrics.name("type=Engine,name=isValidMove"), Game.getValidMoveTimes());
+        Metrics.registerIfAbsent(Metrics.name("type=Engine,name=tryPlay"), Game.getPlayTimes());
+        Metrics.registerIfAbsent(Metrics.name("type=Engine,name=getWinner"), Game.getWinnerTimes());
+        registerBuckets();
+        lastSampleTime = System.nanoTime();
+        sampler = server.getTimingWheel().schedule(this::sample, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers the queue wait times of the rating buckets that are not registered yet. Called when the server is
+     * started, and with every sample, as a bucket only gets its histogram when its first player is paired.
+     */
+    private synchronized void registerBuckets() {
+        if (names == null) {
+            return; // stopped
+        }
+        for (Map.Entry<Integer, Histogram> bucket : server.getMatchmaker().getWaitTimesPerBucket().entrySet()) {
+            bucketNames.computeIfAbsent(bucket.getKey(), rating -> {
+                ObjectName name = Metrics.name("type=Histogram," + port + ",name=queueWaitTimes,bucket=" + rating);
+                Metrics.register(name, bucket.getValue());
+                return name;
+            });
+        }
+    }
+
+    /**
+     * Unregisters the MXBeans and stops sampling. Called when the server is stopped.
+     */
+    synchronized void stop() {
+        if (sampler != null) {
+            sampler.cancel();
+        }
+        if (names != null) {
+            for (ObjectName name : names) {
+                Metrics.unregister(name);
+            }
+            names = null;
+        }
+        for (ObjectName name : bucketNames.values()) {
+            Metrics.unregister(name);
+        }
+        bucketNames.clear();
+    }
+
+    /**
+     * Computes the moves per second since the last sample, registers the new rating buckets, and schedules the next
+     * sample. Runs on the timing wheel.
+     */
+    private void sample() {
+        long now = System.nanoTime();
+        long moveCount = moves.sum();
+        long invalidMoveCount = invalidMoves.sum();
+        double seconds = (now - lastSampleTime) / 1_000_000_000.0;
+        movesPerSecond = (moveCount - lastMoves) / seconds;
+        invalidMovesPerSecond = (invalidMoveCount - lastInvalidMoves) / seconds;
+        lastSampleTime = now;
+        lastMoves = moveCount;
+        lastInvalidMoves = invalidMoveCount;
+        registerBuckets();
+        sampler = server.getTimingWheel().schedule(this::sample, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a move that is handled by a game.
+     *
+     * @param valid     is true if the move is played, false if it is invalid;
+     * @param timeNanos is the time the game took to handle the move (checking it, playing it and sending it to the
+     *                  players), in nanoseconds.
+     */
+    void moveHandled(boolean valid, long timeNanos) {
+        if (valid) {
+            moves.increment();
+        } else {
+            invalidMoves.increment();
+        }
+        moveTimes.record(timeNanos);
+    }
+
+    /**
+     * Gets the histogram of the time (in nanoseconds) the games take to handle a move.
+     *
+     * @return the histogram of move handling times.
+     */
+    public Histogram getMoveTimes() {
+        return moveTimes;
+    }
+
+    // Getters of the management interface:
+
+    /**
+     * Gets the number of connections the server handles at the moment.
+     *
+     * @return the number of connections.
+     */
+    @Override
+    public int getActiveConnections() {
+        return server.getNumberOfConnections();
+    }
+
+    /**
+     * Gets the maximum number of connections the server handles at once.
+     *
+     * @return the maximum number of connections.
+     */
+    @Override
+    public int getMaxConnections() {
+        return server.getMaxConnections();
+    }
+
+    /**
+     * Gets the number of players that are waiting for a game.
+     *
+     * @return the number of queued players.
+     */
+    @Override
+    public int getQueuedPlayers() {
+        return server.getMatchmaker().getNumberOfWaitingPlayers();
+    }
+
+    /**
+     * Gets the number of games that are running.
+     *
+     * @return the number of live games.
+     */
+    @Override
+    public int getLiveGames() {
+        return server.getNumberOfGames();
+    }
+
+    /**
+     * Gets the number of valid moves that are played since the server started.
+     *
+     * @return the number of moves.
+     */
+    @Override
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    /**
+     * Gets the number of invalid moves that are tried since the server started.
+     *
+     * @return the number of invalid moves.
+     */
+    @Override
+    public long getInvalidMoves() {
+        return invalidMoves.sum();
+    }
+
+    /**
+     * Gets the number of valid moves per second, over the last second.
+     *
+     * @return the moves per second.
+     */
+    @Override
+    public double getMovesPerSecond() {
+        return movesPerSecond;
+    }
+
+    /**
+     * Gets the number of invalid moves per second, over the last second.
+     *
+     * @return the invalid moves per second.
+     */
+    @Override
+    public double getInvalidMovesPerSecond() {
+        return invalidMovesPerSecond;
+    }
+
+    /**
+     * Gets the fraction of all tried moves that is invalid, since the server started.
+     *
+     * @return the fraction of invalid moves, between 0 and 1.
+     */
+    @Override
+    public double getInvalidMoveRatio() {
+        long invalid = invalidMoves.sum();
+        long all = moves.sum() + invalid;
+        return all == 0 ? 0 : (double) invalid / all;
+    }
+
+    /**
+     * Gets the number of bytes that are waiting to be written to all clients.
+     *
+     * @return the number of waiting bytes.
+     */
+    @Override
+    public long getOutboundBytes() {
+        long bytes = 0;
+        for (ClientHandler clientHandler : server.getClientHandlers()) {
+            bytes += clientHandler.getPendingBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the highest number of bytes that are waiting to be written to one client.
+     *
+     * @return the number of waiting bytes of the client that lags furthest behind.
+     */
+    @Override
+    public int getMaxOutboundBytes() {
+        int maxBytes = 0;
+        for (ClientHandler clientHandler : server.getClientHandlers()) {
+            maxBytes = Math.max(maxBytes, clientHandler.getPendingBytes());
+        }
+        return maxBytes;
+    }
+
+    /**
+     * Gets the number of games that are waiting for a worker of the game scheduler.
+     *
+     * @return the number of waiting games.
+     */
+    @Override
+    public int getPendingGameRuns() {
+        GameScheduler gameScheduler = server.getGameScheduler();
+        return gameScheduler == null ? 0 : gameScheduler.getPendingRuns();
+    }
+
+    /**
+     * Gets the number of commands that are waiting in the mailboxes of all games.
+     *
+     * @return the number of waiting commands.
+     */
+    @Override
+    public long getPendingGameCommands() {
+        GameScheduler gameScheduler = server.getGameScheduler();
+        return gameScheduler == null ? 0 : gameScheduler.getPendingCommands();
+    }
+
+    /**
+     * Gets the number of timeouts (clocks, heartbeats and sessions) that are waiting on the timing wheel.
+     *
+     * @return the number of waiting timeouts.
+     */
+    @Override
+    public int getPendingTimeouts() {
+        return server.getTimingWheel().getPendingTimeouts();
+    }
+
+    /**
+     * Gets the number of messages that are rejected by the rate limits.
+     *
+     * @return the number of rejected messages.
+     */
+    @Override
+    public long getRejectedMessages() {
+        return server.getRateLimits().getRejected();
+    }
+
+    /**
+     * Gets the number of connections that are closed, as they kept exceeding the rate limits.
+     *
+     * @return the number of closed connections.
+     */
+    @Override
+    public long getFloodDisconnects() {
+        return server.getRateLimits().getFloodDisconnects();
+    }
+
+    /**
+     * Gets the number of times the server waited with accepting a connection, as it had the maximum number of
+     * connections.
+     *
+     * @return the number of delayed accepts.
+     */
+    @Override
+    public long getDelayedAccepts() {
+        return server.getRateLimits().getDelayedAccepts();
+    }
+
+    /**
+     * Gets all metrics of the server as plain text, one group per line (with a line per rating bucket for the queue
+     * wait times, if the rating matchmaker is used).
+     *
+     * @return the metrics as a String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder buckets = new StringBuilder();
+        for (Map.Entry<Integer, Histogram> bucket : server.getMatchmaker().getWaitTimesPerBucket().entrySet()) {
+            buckets.append("queue wait, rating ").append(bucket.getKey()).append('-')
+                    .append(bucket.getKey() + RatingMatchmaker.BUCKET_WIDTH - 1).append(" (us): ")
+                    .append(bucket.getValue()).append(System.lineSeparator());
+        }
+        return "connections: " + getActiveConnections() + " (max " + getMaxConnections() + "), queued players: "
+                + getQueuedPlayers() + ", live games: " + getLiveGames() + System.lineSeparator()
+                + String.format("moves: %d (%.1f/s), invalid moves: %d (%.1f/s, %.1f%%)", getMoves(),
+                getMovesPerSecond(), getInvalidMoves(), getInvalidMovesPerSecond(), 100 * getInvalidMoveRatio())
+                + System.lineSeparator()
+                + "move handling (ns): " + moveTimes + System.lineSeparator()
+                + "queue wait (us): " + server.getMatchmaker().getWaitTimes() + System.lineSeparator() + buckets
+                + "outbound: " + getOutboundBytes() + " bytes waiting (max " + getMaxOutboundBytes()
+                + " for one client)" + System.lineSeparator()
+                + "scheduler: " + server.getGameScheduler() + ", timeouts waiting: " + getPendingTimeouts()
+                + System.lineSeparator()
+                + "rate limits: " + server.getRateLimits() + System.lineSeparator()
+                + "engine isValidMove (ns): " + Game.getValidMoveTimes() + System.lineSeparator()
+                + "engine tryPlay (ns): " + Game.getPlayTimes() + System.lineSeparator()
+                + "engine getWinner (ns): " + Game.getWinnerTimes();
+    }
+}
@@ -0,0 +1,128 @@
+package com.nedap.go.server;
+
+/**
+ * Represents the management interface of the metrics of the server (see ServerMetrics), with which they can be read
+ * via JMX.
+ */
+public interface ServerMetricsMXBean {
+
+    /**
+     * Gets the number of connections the server handles at the moment.
+     *
+     * @return the number of connections.
+     */
+    int getActiveConnections();
+
+    /**
+     * Gets the maximum number of connections the server handles at once.
+     *
+     * @return the maximum number of connections.
+     */
+    int getMaxConnections();
+
+    /**
+     * Gets the number of players that are waiting for a game.
+     *
+     * @return the number of queued players.
+     */
+    int getQueuedPlayers();
+
+    /**
+     * Gets the number of games that are running.
+     *
+     * @return the number of live games.
+     */
+    int getLiveGames();
+
+    /**
+     * Gets the number of valid moves that are played since the server started.
+     *
+     * @return the number of moves.
+     */
+    long getMoves();
+
+    /**
+     * Gets the number of invalid moves that are tried since the server started.
+     *
+     * @return the number of invalid moves.
+     */
+    long getInvalidMoves();
+
+    /**
+     * Gets the number of valid moves per second, over the last second.
+     *
+     * @return the moves per second.
+     */
+    double getMovesPerSecond();
+
+    /**
+     * Gets the number of invalid moves per second, over the last second.
+     *
+     * @return the invalid moves per second.
+     */
+    double getInvalidMovesPerSecond();
+
+    /**
+     * Gets the fraction of all tried moves that is invalid, since the server started.
+     *
+     * @return the fraction of invalid moves, between 0 and 1.
+     */
+    double getInvalidMoveRatio();
+
+    /**
+     * Gets the number of bytes that are waiting to be written to all clients.
+     *
+     * @return the number of waiting bytes.
+     */
+    long getOutboundBytes();
+
+    /**
+     * Gets the highest number of bytes that are waiting to be written to one client.
+     *
+     * @return the number of waiting bytes of the client that lags furthest behind.
+     */
+    int getMaxOutboundBytes();
+
+    /**
+     * Gets the number of games that are waiting for a worker of the game scheduler.
+     *
+     * @return the number of waiting games.
+     */
+    int getPendingGameRuns();
+
+    /**
+     * Gets the number of commands that are waiting in the mailboxes of all games.
+     *
+     * @return the number of waiting commands.
+     */
+    long getPendingGameCommands();
+
+    /**
+     * Gets the number of timeouts (clocks, heartbeats and sessions) that are waiting on the timing wheel.
+     *
+     * @return the number of waiting timeouts.
+     */
+    int getPendingTimeouts();
+
+    /**
+     * Gets the number of messages that are rejected by the rate limits.
+     *
+     * @return the number of rejected messages.
+     */
+    long getRejectedMessages();
+
+    /**
+     * Gets the number of connections that are closed, as they kept exceeding the rate limits.
+     *
+     * @return the number of closed connections.
+     */
+    long getFloodDisconnects();
+
+    /**
+     * Gets the number of times the server waited with accepting a connection, as it had the maximum number of
+     * connections.
+     *
+     * @return the number of delayed accepts.
+     */
+    long getDelayedAccepts();
+}
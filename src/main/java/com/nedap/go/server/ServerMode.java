@@ -0,0 +1,21 @@
+package com.nedap.go.server;
+
+/**
+ * Represents the way the server handles the connections with its clients.
+ */
+public enum ServerMode {
+    /**
+     * Each connection is handled by its own thread, which blocks while reading from the socket.
+     */
+    BLOCKING,
+    /**
+     * All connections are handled by a small number of event loops, which use non-blocking channels and a selector.
+     */
+    NIO,
+    /**
+     * Each connection and each game is handled by its own virtual thread, which blocks while reading from the socket.
+     * Blocking a virtual thread does not block an operating system thread, so many connections only cost a little
+     * memory each.
+     */
+    VIRTUAL
+}
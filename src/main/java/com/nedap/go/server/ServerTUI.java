@@ -2,11 +2,13 @@ package com.nedap.go.server;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.Scanner;
 
 /**
  * Represents the textual user interface for starting the server and handling the input from clients via clientHandlers.
+ * While the server runs, METRICS prints its metrics as plain text, and QUIT stops it.
  */
 public class ServerTUI {
     public static void main(String[] args) {
@@ -21,17 +23,32 @@ public class ServerTUI {
             }
             // create and start a new server with the port input from above
 //            Server server = new Server(port, InetAddress.getLocalHost())
-            Server server = new Server(port, InetAddress.getByName("192.168.8.101"));
+            // the way connections are handled can be chosen with -Dgo.serverMode=NIO (default: BLOCKING):
+            String modeName = System.getProperty(Server.MODE_PROPERTY, ServerMode.BLOCKING.name());
+            ServerMode mode;
+            try {
+                mode = ServerMode.valueOf(modeName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("No valid server mode: " + modeName + "; use one of "
+                        + Arrays.toString(ServerMode.values()) + ".");
+                return;
+            }
+            Server server = new Server(port, InetAddress.getByName("192.168.8.101"), mode);
             server.start();
             System.out.println("Port number on which this server is accepting clients is: " + server.getPort());
+            System.out.println("If you want to see the metrics of the server, type METRICS.");
             System.out.println("If you want to stop the server, type QUIT.");
             // server works until quit is used. Until then, all input from clients (via clientHandlers) will be handled via
             // run() methods in the clientHandler class
             boolean quit = false;
             while (!quit) {
-                if (scanner.nextLine().equals("quit") || scanner.nextLine().equals("QUIT")) {
+                String command = scanner.nextLine().trim();
+                if (command.equalsIgnoreCase("quit")) {
                     server.stop();
                     quit = true;
+                } else if (command.equalsIgnoreCase("metrics")) {
+                    // the same metrics can be read via JMX (see ServerMetrics):
+                    System.out.println(server.getMetrics());
                 }
             }
             // handle exception when port number input was not a number:
@@ -0,0 +1,202 @@
+package com.nedap.go.server;
+
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the sessions of the clients of the server. A client gets a session token with JOINED; if its connection
+ * is lost while it is playing, its session is kept for a grace period, in which the client can attach a new connection
+ * to its games with RESUME and this token (so a short network problem does not end its games). If the session is not
+ * resumed within the grace period, the session expires and its games are lost by disconnect, as without sessions.
+ * <p>
+ * Sessions are opened, closed and resumed by the threads of all clients, and expire on the timing wheel of the server;
+ * all methods are synchronized, so a session is either resumed or expires, never both.
+ */
+class Sessions {
+    private static final Logger LOG = Logging.getLogger("server");
+    private static final int TOKEN_BYTES = 16;
+    private final long gracePeriodMillis;
+    private final SecureRandom random;
+    private final Map<String, Session> sessions;
+    private final TimingWheel timingWheel;
+
+    /**
+     * Represents the session of one client: its username, the clientHandler that currently holds the session, and the
+     * expiry of a session whose connection is lost.
+     */
+    private static final class Session {
+        private final String username;
+        private ClientHandler clientHandler;
+        private TimingWheel.Timeout expiry; // null while the session has a connection
+
+        /**
+         * Creates a session.
+         *
+         * @param username      is the username of the client;
+         * @param clientHandler is the clientHandler of the client.
+         */
+        private Session(String username, ClientHandler clientHandler) {
+            this.username = username;
+            this.clientHandler = clientHandler;
+        }
+    }
+
+    /**
+     * Creates the sessions of a server.
+     *
+     * @param timingWheel       is the timing wheel on which the sessions expire;
+     * @param gracePeriodMillis is the time (in milliseconds) in which a session whose connection is lost can be
+     *                          resumed.
+     */
+    Sessions(TimingWheel timingWheel, long gracePeriodMillis) {
+        this.gracePeriodMillis = gracePeriodMillis;
+        this.random = new SecureRandom();
+        this.sessions = new HashMap<>();
+        this.timingWheel = timingWheel;
+    }
+
+    /**
+     * Opens a session for a client that has joined with a username.
+     *
+     * @param username      is the username of the client;
+     * @param clientHandler is the clientHandler of the client;
+     * @return the token of the new session, which the client needs to resume the session.
+     */
+    synchronized String open(String username, ClientHandler clientHandler) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        String token;
+        do {
+            random.nextBytes(bytes);
+            // URL-safe Base64 does not contain the separator of the protocol:
+            token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        } while (sessions.containsKey(token));
+        sessions.put(token, new Session(username, clientHandler));
+        return token;
+    }
+
+    /**
+     * Opens a session with the token it had before the server restarted, for a player of a game that is recovered from
+     * the journal. Only used when the server starts, before any client has joined.
+     *
+     * @param token         is the token of the session, as kept in the journal;
+     * @param username      is the username of the player;
+     * @param clientHandler is the clientHandler that holds the session until the player resumes it.
+     */
+    synchronized void restore(String token, String username, ClientHandler clientHandler) {
+        sessions.put(token, new Session(username, clientHandler));
+    }
+
+    /**
+     * Closes the session of a client, for example because it has quit. A session that is held by another clientHandler
+     * (as it is resumed) is not closed.
+     *
+     * @param token         is the token of the session; null if the client has no session;
+     * @param clientHandler is the clientHandler of the client.
+     */
+    synchronized void close(String token, ClientHandler clientHandler) {
+        Session session = token == null ? null : sessions.get(token);
+        if (session != null && session.clientHandler == clientHandler) {
+            if (session.expiry != null) {
+                session.expiry.cancel();
+            }
+            sessions.remove(token);
+        }
+    }
+
+    /**
+     * Keeps the session of a client whose connection is lost for the grace period. If the session is not resumed
+     * within the grace period, it is removed and onExpiry is run (on the thread of the timing wheel).
+     *
+     * @param token         is the token of the session; null if the client has no session;
+     * @param clientHandler is the clientHandler of the client whose connection is lost;
+     * @param onExpiry      is run when the session expires;
+     * @return true if the session is kept, false if the client has no session (anymore).
+     */
+    synchronized boolean detach(String token, ClientHandler clientHandler, Runnable onExpiry) {
+        Session session = token == null ? null : sessions.get(token);
+        if (session == null || session.clientHandler != clientHandler || session.expiry != null) {
+            return false;
+        }
+        session.expiry = timingWheel.schedule(() -> expire(token, session, onExpiry), gracePeriodMillis,
+                TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Removes a session of which the grace period has ended, and runs onExpiry, unless the session has been resumed in
+     * the meantime.
+     *
+     * @param token    is the token of the session;
+     * @param session  is the session;
+     * @param onExpiry is run if the session expires.
+     */
+    private void expire(String token, Session session, Runnable onExpiry) {
+        synchronized (this) {
+            if (sessions.get(token) != session || session.expiry == null) {
+                return;
+            }
+            sessions.remove(token);
+        }
+        LOG.info("The session of " + session.username + " has expired.");
+        onExpiry.run();
+    }
+
+    /**
+     * Attaches a new connection to a session, which is then held by the clientHandler of the new connection. A session
+     * can also be resumed while its old connection still seems to be open (the server often notices a lost connection
+     * later than the client).
+     *
+     * @param token         is the token of the session;
+     * @param clientHandler is the clientHandler of the new connection;
+     * @return the clientHandler that held the session; null if no session has this token (or it has expired).
+     */
+    synchronized ClientHandler resume(String token, ClientHandler clientHandler) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (session.expiry != null) {
+            session.expiry.cancel();
+            session.expiry = null;
+        }
+        ClientHandler previous = session.clientHandler;
+        session.clientHandler = clientHandler;
+        return previous;
+    }
+
+    /**
+     * Gets the time in which a session whose connection is lost can be resumed.
+     *
+     * @return the grace period, in milliseconds.
+     */
+    long getGracePeriodMillis() {
+        return gracePeriodMillis;
+    }
+
+    /**
+     * Gets the number of sessions, including the sessions that wait to be resumed.
+     *
+     * @return the number of sessions.
+     */
+    synchronized int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Removes all sessions without running their expiry. Used when the server stops.
+     */
+    synchronized void clear() {
+        for (Session session : sessions.values()) {
+            if (session.expiry != null) {
+                session.expiry.cancel();
+            }
+        }
+        sessions.clear();
+    }
+}
@@ -0,0 +1,246 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageDecoder;
+import com.nedap.go.codec.MessageEncoder;
+import com.nedap.go.codec.MessageHandler;
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Represents a blocking connection with a client via a socket. Messages are read and decoded by the thread of the
+ * clientHandler (see read()). Sending a message never blocks: the message is encoded into the outbound buffer of the
+ * connection, and a write is handed off to the writers of the server, which write all waiting messages to the socket at
+ * once. The writers are shared by all connections (see Server.getWriters()): a connection only holds a writer thread
+ * while it has messages to write, so in BLOCKING mode an idle connection costs one platform thread (its reader) instead
+ * of two. If the client does not read its messages and more than MAX_PENDING_BYTES are waiting, the client is too slow
+ * and the connection is dropped, so neither the game that sends the messages nor a writer is stalled by a slow client.
+ */
+public class SocketConnection implements Connection {
+    private static final Logger LOG = Logging.getLogger("server.connection");
+    private static final int READ_BUFFER_SIZE = 8192;
+    private final Socket socket;
+    private final InputStream inputFromClient;
+    private final OutputStream outputToClient;
+    private final ByteBuffer readBuffer;
+    private final MessageDecoder decoder;
+    private final OutboundBuffer outbound;
+    private final Executor writers;
+    private final AtomicBoolean writing; // whether a write of this connection is handed off to the writers
+    private volatile boolean closed;
+
+    /**
+     * Creates a connection with a client via a socket.
+     *
+     * @param socket  is the client socket that is needed to establish a connection between server and client;
+     * @param writers is the executor that writes the messages of the connection to the socket;
+     * @throws IOException if the streams of the socket could not be opened.
+     */
+    public SocketConnection(Socket socket, Executor writers) throws IOException {
+        this.socket = socket;
+        this.inputFromClient = socket.getInputStream();
+        this.outputToClient = socket.getOutputStream();
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.decoder = new MessageDecoder();
+        this.outbound = new OutboundBuffer();
+        this.writers = writers;
+        this.writing = new AtomicBoolean();
+    }
+
+    /**
+     * Reads the bytes that the client has sent, and passes each complete message to the handler. Blocks until at
+     * least one byte is received.
+     *
+     * @param handler is the handler to which the received messages are passed;
+     * @return false if the client has closed the connection, true if not.
+     * @throws IOException if the bytes could not be read, or if the client does not follow the protocol.
+     */
+    public boolean read(MessageHandler handler) throws IOException {
+        int bytesRead = inputFromClient.read(readBuffer.array());
+        if (bytesRead == -1) {
+            return false;
+        }
+        readBuffer.position(0).limit(bytesRead);
+        try {
+            decoder.decode(readBuffer, handler);
+        } catch (ProtocolException e) {
+            LOG.warn("The client does not follow the protocol (" + e.getMessage() + "); the connection will be closed.");
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Starts a message to the client, which is encoded directly into the outbound buffer.
+     *
+     * @return the encoder to encode the message with.
+     */
+    @Override
+    public MessageEncoder beginMessage() {
+        return outbound.begin();
+    }
+
+    /**
+     * Finishes the message to the client, which is then written by a writer. If too many bytes are waiting to be
+     * written, the connection is dropped.
+     */
+    @Override
+    public void endMessage() {
+        if (!outbound.end()) {
+            LOG.warn("The client does not read its messages fast enough; the connection will be dropped.");
+            abort();
+            return;
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Sends a message that is already encoded for this connection, which is then written by a writer.
+     *
+     * @param message         is the buffer with the encoded message; its position does not change;
+     * @param maxPendingBytes is the maximum number of bytes that may be waiting after adding the message;
+     * @return false if the message is skipped because too many bytes are waiting, true if not.
+     */
+    @Override
+    public boolean sendEncoded(ByteBuffer message, int maxPendingBytes) {
+        if (!outbound.add(message, maxPendingBytes)) {
+            return false;
+        }
+        scheduleWrite();
+        return true;
+    }
+
+    /**
+     * Hands a write of the waiting messages off to the writers, unless one is already handed off. Never blocks.
+     */
+    private void scheduleWrite() {
+        if (writing.compareAndSet(false, true)) {
+            try {
+                writers.execute(this::writeMessages);
+            } catch (RejectedExecutionException e) {
+                // the server is stopping, so the messages can not be written anymore:
+                writing.set(false);
+                abort();
+            }
+        }
+    }
+
+    /**
+     * Writes the messages of the outbound buffer to the socket until no messages are waiting; all messages that are
+     * waiting are written at once. Closes the socket once the connection is closed and its last messages are written.
+     * Runs on one of the writers.
+     */
+    private void writeMessages() {
+        try {
+            MessageEncoder messages = outbound.take();
+            while (messages != null) {
+                messages.writeTo(outputToClient);
+                outputToClient.flush();
+                outbound.written();
+                messages = outbound.take();
+            }
+        } catch (IOException e) {
+            // the socket is closed, or the client is gone:
+            closed = true;
+            outbound.discard();
+            closeSocket();
+            return;
+        }
+        if (outbound.isClosed()) {
+            closeSocket();
+            return;
+        }
+        writing.set(false);
+        // a message that is sent (or a close) while the write was ending is not lost:
+        if (outbound.getPendingBytes() > 0 || outbound.isClosed()) {
+            scheduleWrite();
+        }
+    }
+
+    /**
+     * Switches the framing of the connection, for both the received and the sent messages.
+     *
+     * @param framing is the framing of the next messages.
+     */
+    @Override
+    public void setFraming(Framing framing) {
+        decoder.setFraming(framing);
+        outbound.setFraming(framing);
+    }
+
+    /**
+     * Sets whether game commands start with the id of their game, for both the received and the sent messages.
+     *
+     * @param gameIds is true if game commands carry the id of their game, false if not.
+     */
+    @Override
+    public void setGameIds(boolean gameIds) {
+        decoder.setGameIds(gameIds);
+        outbound.setGameIds(gameIds);
+    }
+
+    /**
+     * Closes the connection. The messages that are still waiting are written first; then the socket is closed by a
+     * writer.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        outbound.close();
+        scheduleWrite();
+    }
+
+    /**
+     * Drops the connection directly, without writing the messages that are still waiting. Closing the socket stops the
+     * thread that reads from it, which then closes the clientHandler.
+     */
+    private void abort() {
+        closed = true;
+        outbound.discard();
+        closeSocket();
+    }
+
+    /**
+     * Closes the socket, which also closes its input and output stream.
+     */
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOG.warn("Not able to close the socket of the client.");
+        }
+    }
+
+    /**
+     * Gets the number of bytes that are waiting to be written to the client.
+     *
+     * @return the number of waiting bytes.
+     */
+    @Override
+    public int getPendingBytes() {
+        return outbound.getPendingBytes();
+    }
+
+    /**
+     * Checks whether the connection is closed.
+     *
+     * @return true if the connection is closed (or is closing), false if not.
+     */
+    @Override
+    public boolean isClosed() {
+        return closed || socket.isClosed();
+    }
+}
@@ -0,0 +1,137 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageEncoder;
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Represents the spectators of one game, to which the messages of the game (MOVE and GAMEOVER) are broadcast. A
+ * message is encoded once for each encoding that the spectators use (text or binary framing, with or without game
+ * ids, with or without captures), and the same read-only bytes are then added to the outbound buffer of every
+ * spectator, so sending a message to one more spectator only costs a copy of its bytes. A spectator that has more than
+ * MAX_PENDING_BYTES waiting is too slow: it is removed, so the game never waits for its spectators. Only used by the
+ * gameHandler of the game, so no locks are needed.
+ */
+class Spectators {
+    private static final Logger LOG = Logging.getLogger("server.game");
+    // maximum number of bytes that may wait to be written to a spectator; a spectator that lags further behind is
+    // removed (lower than Connection.MAX_PENDING_BYTES, as a spectator does not need to stay connected to watch):
+    static final int MAX_PENDING_BYTES = 16 * 1024;
+    private static final int ENCODINGS = 8; // text or binary framing, with or without game ids and captures
+    private final int gameId;
+    private final List<ClientHandler> spectators;
+    private final MessageEncoder[] encoders;
+    private final ByteBuffer[] encoded;
+
+    /**
+     * Creates an empty set of spectators for a game.
+     *
+     * @param gameId is the id of the game that is watched.
+     */
+    Spectators(int gameId) {
+        this.gameId = gameId;
+        this.spectators = new ArrayList<>();
+        this.encoders = new MessageEncoder[ENCODINGS];
+        this.encoded = new ByteBuffer[ENCODINGS];
+        for (int encoding = 0; encoding < ENCODINGS; encoding++) {
+            encoders[encoding] = new MessageEncoder();
+            encoders[encoding].setFraming((encoding & 4) != 0 ? Framing.BINARY : Framing.TEXT);
+            encoders[encoding].setGameIds((encoding & 2) != 0);
+        }
+    }
+
+    /**
+     * Encodes a message that is broadcast to the spectators.
+     */
+    @FunctionalInterface
+    interface MessageWriter {
+        /**
+         * Encodes the message (command, fields) into the given encoder; it is not finished with end().
+         *
+         * @param encoder  is the encoder for one encoding of the spectators;
+         * @param captures is true if the spectators of this encoding use CAPTURES (see com.nedap.go.Protocol).
+         */
+        void write(MessageEncoder encoder, boolean captures);
+    }
+
+    /**
+     * Adds a spectator. A client that is already watching this game is not added twice.
+     *
+     * @param spectator is the clientHandler of the spectator;
+     * @return true if the spectator is added, false if it was already watching.
+     */
+    boolean add(ClientHandler spectator) {
+        if (spectators.contains(spectator)) {
+            return false;
+        }
+        return spectators.add(spectator);
+    }
+
+    /**
+     * Removes a spectator.
+     *
+     * @param spectator is the clientHandler of the spectator.
+     */
+    void remove(ClientHandler spectator) {
+        spectators.remove(spectator);
+    }
+
+    /**
+     * Gets the number of spectators.
+     *
+     * @return the number of spectators of the game.
+     */
+    int size() {
+        return spectators.size();
+    }
+
+    /**
+     * Sends a message to all spectators. The message is encoded at most once per encoding, and only for the encodings
+     * that are used. Spectators that are closed or too slow are removed.
+     *
+     * @param message encodes the message for one encoding.
+     */
+    void broadcast(MessageWriter message) {
+        if (spectators.isEmpty()) {
+            return;
+        }
+        for (int encoding = 0; encoding < ENCODINGS; encoding++) {
+            encoded[encoding] = null;
+        }
+        Iterator<ClientHandler> iterator = spectators.iterator();
+        while (iterator.hasNext()) {
+            ClientHandler spectator = iterator.next();
+            if (spectator.isClosed()) {
+                iterator.remove();
+                continue;
+            }
+            int encoding = (spectator.isBinary() ? 4 : 0) + (spectator.isMultiGame() ? 2 : 0)
+                    + (spectator.isCaptures() ? 1 : 0);
+            if (encoded[encoding] == null) {
+                MessageEncoder encoder = encoders[encoding];
+                encoder.clear();
+                message.write(encoder, (encoding & 1) != 0);
+                encoder.end();
+                encoded[encoding] = encoder.toByteBuffer().asReadOnlyBuffer();
+            }
+            if (!spectator.sendEncoded(encoded[encoding])) {
+                iterator.remove();
+                LOG.info(spectator.getUsername() + " does not read the moves of game " + gameId
+                        + " fast enough, and stops watching.");
+            }
+        }
+    }
+
+    /**
+     * Removes all spectators, for example because the game has ended.
+     */
+    void clear() {
+        spectators.clear();
+    }
+}
@@ -0,0 +1,300 @@
+package com.nedap.go.server;
+
+import com.nedap.go.logging.Logger;
+import com.nedap.go.logging.Logging;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Represents the timer of the server: a hashed timing wheel that runs all timeouts of the server (the clocks of the
+ * games, the heartbeats and idle checks of the connections and the expiry of sessions) on one thread. The wheel has a
+ * fixed number of buckets, each of which is one tick long; a timeout is put in the bucket of the tick in which it
+ * expires, with the number of rounds of the wheel it has to wait first. Every tick, the thread of the wheel moves to the
+ * next bucket and runs the timeouts in it of which the last round has come. Scheduling and cancelling a timeout both
+ * take constant time, however many timeouts are waiting, and no thread is needed per timeout.
+ * <p>
+ * Timeouts can be scheduled and cancelled by any thread: they are handed over to the thread of the wheel via queues,
+ * so only that thread changes the buckets and no locks are needed. A timeout never runs early, and at most about one
+ * tick late. The tasks run on the thread of the wheel, so they should be short: they typically submit a command to a
+ * game, or send a message.
+ */
+public final class TimingWheel {
+    private static final Logger LOG = Logging.getLogger("server");
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512; // one round of the wheel takes 51.2 seconds
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Queue<Timeout> scheduled;
+    private final Queue<Timeout> cancelled;
+    private final AtomicInteger pending;
+    private volatile boolean running;
+    private Thread thread;
+    private long startTime;
+    private long tick;
+
+    /**
+     * Represents a timeout that is scheduled on the wheel. It either runs once, or is cancelled before it runs.
+     */
+    public static final class Timeout {
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline; // in System.nanoTime()
+        private final AtomicBoolean done; // set when the timeout runs or is cancelled
+        private long rounds; // the rounds of the wheel to wait in its bucket
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        /**
+         * Creates a timeout.
+         *
+         * @param wheel    is the wheel on which the timeout is scheduled;
+         * @param task     is the task to run when the timeout expires;
+         * @param deadline is the time at which the timeout expires, in System.nanoTime().
+         */
+        private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.done = new AtomicBoolean();
+        }
+
+        /**
+         * Cancels this timeout, so its task does not run. Cancelling a timeout that has already run (or that is
+         * cancelled) has no effect.
+         *
+         * @return true if the timeout is cancelled by this call, false if it has already run or is cancelled.
+         */
+        public boolean cancel() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            wheel.pending.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * Checks whether this timeout has run or is cancelled.
+         *
+         * @return true if the timeout will not run anymore, false if it is still waiting.
+         */
+        public boolean isDone() {
+            return done.get();
+        }
+    }
+
+    /**
+     * Represents one bucket of the wheel: a doubly linked list of timeouts, so a timeout is added and removed in
+     * constant time. Only used by the thread of the wheel.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        /**
+         * Adds a timeout to the end of this bucket.
+         *
+         * @param timeout is the timeout to add.
+         */
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        /**
+         * Removes a timeout from this bucket.
+         *
+         * @param timeout is the timeout to remove, which is in this bucket.
+         */
+        private void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+
+    /**
+     * Creates a timing wheel with ticks of DEFAULT_TICK_MILLIS and DEFAULT_WHEEL_SIZE buckets.
+     */
+    public TimingWheel() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Creates a timing wheel. The thread of the wheel is started with start().
+     *
+     * @param tick      is the length of one tick, which is the precision of the timeouts;
+     * @param unit      is the unit of tick;
+     * @param wheelSize is the number of buckets, which is rounded up to a power of two.
+     */
+    public TimingWheel(long tick, TimeUnit unit, int wheelSize) {
+        this.tickNanos = unit.toNanos(tick);
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+    }
+
+    /**
+     * Starts the thread of the wheel. Timeouts that are scheduled before, wait until the wheel is started.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = Thread.ofPlatform().name("timing-wheel").daemon().start(this::run);
+    }
+
+    /**
+     * Stops the thread of the wheel. The timeouts that are still waiting do not run anymore.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Schedules a task to run once after a delay.
+     *
+     * @param task  is the task to run on the thread of the wheel;
+     * @param delay is the delay after which the task runs;
+     * @param unit  is the unit of delay;
+     * @return the timeout, with which the task can be cancelled.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay));
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Gets the number of timeouts that are waiting to run.
+     *
+     * @return the number of waiting timeouts.
+     */
+    public int getPendingTimeouts() {
+        return pending.get();
+    }
+
+    /**
+     * Runs the thread of the wheel: waits until the end of each tick, and then runs the timeouts of its bucket.
+     */
+    private void run() {
+        startTime = System.nanoTime();
+        tick = 0;
+        while (running) {
+            long tickEnd = startTime + (tick + 1) * tickNanos;
+            long sleep = tickEnd - System.nanoTime();
+            while (sleep > 0 && running) {
+                LockSupport.parkNanos(this, sleep);
+                sleep = tickEnd - System.nanoTime();
+            }
+            removeCancelled();
+            addScheduled();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+        // the timeouts that are still waiting are dropped:
+        for (Bucket bucket : buckets) {
+            while (bucket.head != null) {
+                bucket.remove(bucket.head);
+            }
+        }
+        scheduled.clear();
+        cancelled.clear();
+        pending.set(0);
+    }
+
+    /**
+     * Removes the timeouts that are cancelled from their buckets.
+     */
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Puts the timeouts that are scheduled since the last tick in the bucket of the tick in which they expire. A
+     * timeout of which the deadline has already passed is put in the bucket of the current tick.
+     */
+    private void addScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isDone()) {
+                continue; // cancelled before it was put in a bucket
+            }
+            long expiryTick = Math.max((timeout.deadline - startTime) / tickNanos, tick);
+            timeout.rounds = (expiryTick - tick) / buckets.length;
+            buckets[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Runs the timeouts of a bucket of which the last round has come; the rounds of the other timeouts are counted
+     * down.
+     *
+     * @param bucket is the bucket of the current tick.
+     */
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds <= 0) {
+                bucket.remove(timeout);
+                if (timeout.done.compareAndSet(false, true)) {
+                    pending.decrementAndGet();
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        LOG.error("A timeout has failed: " + e);
+                    }
+                }
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+}
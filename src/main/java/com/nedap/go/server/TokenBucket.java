@@ -0,0 +1,72 @@
+package com.nedap.go.server;
+
+/**
+ * Represents a token bucket: a rate limit that allows a burst of at most capacity messages, and on average rate
+ * messages per second after that. Each message takes a token; the bucket is refilled with the time that has passed
+ * since the last message, so no timer is needed. The rate and the capacity can be multiplied per message by a scale
+ * (for example the number of games a connection plays), so a limit can grow and shrink with the work of a connection;
+ * like a new bucket, each step up of the scale brings a full burst.
+ * Used by one thread at a time (the thread that handles the messages of one connection), so no locks are needed.
+ */
+final class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+    private int lastScale; // the scale of the last message
+
+    /**
+     * Creates a full token bucket.
+     *
+     * @param rate     is the number of tokens that are added per second;
+     * @param capacity is the maximum number of tokens in the bucket (the size of a burst);
+     * @param now      is the current time, in System.nanoTime().
+     */
+    TokenBucket(double rate, double capacity, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = rate / 1_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefill = now;
+        this.lastScale = 1;
+    }
+
+    /**
+     * Takes a token from the bucket, if there is one.
+     *
+     * @param now is the current time, in System.nanoTime();
+     * @return true if a token is taken, false if the bucket is empty (the message exceeds the rate limit).
+     */
+    boolean tryTake(long now) {
+        return tryTake(now, 1);
+    }
+
+    /**
+     * Takes a token from the bucket, if there is one, with the rate and the capacity multiplied by a scale.
+     *
+     * @param now   is the current time, in System.nanoTime();
+     * @param scale is the factor by which the rate and the capacity are multiplied (at least 1);
+     * @return true if a token is taken, false if the bucket is empty (the message exceeds the rate limit).
+     */
+    boolean tryTake(long now, int scale) {
+        if (scale > lastScale) {
+            tokens += capacity * (scale - lastScale);
+        }
+        lastScale = scale;
+        tokens = Math.min(capacity * scale, tokens + (now - lastRefill) * tokensPerNano * scale);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Puts back a token that is taken, because the message is rejected by another limit.
+     *
+     * @param scale is the scale with which the token is taken.
+     */
+    void giveBack(int scale) {
+        tokens = Math.min(capacity * scale, tokens + 1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.nedap.go.tournament;
+
+/**
+ * Represents an estimate of the Elo difference between a player and its opponent(s), based on the results of a number
+ * of games, together with the 95% confidence interval of this estimate.
+ */
+public class EloEstimate {
+    private static final double Z_95 = 1.959964; // number of standard deviations of a 95% confidence interval
+    private final double difference;
+    private final double lowerBound;
+    private final double upperBound;
+
+    /**
+     * Creates an Elo estimate.
+     *
+     * @param difference is the estimated Elo difference;
+     * @param lowerBound is the lower bound of the 95% confidence interval;
+     * @param upperBound is the upper bound of the 95% confidence interval.
+     */
+    public EloEstimate(double difference, double lowerBound, double upperBound) {
+        this.difference = difference;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+    }
+
+    /**
+     * Estimates the Elo difference from a number of wins, draws and losses. The expected score (a win counts 1, a draw
+     * 0.5) is converted to an Elo difference with the logistic Elo formula; the confidence interval is based on the
+     * standard error of the score.
+     *
+     * @param wins   is the number of wins;
+     * @param draws  is the number of draws;
+     * @param losses is the number of losses;
+     * @return the Elo estimate; an estimate of 0 with an infinite interval if no games were played.
+     */
+    public static EloEstimate fromResults(int wins, int draws, int losses) {
+        int games = wins + draws + losses;
+        if (games == 0) {
+            return new EloEstimate(0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+        double score = (wins + 0.5 * draws) / games;
+        // variance of the score of a single game, and the standard error of the mean score:
+        double variance = (wins + 0.25 * draws) / games - score * score;
+        double standardError = Math.sqrt(Math.max(variance, 0) / games);
+        // a score of exactly 0 or 1 would result in an infinite difference; limit the score to half a game from both ends:
+        double limit = 0.5 / games;
+        return new EloEstimate(toElo(score, limit), toElo(score - Z_95 * standardError, limit),
+                toElo(score + Z_95 * standardError, limit));
+    }
+
+    /**
+     * Converts an expected score to an Elo difference.
+     *
+     * @param score is the expected score (between 0 and 1);
+     * @param limit is the minimal distance of the score to 0 and 1;
+     * @return the Elo difference.
+     */
+    private static double toElo(double score, double limit) {
+        double limitedScore = Math.min(Math.max(score, limit), 1 - limit);
+        return -400 * Math.log10(1 / limitedScore - 1);
+    }
+
+    /**
+     * Gets the estimated Elo difference.
+     *
+     * @return the estimated Elo difference.
+     */
+    public double getDifference() {
+        return difference;
+    }
+
+    /**
+     * Gets the lower bound of the 95% confidence interval of the Elo difference.
+     *
+     * @return the lower bound.
+     */
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Gets the upper bound of the 95% confidence interval of the Elo difference.
+     *
+     * @return the upper bound.
+     */
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Creates the description of this estimate, for example "+35 [-12, +84]".
+     *
+     * @return the description of this estimate.
+     */
+    @Override
+    public String toString() {
+        return String.format("%+.0f [%+.0f, %+.0f]", difference, lowerBound, upperBound);
+    }
+}
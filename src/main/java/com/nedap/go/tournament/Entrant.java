@@ -0,0 +1,48 @@
+package com.nedap.go.tournament;
+
+/**
+ * Represents an entrant of a tournament: a name and a factory to create the player for each game.
+ */
+public class Entrant {
+    private final String name;
+    private final PlayerFactory playerFactory;
+
+    /**
+     * Creates a new entrant.
+     *
+     * @param name          is the name of the entrant (which is used as username in each game);
+     * @param playerFactory is the factory that creates the player of this entrant for each game.
+     */
+    public Entrant(String name, PlayerFactory playerFactory) {
+        this.name = name;
+        this.playerFactory = playerFactory;
+    }
+
+    /**
+     * Gets the name of this entrant.
+     *
+     * @return the name of this entrant.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the factory that creates the player of this entrant.
+     *
+     * @return the player factory.
+     */
+    public PlayerFactory getPlayerFactory() {
+        return playerFactory;
+    }
+
+    /**
+     * Returns the name of this entrant.
+     *
+     * @return the name of this entrant.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,98 @@
+package com.nedap.go.tournament;
+
+/**
+ * Represents the record of one finished game of a tournament: who played, the seed to replay the game, the number of
+ * moves and the winner.
+ */
+public class GameRecord {
+    private final Entrant black;
+    private final Entrant white;
+    private final long seed;
+    private final int moves;
+    private final Entrant winner;
+    private final boolean resigned;
+
+    /**
+     * Creates the record of a finished game.
+     *
+     * @param black    is the entrant that played with the black stones;
+     * @param white    is the entrant that played with the white stones;
+     * @param seed     is the seed of the game (from which the seeds of both players are derived);
+     * @param moves    is the number of moves (including passes) that were played;
+     * @param winner   is the entrant that won the game; null if the game ended in a draw;
+     * @param resigned is true if the game ended because a player resigned.
+     */
+    public GameRecord(Entrant black, Entrant white, long seed, int moves, Entrant winner, boolean resigned) {
+        this.black = black;
+        this.white = white;
+        this.seed = seed;
+        this.moves = moves;
+        this.winner = winner;
+        this.resigned = resigned;
+    }
+
+    /**
+     * Gets the entrant that played with the black stones.
+     *
+     * @return the entrant with the black stones.
+     */
+    public Entrant getBlack() {
+        return black;
+    }
+
+    /**
+     * Gets the entrant that played with the white stones.
+     *
+     * @return the entrant with the white stones.
+     */
+    public Entrant getWhite() {
+        return white;
+    }
+
+    /**
+     * Gets the seed of this game; playing a game between the same entrants with this seed replays the game.
+     *
+     * @return the seed of this game.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of moves (including passes) of this game.
+     *
+     * @return the number of moves.
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the winner of the game.
+     *
+     * @return the entrant that won; null if the game ended in a draw.
+     */
+    public Entrant getWinner() {
+        return winner;
+    }
+
+    /**
+     * Checks whether this game ended because a player resigned.
+     *
+     * @return true if a player resigned, false if not.
+     */
+    public boolean isResigned() {
+        return resigned;
+    }
+
+    /**
+     * Creates a one-line description of this game, including the seed to be able to replay it.
+     *
+     * @return the description of this game.
+     */
+    @Override
+    public String toString() {
+        String result = winner == null ? "draw" : winner.getName() + " won" + (resigned ? " by resignation" : "");
+        return black.getName() + " (B) vs " + white.getName() + " (W), seed " + seed + ", " + moves + " moves, " + result;
+    }
+}
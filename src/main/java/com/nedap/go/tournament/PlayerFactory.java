@@ -0,0 +1,21 @@
+package com.nedap.go.tournament;
+
+import com.nedap.go.game.Player;
+import com.nedap.go.game.Stone;
+
+/**
+ * Represents a factory that creates a new player for each game of a tournament (a player cannot be reused, as each
+ * player has its own stone and random generator).
+ */
+public interface PlayerFactory {
+
+    /**
+     * Creates a new player for one game.
+     *
+     * @param username is the username of the player;
+     * @param stone    is the stone this player uses in this game;
+     * @param seed     is the seed for the random generator of this player (so the game can be replayed);
+     * @return the new player.
+     */
+    Player create(String username, Stone stone, long seed);
+}
@@ -0,0 +1,89 @@
+package com.nedap.go.tournament;
+
+/**
+ * Represents the number of wins, draws and losses of an entrant (against one opponent or against all opponents).
+ */
+public class Score {
+    private int wins;
+    private int draws;
+    private int losses;
+
+    /**
+     * Adds the result of a game to this score.
+     *
+     * @param points is 1 for a win, 0.5 for a draw and 0 for a loss.
+     */
+    public void add(double points) {
+        if (points == 1) {
+            wins++;
+        } else if (points == 0) {
+            losses++;
+        } else {
+            draws++;
+        }
+    }
+
+    /**
+     * Gets the number of wins.
+     *
+     * @return the number of wins.
+     */
+    public int getWins() {
+        return wins;
+    }
+
+    /**
+     * Gets the number of draws.
+     *
+     * @return the number of draws.
+     */
+    public int getDraws() {
+        return draws;
+    }
+
+    /**
+     * Gets the number of losses.
+     *
+     * @return the number of losses.
+     */
+    public int getLosses() {
+        return losses;
+    }
+
+    /**
+     * Gets the number of games.
+     *
+     * @return the number of games.
+     */
+    public int getGames() {
+        return wins + draws + losses;
+    }
+
+    /**
+     * Gets the number of points: a win counts 1 and a draw 0.5.
+     *
+     * @return the number of points.
+     */
+    public double getPoints() {
+        return wins + 0.5 * draws;
+    }
+
+    /**
+     * Estimates the Elo difference with the opponent(s) based on this score.
+     *
+     * @return the Elo estimate.
+     */
+    public EloEstimate getEloEstimate() {
+        return EloEstimate.fromResults(wins, draws, losses);
+    }
+
+    /**
+     * Creates the description of this score, for example "+12 =1 -7".
+     *
+     * @return the description of this score.
+     */
+    @Override
+    public String toString() {
+        return "+" + wins + " =" + draws + " -" + losses;
+    }
+}
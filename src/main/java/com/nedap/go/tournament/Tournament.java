@@ -0,0 +1,161 @@
+package com.nedap.go.tournament;
+
+import com.nedap.go.game.*;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+
+/**
+ * Represents a tournament between computer players, played in-process: the games are played directly on Game objects
+ * (without GUI, server or sockets) on a pool of threads. A tournament can be played as round-robin (every entrant plays
+ * against every other entrant) or as gauntlet (one challenger plays against all other entrants). Each pairing plays
+ * the same number of games, with alternating colors.
+ * <p>
+ * All seeds are derived from the seed of the tournament before the games start, so a tournament with the same seed
+ * always results in the same games, independent of the number of threads.
+ */
+public class Tournament {
+    public static final int MAX_MOVES = Board.SIZE * Board.SIZE * 3; // a game is scored after this number of moves
+    private final int gamesPerPairing;
+    private final int threads;
+    private final long seed;
+    private PrintStream gameLog;
+
+    /**
+     * Creates a new tournament.
+     *
+     * @param gamesPerPairing is the number of games each pair of entrants plays (half of them with swapped colors);
+     * @param threads         is the number of threads on which the games are played;
+     * @param seed            is the seed from which the seeds of all games are derived.
+     */
+    public Tournament(int gamesPerPairing, int threads, long seed) {
+        this.gamesPerPairing = gamesPerPairing;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the stream to which each finished game is logged (including its seed, to be able to replay it).
+     *
+     * @param gameLog is the stream to log to; null to not log the games.
+     */
+    public void setGameLog(PrintStream gameLog) {
+        this.gameLog = gameLog;
+    }
+
+    // Methods needed to play a tournament:
+
+    /**
+     * Plays a round-robin tournament: every entrant plays against every other entrant.
+     *
+     * @param entrants are the entrants of the tournament;
+     * @return the result of the tournament.
+     */
+    public TournamentResult runRoundRobin(List<Entrant> entrants) throws InterruptedException {
+        List<Entrant[]> pairings = new ArrayList<>();
+        for (int first = 0; first < entrants.size(); first++) {
+            for (int second = first + 1; second < entrants.size(); second++) {
+                pairings.add(new Entrant[]{entrants.get(first), entrants.get(second)});
+            }
+        }
+        return play(entrants, pairings);
+    }
+
+    /**
+     * Plays a gauntlet: the challenger plays against every opponent, the opponents do not play against each other.
+     *
+     * @param challenger is the entrant that plays against all opponents;
+     * @param opponents  are the opponents of the challenger;
+     * @return the result of the tournament.
+     */
+    public TournamentResult runGauntlet(Entrant challenger, List<Entrant> opponents) throws InterruptedException {
+        List<Entrant> entrants = new ArrayList<>();
+        entrants.add(challenger);
+        List<Entrant[]> pairings = new ArrayList<>();
+        for (Entrant opponent : opponents) {
+            entrants.add(opponent);
+            pairings.add(new Entrant[]{challenger, opponent});
+        }
+        return play(entrants, pairings);
+    }
+
+    /**
+     * Plays all games of all pairings on the thread pool and collects the results.
+     *
+     * @param entrants are all entrants of the tournament;
+     * @param pairings are the pairs of entrants that play against each other;
+     * @return the result of the tournament.
+     */
+    private TournamentResult play(List<Entrant> entrants, List<Entrant[]> pairings) throws InterruptedException {
+        // create all games (and their seeds) up front, so the seeds do not depend on the order in which games finish:
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<Callable<GameRecord>> games = new ArrayList<>();
+        for (Entrant[] pairing : pairings) {
+            for (int game = 0; game < gamesPerPairing; game++) {
+                Entrant black = game % 2 == 0 ? pairing[0] : pairing[1];
+                Entrant white = game % 2 == 0 ? pairing[1] : pairing[0];
+                long gameSeed = seeds.nextLong();
+                games.add(() -> playGame(black, white, gameSeed));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<GameRecord> records = new ArrayList<>();
+        try {
+            for (Future<GameRecord> future : executor.invokeAll(games)) {
+                records.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A game of the tournament could not be played.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new TournamentResult(entrants, records, System.nanoTime() - start);
+    }
+
+    /**
+     * Plays one game between two entrants, without GUI. A move that turns out to be invalid is treated as a pass, and
+     * a game that has not ended after MAX_MOVES moves is scored as it is.
+     *
+     * @param black    is the entrant that plays with the black stones;
+     * @param white    is the entrant that plays with the white stones;
+     * @param gameSeed is the seed of this game, from which the seeds of both players are derived;
+     * @return the record of the finished game.
+     */
+    public GameRecord playGame(Entrant black, Entrant white, long gameSeed) {
+        SplittableRandom playerSeeds = new SplittableRandom(gameSeed);
+        Player playerBlack = black.getPlayerFactory().create(black.getName(), Stone.BLACK, playerSeeds.nextLong());
+        Player playerWhite = white.getPlayerFactory().create(white.getName(), Stone.WHITE, playerSeeds.nextLong());
+        Game game = new Game(playerBlack, playerWhite, new Board(), null);
+        int moves = 0;
+        while (!game.isGameOver() && moves < MAX_MOVES) {
+            Player currentPlayer = game.getCurrentPlayer();
+            if (currentPlayer.wantsToResign(game)) {
+                game.resign(currentPlayer);
+                break;
+            }
+            Position move = currentPlayer.determineMove(game);
+            if (move == null || !game.isValidMove(move.getRow(), move.getColumn())) {
+                game.pass();
+            } else {
+                game.doMove(move.getRow(), move.getColumn());
+            }
+            moves++;
+        }
+        Entrant winner = null;
+        String usernameWinner = game.getWinner();
+        if (usernameWinner.equals(playerBlack.getUsername())) {
+            winner = black;
+        } else if (usernameWinner.equals(playerWhite.getUsername())) {
+            winner = white;
+        }
+        GameRecord record = new GameRecord(black, white, gameSeed, moves, winner, game.getResignedPlayer() != null);
+        if (gameLog != null) {
+            gameLog.println(record);
+        }
+        return record;
+    }
+}
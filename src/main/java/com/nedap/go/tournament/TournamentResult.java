@@ -0,0 +1,124 @@
+package com.nedap.go.tournament;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Represents the result of a tournament: the records of all games, the score of each entrant (against each opponent
+ * and against all opponents together) with the estimated Elo differences, and the throughput of the engine.
+ */
+public class TournamentResult {
+    private final List<Entrant> entrants;
+    private final List<GameRecord> games;
+    private final long durationNanos;
+
+    /**
+     * Creates the result of a tournament.
+     *
+     * @param entrants      are the entrants of the tournament;
+     * @param games         are the records of all games of the tournament;
+     * @param durationNanos is the time it took to play all games, in nanoseconds.
+     */
+    public TournamentResult(List<Entrant> entrants, List<GameRecord> games, long durationNanos) {
+        this.entrants = entrants;
+        this.games = games;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * Gets the records of all games of the tournament.
+     *
+     * @return the records of all games.
+     */
+    public List<GameRecord> getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the score of an entrant against one opponent.
+     *
+     * @param entrant  is the entrant of interest;
+     * @param opponent is the opponent of interest; null to get the score against all opponents;
+     * @return the score of the entrant against this opponent.
+     */
+    public Score getScore(Entrant entrant, Entrant opponent) {
+        Score score = new Score();
+        for (GameRecord game : games) {
+            Entrant gameOpponent;
+            if (game.getBlack() == entrant) {
+                gameOpponent = game.getWhite();
+            } else if (game.getWhite() == entrant) {
+                gameOpponent = game.getBlack();
+            } else {
+                continue;
+            }
+            if (opponent != null && gameOpponent != opponent) {
+                continue;
+            }
+            if (game.getWinner() == null) {
+                score.add(0.5);
+            } else {
+                score.add(game.getWinner() == entrant ? 1 : 0);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Gets the total number of moves (including passes) of all games.
+     *
+     * @return the total number of moves.
+     */
+    public long getTotalMoves() {
+        long moves = 0;
+        for (GameRecord game : games) {
+            moves += game.getMoves();
+        }
+        return moves;
+    }
+
+    /**
+     * Gets the number of games that were played per second.
+     *
+     * @return the number of games per second.
+     */
+    public double getGamesPerSecond() {
+        return games.size() / (durationNanos / 1e9);
+    }
+
+    /**
+     * Gets the number of moves that were played per second (by all threads together).
+     *
+     * @return the number of moves per second.
+     */
+    public double getMovesPerSecond() {
+        return getTotalMoves() / (durationNanos / 1e9);
+    }
+
+    /**
+     * Prints the report of the tournament: the score and Elo estimate of each entrant against all opponents and against
+     * each opponent, followed by the throughput.
+     *
+     * @param output is the stream to print the report to.
+     */
+    public void printReport(PrintStream output) {
+        output.println("Entrant              Games  Score            Elo [95% interval]");
+        for (Entrant entrant : entrants) {
+            Score score = getScore(entrant, null);
+            if (score.getGames() == 0) {
+                continue;
+            }
+            output.printf("%-20s %6d  %-15s  %s%n", entrant.getName(), score.getGames(), score,
+                    score.getEloEstimate());
+            for (Entrant opponent : entrants) {
+                Score pairScore = getScore(entrant, opponent);
+                if (opponent != entrant && pairScore.getGames() > 0) {
+                    output.printf("  vs %-16s %6d  %-15s  %s%n", opponent.getName(), pairScore.getGames(), pairScore,
+                            pairScore.getEloEstimate());
+                }
+            }
+        }
+        output.printf("%d games, %d moves in %.2f s: %.1f games/s, %.0f moves/s%n", games.size(), getTotalMoves(),
+                durationNanos / 1e9, getGamesPerSecond(), getMovesPerSecond());
+    }
+}
@@ -0,0 +1,57 @@
+package com.nedap.go.tournament;
+
+import com.nedap.go.game.ComputerPlayer;
+import com.nedap.go.game.OpeningBook;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents the textual user interface to run a tournament between the built-in computer players, without server
+ * and clients. Usage: TournamentTUI [games per pairing] [threads] [seed] [GAUNTLET].
+ */
+public class TournamentTUI {
+
+    /**
+     * Creates the built-in entrants: a purely random player (which never passes or resigns while it has a valid move),
+     * the default computer player, and the computer player that uses the shared opening book (if a book is configured
+     * via -Dgo.openingBook).
+     *
+     * @return the list of built-in entrants.
+     */
+    public static List<Entrant> createEntrants() {
+        List<Entrant> entrants = new ArrayList<>();
+        entrants.add(new Entrant("random", (username, stone, seed) -> {
+            ComputerPlayer player = new ComputerPlayer(username, stone, null, seed);
+            player.setPassThreshold(2);
+            player.setResignThreshold(0);
+            return player;
+        }));
+        entrants.add(new Entrant("computer", (username, stone, seed) -> new ComputerPlayer(username, stone, null, seed)));
+        if (OpeningBook.shared() != null) {
+            entrants.add(new Entrant("book", (username, stone, seed) ->
+                    new ComputerPlayer(username, stone, OpeningBook.shared(), seed)));
+        }
+        return entrants;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int gamesPerPairing = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        boolean gauntlet = args.length > 3 && args[3].equalsIgnoreCase("GAUNTLET");
+        List<Entrant> entrants = createEntrants();
+        System.out.println("Playing " + gamesPerPairing + " games per pairing on " + threads + " threads with seed "
+                + seed + ".");
+        Tournament tournament = new Tournament(gamesPerPairing, threads, seed);
+        TournamentResult result;
+        if (gauntlet) {
+            // the last entrant (the strongest available) is the challenger:
+            Entrant challenger = entrants.remove(entrants.size() - 1);
+            result = tournament.runGauntlet(challenger, entrants);
+        } else {
+            result = tournament.runRoundRobin(entrants);
+        }
+        result.printReport(System.out);
+    }
+}
@@ -0,0 +1,169 @@
+package com.nedap.go.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageCodecTest {
+
+    /**
+     * Test whether encoded messages are equal to the messages of the protocol, and whether they are decoded again
+     * when the bytes are received in chunks of any size.
+     */
+    @Test
+    public void testEncodeAndDecodeInChunks() throws ProtocolException {
+        MessageEncoder encoder = new MessageEncoder();
+        encoder.command(Command.MOVE).field("alice").field(3).field(-12).end();
+        encoder.command(Command.MOVE).field("bob").field(Command.PASS).end();
+        encoder.command(Command.YOURTURN).end();
+        encoder.command(Command.GAMEOVER).field("VICTORY").field("bob").end();
+        byte[] bytes = new byte[encoder.getLength()];
+        encoder.toByteBuffer().get(bytes);
+        assertEquals("MOVE~alice~3~-12\nMOVE~bob~PASS\nYOURTURN\nGAMEOVER~VICTORY~bob\n",
+                new String(bytes, StandardCharsets.UTF_8));
+
+        for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+            MessageDecoder decoder = new MessageDecoder();
+            List<String> received = new ArrayList<>();
+            for (int start = 0; start < bytes.length; start += chunkSize) {
+                ByteBuffer chunk = ByteBuffer.wrap(bytes, start, Math.min(chunkSize, bytes.length - start));
+                decoder.decode(chunk, message -> {
+                    switch (message.getCommand()) {
+                        case MOVE:
+                            if (message.isField(1, Command.PASS)) {
+                                received.add(message.getString(0) + " passed");
+                            } else {
+                                received.add(message.getString(0) + " " + message.getInt(1) + " " + message.getInt(2));
+                            }
+                            break;
+                        case YOURTURN:
+                            assertEquals(0, message.getFieldCount());
+                            received.add("your turn");
+                            break;
+                        default:
+                            received.add(message.toString());
+                            break;
+                    }
+                });
+            }
+            assertEquals(List.of("alice 3 -12", "bob passed", "your turn", "GAMEOVER~VICTORY~bob"), received);
+        }
+    }
+
+    /**
+     * Test whether unknown commands, invalid numbers, Windows line separators and lines that are too long are handled.
+     */
+    @Test
+    public void testInvalidInput() throws ProtocolException {
+        MessageDecoder decoder = new MessageDecoder();
+        List<String> received = new ArrayList<>();
+        byte[] bytes = "MOVES~1\nMOVE~x~1\r\nMOVE~2147483648~1\nPASS\r\n".getBytes(StandardCharsets.UTF_8);
+        decoder.decode(ByteBuffer.wrap(bytes), message -> {
+            String result = message.getCommand().name();
+            try {
+                result += " " + message.getInt(0);
+            } catch (NumberFormatException e) {
+                result += " invalid";
+            }
+            received.add(result);
+        });
+        assertEquals(List.of("UNKNOWN 1", "MOVE invalid", "MOVE invalid", "PASS invalid"), received);
+
+        byte[] tooLong = new byte[Framing.MAX_MESSAGE_LENGTH + 1];
+        assertThrows(ProtocolException.class, () -> decoder.decode(ByteBuffer.wrap(tooLong), message -> { }));
+    }
+
+    /**
+     * Test whether messages in binary framing are decoded again, also when the framing is switched by the handler
+     * directly after a text message in the same chunk, and whether binary frames are smaller than text lines.
+     */
+    @Test
+    public void testBinaryFraming() throws ProtocolException {
+        MessageEncoder encoder = new MessageEncoder();
+        encoder.command(Command.WELCOME).field("server").field("BINARY").end();
+        int textLength = encoder.getLength();
+        encoder.setFraming(Framing.BINARY);
+        encoder.command(Command.MOVE, 42).field("alice").field(3).field(-12).end();
+        encoder.command(Command.MOVE, 300).field("bob").field(Command.PASS).end();
+        encoder.command(Command.USERNAMETAKEN).field("é".repeat(100)).end();
+        encoder.command(Command.YOURTURN, 42).end();
+        byte[] bytes = new byte[encoder.getLength()];
+        encoder.toByteBuffer().get(bytes);
+        // MOVE~alice~3~-12 takes 17 bytes (with line separator) in text framing, and 11 (with length) as frame:
+        assertEquals(10, bytes[textLength]);
+
+        for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+            MessageDecoder decoder = new MessageDecoder();
+            List<String> received = new ArrayList<>();
+            for (int start = 0; start < bytes.length; start += chunkSize) {
+                ByteBuffer chunk = ByteBuffer.wrap(bytes, start, Math.min(chunkSize, bytes.length - start));
+                decoder.decode(chunk, message -> {
+                    if (message.getCommand() == Command.WELCOME) {
+                        decoder.setFraming(Framing.BINARY);
+                    }
+                    if (message.getCommand() == Command.MOVE && !message.isField(1, Command.PASS)) {
+                        received.add(message.getGameId() + " " + message.getInt(1) + " " + message.getInt(2));
+                    } else {
+                        received.add(message.getGameId() + " " + message);
+                    }
+                });
+            }
+            assertEquals(List.of("0 WELCOME~server~BINARY", "42 3 -12", "300 MOVE~300~bob~PASS",
+                    "0 USERNAMETAKEN~" + "é".repeat(100), "42 YOURTURN~42"), received);
+        }
+    }
+
+    /**
+     * Test whether game commands in text framing carry the id of their game if game ids are used, while other
+     * commands do not.
+     */
+    @Test
+    public void testGameIdsInText() throws ProtocolException {
+        MessageEncoder encoder = new MessageEncoder();
+        encoder.setGameIds(true);
+        encoder.command(Command.MOVE, 7).field(3).field(4).end();
+        encoder.command(Command.QUEUE).end();
+        byte[] bytes = new byte[encoder.getLength()];
+        encoder.toByteBuffer().get(bytes);
+        assertEquals("MOVE~7~3~4\nQUEUE\n", new String(bytes, StandardCharsets.UTF_8));
+
+        MessageDecoder decoder = new MessageDecoder();
+        decoder.setGameIds(true);
+        List<String> received = new ArrayList<>();
+        decoder.decode(ByteBuffer.wrap(bytes), message ->
+                received.add(message.getCommand() + " " + message.getGameId() + " " + message.getFieldCount()));
+        decoder.decode(ByteBuffer.wrap("PASS~x\n".getBytes(StandardCharsets.UTF_8)), message ->
+                received.add(message.getCommand() + " " + message.getGameId() + " " + message.getFieldCount()));
+        assertEquals(List.of("MOVE 7 2", "QUEUE 0 0", "PASS -1 0"), received);
+    }
+
+    /**
+     * Test whether the encoder and the decoder share the limit of the message length: the longest message that the
+     * encoder accepts is decoded in both framings, and a longer message is refused by the encoder.
+     */
+    @Test
+    public void testMessageLength() throws ProtocolException {
+        for (Framing framing : Framing.values()) {
+            MessageEncoder encoder = new MessageEncoder();
+            encoder.setFraming(framing);
+            encoder.command(Command.ERROR).field("x".repeat(Framing.MAX_MESSAGE_LENGTH));
+            assertThrows(IllegalArgumentException.class, encoder::end);
+            assertEquals(0, encoder.getLength());
+            // the command and the field separator (text), or the opcode, game id and field header (binary):
+            String longest = "x".repeat(Framing.MAX_MESSAGE_LENGTH - (framing == Framing.TEXT ? 6 : 5));
+            encoder.command(Command.ERROR).field(longest).end();
+
+            MessageDecoder decoder = new MessageDecoder();
+            decoder.setFraming(framing);
+            List<String> received = new ArrayList<>();
+            decoder.decode(encoder.toByteBuffer(), message -> received.add(message.getString(0)));
+            assertEquals(List.of(longest), received);
+        }
+    }
+}
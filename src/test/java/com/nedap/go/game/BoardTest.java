@@ -129,6 +129,52 @@ public class BoardTest {
         assertFalse(board.toString().contains("."));
     }
 
+    /**
+     * Test whether the hash is updated when stones are placed and removed, and whether symmetric boards have the same
+     * canonical hash and canonical String representation.
+     */
+    @Test
+    public void testCanonicalHash() {
+        // an empty board has hash 0; after placing and removing a stone, the hash is the same again:
+        assertEquals(0L, board.hash());
+        board.placeStone(2, 3, Stone.BLACK);
+        assertNotEquals(0L, board.hash());
+        board.removeStone(2, 3);
+        assertEquals(0L, board.hash());
+
+        // place the same stones on a board that is rotated by 90 degrees and on a board that is mirrored:
+        board.placeStone(2, 3, Stone.BLACK);
+        board.placeStone(1, 7, Stone.WHITE);
+        Board rotatedBoard = new Board();
+        Board mirroredBoard = new Board();
+        rotatedBoard.placeStone(Symmetry.ROTATE_90.row(2, 3), Symmetry.ROTATE_90.column(2, 3), Stone.BLACK);
+        rotatedBoard.placeStone(Symmetry.ROTATE_90.row(1, 7), Symmetry.ROTATE_90.column(1, 7), Stone.WHITE);
+        mirroredBoard.placeStone(Symmetry.FLIP_COLUMNS.row(2, 3), Symmetry.FLIP_COLUMNS.column(2, 3), Stone.BLACK);
+        mirroredBoard.placeStone(Symmetry.FLIP_COLUMNS.row(1, 7), Symmetry.FLIP_COLUMNS.column(1, 7), Stone.WHITE);
+        assertNotEquals(board.hash(), rotatedBoard.hash());
+        assertEquals(board.canonicalHash(false), rotatedBoard.canonicalHash(false));
+        assertEquals(board.canonicalHash(false), mirroredBoard.canonicalHash(false));
+        assertEquals(board.canonicalString(), rotatedBoard.canonicalString());
+        assertEquals(board.canonicalString(), mirroredBoard.canonicalString());
+        // the copy of a board has the same hashes:
+        assertEquals(board.canonicalHash(true), board.copyBoard().canonicalHash(true));
+
+        // a board with swapped colors only has the same canonical hash if swapping colors is allowed:
+        Board swappedBoard = new Board();
+        swappedBoard.placeStone(2, 3, Stone.WHITE);
+        swappedBoard.placeStone(1, 7, Stone.BLACK);
+        assertNotEquals(board.canonicalHash(false), swappedBoard.canonicalHash(false));
+        assertEquals(board.canonicalHash(true), swappedBoard.canonicalHash(true));
+
+        // each symmetry followed by its inverse results in the original position:
+        for (int symmetry = 0; symmetry < Board.SYMMETRIES; symmetry++) {
+            Symmetry transform = Symmetry.get(symmetry);
+            int row = transform.row(2, 3);
+            int column = transform.column(2, 3);
+            assertEquals(2 * Board.SIZE + 3, transform.inverse().index(row, column));
+        }
+    }
+
     /**
      * Test to see whether the board is correctly printed and represents the placed stones.
      */
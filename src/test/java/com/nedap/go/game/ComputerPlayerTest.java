@@ -0,0 +1,86 @@
+package com.nedap.go.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComputerPlayerTest {
+
+    /**
+     * Plays a game (without GUI) between two computer players with the given seeds.
+     *
+     * @param seedBlack is the seed of the black player;
+     * @param seedWhite is the seed of the white player;
+     * @return the moves of the game as a list of "row,column" Strings (or "PASS").
+     */
+    private List<String> playGame(long seedBlack, long seedWhite) {
+        Game game = new Game(new ComputerPlayer("black", Stone.BLACK, null, seedBlack),
+                new ComputerPlayer("white", Stone.WHITE, null, seedWhite), new Board(), null);
+        List<String> moves = new ArrayList<>();
+        while (!game.isGameOver() && moves.size() < Board.SIZE * Board.SIZE * 3) {
+            Position move = game.getCurrentPlayer().determineMove(game);
+            if (move == null) {
+                moves.add("PASS");
+                game.pass();
+            } else {
+                moves.add(move.getRow() + "," + move.getColumn());
+                game.doMove(move.getRow(), move.getColumn());
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Test whether two games between computer players with the same seeds are exactly the same, and whether other seeds
+     * result in another game.
+     */
+    @Test
+    public void testSameSeedReplaysGame() {
+        ComputerPlayer player = new ComputerPlayer("bot", Stone.BLACK, null, 1234L);
+        assertEquals(1234L, player.getSeed());
+
+        List<String> firstGame = playGame(1L, 2L);
+        List<String> replayedGame = playGame(1L, 2L);
+        assertFalse(firstGame.isEmpty());
+        assertEquals(firstGame, replayedGame);
+        assertNotEquals(firstGame, playGame(3L, 4L));
+    }
+
+    /**
+     * Test whether a computer player that is far behind resigns, and whether a computer player that is far ahead
+     * passes. After resigning, the game is over and the opponent is the winner.
+     */
+    @Test
+    public void testPassAndResign() {
+        ComputerPlayer black = new ComputerPlayer("black", Stone.BLACK, null, 1L);
+        ComputerPlayer white = new ComputerPlayer("white", Stone.WHITE, null, 2L);
+        Game game = new Game(black, white, new Board(), null);
+        // at the start of the game, no player is ahead, so both players want to play on:
+        assertEquals(0.5, black.estimateWinProbability(game), 0.0001);
+        assertFalse(black.wantsToResign(game));
+        assertNotNull(black.determineMove(game));
+
+        // black fills the first five columns, while white passes after each move of black:
+        for (int row = 0; row < Board.SIZE; row++) {
+            for (int column = 0; column < 5; column++) {
+                game.doMove(row, column);
+                game.pass();
+            }
+        }
+        assertFalse(game.isGameOver());
+        assertTrue(black.estimateWinProbability(game) > ComputerPlayer.DEFAULT_PASS_THRESHOLD);
+        assertTrue(white.wantsToResign(game));
+        assertNull(black.determineMove(game));
+
+        // a player that never resigns keeps playing:
+        white.setResignThreshold(0);
+        assertFalse(white.wantsToResign(game));
+
+        game.resign(white);
+        assertTrue(game.isGameOver());
+        assertEquals("black", game.getWinner());
+    }
+}
@@ -0,0 +1,115 @@
+package com.nedap.go.game;
+
+import com.nedap.go.Protocol;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveResultTest {
+
+    /**
+     * Creates a game without GUI.
+     *
+     * @return the new game.
+     */
+    private Game createGame() {
+        return new Game(new Player("black", Stone.BLACK), new Player("white", Stone.WHITE), new Board(), null);
+    }
+
+    /**
+     * Test whether tryPlay() returns the captured stones of an accepted move, and the reason of a rejected move,
+     * without changing the game when the move is rejected or only checked with isValidMove().
+     */
+    @Test
+    public void testTryPlay() {
+        Game game = createGame();
+        assertEquals(MoveResult.Status.OFF_BOARD, game.tryPlay(1, Board.SIZE).getStatus());
+        assertTrue(game.tryPlay(0, 0).isAccepted()); // BLACK
+        assertEquals(MoveResult.Status.OCCUPIED, game.tryPlay(0, 0).getStatus());
+        assertTrue(game.tryPlay(0, 1).isAccepted()); // WHITE
+
+        // checking the capturing move does not change the board:
+        game.tryPlay(8, 8); // BLACK
+        long hash = game.getBoard().hash();
+        assertTrue(game.isValidMove(1, 0));
+        assertEquals(hash, game.getBoard().hash());
+        assertEquals(Stone.BLACK, game.getBoard().getStone(0, 0));
+
+        MoveResult result = game.tryPlay(1, 0); // WHITE captures (0,0)
+        assertTrue(result.isAccepted());
+        assertEquals(List.of(new Position(0, 0)), result.getCaptured());
+        assertEquals(game.getBoard().hash(), result.getHash());
+        assertTrue(game.getBoard().isEmptyPosition(0, 0));
+        assertTrue(game.getEmptyPositions().contains(new Position(0, 0)));
+    }
+
+    /**
+     * Test whether a move that recreates a former state of the board is rejected, and leaves the board unchanged.
+     */
+    @Test
+    public void testKo() {
+        Game game = createGame();
+        // BLACK and WHITE build the shape of a ko around (0,1) and (0,2):
+        game.tryPlay(0, 0); // BLACK
+        game.tryPlay(0, 3); // WHITE
+        game.tryPlay(1, 1); // BLACK
+        game.tryPlay(1, 2); // WHITE
+        game.tryPlay(0, 2); // BLACK
+        MoveResult capture = game.tryPlay(0, 1); // WHITE captures (0,2)
+        assertEquals(List.of(new Position(0, 2)), capture.getCaptured());
+
+        // directly capturing back would recreate the board before the capture:
+        long hash = game.getBoard().hash();
+        assertEquals(MoveResult.Status.KO, game.tryPlay(0, 2).getStatus());
+        assertFalse(game.isValidMove(0, 2));
+        assertEquals(hash, game.getBoard().hash());
+        assertEquals(Stone.WHITE, game.getBoard().getStone(0, 1));
+        assertEquals(Stone.BLACK, game.getCurrentPlayer().getStone());
+    }
+
+    /**
+     * Test whether a mirror of the game that applies the moves with their captured stones (as a client does) ends up
+     * with the same board as the game that checks the moves, also after sending the captures in the protocol.
+     */
+    @Test
+    public void testApplyMove() {
+        Game game = createGame();
+        Game mirror = createGame();
+        int[][] moves = {{0, 0}, {0, 1}, {8, 8}, {1, 0}, {4, 4}, {6, 6}};
+        for (int[] move : moves) {
+            MoveResult result = game.tryPlay(move[0], move[1]);
+            assertTrue(result.isAccepted());
+            String captured = Protocol.capturedPositions(result.getCaptured());
+            mirror.applyMove(move[0], move[1], Protocol.parseCapturedPositions(captured));
+            assertEquals(game.getBoard().hash(), mirror.getBoard().hash());
+        }
+        assertEquals(game.getCurrentPlayer().getStone(), mirror.getCurrentPlayer().getStone());
+        assertEquals(Set.copyOf(game.getEmptyPositions()), Set.copyOf(mirror.getEmptyPositions()));
+        assertEquals("0", Protocol.capturedPositions(List.of(new Position(0, 0))));
+        assertEquals(List.of(new Position(8, 8), new Position(0, 1)), Protocol.parseCapturedPositions("80,1"));
+    }
+
+    /**
+     * Test whether only the engine calls of a timed game are recorded in the shared histograms, so games of bots and
+     * tournaments do not contend on them.
+     */
+    @Test
+    public void testTimedGame() {
+        long checks = Game.getValidMoveTimes().getCount();
+        long plays = Game.getPlayTimes().getCount();
+        Game game = createGame();
+        assertTrue(game.isValidMove(4, 4));
+        assertTrue(game.tryPlay(4, 4).isAccepted());
+        assertEquals(checks, Game.getValidMoveTimes().getCount());
+        assertEquals(plays, Game.getPlayTimes().getCount());
+
+        game.setTimed(true);
+        assertTrue(game.isValidMove(5, 5));
+        assertTrue(game.tryPlay(5, 5).isAccepted());
+        assertEquals(checks + 1, Game.getValidMoveTimes().getCount());
+        assertEquals(plays + 1, Game.getPlayTimes().getCount());
+    }
+}
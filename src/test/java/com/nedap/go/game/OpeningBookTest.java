@@ -0,0 +1,99 @@
+package com.nedap.go.game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test whether moves added to the builder can be found in the written book, and whether the move with the highest
+     * ratio of wins is chosen as best move.
+     */
+    @Test
+    public void testBuildAndLookUp() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(OpeningBookBuilder.DEFAULT_DEPTH);
+        // black plays (4,4) three times and wins twice, and plays (2,2) three times and wins once:
+        for (int i = 0; i < 3; i++) {
+            builder.addGame(List.of(new Position(4, 4), new Position(2, 6)), i < 2 ? Stone.BLACK : Stone.WHITE);
+            builder.addGame(List.of(new Position(2, 2), new Position(6, 6)), i < 1 ? Stone.BLACK : Stone.WHITE);
+        }
+        Path path = directory.resolve("test.book");
+        builder.write(path);
+        OpeningBook book = OpeningBook.open(path);
+        // 4 different combinations of position and move are stored:
+        assertEquals(4, book.getEntryCount());
+
+        Game game = new Game(new Player("black", Stone.BLACK), new Player("white", Stone.WHITE), new Board(), null);
+        int best = book.findBestEntry(game.getCanonicalPositionHash(), 1);
+        assertTrue(best >= 0);
+        assertEquals(4, book.getRow(best));
+        assertEquals(4, book.getColumn(best));
+        assertEquals(3, book.getPlays(best));
+        assertEquals(2, book.getWins(best));
+        // a move that is played less often than the minimum number of plays is not returned:
+        assertEquals(-1, book.findBestEntry(game.getCanonicalPositionHash(), 4));
+
+        // after black has played (4,4), the answer of white is in the book as well; the same board with black to move
+        // is not in the book:
+        game.doMove(4, 4);
+        assertEquals(2 * Board.SIZE + 6, book.findBestMove(game, 1));
+        assertEquals(-1, book.findFirstEntry(game.getBoard().hash()));
+    }
+
+    /**
+     * Test whether a move stored for one orientation of the board is found for all symmetric orientations, and is
+     * transformed to the orientation of the actual board.
+     */
+    @Test
+    public void testSymmetricLookUp() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(OpeningBookBuilder.DEFAULT_DEPTH);
+        // black plays (2,3), then white answers (3,3):
+        builder.addGame(List.of(new Position(2, 3), new Position(3, 3)), Stone.WHITE);
+        Path path = directory.resolve("symmetry.book");
+        builder.write(path);
+        OpeningBook book = OpeningBook.open(path);
+
+        for (int ordinal = 0; ordinal < Board.SYMMETRIES; ordinal++) {
+            Symmetry symmetry = Symmetry.get(ordinal);
+            Game game = new Game(new Player("black", Stone.BLACK), new Player("white", Stone.WHITE), new Board(), null);
+            game.doMove(symmetry.row(2, 3), symmetry.column(2, 3));
+            assertEquals(symmetry.index(3, 3), book.findBestMove(game, 1));
+        }
+    }
+
+    /**
+     * Test whether a book built from self-play can be used by a computer player, which then still plays valid moves.
+     */
+    @Test
+    public void testSelfPlayBook() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(4);
+        builder.addSelfPlayGames(5, 42L);
+        assertEquals(5, builder.getNumberOfGames());
+        Path path = directory.resolve("selfplay.book");
+        builder.write(path);
+        OpeningBook book = OpeningBook.open(path);
+        assertTrue(book.getEntryCount() > 0);
+
+        Game game = new Game(new ComputerPlayer("black", Stone.BLACK, book), new ComputerPlayer("white", Stone.WHITE, book),
+                new Board(), null);
+        List<Position> moves = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Position move = game.getCurrentPlayer().determineMove(game);
+            assertNotNull(move);
+            assertTrue(game.isValidMove(move.getRow(), move.getColumn()));
+            game.doMove(move.getRow(), move.getColumn());
+            moves.add(move);
+        }
+        assertEquals(6, moves.size());
+    }
+}
@@ -1,11 +1,42 @@
 package com.nedap.go.game;
 
+import com.nedap.go.Protocol;
+import com.nedap.go.codec.Command;
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageDecoder;
+import com.nedap.go.codec.MessageEncoder;
+import com.nedap.go.metrics.Metrics;
+import com.nedap.go.server.ClientHandler;
+import com.nedap.go.server.Connection;
+import com.nedap.go.server.RateLimits;
 import com.nedap.go.server.Server;
+import com.nedap.go.server.ServerMode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,5 +65,512 @@ public class ServerTest {
         server.stop();
         assertFalse(server.isOpenForConnection());
     }
-}
 
+    /**
+     * Test whether the handshake works the same in every mode of the server: the server answers HELLO with WELCOME,
+     * accepts a new username, and refuses a username that is already used by another client.
+     */
+    @ParameterizedTest
+    @EnumSource(ServerMode.class)
+    void testHandshake(ServerMode mode) throws IOException {
+        Server modeServer = new Server(0, InetAddress.getLocalHost(), mode);
+        modeServer.start();
+        try (Socket first = new Socket(InetAddress.getLoopbackAddress(), modeServer.getPort());
+             Socket second = new Socket(InetAddress.getLoopbackAddress(), modeServer.getPort())) {
+            PrintWriter firstWriter = new PrintWriter(first.getOutputStream(), true);
+            BufferedReader firstReader = new BufferedReader(new InputStreamReader(first.getInputStream()));
+            PrintWriter secondWriter = new PrintWriter(second.getOutputStream(), true);
+            BufferedReader secondReader = new BufferedReader(new InputStreamReader(second.getInputStream()));
+
+            firstWriter.println(Protocol.helloMessage("test client"));
+            assertTrue(firstReader.readLine().startsWith(Protocol.WELCOME));
+            firstWriter.println(Protocol.username("arjonne"));
+            assertTrue(firstReader.readLine().startsWith(Protocol.JOINED));
+
+            // the second client sends its messages in one write, split over two lines:
+            second.getOutputStream().write((Protocol.helloMessage("test client") + "\n"
+                    + Protocol.username("arjonne") + "\r\n").getBytes());
+            assertTrue(secondReader.readLine().startsWith(Protocol.WELCOME));
+            assertTrue(secondReader.readLine().startsWith(Protocol.USERNAMETAKEN));
+        }
+        modeServer.stop();
+        assertFalse(modeServer.isOpenForConnection());
+    }
+
+    /**
+     * Test whether a client that asks for binary framing in HELLO gets it in every mode of the server: WELCOME is
+     * still a text line that lists BINARY, and the messages after it are binary frames in both directions.
+     */
+    @ParameterizedTest
+    @EnumSource(ServerMode.class)
+    void testBinaryHandshake(ServerMode mode) throws IOException {
+        Server modeServer = new Server(0, InetAddress.getLocalHost(), mode);
+        modeServer.start();
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), modeServer.getPort())) {
+            // HELLO and USERNAME are sent in one write, so the server switches framing in the middle of the bytes:
+            MessageEncoder encoder = new MessageEncoder();
+            encoder.text(Protocol.helloMessage("test client", "COLOURS", Protocol.BINARY)).end();
+            encoder.setFraming(Framing.BINARY);
+            encoder.command(Command.USERNAME).field("arjonne").end();
+            encoder.writeTo(client.getOutputStream());
+
+            MessageDecoder decoder = new MessageDecoder();
+            List<String> received = new ArrayList<>();
+            InputStream input = client.getInputStream();
+            byte[] bytes = new byte[1024];
+            while (received.size() < 2) {
+                int bytesRead = input.read(bytes);
+                assertTrue(bytesRead > 0);
+                decoder.decode(ByteBuffer.wrap(bytes, 0, bytesRead), message -> {
+                    if (message.getCommand() == Command.WELCOME) {
+                        assertEquals(Protocol.BINARY, message.getString(1));
+                        decoder.setFraming(Framing.BINARY);
+                    }
+                    received.add(message.getCommand().name());
+                });
+            }
+            assertEquals(List.of(Protocol.WELCOME, Protocol.JOINED), received);
+        }
+        modeServer.stop();
+    }
+
+    /**
+     * Test whether JOINED carries a session token, with which a new connection can take over the session (and the
+     * username) of a connection that still seems to be open, and whether an unknown token is refused.
+     */
+    @Test
+    void testResume() throws IOException {
+        server.start();
+        try (Socket first = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket second = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket third = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            PrintWriter firstWriter = new PrintWriter(first.getOutputStream(), true);
+            BufferedReader firstReader = new BufferedReader(new InputStreamReader(first.getInputStream()));
+            firstWriter.println(Protocol.helloMessage("test client"));
+            assertTrue(firstReader.readLine().startsWith(Protocol.WELCOME));
+            firstWriter.println(Protocol.username("arjonne"));
+            String[] joined = firstReader.readLine().split(Protocol.SEPARATOR);
+            assertEquals(Protocol.JOINED, joined[0]);
+            String token = joined[2];
+
+            PrintWriter secondWriter = new PrintWriter(second.getOutputStream(), true);
+            BufferedReader secondReader = new BufferedReader(new InputStreamReader(second.getInputStream()));
+            secondWriter.println(Protocol.helloMessage("test client"));
+            assertTrue(secondReader.readLine().startsWith(Protocol.WELCOME));
+            secondWriter.println(Protocol.resume("unknown"));
+            assertTrue(secondReader.readLine().startsWith(Protocol.ERROR));
+            secondWriter.println(Protocol.resume(token));
+            assertEquals(Protocol.joined("arjonne has resumed its session.", token), secondReader.readLine());
+            // the first connection is closed by the server, and the username now belongs to the second connection:
+            assertNull(firstReader.readLine());
+            assertEquals(List.of("arjonne"), server.getListOfUsernames());
+
+            PrintWriter thirdWriter = new PrintWriter(third.getOutputStream(), true);
+            BufferedReader thirdReader = new BufferedReader(new InputStreamReader(third.getInputStream()));
+            thirdWriter.println(Protocol.helloMessage("test client"));
+            assertTrue(thirdReader.readLine().startsWith(Protocol.WELCOME));
+            thirdWriter.println(Protocol.username("arjonne"));
+            assertTrue(thirdReader.readLine().startsWith(Protocol.USERNAMETAKEN));
+        }
+        server.stop();
+    }
+
+    /**
+     * Test whether two queued players are paired in a new game, which both get before black gets YOURTURN, and whether
+     * the first move of black is played directly.
+     */
+    @Test
+    void testNewGame() throws IOException, InterruptedException {
+        server.start();
+        try (Socket black = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket white = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            PrintWriter blackWriter = new PrintWriter(black.getOutputStream(), true);
+            BufferedReader blackReader = new BufferedReader(new InputStreamReader(black.getInputStream()));
+            PrintWriter whiteWriter = new PrintWriter(white.getOutputStream(), true);
+            BufferedReader whiteReader = new BufferedReader(new InputStreamReader(white.getInputStream()));
+            joinAndQueue(blackWriter, blackReader, "black");
+            awaitWaitingPlayers(1);
+            joinAndQueue(whiteWriter, whiteReader, "white");
+
+            assertEquals(Protocol.newGame("black", "white"), blackReader.readLine());
+            assertEquals(Protocol.newGame("black", "white"), whiteReader.readLine());
+            assertEquals(Protocol.yourTurn(), blackReader.readLine());
+            blackWriter.println(Protocol.move(3, 4));
+            assertEquals(Protocol.move("black", 3, 4), blackReader.readLine());
+            assertEquals(Protocol.move("black", 3, 4), whiteReader.readLine());
+            assertEquals(Protocol.yourTurn(), whiteReader.readLine());
+            assertEquals(1, server.getNumberOfGames());
+        }
+        server.stop();
+    }
+
+    /**
+     * Test whether a move or pass of a player whose turn it is not gets an ERROR and is ignored, so white can not play
+     * for black.
+     */
+    @Test
+    void testMoveOutOfTurn() throws IOException, InterruptedException {
+        server.start();
+        try (Socket black = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket white = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            PrintWriter blackWriter = new PrintWriter(black.getOutputStream(), true);
+            BufferedReader blackReader = new BufferedReader(new InputStreamReader(black.getInputStream()));
+            PrintWriter whiteWriter = new PrintWriter(white.getOutputStream(), true);
+            BufferedReader whiteReader = new BufferedReader(new InputStreamReader(white.getInputStream()));
+            joinAndQueue(blackWriter, blackReader, "black");
+            awaitWaitingPlayers(1);
+            joinAndQueue(whiteWriter, whiteReader, "white");
+            assertEquals(Protocol.newGame("black", "white"), blackReader.readLine());
+            assertEquals(Protocol.newGame("black", "white"), whiteReader.readLine());
+            assertEquals(Protocol.yourTurn(), blackReader.readLine());
+
+            whiteWriter.println(Protocol.move(3, 4));
+            assertTrue(whiteReader.readLine().startsWith(Protocol.ERROR));
+            whiteWriter.println(Protocol.pass());
+            assertTrue(whiteReader.readLine().startsWith(Protocol.ERROR));
+            // black still has the first move:
+            blackWriter.println(Protocol.move(5, 6));
+            assertEquals(Protocol.move("black", 5, 6), blackReader.readLine());
+            assertEquals(Protocol.move("black", 5, 6), whiteReader.readLine());
+            assertEquals(Protocol.yourTurn(), whiteReader.readLine());
+        }
+        server.stop();
+    }
+
+    /**
+     * Lets a connected client say HELLO, choose a username and wait for a game.
+     *
+     * @param writer   is the writer of the connection of the client;
+     * @param reader   is the reader of the connection of the client;
+     * @param username is the username of the client.
+     */
+    private static void joinAndQueue(PrintWriter writer, BufferedReader reader, String username) throws IOException {
+        writer.println(Protocol.helloMessage("test client"));
+        assertTrue(reader.readLine().startsWith(Protocol.WELCOME));
+        writer.println(Protocol.username(username));
+        assertTrue(reader.readLine().startsWith(Protocol.JOINED));
+        writer.println(Protocol.queue());
+    }
+
+    /**
+     * Waits until the given number of players is waiting in the queue of the server, so the order in which the players
+     * are queued is known.
+     *
+     * @param players is the number of waiting players to wait for.
+     */
+    private void awaitWaitingPlayers(int players) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getMatchmaker().getNumberOfWaitingPlayers() < players && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(players, server.getMatchmaker().getNumberOfWaitingPlayers());
+    }
+
+    /**
+     * Test whether a client with HEARTBEAT that has been silent for the ping interval gets a PING, and is disconnected
+     * if it stays silent for the idle timeout, while a client that answers with PONG stays connected. A client without
+     * HEARTBEAT never gets a PING: it is disconnected after the idle timeout if it does nothing, but not while it is
+     * queued.
+     */
+    @Test
+    void testHeartbeat() throws IOException {
+        System.setProperty(Server.PING_INTERVAL_PROPERTY, "1");
+        System.setProperty(Server.IDLE_TIMEOUT_PROPERTY, "2");
+        Server heartbeatServer;
+        try {
+            heartbeatServer = new Server(0, InetAddress.getLocalHost());
+        } finally {
+            System.clearProperty(Server.PING_INTERVAL_PROPERTY);
+            System.clearProperty(Server.IDLE_TIMEOUT_PROPERTY);
+        }
+        heartbeatServer.start();
+        try (Socket silent = new Socket(InetAddress.getLoopbackAddress(), heartbeatServer.getPort());
+             Socket answering = new Socket(InetAddress.getLoopbackAddress(), heartbeatServer.getPort());
+             Socket legacy = new Socket(InetAddress.getLoopbackAddress(), heartbeatServer.getPort());
+             Socket queued = new Socket(InetAddress.getLoopbackAddress(), heartbeatServer.getPort())) {
+            PrintWriter silentWriter = new PrintWriter(silent.getOutputStream(), true);
+            BufferedReader silentReader = new BufferedReader(new InputStreamReader(silent.getInputStream()));
+            PrintWriter answeringWriter = new PrintWriter(answering.getOutputStream(), true);
+            BufferedReader answeringReader = new BufferedReader(new InputStreamReader(answering.getInputStream()));
+            PrintWriter legacyWriter = new PrintWriter(legacy.getOutputStream(), true);
+            BufferedReader legacyReader = new BufferedReader(new InputStreamReader(legacy.getInputStream()));
+            BufferedReader queuedReader = new BufferedReader(new InputStreamReader(queued.getInputStream()));
+
+            silentWriter.println(Protocol.helloMessage("silent", Protocol.HEARTBEAT));
+            assertEquals(Protocol.welcomeMessage("Server by Arjonne") + Protocol.SEPARATOR + Protocol.HEARTBEAT,
+                    silentReader.readLine());
+            answeringWriter.println(Protocol.helloMessage("answering", Protocol.HEARTBEAT));
+            assertTrue(answeringReader.readLine().startsWith(Protocol.WELCOME));
+            legacyWriter.println(Protocol.helloMessage("legacy"));
+            assertEquals(Protocol.welcomeMessage("Server by Arjonne"), legacyReader.readLine());
+            joinAndQueue(new PrintWriter(queued.getOutputStream(), true), queuedReader, "queued");
+
+            assertEquals(Protocol.ping(), silentReader.readLine());
+            assertEquals(Protocol.ping(), answeringReader.readLine());
+            answeringWriter.println(Protocol.pong());
+            // the silent client is disconnected, while the answering client gets its next PING:
+            assertNull(silentReader.readLine());
+            assertEquals(Protocol.ping(), answeringReader.readLine());
+            answeringWriter.println(Protocol.pong());
+            // the legacy client is disconnected without a PING, while the queued client keeps waiting:
+            assertNull(legacyReader.readLine());
+            // the heartbeats of the answering and the queued client, and the sampler of the metrics:
+            assertEquals(3, heartbeatServer.getTimingWheel().getPendingTimeouts());
+            queued.setSoTimeout(3000);
+            assertThrows(SocketTimeoutException.class, queuedReader::readLine);
+        }
+        heartbeatServer.stop();
+    }
+
+    /**
+     * Test whether the messages of a client that floods the server are dropped once they exceed the rate limits, and
+     * whether the client is disconnected if it keeps flooding, while another client is not affected.
+     */
+    @Test
+    void testRateLimits() throws IOException {
+        System.setProperty(RateLimits.COMMAND_RATE_PROPERTY, "5");
+        Server limitedServer;
+        try {
+            limitedServer = new Server(0, InetAddress.getLocalHost());
+        } finally {
+            System.clearProperty(RateLimits.COMMAND_RATE_PROPERTY);
+        }
+        limitedServer.start();
+        try (Socket flooding = new Socket(InetAddress.getLoopbackAddress(), limitedServer.getPort());
+             Socket polite = new Socket(InetAddress.getLoopbackAddress(), limitedServer.getPort())) {
+            PrintWriter floodingWriter = new PrintWriter(flooding.getOutputStream(), true);
+            BufferedReader floodingReader = new BufferedReader(new InputStreamReader(flooding.getInputStream()));
+            PrintWriter politeWriter = new PrintWriter(polite.getOutputStream(), true);
+            BufferedReader politeReader = new BufferedReader(new InputStreamReader(polite.getInputStream()));
+
+            for (int i = 0; i < 200; i++) {
+                floodingWriter.println(Protocol.move(0, 0));
+            }
+            // the burst of 10 MOVEs is handled; the 11th gets an ERROR, and after 100 rejected MOVEs the client is
+            // disconnected:
+            assertTrue(floodingReader.readLine().startsWith(Protocol.ERROR));
+            assertNull(floodingReader.readLine());
+            assertTrue(limitedServer.getRateLimits().getRejected(Command.MOVE) >= 100);
+            assertEquals(1, limitedServer.getRateLimits().getFloodDisconnects());
+
+            politeWriter.println(Protocol.helloMessage("polite"));
+            assertTrue(politeReader.readLine().startsWith(Protocol.WELCOME));
+        }
+        limitedServer.stop();
+    }
+
+    /**
+     * Test whether two clients with MULTIGAME can play many games at once over their connections, and send a move in
+     * every game in one burst, without being rejected by the rate limits.
+     */
+    @Test
+    void testMultiGameRateLimits() throws IOException, InterruptedException {
+        int numberOfGames = 30;
+        server.start();
+        try (Socket black = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket white = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            PrintWriter blackWriter = new PrintWriter(black.getOutputStream(), true);
+            BufferedReader blackReader = new BufferedReader(new InputStreamReader(black.getInputStream()));
+            PrintWriter whiteWriter = new PrintWriter(white.getOutputStream(), true);
+            BufferedReader whiteReader = new BufferedReader(new InputStreamReader(white.getInputStream()));
+            blackWriter.println(Protocol.helloMessage("black", Protocol.MULTIGAME));
+            assertTrue(blackReader.readLine().startsWith(Protocol.WELCOME));
+            blackWriter.println(Protocol.username("black"));
+            assertTrue(blackReader.readLine().startsWith(Protocol.JOINED));
+            whiteWriter.println(Protocol.helloMessage("white", Protocol.MULTIGAME));
+            assertTrue(whiteReader.readLine().startsWith(Protocol.WELCOME));
+            whiteWriter.println(Protocol.username("white"));
+            assertTrue(whiteReader.readLine().startsWith(Protocol.JOINED));
+
+            // black queues first, so it has the first move in every game:
+            List<Integer> gameIds = new ArrayList<>();
+            for (int i = 0; i < numberOfGames; i++) {
+                blackWriter.println(Protocol.queue());
+                awaitWaitingPlayers(1);
+                whiteWriter.println(Protocol.queue());
+                String newGame = blackReader.readLine();
+                assertTrue(newGame.startsWith(Protocol.NEWGAME), newGame);
+                int gameId = Integer.parseInt(newGame.split(Protocol.SEPARATOR)[1]);
+                assertEquals(Protocol.NEWGAME + Protocol.SEPARATOR + gameId + Protocol.SEPARATOR + "black"
+                        + Protocol.SEPARATOR + "white", whiteReader.readLine());
+                assertEquals(Protocol.YOURTURN + Protocol.SEPARATOR + gameId, blackReader.readLine());
+                gameIds.add(gameId);
+            }
+            assertEquals(numberOfGames, server.getNumberOfGames());
+
+            // each round, both players send a move in every game in one burst:
+            for (int row = 0; row < 5; row++) {
+                playRound(blackWriter, blackReader, whiteReader, gameIds, row, 0);
+                playRound(whiteWriter, whiteReader, blackReader, gameIds, row, 2);
+            }
+            assertEquals(0, server.getRateLimits().getRejected());
+            assertEquals(0, server.getRateLimits().getFloodDisconnects());
+        }
+        server.stop();
+    }
+
+    /**
+     * Lets a client with MULTIGAME send a move in each of its games at once, and checks that every move is played.
+     *
+     * @param writer         is the writer of the client whose turn it is;
+     * @param reader         is the reader of the client whose turn it is;
+     * @param opponentReader is the reader of the opponent of the client;
+     * @param gameIds        is the list of the ids of the games;
+     * @param row            is the row of the moves;
+     * @param column         is the column of the moves.
+     */
+    private static void playRound(PrintWriter writer, BufferedReader reader, BufferedReader opponentReader,
+                                  List<Integer> gameIds, int row, int column) throws IOException {
+        for (int gameId : gameIds) {
+            writer.println(Protocol.MOVE + Protocol.SEPARATOR + gameId + Protocol.SEPARATOR + row + Protocol.SEPARATOR
+                    + column);
+        }
+        // the games are handled by different workers, so only the order within one game is known:
+        for (int i = 0; i < gameIds.size(); i++) {
+            assertTrue(reader.readLine().startsWith(Protocol.MOVE + Protocol.SEPARATOR));
+        }
+        for (int i = 0; i < 2 * gameIds.size(); i++) {
+            String line = opponentReader.readLine();
+            assertTrue(line.startsWith(Protocol.MOVE + Protocol.SEPARATOR)
+                    || line.startsWith(Protocol.YOURTURN + Protocol.SEPARATOR), line);
+        }
+    }
+
+    /**
+     * Test whether a server that handles the maximum number of connections does not accept a new connection until
+     * one is closed.
+     */
+    @Test
+    void testMaxConnections() throws IOException {
+        System.setProperty(Server.MAX_CONNECTIONS_PROPERTY, "1");
+        Server limitedServer;
+        try {
+            limitedServer = new Server(0, InetAddress.getLocalHost());
+        } finally {
+            System.clearProperty(Server.MAX_CONNECTIONS_PROPERTY);
+        }
+        limitedServer.start();
+        Socket first = new Socket(InetAddress.getLoopbackAddress(), limitedServer.getPort());
+        PrintWriter firstWriter = new PrintWriter(first.getOutputStream(), true);
+        BufferedReader firstReader = new BufferedReader(new InputStreamReader(first.getInputStream()));
+        firstWriter.println(Protocol.helloMessage("first"));
+        assertTrue(firstReader.readLine().startsWith(Protocol.WELCOME));
+        assertEquals(1, limitedServer.getNumberOfConnections());
+        try (Socket waiting = new Socket(InetAddress.getLoopbackAddress(), limitedServer.getPort())) {
+            PrintWriter waitingWriter = new PrintWriter(waiting.getOutputStream(), true);
+            BufferedReader waitingReader = new BufferedReader(new InputStreamReader(waiting.getInputStream()));
+            // the connection waits in the backlog, so its HELLO is not answered yet:
+            waitingWriter.println(Protocol.helloMessage("waiting"));
+            waiting.setSoTimeout(300);
+            assertThrows(SocketTimeoutException.class, waitingReader::readLine);
+
+            first.close();
+            waiting.setSoTimeout(5000);
+            assertTrue(waitingReader.readLine().startsWith(Protocol.WELCOME));
+            assertTrue(limitedServer.getRateLimits().getDelayedAccepts() >= 1);
+        }
+        limitedServer.stop();
+    }
+
+    /**
+     * Test whether the metrics of a running server can be read via JMX, and whether they are unregistered when the
+     * server stops.
+     */
+    @Test
+    void testMetrics() throws Exception {
+        server.start();
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = Metrics.name("type=Server,port=" + server.getPort());
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            writer.println(Protocol.helloMessage("client"));
+            assertTrue(reader.readLine().startsWith(Protocol.WELCOME));
+
+            assertEquals(1, mBeanServer.getAttribute(name, "ActiveConnections"));
+            assertEquals(0, mBeanServer.getAttribute(name, "LiveGames"));
+            // the WELCOME can be read before its writer has marked it as written:
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((long) mBeanServer.getAttribute(name, "OutboundBytes") > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0L, mBeanServer.getAttribute(name, "OutboundBytes"));
+            assertTrue(mBeanServer.isRegistered(Metrics.name("type=Engine,name=isValidMove")));
+            assertTrue(server.getMetrics().toString().startsWith("connections: 1"));
+        }
+        server.stop();
+        assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    /**
+     * Test whether the queue wait times of each rating bucket are registered via JMX and printed with the metrics when
+     * the rating matchmaker is used, and whether they are unregistered when the server stops.
+     */
+    @Test
+    void testRatingBucketMetrics() throws Exception {
+        System.setProperty(Server.MATCHMAKER_PROPERTY, "RATING");
+        Server ratingServer;
+        try {
+            ratingServer = new Server(0, InetAddress.getLocalHost());
+        } finally {
+            System.clearProperty(Server.MATCHMAKER_PROPERTY);
+        }
+        ratingServer.start();
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = Metrics.name("type=Histogram,port=" + ratingServer.getPort()
+                + ",name=queueWaitTimes,bucket=1500");
+        try (Socket black = new Socket(InetAddress.getLoopbackAddress(), ratingServer.getPort());
+             Socket white = new Socket(InetAddress.getLoopbackAddress(), ratingServer.getPort())) {
+            BufferedReader blackReader = new BufferedReader(new InputStreamReader(black.getInputStream()));
+            BufferedReader whiteReader = new BufferedReader(new InputStreamReader(white.getInputStream()));
+            joinAndQueue(new PrintWriter(black.getOutputStream(), true), blackReader, "black");
+            joinAndQueue(new PrintWriter(white.getOutputStream(), true), whiteReader, "white");
+            assertTrue(blackReader.readLine().startsWith(Protocol.NEWGAME));
+
+            // the bucket is registered with the next sample of the metrics:
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!mBeanServer.isRegistered(name) && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(2L, mBeanServer.getAttribute(name, "Count"));
+            assertTrue(ratingServer.getMetrics().toString().contains("queue wait, rating 1500-1599 (us): count 2"));
+        }
+        ratingServer.stop();
+        assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    /**
+     * Test whether a username can only be reserved by one client, also when many clients try to reserve it at the same
+     * time, and whether the username is free again after the client that reserved it has released it.
+     */
+    @Test
+    void testReserveUsername() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<ClientHandler> clientHandlers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            clientHandlers.add(new ClientHandler((Connection) null, server));
+        }
+        List<Future<Boolean>> results = executor.invokeAll(clientHandlers.stream()
+                .map(clientHandler -> (Callable<Boolean>) () -> server.reserveUsername("arjonne", clientHandler))
+                .toList());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        int reserved = 0;
+        ClientHandler owner = null;
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).get()) {
+                reserved++;
+                owner = clientHandlers.get(i);
+            }
+        }
+        assertEquals(1, reserved);
+        assertEquals(List.of("arjonne"), server.getListOfUsernames());
+
+        // another client can not release the username; the owner can:
+        server.removeUsername("arjonne", clientHandlers.get(owner == clientHandlers.get(0) ? 1 : 0));
+        assertEquals(1, server.getListOfUsernames().size());
+        server.removeUsername("arjonne", owner);
+        assertTrue(server.getListOfUsernames().isEmpty());
+        assertTrue(server.reserveUsername("arjonne", clientHandlers.get(0)));
+    }
+}
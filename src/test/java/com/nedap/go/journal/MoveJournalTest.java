@@ -0,0 +1,355 @@
+package com.nedap.go.journal;
+
+import com.nedap.go.Protocol;
+import com.nedap.go.game.Game;
+import com.nedap.go.game.Stone;
+import com.nedap.go.server.Server;
+import com.nedap.go.server.ServerMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveJournalTest {
+
+    /**
+     * Opens the journal in a directory after replaying it.
+     *
+     * @param directory   is the directory of the journal;
+     * @param segmentSize is the size after which a new segment is started;
+     * @return the journal.
+     */
+    private MoveJournal open(Path directory, long segmentSize) throws IOException {
+        return new MoveJournal(directory, MoveJournal.Fsync.ALWAYS, segmentSize, JournalReplay.read(directory));
+    }
+
+    /**
+     * Gets the segments in the directory of a journal.
+     *
+     * @param directory is the directory of the journal;
+     * @return the paths of the segments, in order.
+     */
+    private List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    /**
+     * Test whether the replay returns the records of the games that have not ended, in order, and whether the journal
+     * continues with the next sequence number and game id after it is opened again.
+     */
+    @Test
+    public void testReplay(@TempDir Path directory) throws IOException, InterruptedException {
+        MoveJournal journal = open(directory, MoveJournal.DEFAULT_SEGMENT_SIZE);
+        journal.append(JournalRecord.start(1, "alice", "bob"));
+        journal.append(JournalRecord.start(2, "carol", "dave"));
+        journal.append(JournalRecord.move(1, 4, 4));
+        journal.append(JournalRecord.move(2, 0, 0));
+        journal.append(JournalRecord.pass(1));
+        journal.append(JournalRecord.end(2));
+        assertTrue(journal.sync(1000));
+        journal.close();
+
+        JournalReplay replay = JournalReplay.read(directory);
+        assertTrue(replay.isComplete());
+        assertEquals(2, replay.getLastGameId());
+        assertEquals(6, replay.getNextSequence());
+        assertEquals(List.of(1), List.copyOf(replay.getLiveGames().keySet()));
+        assertEquals("[START 1 alice bob, MOVE 1 4 4, PASS 1]", replay.getLiveGames().get(1).toString());
+
+        // opening the journal again continues in a new segment; the old segment is kept, as game 1 is still running:
+        open(directory, MoveJournal.DEFAULT_SEGMENT_SIZE).close();
+        assertEquals(List.of(directory.resolve(MoveJournal.segmentName(1)),
+                directory.resolve(MoveJournal.segmentName(2))), segments(directory));
+        replay = JournalReplay.read(directory);
+        assertEquals(2, replay.getLastGameId());
+        assertEquals(6, replay.getNextSequence());
+        assertEquals("[START 1 alice bob, MOVE 1 4 4, PASS 1]", replay.getLiveGames().get(1).toString());
+    }
+
+    /**
+     * Test whether a record that is torn by a crash (or corrupted) stops the replay, so only the records before it are
+     * recovered.
+     */
+    @Test
+    public void testTornRecord(@TempDir Path directory) throws IOException {
+        MoveJournal journal = open(directory, MoveJournal.DEFAULT_SEGMENT_SIZE);
+        journal.append(JournalRecord.start(1, "alice", "bob"));
+        journal.append(JournalRecord.move(1, 4, 4));
+        journal.append(JournalRecord.move(1, 3, 3));
+        journal.close();
+        Path segment = segments(directory).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        JournalReplay replay = JournalReplay.read(directory);
+        assertFalse(replay.isComplete());
+        assertEquals("[START 1 alice bob, MOVE 1 4 4]", replay.getLiveGames().get(1).toString());
+
+        // a record with a wrong checksum is not replayed either (the last byte of the first move is changed, which is
+        // followed by the 14 bytes of the torn move):
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 15] ^= 1;
+        Files.write(segment, bytes);
+        replay = JournalReplay.read(directory);
+        assertEquals("[START 1 alice bob]", replay.getLiveGames().get(1).toString());
+    }
+
+    /**
+     * Test whether the journal starts a new segment when a segment is full, and deletes the old segments as soon as
+     * all games that have records in them have ended.
+     */
+    @Test
+    public void testSegmentsAreDeleted(@TempDir Path directory) throws IOException, InterruptedException {
+        MoveJournal journal = open(directory, 64);
+        journal.append(JournalRecord.start(1, "alice", "bob"));
+        for (int i = 0; i < 8; i++) {
+            journal.sync(1000);
+            journal.append(JournalRecord.move(1, i, i));
+        }
+        journal.sync(1000);
+        journal.append(JournalRecord.start(2, "carol", "dave"));
+        for (int i = 0; i < 8; i++) {
+            journal.sync(1000);
+            journal.append(JournalRecord.move(2, i, i));
+        }
+        journal.sync(1000);
+        int segmentsBeforeEnd = segments(directory).size();
+        assertTrue(segmentsBeforeEnd > 2);
+
+        // the segments are kept as long as game 1 is running; after it has ended, the oldest segments are deleted:
+        journal.append(JournalRecord.end(1));
+        journal.sync(1000);
+        journal.append(JournalRecord.move(2, 8, 8));
+        journal.close();
+        assertTrue(segments(directory).size() < segmentsBeforeEnd);
+        JournalReplay replay = JournalReplay.read(directory);
+        assertTrue(replay.isComplete());
+        assertEquals(List.of(2), List.copyOf(replay.getLiveGames().keySet()));
+        assertEquals(10, replay.getLiveGames().get(2).size());
+    }
+
+    /**
+     * Test whether a server that is started with a journal rebuilds the games that were running, and gives new games an
+     * id that is higher than all ids in the journal.
+     */
+    @Test
+    public void testServerRecoversGames(@TempDir Path directory) throws IOException {
+        MoveJournal journal = open(directory, MoveJournal.DEFAULT_SEGMENT_SIZE);
+        journal.append(JournalRecord.start(3, "alice", "bob"));
+        journal.append(JournalRecord.move(3, 0, 0));
+        journal.append(JournalRecord.move(3, 0, 1));
+        journal.append(JournalRecord.pass(3));
+        journal.append(JournalRecord.start(4, "carol", "dave"));
+        journal.append(JournalRecord.move(4, 2, 2));
+        journal.append(JournalRecord.move(4, 2, 2)); // not valid, so game 4 can not be recovered
+        journal.append(JournalRecord.start(5, "erin", "frank"));
+        journal.append(JournalRecord.end(5));
+        journal.close();
+
+        Server server = new Server(0, InetAddress.getLoopbackAddress(), ServerMode.BLOCKING, directory);
+        server.start();
+        try {
+            assertEquals(1, server.getNumberOfRecoveredGames());
+            Game game = server.getRecoveredGame(3);
+            assertEquals(Stone.BLACK, game.getBoard().getStone(0, 0));
+            assertEquals(Stone.WHITE, game.getBoard().getStone(0, 1));
+            assertEquals(1, game.getPassCount());
+            assertEquals("bob", game.getCurrentPlayer().getUsername());
+            assertNull(server.getRecoveredGame(4));
+            assertNotNull(server.getJournal());
+        } finally {
+            server.stop();
+        }
+        // game 4 is ended in the journal, and game 3 is in the snapshot that is written when the server stops:
+        List<GameSnapshot> snapshots;
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            snapshots = snapshotFile.read();
+        }
+        JournalReplay replay = JournalReplay.read(directory, snapshots);
+        assertEquals(5, replay.getLastGameId());
+        assertEquals(List.of(3), List.copyOf(replay.getLiveGames().keySet()));
+    }
+
+    /**
+     * Test whether the recovered games are ended in the journal once the resume grace of the server has passed, so they
+     * are not recovered again after the next restart.
+     */
+    @Test
+    public void testServerEndsRecoveredGames(@TempDir Path directory) throws IOException, InterruptedException {
+        MoveJournal journal = open(directory, MoveJournal.DEFAULT_SEGMENT_SIZE);
+        journal.append(JournalRecord.start(3, "alice", "bob"));
+        journal.append(JournalRecord.move(3, 0, 0));
+        journal.close();
+
+        System.setProperty(Server.RESUME_GRACE_PROPERTY, "1");
+        Server server;
+        try {
+            server = new Server(0, InetAddress.getLoopbackAddress(), ServerMode.BLOCKING, directory);
+        } finally {
+            System.clearProperty(Server.RESUME_GRACE_PROPERTY);
+        }
+        server.start();
+        try {
+            assertEquals(1, server.getNumberOfRecoveredGames());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.getNumberOfRecoveredGames() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, server.getNumberOfRecoveredGames());
+            assertNull(server.getRecoveredGame(3));
+        } finally {
+            server.stop();
+        }
+        List<GameSnapshot> snapshots;
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            snapshots = snapshotFile.read();
+        }
+        assertTrue(JournalReplay.read(directory, snapshots).getLiveGames().isEmpty());
+    }
+
+    /**
+     * Test whether the START record keeps the session tokens of the players, and whether a START without tokens is
+     * still read.
+     */
+    @Test
+    public void testStartRecordKeepsTokens(@TempDir Path directory) throws IOException {
+        MoveJournal journal = open(directory, MoveJournal.DEFAULT_SEGMENT_SIZE);
+        journal.append(JournalRecord.start(1, "alice", "bob", "tokenOfAlice", "tokenOfBob"));
+        journal.append(JournalRecord.start(2, "carol", "dave"));
+        journal.close();
+
+        JournalReplay replay = JournalReplay.read(directory);
+        JournalRecord start = replay.getLiveGames().get(1).get(0);
+        assertEquals("alice", start.getBlack());
+        assertEquals("tokenOfAlice", start.getBlackToken());
+        assertEquals("tokenOfBob", start.getWhiteToken());
+        assertNull(replay.getLiveGames().get(2).get(0).getBlackToken());
+    }
+
+    /**
+     * Test whether the players of a game that was running when the server stopped can continue it after a restart,
+     * by resuming their sessions with the tokens they got before the restart.
+     */
+    @Test
+    public void testServerResumesRecoveredGames(@TempDir Path directory) throws IOException, InterruptedException {
+        Server server = new Server(0, InetAddress.getLoopbackAddress(), ServerMode.BLOCKING, directory);
+        server.start();
+        String aliceToken;
+        String bobToken;
+        try (Socket alice = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket bob = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            PrintWriter aliceWriter = new PrintWriter(alice.getOutputStream(), true);
+            BufferedReader aliceReader = new BufferedReader(new InputStreamReader(alice.getInputStream()));
+            PrintWriter bobWriter = new PrintWriter(bob.getOutputStream(), true);
+            BufferedReader bobReader = new BufferedReader(new InputStreamReader(bob.getInputStream()));
+            aliceToken = join(aliceWriter, aliceReader, "alice");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.getMatchmaker().getNumberOfWaitingPlayers() < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            bobToken = join(bobWriter, bobReader, "bob");
+            assertEquals(Protocol.newGame("alice", "bob"), aliceReader.readLine());
+            assertEquals(Protocol.newGame("alice", "bob"), bobReader.readLine());
+            assertEquals(Protocol.yourTurn(), aliceReader.readLine());
+            aliceWriter.println(Protocol.move(3, 4));
+            assertEquals(Protocol.move("alice", 3, 4), aliceReader.readLine());
+            assertEquals(Protocol.move("alice", 3, 4), bobReader.readLine());
+            assertEquals(Protocol.yourTurn(), bobReader.readLine());
+            server.stop();
+        }
+
+        server = new Server(0, InetAddress.getLoopbackAddress(), ServerMode.BLOCKING, directory);
+        server.start();
+        try (Socket alice = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket bob = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            assertEquals(1, server.getNumberOfGames());
+            assertEquals(0, server.getNumberOfRecoveredGames());
+            PrintWriter aliceWriter = new PrintWriter(alice.getOutputStream(), true);
+            BufferedReader aliceReader = new BufferedReader(new InputStreamReader(alice.getInputStream()));
+            PrintWriter bobWriter = new PrintWriter(bob.getOutputStream(), true);
+            BufferedReader bobReader = new BufferedReader(new InputStreamReader(bob.getInputStream()));
+
+            // bob gets the board with the move of alice, and has the turn:
+            bobWriter.println(Protocol.helloMessage("bob"));
+            assertTrue(bobReader.readLine().startsWith(Protocol.WELCOME));
+            bobWriter.println(Protocol.resume(bobToken));
+            assertTrue(bobReader.readLine().endsWith(Protocol.SEPARATOR + bobToken));
+            assertTrue(bobReader.readLine().startsWith(Protocol.BOARD + Protocol.SEPARATOR + "alice"
+                    + Protocol.SEPARATOR + "bob"));
+            assertEquals(Protocol.yourTurn(), bobReader.readLine());
+            bobWriter.println(Protocol.move(5, 6));
+            assertEquals(Protocol.move("bob", 5, 6), bobReader.readLine());
+
+            aliceWriter.println(Protocol.helloMessage("alice"));
+            assertTrue(aliceReader.readLine().startsWith(Protocol.WELCOME));
+            aliceWriter.println(Protocol.resume(aliceToken));
+            assertTrue(aliceReader.readLine().endsWith(Protocol.SEPARATOR + aliceToken));
+            assertTrue(aliceReader.readLine().startsWith(Protocol.BOARD));
+            assertEquals(Protocol.yourTurn(), aliceReader.readLine());
+            aliceWriter.println(Protocol.move(0, 0));
+            assertEquals(Protocol.move("alice", 0, 0), aliceReader.readLine());
+            assertEquals(Protocol.move("alice", 0, 0), bobReader.readLine());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Lets a connected client say HELLO, choose a username and wait for a game.
+     *
+     * @param writer   is the writer of the connection of the client;
+     * @param reader   is the reader of the connection of the client;
+     * @param username is the username of the client;
+     * @return the token of the session of the client.
+     */
+    private static String join(PrintWriter writer, BufferedReader reader, String username) throws IOException {
+        writer.println(Protocol.helloMessage("test client"));
+        assertTrue(reader.readLine().startsWith(Protocol.WELCOME));
+        writer.println(Protocol.username(username));
+        String joined = reader.readLine();
+        assertTrue(joined.startsWith(Protocol.JOINED));
+        writer.println(Protocol.queue());
+        return joined.substring(joined.lastIndexOf(Protocol.SEPARATOR) + 1);
+    }
+
+    /**
+     * Test whether a server with an invalid fsync policy and snapshot interval still starts with a journal, with the
+     * default policy and interval.
+     */
+    @Test
+    public void testInvalidJournalProperties(@TempDir Path directory) {
+        System.setProperty(MoveJournal.FSYNC_PROPERTY, "sometimes");
+        System.setProperty(Server.SNAPSHOT_INTERVAL_PROPERTY, "0");
+        try {
+            assertEquals(MoveJournal.Fsync.INTERVAL, MoveJournal.fsyncFromProperty());
+            Server server = new Server(0, InetAddress.getLoopbackAddress(), ServerMode.BLOCKING, directory);
+            server.start();
+            try {
+                assertTrue(server.isOpenForConnection());
+                assertNotNull(server.getJournal());
+            } finally {
+                server.stop();
+            }
+        } finally {
+            System.clearProperty(MoveJournal.FSYNC_PROPERTY);
+            System.clearProperty(Server.SNAPSHOT_INTERVAL_PROPERTY);
+        }
+    }
+}
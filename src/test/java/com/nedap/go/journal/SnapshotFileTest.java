@@ -0,0 +1,136 @@
+package com.nedap.go.journal;
+
+import com.nedap.go.game.Board;
+import com.nedap.go.game.Game;
+import com.nedap.go.game.Player;
+import com.nedap.go.game.Stone;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotFileTest {
+
+    /**
+     * Creates a game in which black has played at (0,0) and white has passed.
+     *
+     * @return the game.
+     */
+    private Game createGame() {
+        Game game = new Game(new Player("alice", Stone.BLACK), new Player("bob", Stone.WHITE), new Board(), null);
+        game.doMove(0, 0);
+        game.pass();
+        return game;
+    }
+
+    /**
+     * Test whether the snapshots that are written can be read again, also after the file is opened again, and whether
+     * a restored game is in the same state as the game of the snapshot.
+     */
+    @Test
+    public void testWriteAndRead(@TempDir Path directory) throws IOException {
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            assertEquals(0, snapshotFile.getGeneration());
+            assertTrue(snapshotFile.read().isEmpty());
+            snapshotFile.write(List.of(GameSnapshot.of(1, 7, createGame())));
+            snapshotFile.write(List.of(GameSnapshot.of(1, 9, createGame()), GameSnapshot.of(2, 8, createGame())));
+            assertEquals(2, snapshotFile.getGeneration());
+        }
+
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            assertEquals(2, snapshotFile.getGeneration());
+            List<GameSnapshot> snapshots = snapshotFile.read();
+            assertEquals(2, snapshots.size());
+            assertEquals(9, snapshots.get(0).getSequence());
+            assertEquals(2, snapshots.get(1).getGameId());
+            Game game = snapshots.get(0).restore();
+            assertEquals(Stone.BLACK, game.getBoard().getStone(0, 0));
+            assertEquals(1, game.getPassCount());
+            assertEquals("alice", game.getCurrentPlayer().getUsername());
+            assertArrayEquals(createGame().getPreviousBoards(), game.getPreviousBoards());
+        }
+    }
+
+    /**
+     * Test whether the older snapshot is read when the newest slot is damaged, as by a crash while it was written.
+     */
+    @Test
+    public void testDamagedSlot(@TempDir Path directory) throws IOException {
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            snapshotFile.write(List.of(GameSnapshot.of(1, 7, createGame())));
+            snapshotFile.write(List.of(GameSnapshot.of(1, 9, createGame())));
+        }
+        // the slots are written in turns, starting with the second one, so the second snapshot is in the first slot; a
+        // byte of its contents is changed:
+        Path path = directory.resolve(SnapshotFile.NAME);
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[30] ^= 1;
+        Files.write(path, bytes);
+
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            assertEquals(1, snapshotFile.getGeneration());
+            assertEquals(7, snapshotFile.read().get(0).getSequence());
+            // the next snapshot is written over the damaged slot:
+            snapshotFile.write(List.of(GameSnapshot.of(1, 11, createGame())));
+            assertEquals(11, snapshotFile.read().get(0).getSequence());
+        }
+    }
+
+    /**
+     * Test whether the file grows when the snapshots do not fit in a slot anymore.
+     */
+    @Test
+    public void testGrow(@TempDir Path directory) throws IOException {
+        List<GameSnapshot> snapshots = new ArrayList<>();
+        for (int id = 1; id <= 4000; id++) {
+            snapshots.add(GameSnapshot.of(id, id, createGame()));
+        }
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            snapshotFile.write(snapshots.subList(0, 1));
+            long size = Files.size(directory.resolve(SnapshotFile.NAME));
+            snapshotFile.write(snapshots);
+            assertTrue(Files.size(directory.resolve(SnapshotFile.NAME)) > size);
+        }
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            assertEquals(4000, snapshotFile.read().size());
+        }
+    }
+
+    /**
+     * Test whether a replay that starts from a snapshot only collects the records after the snapshot, and whether the
+     * journal deletes the segments before the snapshot once the snapshot is written.
+     */
+    @Test
+    public void testReplayFromSnapshot(@TempDir Path directory) throws IOException, InterruptedException {
+        MoveJournal journal = new MoveJournal(directory, MoveJournal.Fsync.ALWAYS, 64, JournalReplay.read(directory));
+        journal.append(JournalRecord.start(1, "alice", "bob"));
+        for (int i = 0; i < 8; i++) {
+            journal.sync(1000);
+            journal.append(JournalRecord.move(1, i, i));
+        }
+        journal.sync(1000);
+        long sequence = journal.append(JournalRecord.pass(1));
+        assertTrue(journal.sync(1000));
+        int segmentsBeforeSnapshot = JournalReplay.read(directory).getSegments().size();
+        assertTrue(segmentsBeforeSnapshot > 1);
+
+        List<GameSnapshot> snapshots = List.of(GameSnapshot.of(1, sequence, createGame()));
+        try (SnapshotFile snapshotFile = new SnapshotFile(directory)) {
+            snapshotFile.write(snapshots);
+        }
+        journal.snapshotWritten(snapshots);
+        journal.append(JournalRecord.move(1, 1, 1));
+        journal.close();
+
+        JournalReplay replay = JournalReplay.read(directory, snapshots);
+        assertTrue(replay.getSegments().size() < segmentsBeforeSnapshot);
+        assertEquals(sequence, replay.getSnapshot(1).getSequence());
+        assertEquals("[MOVE 1 1 1]", replay.getLiveGames().get(1).toString());
+    }
+}
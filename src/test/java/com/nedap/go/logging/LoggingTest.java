@@ -0,0 +1,75 @@
+package com.nedap.go.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggingTest {
+
+    /**
+     * Test whether a level that is set for a category also holds for its sub-categories, unless a sub-category has its
+     * own level, and whether changing a level also changes the loggers that already exist.
+     */
+    @Test
+    public void testLevelsPerCategory() {
+        Logger messages = Logging.getLogger("test.server.messages");
+        Logging.configure("test.server=WARN,test.server.messages=DEBUG");
+        Logger server = Logging.getLogger("test.server");
+        Logger connection = Logging.getLogger("test.server.connection");
+        assertSame(server, Logging.getLogger("test.server"));
+        assertEquals(Level.WARN, server.getLevel());
+        assertEquals(Level.WARN, connection.getLevel());
+        assertEquals(Level.DEBUG, messages.getLevel());
+        assertTrue(messages.isEnabled(Level.DEBUG));
+        assertFalse(messages.isEnabled(Level.TRACE));
+        assertFalse(connection.isEnabled(Level.INFO));
+
+        Logging.setLevel("test.server", Level.OFF);
+        assertFalse(connection.isEnabled(Level.ERROR));
+        assertTrue(messages.isEnabled(Level.DEBUG));
+    }
+
+    /**
+     * Test whether the appender writes the messages in order with level and category, and whether messages are dropped
+     * instead of blocking when the writer thread can not keep up.
+     */
+    @Test
+    public void testAsyncAppender() throws InterruptedException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncAppender appender = new AsyncAppender(new PrintStream(bytes, true), 16);
+        for (int i = 0; i < 10; i++) {
+            appender.append(Level.INFO, "test", "message " + i);
+        }
+        appender.flush(5000);
+        String[] lines = bytes.toString().split(System.lineSeparator());
+        assertEquals(10, lines.length);
+        assertTrue(lines[0].contains("INFO"));
+        assertTrue(lines[0].endsWith("test - message 0"));
+        assertTrue(lines[9].endsWith("test - message 9"));
+        assertEquals(0, appender.getDropped());
+
+        // an output that blocks the writer thread until the latch is released:
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream blocking = new OutputStream() {
+            @Override
+            public void write(int b) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        AsyncAppender blockedAppender = new AsyncAppender(new PrintStream(blocking), 16);
+        for (int i = 0; i < 100; i++) {
+            blockedAppender.append(Level.INFO, "test", "message " + i);
+        }
+        assertTrue(blockedAppender.getDropped() >= 100 - 16 - 1);
+        release.countDown();
+    }
+}
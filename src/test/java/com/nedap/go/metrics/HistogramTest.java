@@ -0,0 +1,48 @@
+package com.nedap.go.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistogramTest {
+
+    /**
+     * Test whether the count, mean and maximum are exact, and whether the percentiles are estimated within 1/16 of the
+     * real value.
+     */
+    @Test
+    public void testRecordAndPercentiles() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0.0001);
+        assertEquals(1000, histogram.getMax());
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 500 && median <= 500 + 500 / 16);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 990 && p99 <= 990 + 990 / 16);
+        assertEquals(1000, histogram.getPercentile(100));
+        // a negative value is recorded as 0:
+        histogram.record(-5);
+        assertEquals(0, histogram.getPercentile(0));
+    }
+
+    /**
+     * Test whether small values are counted exactly, and whether large values (up to Long.MAX_VALUE) are estimated
+     * within 1/16 of the real value.
+     */
+    @Test
+    public void testPrecision() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            Histogram histogram = new Histogram();
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE); // so the estimate is not capped by the maximum
+            long estimate = histogram.getPercentile(50);
+            assertTrue(estimate >= value, value + " is estimated as " + estimate);
+            assertTrue(estimate - value <= value / 16, value + " is estimated as " + estimate);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.nedap.go.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FifoMatchmakerTest {
+
+    /**
+     * Creates clientHandlers without connection, which are only used as players in the queue.
+     *
+     * @param number is the number of clientHandlers to create;
+     * @return the list of clientHandlers.
+     */
+    private List<ClientHandler> createPlayers(int number) throws UnknownHostException {
+        Server server = new Server(0, InetAddress.getLocalHost());
+        List<ClientHandler> players = new ArrayList<>();
+        for (int i = 0; i < number; i++) {
+            players.add(new ClientHandler((Connection) null, server));
+        }
+        return players;
+    }
+
+    /**
+     * Test whether players are paired in the order in which they entered the queue, and whether a cancelled player is
+     * skipped.
+     */
+    @Test
+    public void testFirstComeFirstServed() throws UnknownHostException {
+        List<ClientHandler> players = createPlayers(5);
+        List<ClientHandler> paired = new ArrayList<>();
+        FifoMatchmaker matchmaker = new FifoMatchmaker((first, second) -> {
+            paired.add(first);
+            paired.add(second);
+        });
+        matchmaker.enqueue(players.get(0));
+        assertTrue(matchmaker.isWaiting(players.get(0)));
+        matchmaker.enqueue(players.get(1));
+        assertEquals(List.of(players.get(0), players.get(1)), paired);
+        assertFalse(matchmaker.isWaiting(players.get(0)));
+
+        matchmaker.enqueue(players.get(2));
+        assertTrue(matchmaker.cancel(players.get(2)));
+        assertFalse(matchmaker.cancel(players.get(2)));
+        matchmaker.enqueue(players.get(3));
+        matchmaker.enqueue(players.get(4));
+        assertEquals(List.of(players.get(0), players.get(1), players.get(3), players.get(4)), paired);
+        assertEquals(0, matchmaker.getNumberOfWaitingPlayers());
+        assertEquals(4, matchmaker.getWaitTimes().getCount());
+    }
+
+    /**
+     * Test whether every player is paired exactly once when many threads add players at the same time.
+     */
+    @Test
+    public void testConcurrentPairing() throws Exception {
+        int numberOfPlayers = 20_000;
+        List<ClientHandler> players = createPlayers(numberOfPlayers);
+        Map<ClientHandler, ClientHandler> opponents = new ConcurrentHashMap<>();
+        FifoMatchmaker matchmaker = new FifoMatchmaker((first, second) -> {
+            assertNotSame(first, second);
+            assertNull(opponents.put(first, second));
+            assertNull(opponents.put(second, first));
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (ClientHandler player : players) {
+            executor.execute(() -> matchmaker.enqueue(player));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(numberOfPlayers, opponents.size());
+        assertEquals(0, matchmaker.getNumberOfWaitingPlayers());
+        assertEquals(numberOfPlayers, matchmaker.getWaitTimes().getCount());
+    }
+}
@@ -0,0 +1,132 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameSchedulerTest {
+
+    /**
+     * Test whether all scheduled tasks are run on the workers, and whether the metrics count every run and do not
+     * report waiting games or commands afterwards.
+     */
+    @ParameterizedTest
+    @EnumSource(value = ServerMode.class, names = {"NIO", "VIRTUAL"})
+    void testScheduleAndMetrics(ServerMode mode) throws InterruptedException {
+        GameScheduler scheduler = new GameScheduler(mode, 2);
+        int numberOfTasks = 1000;
+        CountDownLatch done = new CountDownLatch(numberOfTasks);
+        AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < numberOfTasks; i++) {
+            scheduler.commandQueued();
+            scheduler.schedule(() -> {
+                scheduler.commandTaken();
+                counter.incrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        scheduler.shutdown();
+
+        assertEquals(numberOfTasks, counter.get());
+        assertEquals(numberOfTasks, scheduler.getRuns());
+        assertEquals(0, scheduler.getPendingRuns());
+        assertEquals(0, scheduler.getPendingCommands());
+        assertTrue(scheduler.getMaxPendingRuns() >= 1);
+        assertTrue(scheduler.getMaxDelayNanos() >= scheduler.getAverageDelayNanos());
+    }
+
+    /**
+     * Test whether a game keeps processing its commands after a command throws an exception: the failing command is
+     * skipped, and the game is released by its worker, so the next command of the game is still processed.
+     */
+    @Test
+    void testThrowingCommand() throws InterruptedException {
+        Server server = new Server(0, InetAddress.getLoopbackAddress());
+        server.start();
+        try {
+            FailingConnection black = new FailingConnection();
+            ClientHandler white = new ClientHandler(new FailingConnection(), server);
+            GoGameHandler goGameHandler = new GoGameHandler(1, new ClientHandler(black, server), white, server);
+            // NEWGAME can not be sent to black, so the start throws halfway:
+            black.failNext = true;
+            goGameHandler.createNewGame();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (black.failNext && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(black.failNext);
+
+            goGameHandler.submit(GameCommand.resign(white));
+            while (!goGameHandler.isFinished() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(goGameHandler.isFinished());
+            assertEquals(0, server.getGameScheduler().getPendingCommands());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Represents a connection that throws when the next message is finished, like an encoder that refuses a message
+     * that is too long.
+     */
+    private static class FailingConnection implements Connection {
+        private final MessageEncoder encoder = new MessageEncoder();
+        private volatile boolean failNext;
+
+        @Override
+        public MessageEncoder beginMessage() {
+            return encoder;
+        }
+
+        @Override
+        public void endMessage() {
+            encoder.clear();
+            if (failNext) {
+                failNext = false;
+                throw new IllegalArgumentException("The message does not fit in a frame.");
+            }
+        }
+
+        @Override
+        public boolean sendEncoded(ByteBuffer message, int maxPendingBytes) {
+            return true;
+        }
+
+        @Override
+        public void setFraming(Framing framing) {
+            encoder.setFraming(framing);
+        }
+
+        @Override
+        public void setGameIds(boolean gameIds) {
+            encoder.setGameIds(gameIds);
+        }
+
+        @Override
+        public int getPendingBytes() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+}
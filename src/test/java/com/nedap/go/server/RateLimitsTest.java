@@ -0,0 +1,79 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Command;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitsTest {
+
+    /**
+     * Test whether a token bucket allows a burst of its capacity, and after that one token per 1/rate seconds.
+     */
+    @Test
+    public void testTokenBucket() {
+        long now = 0;
+        TokenBucket bucket = new TokenBucket(10, 5, now);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryTake(now));
+        }
+        assertFalse(bucket.tryTake(now));
+        now += TimeUnit.MILLISECONDS.toNanos(99);
+        assertFalse(bucket.tryTake(now));
+        now += TimeUnit.MILLISECONDS.toNanos(1);
+        assertTrue(bucket.tryTake(now));
+        assertFalse(bucket.tryTake(now));
+
+        // a long silence fills the bucket up to its capacity, not more:
+        now += TimeUnit.SECONDS.toNanos(60);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryTake(now));
+        }
+        assertFalse(bucket.tryTake(now));
+    }
+
+    /**
+     * Test whether a connection that floods the server with one command can still send other commands, and whether
+     * the rejected messages are counted per command.
+     */
+    @Test
+    public void testLimiter() {
+        RateLimits rateLimits = new RateLimits(1000, 0.01);
+        RateLimits.Limiter limiter = rateLimits.newLimiter();
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.tryAcquire(Command.MOVE)) {
+                accepted++;
+            }
+        }
+        // the burst of a command is twice its rate, but at least one message:
+        assertEquals(1, accepted);
+        assertTrue(limiter.tryAcquire(Command.PASS));
+        assertEquals(100 - accepted, rateLimits.getRejected(Command.MOVE));
+        assertEquals(0, rateLimits.getRejected(Command.PASS));
+        assertEquals(100 - accepted, rateLimits.getRejected());
+        // another connection has its own limits:
+        assertTrue(rateLimits.newLimiter().tryAcquire(Command.MOVE));
+    }
+
+    /**
+     * Test whether the MOVE limit of a connection grows with the number of games it plays, while the limits of the
+     * other commands do not.
+     */
+    @Test
+    public void testLimiterPerGame() {
+        RateLimits rateLimits = new RateLimits(1000, 0.5);
+        RateLimits.Limiter limiter = rateLimits.newLimiter();
+        // a connection with 10 games has a burst of 10 MOVEs:
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(Command.MOVE, 10));
+        }
+        assertFalse(limiter.tryAcquire(Command.MOVE, 10));
+        assertTrue(limiter.tryAcquire(Command.QUEUE, 10));
+        assertFalse(limiter.tryAcquire(Command.QUEUE, 10));
+        assertEquals(1, rateLimits.getRejected(Command.MOVE));
+        assertEquals(1, rateLimits.getRejected(Command.QUEUE));
+    }
+}
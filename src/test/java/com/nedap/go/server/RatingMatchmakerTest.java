@@ -0,0 +1,80 @@
+package com.nedap.go.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RatingMatchmakerTest {
+
+    /**
+     * Test whether players are paired with the player with the nearest rating, whether a large rating difference is
+     * only accepted after waiting long enough, and whether the wait times are recorded per rating bucket.
+     */
+    @Test
+    public void testPairingByRating() throws UnknownHostException {
+        Server server = new Server(0, InetAddress.getLocalHost());
+        Map<ClientHandler, Integer> ratings = new HashMap<>();
+        List<ClientHandler> players = new ArrayList<>();
+        for (int rating : new int[]{1500, 1900, 1510, 1000}) {
+            ClientHandler player = new ClientHandler((Connection) null, server);
+            ratings.put(player, rating);
+            players.add(player);
+        }
+        List<ClientHandler> paired = new ArrayList<>();
+        RatingMatchmaker matchmaker = new RatingMatchmaker((first, second) -> {
+            paired.add(first);
+            paired.add(second);
+        }, ratings::get);
+        for (ClientHandler player : players) {
+            matchmaker.enqueue(player);
+        }
+        long now = System.nanoTime();
+        // 1500 and 1510 are paired directly; 1900 and 1000 are too far apart:
+        matchmaker.pairPlayers(now);
+        assertEquals(List.of(players.get(0), players.get(2)), paired);
+        assertEquals(2, matchmaker.getNumberOfWaitingPlayers());
+        matchmaker.pairPlayers(now + TimeUnit.SECONDS.toNanos(10));
+        assertEquals(2, matchmaker.getNumberOfWaitingPlayers());
+
+        // after waiting the maximum time, any opponent is accepted:
+        matchmaker.pairPlayers(now + TimeUnit.SECONDS.toNanos(RatingMatchmaker.MAX_WAIT_SECONDS));
+        assertEquals(List.of(players.get(0), players.get(2), players.get(1), players.get(3)), paired);
+        assertEquals(0, matchmaker.getNumberOfWaitingPlayers());
+        assertEquals(4, matchmaker.getWaitTimes().getCount());
+        assertEquals(2, matchmaker.getWaitTimesPerBucket().get(1500).getCount());
+        assertEquals(1, matchmaker.getWaitTimesPerBucket().get(1000).getCount());
+    }
+
+    /**
+     * Test whether the accepted rating difference grows with the wait time, and whether a cancelled player is not
+     * paired anymore.
+     */
+    @Test
+    public void testWindowAndCancel() throws UnknownHostException {
+        assertEquals(RatingMatchmaker.BASE_WINDOW, RatingMatchmaker.acceptedDifference(0));
+        assertTrue(RatingMatchmaker.acceptedDifference(TimeUnit.SECONDS.toNanos(5))
+                > RatingMatchmaker.acceptedDifference(TimeUnit.SECONDS.toNanos(1)));
+
+        Server server = new Server(0, InetAddress.getLocalHost());
+        ClientHandler first = new ClientHandler((Connection) null, server);
+        ClientHandler second = new ClientHandler((Connection) null, server);
+        List<ClientHandler> paired = new ArrayList<>();
+        RatingMatchmaker matchmaker = new RatingMatchmaker((a, b) -> paired.add(a), player -> 1500);
+        matchmaker.enqueue(first);
+        assertTrue(matchmaker.isWaiting(first));
+        assertTrue(matchmaker.cancel(first));
+        assertFalse(matchmaker.isWaiting(first));
+        matchmaker.enqueue(second);
+        matchmaker.pairPlayers(System.nanoTime());
+        assertTrue(paired.isEmpty());
+        assertTrue(matchmaker.isWaiting(second));
+    }
+}
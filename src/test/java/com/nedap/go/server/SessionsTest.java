@@ -0,0 +1,62 @@
+package com.nedap.go.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionsTest {
+
+    /**
+     * Test whether a session whose connection is lost can be resumed by a new clientHandler within the grace period,
+     * and whether only the clientHandler that holds a session can detach or close it.
+     */
+    @Test
+    public void testResume() throws InterruptedException {
+        Server server = new Server(0, InetAddress.getLoopbackAddress());
+        ClientHandler first = new ClientHandler((Connection) null, server);
+        ClientHandler second = new ClientHandler((Connection) null, server);
+        CountDownLatch expired = new CountDownLatch(1);
+        TimingWheel timingWheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 64);
+        timingWheel.start();
+        Sessions sessions = new Sessions(timingWheel, 100);
+        String token = sessions.open("alice", first);
+        assertNotEquals(token, sessions.open("bob", second));
+        assertFalse(token.contains("~"));
+
+        assertFalse(sessions.detach(token, second, expired::countDown));
+        assertTrue(sessions.detach(token, first, expired::countDown));
+        assertSame(first, sessions.resume(token, second));
+        // the resumed session does not expire, and can not be closed by the clientHandler of the lost connection:
+        assertFalse(expired.await(300, TimeUnit.MILLISECONDS));
+        sessions.close(token, first);
+        assertEquals(2, sessions.size());
+        sessions.close(token, second);
+        assertEquals(1, sessions.size());
+        assertNull(sessions.resume(token, first));
+        timingWheel.stop();
+    }
+
+    /**
+     * Test whether a session that is not resumed within the grace period expires, after which it can not be resumed
+     * anymore.
+     */
+    @Test
+    public void testExpiry() throws InterruptedException {
+        Server server = new Server(0, InetAddress.getLoopbackAddress());
+        ClientHandler clientHandler = new ClientHandler((Connection) null, server);
+        CountDownLatch expired = new CountDownLatch(1);
+        TimingWheel timingWheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 64);
+        timingWheel.start();
+        Sessions sessions = new Sessions(timingWheel, 50);
+        String token = sessions.open("alice", clientHandler);
+        assertTrue(sessions.detach(token, clientHandler, expired::countDown));
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertEquals(0, sessions.size());
+        assertNull(sessions.resume(token, new ClientHandler((Connection) null, server)));
+        timingWheel.stop();
+    }
+}
@@ -0,0 +1,127 @@
+package com.nedap.go.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SocketConnectionTest {
+
+    private ThreadPoolExecutor writers;
+
+    @BeforeEach
+    void setUp() {
+        writers = (ThreadPoolExecutor) Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writers.shutdownNow();
+    }
+
+    /**
+     * Test whether all messages are written to the client in the order in which they were sent, also the messages that
+     * were sent just before the connection was closed.
+     */
+    @Test
+    public void testMessagesAreWrittenInOrder() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+            SocketConnection connection = new SocketConnection(serverSocket.accept(), writers);
+            for (int i = 0; i < 100; i++) {
+                connection.send("MOVE~" + i);
+            }
+            connection.close();
+            assertTrue(connection.isClosed());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            for (int i = 0; i < 100; i++) {
+                assertEquals("MOVE~" + i, reader.readLine());
+            }
+            assertNull(reader.readLine());
+        }
+    }
+
+    /**
+     * Test whether an open connection only holds a writer while it has messages to write, so the writers can be shared
+     * by all connections.
+     */
+    @Test
+    public void testWriterIsReleased() throws IOException, InterruptedException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+            SocketConnection connection = new SocketConnection(serverSocket.accept(), writers);
+            assertEquals(0, writers.getPoolSize());
+            for (int i = 0; i < 100; i++) {
+                connection.send("MOVE~" + i);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            for (int i = 0; i < 100; i++) {
+                assertEquals("MOVE~" + i, reader.readLine());
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (writers.getActiveCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, writers.getActiveCount());
+            assertFalse(connection.isClosed());
+            connection.send("MOVE~100");
+            assertEquals("MOVE~100", reader.readLine());
+            connection.close();
+        }
+    }
+
+    /**
+     * Test whether a client that does not read its messages is dropped, instead of blocking the thread that sends the
+     * messages.
+     */
+    @Test
+    public void testSlowClientIsDropped() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+            client.setReceiveBufferSize(4096);
+            SocketConnection connection = new SocketConnection(serverSocket.accept(), writers);
+            String message = "MOVE~" + "x".repeat(100);
+            // the client never reads; sending must not block, and at some point the connection is dropped:
+            for (int i = 0; i < 1_000_000 && !connection.isClosed(); i++) {
+                connection.send(message);
+            }
+            assertTrue(connection.isClosed());
+        }
+    }
+
+    /**
+     * Test whether an encoded message (as broadcast to spectators) is skipped when too many bytes are waiting, while
+     * the connection itself stays open, and whether the same buffer can be sent more than once.
+     */
+    @Test
+    public void testEncodedMessageIsSkipped() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+            client.setReceiveBufferSize(4096);
+            SocketConnection connection = new SocketConnection(serverSocket.accept(), writers);
+            ByteBuffer message = ByteBuffer.wrap(("MOVE~" + "x".repeat(100) + "\n").getBytes(StandardCharsets.UTF_8))
+                    .asReadOnlyBuffer();
+            boolean skipped = false;
+            for (int i = 0; i < 1_000_000 && !skipped; i++) {
+                skipped = !connection.sendEncoded(message, 16 * 1024);
+            }
+            assertTrue(skipped);
+            assertEquals(0, message.position());
+            assertFalse(connection.isClosed());
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.nedap.go.server;
+
+import com.nedap.go.codec.Command;
+import com.nedap.go.codec.Framing;
+import com.nedap.go.codec.MessageDecoder;
+import com.nedap.go.codec.MessageEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpectatorsTest {
+
+    /**
+     * Test whether a broadcast message is encoded once per encoding: spectators with the same encoding get the same
+     * buffer, a spectator with binary framing gets a binary frame, and spectators that are too slow or closed are
+     * removed.
+     */
+    @Test
+    public void testBroadcast() throws ProtocolException {
+        Server server = new Server(0, InetAddress.getLoopbackAddress());
+        RecordingConnection first = new RecordingConnection();
+        RecordingConnection second = new RecordingConnection();
+        RecordingConnection binary = new RecordingConnection();
+        RecordingConnection slow = new RecordingConnection();
+        slow.full = true;
+        ClientHandler binarySpectator = new ClientHandler(binary, server);
+        new MessageDecoder().decode(ByteBuffer.wrap("HELLO~test~BINARY\n".getBytes(StandardCharsets.UTF_8)),
+                binarySpectator);
+        ClientHandler closedSpectator = new ClientHandler(new RecordingConnection(), server);
+
+        Spectators spectators = new Spectators(7);
+        assertTrue(spectators.add(new ClientHandler(first, server)));
+        assertTrue(spectators.add(new ClientHandler(second, server)));
+        assertTrue(spectators.add(binarySpectator));
+        assertTrue(spectators.add(new ClientHandler(slow, server)));
+        assertTrue(spectators.add(closedSpectator));
+        assertFalse(spectators.add(binarySpectator));
+        closedSpectator.close();
+
+        spectators.broadcast((message, captures) -> message.command(Command.MOVE, 7).field("alice").field(3).field(4));
+        assertEquals(3, spectators.size());
+        assertSame(first.received.get(0), second.received.get(0));
+        assertEquals("MOVE~alice~3~4\n", StandardCharsets.UTF_8.decode(first.received.get(0).duplicate()).toString());
+        List<String> decoded = new ArrayList<>();
+        MessageDecoder decoder = new MessageDecoder();
+        decoder.setFraming(Framing.BINARY);
+        decoder.decode(binary.received.get(0).duplicate(),
+                message -> decoded.add(message.getGameId() + " " + message));
+        assertEquals(List.of("7 MOVE~7~alice~3~4"), decoded);
+    }
+
+    /**
+     * Represents a connection that records the encoded messages that are sent to it, and that can act as the
+     * connection of a client that does not read its messages.
+     */
+    private static class RecordingConnection implements Connection {
+        private final MessageEncoder encoder = new MessageEncoder();
+        private final List<ByteBuffer> received = new ArrayList<>();
+        private boolean full;
+        private boolean closed;
+
+        @Override
+        public MessageEncoder beginMessage() {
+            return encoder;
+        }
+
+        @Override
+        public void endMessage() {
+            encoder.end();
+        }
+
+        @Override
+        public boolean sendEncoded(ByteBuffer message, int maxPendingBytes) {
+            if (full) {
+                return false;
+            }
+            received.add(message);
+            return true;
+        }
+
+        @Override
+        public void setFraming(Framing framing) {
+            encoder.setFraming(framing);
+        }
+
+        @Override
+        public void setGameIds(boolean gameIds) {
+            encoder.setGameIds(gameIds);
+        }
+
+        @Override
+        public int getPendingBytes() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.nedap.go.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    /**
+     * Test whether timeouts run in the order of their deadlines and never before their deadline, also when their delay
+     * is longer than one round of the wheel.
+     */
+    @Test
+    public void testTimeoutsRunInOrder() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel(5, TimeUnit.MILLISECONDS, 8);
+        timingWheel.start();
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        List<Long> lateness = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        for (int delay : new int[]{120, 10, 45, 0}) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            timingWheel.schedule(() -> {
+                order.add(delay);
+                lateness.add(System.nanoTime() - deadline);
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 10, 45, 120), order);
+        for (long late : lateness) {
+            assertTrue(late >= 0);
+        }
+        assertEquals(0, timingWheel.getPendingTimeouts());
+        timingWheel.stop();
+    }
+
+    /**
+     * Test whether a cancelled timeout does not run, and whether a timeout can only be cancelled before it has run.
+     */
+    @Test
+    public void testCancel() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel(5, TimeUnit.MILLISECONDS, 8);
+        timingWheel.start();
+        CountDownLatch cancelledRan = new CountDownLatch(1);
+        CountDownLatch ran = new CountDownLatch(1);
+        TimingWheel.Timeout cancelled = timingWheel.schedule(cancelledRan::countDown, 20, TimeUnit.MILLISECONDS);
+        TimingWheel.Timeout timeout = timingWheel.schedule(ran::countDown, 40, TimeUnit.MILLISECONDS);
+        assertEquals(2, timingWheel.getPendingTimeouts());
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, timingWheel.getPendingTimeouts());
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelledRan.await(50, TimeUnit.MILLISECONDS));
+        assertTrue(timeout.isDone());
+        assertFalse(timeout.cancel());
+        timingWheel.stop();
+    }
+
+    /**
+     * Test whether many timeouts can be scheduled and cancelled from several threads at the same time.
+     */
+    @Test
+    public void testManyTimeouts() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 64);
+        timingWheel.start();
+        CountDownLatch done = new CountDownLatch(4 * 5_000);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    TimingWheel.Timeout timeout = timingWheel.schedule(done::countDown, 100 + i % 100,
+                            TimeUnit.MILLISECONDS);
+                    if (i % 2 == 1) {
+                        timeout.cancel();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, timingWheel.getPendingTimeouts());
+        timingWheel.stop();
+    }
+}
@@ -0,0 +1,53 @@
+package com.nedap.go.tournament;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TournamentTest {
+
+    /**
+     * Test whether the Elo estimate is 0 for an even score, positive for a winning score, and whether the confidence
+     * interval contains the estimate and becomes smaller with more games.
+     */
+    @Test
+    public void testEloEstimate() {
+        assertEquals(0, EloEstimate.fromResults(5, 0, 5).getDifference(), 0.0001);
+        assertEquals(0, EloEstimate.fromResults(0, 10, 0).getDifference(), 0.0001);
+        // a score of 75% corresponds to about +191 Elo:
+        EloEstimate estimate = EloEstimate.fromResults(75, 0, 25);
+        assertEquals(190.8, estimate.getDifference(), 0.1);
+        assertTrue(estimate.getLowerBound() < estimate.getDifference());
+        assertTrue(estimate.getUpperBound() > estimate.getDifference());
+        EloEstimate moreGames = EloEstimate.fromResults(750, 0, 250);
+        assertTrue(moreGames.getUpperBound() - moreGames.getLowerBound()
+                < estimate.getUpperBound() - estimate.getLowerBound());
+        // a score of 100% does not result in an infinite difference:
+        assertTrue(Double.isFinite(EloEstimate.fromResults(10, 0, 0).getDifference()));
+    }
+
+    /**
+     * Test whether a round-robin tournament plays the expected number of games, whether every game is counted for both
+     * entrants, and whether the same seed results in the same games, independent of the number of threads.
+     */
+    @Test
+    public void testRoundRobin() throws InterruptedException {
+        List<Entrant> entrants = TournamentTUI.createEntrants().subList(0, 2);
+        TournamentResult result = new Tournament(4, 2, 7L).runRoundRobin(entrants);
+        assertEquals(4, result.getGames().size());
+        Score first = result.getScore(entrants.get(0), null);
+        Score second = result.getScore(entrants.get(1), entrants.get(0));
+        assertEquals(4, first.getGames());
+        assertEquals(first.getWins(), second.getLosses());
+        assertEquals(first.getDraws(), second.getDraws());
+        assertTrue(result.getTotalMoves() > 0);
+        assertTrue(result.getMovesPerSecond() > 0);
+
+        TournamentResult replayed = new Tournament(4, 1, 7L).runRoundRobin(entrants);
+        for (int game = 0; game < 4; game++) {
+            assertEquals(result.getGames().get(game).toString(), replayed.getGames().get(game).toString());
+        }
+    }
+}